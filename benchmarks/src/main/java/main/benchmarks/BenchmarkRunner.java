@@ -0,0 +1,25 @@
+package main.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler always on, so every result has its allocation rate
+ * (gc.alloc.rate.norm is the bytes allocated per operation) next to the throughput.
+ * Takes the same arguments as the JMH command line, e.g. a regex of the benchmarks to run
+ * @author CTS
+ *
+ */
+public class BenchmarkRunner {
+	
+	public static void main(String[] args) throws Exception {
+		Options options = new OptionsBuilder()
+				.parent(new CommandLineOptions(args))
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,98 @@
+package main.benchmarks;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.helpers.DiagnosticLog;
+import main.helpers.JsonHelper;
+import main.helpers.JsonScheduleWriter;
+import main.helpers.TimeHelper;
+import main.tasks.AntiTask;
+import main.tasks.RecurringTask;
+import main.tasks.RecurringTask.RecurringTaskType;
+import main.tasks.Task;
+import main.tasks.TransientTask;
+import main.tasks.TransientTask.TransientTaskType;
+
+/**
+ * Reading and writing schedule files. One task in ten is a weekly series with one cancelled occurance
+ * @author CTS
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JsonBenchmark {
+	private static final int FIRST_DAY = 18262; // 2020-01-01
+	
+	@Param({"100", "10000"})
+	int taskCount;
+	
+	private List<Task> taskList;
+	private String jsonContent;
+	private Path outputDirectory;
+	
+	@Setup
+	public void setUp() throws IOException {
+		DiagnosticLog.setLevel(DiagnosticLog.Level.OFF);
+		taskList = new ArrayList<>(taskCount);
+		for (int i = 0; i < taskCount; i++) {
+			int date = TimeHelper.fromEpochDay(FIRST_DAY + i);
+			if (i % 10 == 0) {
+				RecurringTask series = new RecurringTask("Series " + i, RecurringTaskType.STUDY, date, TimeHelper.fromEpochDay(FIRST_DAY + i + 70), 20f, 1.5f, 7);
+				series.addAntiTask(new AntiTask("Skip " + i, "Cancellation", TimeHelper.fromEpochDay(FIRST_DAY + i + 14), 20f, 1.5f));
+				taskList.add(series);
+			} else {
+				taskList.add(new TransientTask("Task " + i, TransientTaskType.VISIT, date, 12.25f, 0.75f));
+			}
+		}
+		StringWriter json = new StringWriter();
+		try (JsonScheduleWriter writer = new JsonScheduleWriter(json)) {
+			writer.writeTasks(taskList);
+		}
+		jsonContent = json.toString();
+		outputDirectory = Files.createTempDirectory("schedule-benchmark");
+	}
+	
+	@TearDown
+	public void tearDown() throws IOException {
+		try (Stream<Path> files = Files.walk(outputDirectory)) {
+			for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+				Files.delete(path);
+			}
+		}
+	}
+	
+	@Benchmark
+	public List<Task> parseJsonContent() throws Exception {
+		return JsonHelper.parseJsonContent(jsonContent);
+	}
+	
+	@Benchmark
+	public boolean writeToJson() {
+		return JsonHelper.writeToJson("schedule", outputDirectory.toString(), taskList);
+	}
+}
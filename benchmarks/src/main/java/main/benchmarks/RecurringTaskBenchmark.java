@@ -0,0 +1,92 @@
+package main.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.helpers.DiagnosticLog;
+import main.tasks.AntiTask;
+import main.tasks.RecurringTask;
+import main.tasks.RecurringTask.RecurringTaskType;
+import main.tasks.Task;
+import main.tasks.TransientTask;
+import main.tasks.TransientTask.TransientTaskType;
+
+/**
+ * Overlap checks and occurance expansion of a daily and a weekly series that run for all of 2020
+ * @author CTS
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RecurringTaskBenchmark {
+	
+	/** 1 for daily, 7 for weekly */
+	@Param({"1", "7"})
+	int frequency;
+	
+	private RecurringTask series;
+	private Task overlappingTask;
+	private Task freeTask;
+	private RecurringTask otherSeries;
+	private AntiTask cancellation;
+	
+	@Setup
+	public void setUp() {
+		DiagnosticLog.setLevel(DiagnosticLog.Level.OFF);
+		// 20200101 is a wednesday, and so is 20200701
+		series = new RecurringTask("Work", RecurringTaskType.WORK, 20200101, 20201231, 9f, 8f, frequency);
+		series.addAntiTask(new AntiTask("Holiday", "Cancellation", 20200408, 9f, 8f));
+		overlappingTask = new TransientTask("Dentist", TransientTaskType.APPOINTMENT, 20200701, 12f, 1f);
+		freeTask = new TransientTask("Dinner", TransientTaskType.VISIT, 20200701, 18f, 1f);
+		// only overlaps the series near the end of the year
+		otherSeries = new RecurringTask("Night Shift", RecurringTaskType.WORK, 20201201, 20201231, 16.75f, 0.5f, 1);
+		cancellation = new AntiTask("Day Off", "Cancellation", 20201230, 9f, 8f);
+	}
+	
+	@Benchmark
+	public boolean overlapsWithTransient() {
+		return series.overlapsWith(overlappingTask);
+	}
+	
+	@Benchmark
+	public boolean overlapsWithFreeTransient() {
+		return series.overlapsWith(freeTask);
+	}
+	
+	@Benchmark
+	public boolean overlapsWithRecurring() {
+		return series.overlapsWith(otherSeries);
+	}
+	
+	@Benchmark
+	public boolean overlapsWithAntiTask() {
+		return series.overlapsWith(cancellation);
+	}
+	
+	@Benchmark
+	public RecurringTask getNextOccurrance() {
+		return series.getNextOccurrance();
+	}
+	
+	@Benchmark
+	@SuppressWarnings("deprecation")
+	public List<RecurringTask> getAllFutureOccurances() {
+		return series.getAllFutureOccurances();
+	}
+}
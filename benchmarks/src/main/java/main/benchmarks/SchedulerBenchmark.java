@@ -0,0 +1,87 @@
+package main.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import main.ScheduleConflictException;
+import main.Scheduler;
+import main.helpers.DiagnosticLog;
+import main.helpers.TimeHelper;
+import main.tasks.Task;
+import main.tasks.TransientTask;
+import main.tasks.TransientTask.TransientTaskType;
+
+/**
+ * Adding a task to schedules of different sizes. The schedule has eight one hour tasks a day,
+ * on the even hours, so the odd hours are free
+ * @author CTS
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SchedulerBenchmark {
+	private static final int FIRST_DAY = 18262; // 2020-01-01
+	private static final int TASKS_PER_DAY = 8;
+	
+	@Param({"100", "1000", "10000"})
+	int scheduleSize;
+	
+	private Scheduler scheduler;
+	private Task freeTask;
+	private Task conflictingTask;
+	
+	@Setup
+	public void setUp() {
+		DiagnosticLog.setLevel(DiagnosticLog.Level.OFF);
+		List<Task> taskList = new ArrayList<>(scheduleSize);
+		for (int i = 0; i < scheduleSize; i++) {
+			int date = TimeHelper.fromEpochDay(FIRST_DAY + i / TASKS_PER_DAY);
+			taskList.add(new TransientTask("Task " + i, TransientTaskType.VISIT, date, (i % TASKS_PER_DAY) * 2f, 1f));
+		}
+		scheduler = new Scheduler(taskList);
+		
+		// both land in the middle of the schedule
+		int middleDate = TimeHelper.fromEpochDay(FIRST_DAY + scheduleSize / TASKS_PER_DAY / 2);
+		freeTask = new TransientTask("Free Task", TransientTaskType.APPOINTMENT, middleDate, 3f, 0.5f);
+		conflictingTask = new TransientTask("Conflicting Task", TransientTaskType.APPOINTMENT, middleDate, 2.5f, 1f);
+	}
+	
+	/**
+	 * Add a task that fits, then delete it again so the schedule keeps its size
+	 */
+	@Benchmark
+	public boolean addTask() throws Exception {
+		scheduler.addTask(freeTask);
+		return scheduler.deleteTask(freeTask);
+	}
+	
+	/**
+	 * Add a task that overlaps one already in the schedule
+	 */
+	@Benchmark
+	public int addConflictingTask() throws Exception {
+		try {
+			scheduler.addTask(conflictingTask);
+			throw new IllegalStateException("The task should have conflicted");
+		} catch (ScheduleConflictException e) {
+			return e.getConflicts().size();
+		}
+	}
+}
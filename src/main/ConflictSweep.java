@@ -0,0 +1,263 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import main.helpers.TimeHelper;
+import main.tasks.RecurringTask;
+import main.tasks.Task;
+
+/**
+ * Finds every pair of overlapping tasks with one sweep over their intervals. Each task (or each live
+ * occurance of a recurring task) is an interval [start, end) in epoch minutes. The intervals are 
+ * sorted by start and visited in order, keeping the ones that have not ended yet in a heap by end time.
+ * Every interval still in the heap when a new one starts overlaps it, so the sweep costs
+ * O(n log n + k) for n intervals and k overlapping pairs.
+ * <p>
+ * Tasks are added in one of two groups. Tasks in the checked group are reported against everything,
+ * tasks in the background group are only reported against checked tasks. That way a batch can be
+ * checked against a schedule without reporting the conflicts the schedule already had.
+ * @author CTS
+ *
+ */
+final class ConflictSweep {
+	static final int CHECKED = 0;
+	static final int BACKGROUND = 1;
+	
+	private final List<Task> owners;
+	private byte[] ownerGroups;
+	private long[] starts;
+	private long[] ends;
+	private int[] intervalOwners;
+	private int count;
+	
+	ConflictSweep() {
+		this.owners = new ArrayList<>();
+		this.ownerGroups = new byte[16];
+		this.starts = new long[64];
+		this.ends = new long[64];
+		this.intervalOwners = new int[64];
+	}
+	
+	/**
+	 * Add the intervals of a task. Only the occurances of a recurring task that overlap the window
+	 * [fromMinute, toMinute) are added, and days that are cancelled (or about to be) are skipped
+	 * @param task
+	 * @param group {@link ConflictSweep#CHECKED} or {@link ConflictSweep#BACKGROUND}
+	 * @param fromMinute
+	 * @param toMinute
+	 * @param extraCancelledDays days that will be cancelled but are not yet, may be null
+	 */
+	void addTask(Task task, int group, long fromMinute, long toMinute, Set<Integer> extraCancelledDays) {
+		int owner = addOwner(task, group);
+		if (task instanceof RecurringTask series) {
+			int startMinute = series.getStartMinute(), durationMinutes = series.getDurationMinutes();
+			int frequency = Math.max(series.getFrequency(), 1);
+			// kept as longs until they are clamped to the series, a window can be wider than an int of days
+			long firstDay = Math.max(Math.floorDiv(fromMinute - startMinute - durationMinutes, TimeHelper.MINUTES_PER_DAY), series.getEpochDay());
+			long lastDay = Math.min(Math.floorDiv(toMinute - startMinute, TimeHelper.MINUTES_PER_DAY), series.getLastOccurrenceDay());
+			if (firstDay > lastDay)
+				return;
+			for (int day = series.getFirstOccurrenceOnOrAfter((int) firstDay); day <= lastDay; day += frequency) {
+				if (series.isCancelledOn(day) || extraCancelledDays != null && extraCancelledDays.contains(day))
+					continue;
+				long start = day * (long) TimeHelper.MINUTES_PER_DAY + startMinute;
+				addInterval(owner, start, start + durationMinutes);
+			}
+		} else {
+			addInterval(owner, task.getStartEpochMinute(), task.getEndEpochMinute());
+		}
+	}
+	
+	/**
+	 * Add the intervals of a task that were expanded somewhere else
+	 * @param task
+	 * @param group
+	 * @param intervalStarts
+	 * @param intervalEnds
+	 * @param length how many of the intervals to take
+	 */
+	void addIntervals(Task task, int group, long[] intervalStarts, long[] intervalEnds, int length) {
+		int owner = addOwner(task, group);
+		ensureCapacity(count + length);
+		System.arraycopy(intervalStarts, 0, starts, count, length);
+		System.arraycopy(intervalEnds, 0, ends, count, length);
+		Arrays.fill(intervalOwners, count, count + length, owner);
+		count += length;
+	}
+	
+	/**
+	 * Add the whole of every task. Recurring tasks are expanded into their live occurances in parallel,
+	 * one series per job, straight into primitive arrays
+	 * @param tasks
+	 * @param group
+	 */
+	void addAllTasks(List<Task> tasks, int group) {
+		List<Expansion> expansions = tasks.parallelStream()
+				.map(ConflictSweep::expand)
+				.collect(Collectors.toList());
+		for (int i = 0; i < expansions.size(); i++) {
+			Expansion expansion = expansions.get(i);
+			addIntervals(tasks.get(i), group, expansion.starts, expansion.ends, expansion.length);
+		}
+	}
+	
+	int size() {
+		return count;
+	}
+	
+	/**
+	 * Run the sweep
+	 * @return one conflict for every pair of tasks that overlap (at least one of them checked), at the
+	 * first place they overlap, in order of where the overlap starts
+	 */
+	List<TaskConflict> sweep() {
+		// sort by start, the interval number rides along in the low bits
+		long[] order = new long[count];
+		for (int i = 0; i < count; i++) {
+			order[i] = starts[i] << 32 | i;
+		}
+		if (count > 1 << 16)
+			Arrays.parallelSort(order);
+		else
+			Arrays.sort(order);
+		
+		Map<Long, TaskConflict> conflicts = new LinkedHashMap<>();
+		IntervalHeap[] active = { new IntervalHeap(ends), new IntervalHeap(ends) };
+		for (long entry : order) {
+			int interval = (int) entry;
+			long start = starts[interval];
+			int owner = intervalOwners[interval];
+			int group = ownerGroups[owner];
+			for (int activeGroup = CHECKED; activeGroup <= BACKGROUND; activeGroup++) {
+				IntervalHeap heap = active[activeGroup];
+				heap.popEndedBy(start);
+				if (group == BACKGROUND && activeGroup == BACKGROUND)
+					continue;
+				// everything still active started earlier and ends later, so it overlaps this interval
+				for (int i = 0; i < heap.size; i++) {
+					int other = heap.items[i];
+					int otherOwner = intervalOwners[other];
+					if (otherOwner == owner)
+						continue;
+					long pair = (long) Math.min(owner, otherOwner) << 32 | Math.max(owner, otherOwner);
+					if (!conflicts.containsKey(pair))
+						conflicts.put(pair, new TaskConflict(owners.get(otherOwner), owners.get(owner), start, Math.min(ends[interval], ends[other])));
+				}
+			}
+			active[group].push(interval);
+		}
+		return new ArrayList<>(conflicts.values());
+	}
+	
+	/**
+	 * Work out the intervals of one task, without touching the sweep
+	 * @param task
+	 * @return
+	 */
+	private static Expansion expand(Task task) {
+		if (!(task instanceof RecurringTask series)) {
+			return new Expansion(new long[] { task.getStartEpochMinute() }, new long[] { task.getEndEpochMinute() }, 1);
+		}
+		int startMinute = series.getStartMinute(), durationMinutes = series.getDurationMinutes();
+		int frequency = Math.max(series.getFrequency(), 1);
+		int lastDay = series.getLastOccurrenceDay();
+		int capacity = Math.max(series.getOccurrenceCount(), 0);
+		long[] starts = new long[capacity];
+		long[] ends = new long[capacity];
+		int length = 0;
+		for (int day = series.getEpochDay(); day <= lastDay && length < capacity; day += frequency) {
+			if (series.isCancelledOn(day))
+				continue;
+			starts[length] = day * (long) TimeHelper.MINUTES_PER_DAY + startMinute;
+			ends[length] = starts[length] + durationMinutes;
+			length++;
+		}
+		return new Expansion(starts, ends, length);
+	}
+	
+	private int addOwner(Task task, int group) {
+		int owner = owners.size();
+		owners.add(task);
+		if (owner == ownerGroups.length)
+			ownerGroups = Arrays.copyOf(ownerGroups, owner * 2);
+		ownerGroups[owner] = (byte) group;
+		return owner;
+	}
+	
+	private void addInterval(int owner, long start, long end) {
+		ensureCapacity(count + 1);
+		starts[count] = start;
+		ends[count] = end;
+		intervalOwners[count] = owner;
+		count++;
+	}
+	
+	private void ensureCapacity(int needed) {
+		if (needed <= starts.length)
+			return;
+		int capacity = Math.max(needed, starts.length * 2);
+		starts = Arrays.copyOf(starts, capacity);
+		ends = Arrays.copyOf(ends, capacity);
+		intervalOwners = Arrays.copyOf(intervalOwners, capacity);
+	}
+	
+	private record Expansion(long[] starts, long[] ends, int length) {
+	}
+	
+	/**
+	 * A binary min heap of interval numbers, ordered by the end of the interval
+	 */
+	private static final class IntervalHeap {
+		private final long[] ends;
+		private int[] items;
+		private int size;
+		
+		IntervalHeap(long[] ends) {
+			this.ends = ends;
+			this.items = new int[16];
+		}
+		
+		void push(int interval) {
+			if (size == items.length)
+				items = Arrays.copyOf(items, size * 2);
+			int i = size++;
+			while (i > 0) {
+				int parent = (i - 1) >>> 1;
+				if (ends[items[parent]] <= ends[interval])
+					break;
+				items[i] = items[parent];
+				i = parent;
+			}
+			items[i] = interval;
+		}
+		
+		/**
+		 * Drop every interval that ends at or before the time, they can't overlap anything from here on
+		 */
+		void popEndedBy(long time) {
+			while (size > 0 && ends[items[0]] <= time) {
+				int last = items[--size];
+				int i = 0;
+				while (true) {
+					int child = 2 * i + 1;
+					if (child >= size)
+						break;
+					if (child + 1 < size && ends[items[child + 1]] < ends[items[child]])
+						child++;
+					if (ends[last] <= ends[items[child]])
+						break;
+					items[i] = items[child];
+					i = child;
+				}
+				if (size > 0)
+					items[i] = last;
+			}
+		}
+	}
+}
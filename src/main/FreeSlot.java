@@ -0,0 +1,63 @@
+package main;
+
+import main.helpers.TimeHelper;
+
+/**
+ * A block of time with nothing scheduled in it, found by {@link Scheduler#findFreeSlots(int, int, float, int)}.
+ * The slot starts at the beginning of a free gap in the schedule and is as long as was asked for,
+ * the gap itself may go on until {@link FreeSlot#getFreeUntilEpochMinute()}
+ * @author CTS
+ *
+ */
+public final class FreeSlot {
+	private final long startMinute;
+	private final long endMinute;
+	private final long freeUntilMinute;
+	
+	/**
+	 * @param startMinute where the slot starts, in minutes since 1970-01-01 00:00
+	 * @param endMinute where the slot ends, in minutes since 1970-01-01 00:00
+	 * @param freeUntilMinute where the gap the slot is in ends (or the end of the search window)
+	 */
+	public FreeSlot(long startMinute, long endMinute, long freeUntilMinute) {
+		this.startMinute = startMinute;
+		this.endMinute = endMinute;
+		this.freeUntilMinute = freeUntilMinute;
+	}
+	
+	public long getStartEpochMinute() {
+		return startMinute;
+	}
+	
+	public long getEndEpochMinute() {
+		return endMinute;
+	}
+	
+	public long getFreeUntilEpochMinute() {
+		return freeUntilMinute;
+	}
+	
+	/**
+	 * Get the date the slot starts on in YYYYMMDD format
+	 * @return
+	 */
+	public int getDate() {
+		return TimeHelper.fromEpochDay((int) Math.floorDiv(startMinute, TimeHelper.MINUTES_PER_DAY));
+	}
+	
+	/**
+	 * @return the time the slot starts, in 24-hour format as a decimal
+	 */
+	public float getStartTime() {
+		return Math.floorMod(startMinute, TimeHelper.MINUTES_PER_DAY) / 60f;
+	}
+	
+	public float getDuration() {
+		return (endMinute - startMinute) / 60f;
+	}
+	
+	public String toString() {
+		return "Free on " + getDate() + " at " + getStartTime() + " for " + getDuration() + " hour(s)"
+				+ " (free for " + (freeUntilMinute - startMinute) / 60f + " hour(s))";
+	}
+}
@@ -33,7 +33,7 @@ public class Main {
 		List<Task> tasksFromFile = null;
 		try {
 			
-			tasksFromFile = JsonHelper.parseJsonContent(JsonHelper.readJsonFile(SET_1_FILE_PATH));
+			tasksFromFile = JsonHelper.parseJsonFile(SET_1_FILE_PATH);
 			for (Task task : tasksFromFile) {
 	            task.printTask();
 	            System.out.println();
@@ -96,7 +96,7 @@ public class Main {
 			System.out.println();
 			System.out.println("Scenario 1 Part 6: Add tasks from Set 2 into this scheduler and fail due to time conflict");
 			
-			tasksFromFile = JsonHelper.parseJsonContent(JsonHelper.readJsonFile(SET_2_FILE_PATH));
+			tasksFromFile = JsonHelper.parseJsonFile(SET_2_FILE_PATH);
 			System.out.println("Tasks from Set2.json: ");
 			for (Task task : tasksFromFile) {
 	            task.printTask();
@@ -120,7 +120,7 @@ public class Main {
 		System.out.println("*Scenario 2: 1. Read the file Set2.json. This should work.");
 		try {
 			List<Task> tasksFromFile;
-			tasksFromFile = JsonHelper.parseJsonContent(JsonHelper.readJsonFile(SET_2_FILE_PATH));
+			tasksFromFile = JsonHelper.parseJsonFile(SET_2_FILE_PATH);
 			for (Task task : tasksFromFile) {
 	            task.printTask();
 	            System.out.println();
@@ -160,7 +160,7 @@ public class Main {
 			System.out.println();
 			
 			System.out.println("4. Read the file Set1.json. This should work.");
-			tasksFromFile = JsonHelper.parseJsonContent(JsonHelper.readJsonFile(SET_1_FILE_PATH));
+			tasksFromFile = JsonHelper.parseJsonFile(SET_1_FILE_PATH);
 			System.out.println("Tasks from Set1.json: ");
 			for (Task task : tasksFromFile) {
 	            task.printTask();
@@ -186,13 +186,13 @@ public class Main {
 		Scheduler scheduler = new Scheduler();
 		try {
 			scheduler.addTask(test1);
-			List<RecurringTask> allOccurances = ((RecurringTask) scheduler.findTask("Play Fire Emblem")).getAllFutureOccurances();
+			RecurringTask playTask = (RecurringTask) scheduler.findTask("Play Fire Emblem");
 			System.out.println("Printing all occurances of the task and if it overlaps:");
-			for (RecurringTask recurringTask$iterator : allOccurances) {
-				recurringTask$iterator.overlapsWith(test2);
-				recurringTask$iterator.printTask();
-				
-			}
+			playTask.occurrences().forEach(occurrence -> {
+				occurrence.printTask();
+				if (test2.occursBetween(occurrence.getStartEpochMinute(), occurrence.getEndEpochMinute()))
+					System.out.println("Overlaps with " + test2.getName());
+			});
 			//scheduler.addTask(test2);
 		} catch (Exception e) {
 			// TODO Auto-generated catch block
@@ -0,0 +1,45 @@
+package main;
+
+import java.util.Collections;
+import java.util.List;
+
+import main.tasks.Task;
+
+/**
+ * Thrown by {@link Scheduler#addTask(Task)} when the new task overlaps tasks already in the schedule,
+ * and by {@link Scheduler#addAllTasks(List)} when any task in the batch overlaps something.
+ * The conflicts belong to the call that failed, so threads adding tasks at the same time each get
+ * their own
+ * @author CTS
+ *
+ */
+public class ScheduleConflictException extends Exception {
+	private static final long serialVersionUID = 1L;
+	private final transient List<Task> conflicts;
+	private final transient List<TaskConflict> conflictPairs;
+	
+	public ScheduleConflictException(String message, List<Task> conflicts) {
+		this(message, conflicts, Collections.emptyList());
+	}
+	
+	public ScheduleConflictException(String message, List<Task> conflicts, List<TaskConflict> conflictPairs) {
+		super(message);
+		this.conflicts = Collections.unmodifiableList(conflicts);
+		this.conflictPairs = Collections.unmodifiableList(conflictPairs);
+	}
+	
+	/**
+	 * @return the conflicting tasks in order of their start time
+	 */
+	public List<Task> getConflicts() {
+		return conflicts;
+	}
+	
+	/**
+	 * Every overlapping pair, filled in by {@link Scheduler#addAllTasks(List)}
+	 * @return the pairs in order of where they overlap
+	 */
+	public List<TaskConflict> getConflictPairs() {
+		return conflictPairs;
+	}
+}
@@ -0,0 +1,262 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import main.helpers.AbstractTaskStore;
+import main.helpers.SnapshotHelper;
+import main.helpers.TimeHelper;
+import main.index.PersistentIntervalTree;
+import main.index.PersistentTreeMap;
+import main.tasks.Occurrence;
+import main.tasks.RecurringTask;
+import main.tasks.Task;
+
+/**
+ * A point-in-time view of a {@link Scheduler}. It never changes after it is made: the scheduler 
+ * publishes a new snapshot for every change, built from persistent trees that share everything
+ * but the changed path with the one before, so a change costs O(log n). Reading a snapshot takes no
+ * locks and is never blocked by writers. The tasks in a snapshot never change either, an edit
+ * publishes an edited copy of the task in its place.
+ * <p>
+ * A snapshot can sit on top of a {@link AbstractTaskStore}. The rows of the store come first in the order
+ * and are only built into tasks when they are read, so a new task is built every time.
+ * The store itself never changes: a row that is deleted or edited is marked as gone, and an edited copy
+ * goes in the trees like any other task.
+ * @author CTS
+ *
+ */
+public final class ScheduleSnapshot {
+	static final ScheduleSnapshot EMPTY = new ScheduleSnapshot(PersistentTreeMap.empty(), PersistentTreeMap.empty(), PersistentIntervalTree.empty(), 0,
+			null, PersistentTreeMap.empty(), 0);
+	
+	/** Tasks in the order they were added, keyed by their position in that order */
+	private final PersistentTreeMap<Long, Task> tasks;
+	private final PersistentTreeMap<String, Long> taskNames;
+	private final PersistentIntervalTree<Task> conflictIndex;
+	private final long nextOrder;
+	/** The store under the trees, or null. Row r is at position r in the order */
+	private final AbstractTaskStore store;
+	/** Rows of the store that are not in the schedule any more */
+	private final PersistentTreeMap<Integer, Boolean> goneRows;
+	private final int storeRows;
+	
+	private ScheduleSnapshot(PersistentTreeMap<Long, Task> tasks, PersistentTreeMap<String, Long> taskNames, PersistentIntervalTree<Task> conflictIndex, long nextOrder,
+			AbstractTaskStore store, PersistentTreeMap<Integer, Boolean> goneRows, int storeRows) {
+		this.tasks = tasks;
+		this.taskNames = taskNames;
+		this.conflictIndex = conflictIndex;
+		this.nextOrder = nextOrder;
+		this.store = store;
+		this.goneRows = goneRows;
+		this.storeRows = storeRows;
+	}
+	
+	/**
+	 * A schedule of the rows of a store. The store must not change after this. Like a loaded task list,
+	 * a repeated name only keeps the first row and anti-tasks on their own are left out
+	 * @param store
+	 * @return
+	 */
+	static ScheduleSnapshot of(AbstractTaskStore store) {
+		PersistentTreeMap<Integer, Boolean> goneRows = PersistentTreeMap.empty();
+		for (int row = 0; row < store.size(); row++) {
+			if (store.getKind(row) == SnapshotHelper.KIND_ANTI_TASK || store.findRow(store.getName(row)) != row)
+				goneRows = goneRows.put(row, Boolean.TRUE);
+		}
+		return new ScheduleSnapshot(PersistentTreeMap.empty(), PersistentTreeMap.empty(), PersistentIntervalTree.empty(), store.size(),
+				store, goneRows, store.size() - goneRows.size());
+	}
+	
+	/**
+	 * @param taskName
+	 * @return the task or null if there is no task with that name
+	 */
+	public Task findTask(String taskName) {
+		Long order = taskNames.get(taskName);
+		if (order != null)
+			return tasks.get(order);
+		int row = findRow(taskName);
+		return row < 0 ? null : store.getTask(row);
+	}
+	
+	/**
+	 * @param taskName
+	 * @return true if a task in the schedule has the name, without building it
+	 */
+	boolean hasTask(String taskName) {
+		return taskNames.containsKey(taskName) || findRow(taskName) >= 0;
+	}
+	
+	/**
+	 * @param task
+	 * @return true if this exact task is in the schedule. A task built from a row of the store is
+	 * in the schedule as long as the row is and the task has not been changed
+	 */
+	public boolean contains(Task task) {
+		Long order = taskNames.get(task.getName());
+		if (order != null)
+			return tasks.get(order) == task;
+		int row = findRow(task.getName());
+		return row >= 0 && store.isTaskOf(row, task);
+	}
+	
+	/**
+	 * @return the tasks in the order they were added
+	 */
+	public List<Task> getTasks() {
+		List<Task> taskList = new ArrayList<>(size());
+		if (store == null)
+			return tasks.values(taskList);
+		// the rows and the tree are both in order, and an edited row sits at the position of the row
+		int[] nextRow = { 0 };
+		tasks.forEach((order, task) -> {
+			for (; nextRow[0] < order && nextRow[0] < store.size(); nextRow[0]++) {
+				if (!goneRows.containsKey(nextRow[0]))
+					taskList.add(store.getTask(nextRow[0]));
+			}
+			taskList.add(task);
+		});
+		for (; nextRow[0] < store.size(); nextRow[0]++) {
+			if (!goneRows.containsKey(nextRow[0]))
+				taskList.add(store.getTask(nextRow[0]));
+		}
+		return taskList;
+	}
+	
+	public int size() {
+		return storeRows + tasks.size();
+	}
+	
+	/**
+	 * @param taskName
+	 * @return the row of the store that has the name and is still in the schedule, or -1
+	 */
+	private int findRow(String taskName) {
+		if (store == null)
+			return -1;
+		int row = store.findRow(taskName);
+		return row < 0 || goneRows.containsKey(row) ? -1 : row;
+	}
+	
+	/**
+	 * Find the tasks whose time span overlaps [fromMinute, toMinute). The span of a recurring task
+	 * runs from its first to its last occurance, it does not have to occur in the range
+	 * @param fromMinute minutes since 1970-01-01 00:00
+	 * @param toMinute minutes since 1970-01-01 00:00
+	 * @return the tasks in order of their start
+	 */
+	public List<Task> getTasksBetween(long fromMinute, long toMinute) {
+		List<Task> found = conflictIndex.query(fromMinute, toMinute, new ArrayList<>());
+		if (store == null)
+			return found;
+		int treeTasks = found.size();
+		for (int row : store.findSpans(fromMinute, toMinute)) {
+			if (!goneRows.containsKey(row))
+				found.add(store.getTask(row));
+		}
+		if (found.size() > treeTasks)
+			found.sort(Comparator.comparingLong(ScheduleSnapshot::getSpanStart));
+		return found;
+	}
+	
+	/**
+	 * Find the transient tasks and the live occurances of recurring tasks that overlap the days
+	 * [fromDay, toDay]. The interval index hands back only the tasks whose span reaches into the
+	 * window, and each recurring task is only expanded over the window, so the cost depends on
+	 * what is in the window and not on the size of the schedule
+	 * @param fromDay the first day as days since 1970-01-01 (inclusive)
+	 * @param toDay the last day as days since 1970-01-01 (inclusive)
+	 * @return the occurances in order of their start time, cancelled ones left out
+	 */
+	public List<Occurrence> getOccurrencesBetweenDays(int fromDay, int toDay) {
+		long fromMinute = fromDay * (long) TimeHelper.MINUTES_PER_DAY;
+		long toMinute = (toDay + 1L) * TimeHelper.MINUTES_PER_DAY;
+		List<Occurrence> occurrences = new ArrayList<>();
+		for (Task task : getTasksBetween(fromMinute, toMinute)) {
+			if (task instanceof RecurringTask series) {
+				// an occurance from the day before can run past midnight into the window
+				series.occurrencesBetweenDays(fromDay - 1, toDay)
+						.filter(occurrence -> occurrence.getEndEpochMinute() > fromMinute && !occurrence.isCancelled())
+						.forEach(occurrences::add);
+			} else {
+				occurrences.add(new Occurrence(task, task.getEpochDay()));
+			}
+		}
+		occurrences.sort(Comparator.comparingLong(Occurrence::getStartEpochMinute));
+		return occurrences;
+	}
+	
+	// <------------------ New versions -------------------------->
+	
+	ScheduleSnapshot withTask(Task task) {
+		return new ScheduleSnapshot(tasks.put(nextOrder, task), taskNames.put(task.getName(), nextOrder),
+				conflictIndex.insert(getSpanStart(task), getSpanEnd(task), task), nextOrder + 1, store, goneRows, storeRows);
+	}
+	
+	ScheduleSnapshot withoutTask(Task task) {
+		Long order = taskNames.get(task.getName());
+		if (order == null) {
+			int row = findRow(task.getName());
+			if (row < 0 || !store.isTaskOf(row, task))
+				return this;
+			return new ScheduleSnapshot(tasks, taskNames, conflictIndex, nextOrder, store, goneRows.put(row, Boolean.TRUE), storeRows - 1);
+		}
+		if (tasks.get(order) != task)
+			return this;
+		return new ScheduleSnapshot(tasks.remove(order), taskNames.remove(task.getName()),
+				conflictIndex.remove(getSpanStart(task), task), nextOrder, store, goneRows, storeRows);
+	}
+	
+	/**
+	 * Put an edited copy of a task in its place. The copy keeps the task's position in the order,
+	 * and its name and time span replace the old ones in the same version
+	 * @param task the task in this snapshot
+	 * @param replacement
+	 * @return
+	 */
+	ScheduleSnapshot withReplaced(Task task, Task replacement) {
+		Long order = taskNames.get(task.getName());
+		if (order == null) {
+			// a row of the store is marked as gone and the copy takes its position
+			int row = findRow(task.getName());
+			if (row < 0 || !store.isTaskOf(row, task))
+				return this;
+			long rowOrder = row;
+			return new ScheduleSnapshot(tasks.put(rowOrder, replacement), taskNames.put(replacement.getName(), rowOrder),
+					conflictIndex.insert(getSpanStart(replacement), getSpanEnd(replacement), replacement), nextOrder,
+					store, goneRows.put(row, Boolean.TRUE), storeRows - 1);
+		}
+		if (tasks.get(order) != task)
+			return this;
+		PersistentTreeMap<String, Long> names = taskNames;
+		if (!task.getName().equals(replacement.getName()))
+			names = names.remove(task.getName()).put(replacement.getName(), order);
+		return new ScheduleSnapshot(tasks.put(order, replacement), names,
+				conflictIndex.remove(getSpanStart(task), task).insert(getSpanStart(replacement), getSpanEnd(replacement), replacement), nextOrder,
+				store, goneRows, storeRows);
+	}
+	
+	/**
+	 * The absolute start of a task in minutes. For recurring tasks, this is the first occurance
+	 * @param task
+	 * @return
+	 */
+	static long getSpanStart(Task task) {
+		return task.getStartEpochMinute();
+	}
+	
+	/**
+	 * The absolute end of a task in minutes. For recurring tasks, this is the end of the last occurance
+	 * @param task
+	 * @return
+	 */
+	static long getSpanEnd(Task task) {
+		if (task instanceof RecurringTask recurringTask) {
+			return recurringTask.getLastOccurrenceDay() * (long) TimeHelper.MINUTES_PER_DAY 
+					+ recurringTask.getStartMinute() + recurringTask.getDurationMinutes();
+		}
+		return task.getEndEpochMinute();
+	}
+}
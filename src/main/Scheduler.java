@@ -1,59 +1,543 @@
 package main;
 
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
 
+import main.helpers.AbstractTaskStore;
+import main.helpers.DiagnosticLog;
+import main.helpers.DiagnosticLog.Level;
 import main.helpers.JsonHelper;
+import main.helpers.OffHeapTaskStore;
+import main.helpers.ScheduleJournal;
+import main.helpers.SnapshotHelper;
+import main.helpers.TimeHelper;
+import main.index.DayLockStripes;
+import main.index.DayOccupancy;
 import main.tasks.*;
 import main.tasks.RecurringTask.RecurringTaskType;
 import main.tasks.TransientTask.TransientTaskType;
 
+/**
+ * The schedule. It is safe to share one scheduler between threads: writers lock the days they
+ * touch (see {@link DayLockStripes}), so writes to different days go ahead at the same time.
+ * Every change publishes a new {@link ScheduleSnapshot}, and reads such as 
+ * {@link Scheduler#findTask(String)} go to the current snapshot without taking any lock.
+ * <p>
+ * A scheduler can also run on a {@link AbstractTaskStore}, see {@link Scheduler#Scheduler(AbstractTaskStore)}.
+ * A task from the store is built each time it is read, so two reads of it give two tasks:
+ * tasks are told apart by their names, which are unique in a schedule.
+ * @author CTS
+ *
+ */
 public class Scheduler {
-	private List<Task> tasks;
-	private Task overlapConflict;
+	/** The current version of the schedule, replaced (never changed) by every write */
+	private final AtomicReference<ScheduleSnapshot> snapshot;
+	/**
+	 * Names being taken by writers, from the claim until the task is published or given up, so two
+	 * writers can't claim the same name. The names in the schedule are the ones in the snapshot
+	 */
+	private final Map<String, Task> nameClaims;
+	private final DayLockStripes dayStripes;
+	private final ThreadLocal<List<Task>> overlapConflicts;
+	private volatile ScheduleJournal journal;
 	
 	public Scheduler() {
-		this.tasks = new LinkedList<Task>();
-		this.overlapConflict = null;
+		this.snapshot = new AtomicReference<>(ScheduleSnapshot.EMPTY);
+		this.nameClaims = new ConcurrentHashMap<>();
+		this.dayStripes = new DayLockStripes();
+		this.overlapConflicts = ThreadLocal.withInitial(ArrayList::new);
 	}
 	
 	public Scheduler(List<Task> taskList) {
-		this.tasks = taskList;
-		this.overlapConflict = null;
+		this();
+		ScheduleSnapshot loaded = ScheduleSnapshot.EMPTY;
+		for (Task task$iterator : taskList) {
+			// tasks from a file are not validated, but a repeated name only keeps the first task
+			// anti-tasks are attached to their series already and never hold a name
+			if (task$iterator instanceof AntiTask)
+				continue;
+			if (!loaded.hasTask(task$iterator.getName())) {
+				loaded = loaded.withTask(task$iterator);
+				occupySlots(task$iterator);
+			}
+		}
+		snapshot.set(loaded);
 	}
 	
 	/**
-	 * Checks for overlap
-	 * Note: does not check for overlap if task extends into next day
-	 * Note2: prof said that this is fine if we force all tasks to never
-	 * go past midnight
+	 * Run the schedule on the rows of a store instead of a task list. Rows are only built into tasks
+	 * when they are read, and scans go through the span index of the store. Changes are kept on top
+	 * of the store, which itself must not change while the scheduler uses it.
+	 * Like a task list from a file, the rows are not validated and a repeated name only keeps the first row
+	 * @param store
+	 */
+	public Scheduler(AbstractTaskStore store) {
+		this();
+		ScheduleSnapshot loaded = ScheduleSnapshot.of(store);
+		for (int row = 0; row < store.size(); row++) {
+			if (store.getKind(row) == SnapshotHelper.KIND_ANTI_TASK || store.findRow(store.getName(row)) != row)
+				continue;
+			// the slots come straight from the columns, without building the task
+			int startMinute = store.getStartMinute(row), durationMinutes = store.getDurationMinutes(row);
+			if (store.getKind(row) != SnapshotHelper.KIND_RECURRING) {
+				dayStripes.mark(store.getSpanStart(row), store.getSpanStart(row) + durationMinutes);
+				continue;
+			}
+			int frequency = Math.max(store.getFrequency(row), 1);
+			for (int day = store.getEpochDay(row); day <= store.getLastOccurrenceDay(row); day += frequency) {
+				long start = day * (long) TimeHelper.MINUTES_PER_DAY + startMinute;
+				if (!store.isCancelled(row, day))
+					dayStripes.mark(start, start + durationMinutes);
+			}
+		}
+		snapshot.set(loaded);
+	}
+	
+	/**
+	 * Checks for overlap against every task in the schedule using the interval index.
+	 * All of the conflicting tasks are kept for {@link Scheduler#getOverlapTasks()}
+	 * Note: prof said that tasks should never go past midnight, but the index
+	 * uses absolute times so a task running into the next day is still caught.
+	 * The stripes of the task have to be held
 	 * @param task
-	 * @return
+	 * @return true if the task conflicts with at least one other task
 	 */
 	private boolean overlap(Task task) {
-		// the time that a given task will end (for non-recurring tasks especially)
-		float endTime = task.getStartTime() + task.getDuration();
-		for(Task t: tasks) {
-			if(t.getDate() == task.getDate()) {
-				if(endTime > t.getStartTime()) {
-					this.overlapConflict = t;
-					return true;
-				}
+		return overlap(task, null);
+	}
+	
+	/**
+	 * Same as {@link Scheduler#overlap(Task)} for an edited copy of a task, the task it replaces is not a conflict
+	 * @param task
+	 * @param replaced the task in the schedule the copy was made from, or null
+	 * @return
+	 */
+	private boolean overlap(Task task, Task replaced) {
+		List<Task> conflicts = findConflicts(task, replaced);
+		this.overlapConflicts.set(conflicts);
+		return !conflicts.isEmpty();
+	}
+	
+	/**
+	 * Find every task in the schedule that conflicts with the passed task. The occupancy bitmap
+	 * answers the common case where every slot is free. Otherwise the interval index
+	 * narrows the search down to the tasks whose time span overlaps, then each of those
+	 * is checked for a real overlap (recurring tasks only overlap on the days they occur).
+	 * The stripes of the task have to be held
+	 * @param task the task to check, it is never reported as conflicting with itself
+	 * @param replaced a task that is skipped as well, or null
+	 * @return the conflicting tasks in order of their start time
+	 */
+	private List<Task> findConflicts(Task task, Task replaced) {
+		if (isFree(task))
+			return new ArrayList<>();
+		List<Task> candidates = queryIndex(getSpanStart(task), getSpanEnd(task));
+		List<Task> conflicts = new ArrayList<>(candidates.size());
+		for (Task existingTask : candidates) {
+			if (!isSameTask(existingTask, task) && !isSameTask(existingTask, replaced) && conflictsWith(existingTask, task))
+				conflicts.add(existingTask);
+		}
+		return conflicts;
+	}
+	
+	/**
+	 * Checks if two tasks are the same task of the schedule, which for tasks from a store are not the same object
+	 * @param existingTask a task in the schedule
+	 * @param task a task, or null
+	 * @return true if they have the same name
+	 */
+	private static boolean isSameTask(Task existingTask, Task task) {
+		return task != null && existingTask.getName().equals(task.getName());
+	}
+	
+	/**
+	 * Checks two tasks whose time spans are known to overlap
+	 * @param existingTask the task that is already in the schedule
+	 * @param newTask the task being checked
+	 * @return
+	 */
+	private static boolean conflictsWith(Task existingTask, Task newTask) {
+		if (existingTask instanceof RecurringTask recurringTask)
+			return recurringTask.overlapsWith(newTask);
+		if (newTask instanceof RecurringTask newRecurringTask)
+			return newRecurringTask.overlapsWith(existingTask);
+		// two single tasks, their spans overlapping is the conflict
+		return true;
+	}
+	
+	/**
+	 * Find the recurring task that the anti-task cancels an occurance of
+	 * @param antiTask
+	 * @return the recurring task, or null if the anti-task does not match any
+	 */
+	private RecurringTask findCancelledSeries(AntiTask antiTask) {
+		for (Task candidate : queryIndex(getSpanStart(antiTask), getSpanEnd(antiTask))) {
+			if (candidate instanceof RecurringTask recurringTask && recurringTask.overlapsWith(antiTask))
+				return recurringTask;
+		}
+		return null;
+	}
+	
+	private List<Task> queryIndex(long fromMinute, long toMinute) {
+		return snapshot.get().getTasksBetween(fromMinute, toMinute);
+	}
+	
+	/**
+	 * Publish a new version of the schedule. Writers on other stripes may publish at the same time,
+	 * so the change is retried on the newest version until it goes in
+	 * @param change
+	 */
+	private void publish(UnaryOperator<ScheduleSnapshot> change) {
+		snapshot.updateAndGet(change);
+	}
+	
+	/**
+	 * Mark the slots of a task in the occupancy bitmap
+	 * @param task
+	 */
+	private void occupySlots(Task task) {
+		setOccupied(task, getSpanStart(task), getSpanEnd(task), true);
+	}
+	
+	/**
+	 * Clear the slots of a task in the occupancy bitmap, then mark them again for every other task
+	 * that shares them
+	 * @param task
+	 */
+	private void releaseSlots(Task task) {
+		if (task instanceof RecurringTask series) {
+			// only the days the series occurs on are locked, so the slots are given back one occurance at a time
+			int startMinute = series.getStartMinute(), durationMinutes = series.getDurationMinutes();
+			int frequency = Math.max(series.getFrequency(), 1);
+			for (int day = series.getEpochDay(); day <= series.getLastOccurrenceDay(); day += frequency) {
+				if (series.isCancelledOn(day))
+					continue;
+				long start = day * (long) TimeHelper.MINUTES_PER_DAY + startMinute;
+				dayStripes.clear(start, start + durationMinutes);
+				remarkOccupied(start, start + durationMinutes, task);
 			}
-			
+		} else {
+			setOccupied(task, getSpanStart(task), getSpanEnd(task), false);
+			remarkOccupied(getSpanStart(task), getSpanEnd(task), task);
 		}
-		
-		return false;
 	}
 	
 	/**
-	 * returns the task that caused the overlap fail in
-	 * {@link Scheduler#overlap(Task)}. Resets the field 
-	 * to null until called again
+	 * Publish a copy of the series with the anti-task attached in place of the series, and free the
+	 * slots of the occurance it cancels. The stripes of the series have to be held
+	 * @param series
+	 * @param antiTask
+	 */
+	private void cancelOccurrence(RecurringTask series, AntiTask antiTask) {
+		RecurringTask cancelled = series.copy();
+		cancelled.addAntiTask(antiTask);
+		publish(current -> current.withReplaced(series, cancelled));
+		freeCancelledSlots(antiTask);
+	}
+	
+	/**
+	 * Clear the slots of an occurance that was just cancelled, then mark them again for what is still there
+	 * @param antiTask
+	 */
+	private void freeCancelledSlots(AntiTask antiTask) {
+		dayStripes.clear(antiTask.getStartEpochMinute(), antiTask.getEndEpochMinute());
+		remarkOccupied(antiTask.getStartEpochMinute(), antiTask.getEndEpochMinute(), null);
+	}
+	
+	/**
+	 * Checks the occupancy bitmap for every slot the task (or every live occurance of it) needs
+	 * @param task
+	 * @return true if the task cannot conflict with anything in the schedule
+	 */
+	private boolean isFree(Task task) {
+		if (task instanceof RecurringTask series) {
+			int startMinute = series.getStartMinute(), durationMinutes = series.getDurationMinutes();
+			int frequency = Math.max(series.getFrequency(), 1);
+			for (int day = series.getEpochDay(); day <= series.getLastOccurrenceDay(); day += frequency) {
+				long start = day * (long) TimeHelper.MINUTES_PER_DAY + startMinute;
+				if (!series.isCancelledOn(day) && !dayStripes.isFree(start, start + durationMinutes))
+					return false;
+			}
+			return true;
+		}
+		return dayStripes.isFree(task.getStartEpochMinute(), task.getEndEpochMinute());
+	}
+	
+	/**
+	 * Mark (or clear) the slots of a task in the occupancy bitmap. For a recurring task, only the 
+	 * live occurances that overlap [fromMinute, toMinute) are touched
+	 * @param task
+	 * @param fromMinute
+	 * @param toMinute
+	 * @param taken true to mark the slots, false to clear them
+	 */
+	private void setOccupied(Task task, long fromMinute, long toMinute, boolean taken) {
+		if (task instanceof RecurringTask series) {
+			int startMinute = series.getStartMinute(), durationMinutes = series.getDurationMinutes();
+			int frequency = Math.max(series.getFrequency(), 1);
+			int firstDay = (int) Math.floorDiv(fromMinute - startMinute - durationMinutes, TimeHelper.MINUTES_PER_DAY);
+			int lastDay = (int) Math.min(Math.floorDiv(toMinute - startMinute, TimeHelper.MINUTES_PER_DAY), series.getLastOccurrenceDay());
+			for (int day = series.getFirstOccurrenceOnOrAfter(firstDay); day <= lastDay; day += frequency) {
+				if (series.isCancelledOn(day))
+					continue;
+				long start = day * (long) TimeHelper.MINUTES_PER_DAY + startMinute;
+				if (taken)
+					dayStripes.mark(start, start + durationMinutes);
+				else
+					dayStripes.clear(start, start + durationMinutes);
+			}
+		} else if (taken) {
+			dayStripes.mark(task.getStartEpochMinute(), task.getEndEpochMinute());
+		} else {
+			dayStripes.clear(task.getStartEpochMinute(), task.getEndEpochMinute());
+		}
+	}
+	
+	/**
+	 * After slots were cleared, mark the slots again for the tasks that are still in the schedule.
+	 * Only needed when tasks overlap or share a partly used slot, but it keeps the bitmap exact
+	 * @param fromMinute
+	 * @param toMinute
+	 * @param skipped a task that is not marked again, or null
+	 */
+	private void remarkOccupied(long fromMinute, long toMinute, Task skipped) {
+		long from = fromMinute - DayOccupancy.SLOT_MINUTES, to = toMinute + DayOccupancy.SLOT_MINUTES;
+		for (Task task : queryIndex(from, to)) {
+			if (!isSameTask(task, skipped))
+				setOccupied(task, from, to, true);
+		}
+	}
+	
+	/**
+	 * Collect the day stripes a writer has to hold to add, remove or check the task: every day
+	 * it (or each occurance of it) touches, plus the slot on either side that
+	 * {@link Scheduler#remarkOccupied(long, long, Task)} looks at
+	 * @param task
+	 * @return
+	 */
+	private BitSet stripesFor(Task task) {
+		BitSet stripes = new BitSet(dayStripes.getStripeCount());
+		if (task instanceof RecurringTask series) {
+			int startMinute = series.getStartMinute(), durationMinutes = series.getDurationMinutes();
+			int frequency = Math.max(series.getFrequency(), 1);
+			for (int day = series.getEpochDay(); day <= series.getLastOccurrenceDay() && !dayStripes.isAll(stripes); day += frequency) {
+				long start = day * (long) TimeHelper.MINUTES_PER_DAY + startMinute;
+				dayStripes.addMinutes(stripes, start - DayOccupancy.SLOT_MINUTES, start + durationMinutes + DayOccupancy.SLOT_MINUTES);
+			}
+		} else {
+			dayStripes.addMinutes(stripes, task.getStartEpochMinute() - DayOccupancy.SLOT_MINUTES, task.getEndEpochMinute() + DayOccupancy.SLOT_MINUTES);
+		}
+		return stripes;
+	}
+	
+	private static long getSpanStart(Task task) {
+		return ScheduleSnapshot.getSpanStart(task);
+	}
+	
+	private static long getSpanEnd(Task task) {
+		return ScheduleSnapshot.getSpanEnd(task);
+	}
+	
+	/**
+	 * @param taskName
+	 * @return true if a writer is claiming the name or a task in the schedule has it
+	 */
+	private boolean isNameTaken(String taskName) {
+		return nameClaims.containsKey(taskName) || snapshot.get().hasTask(taskName);
+	}
+	
+	/**
+	 * Claim a name for a task while it is being added or renamed. The schedule is checked after the
+	 * claim goes in, and the claim is removed once the task is published (or given up), since from
+	 * then on the snapshot holds the name
+	 * @param task
+	 * @throws Exception if the name is taken, nothing is claimed
+	 */
+	private void claimName(Task task) throws Exception {
+		if (nameClaims.putIfAbsent(task.getName(), task) != null)
+			throw new Exception("\"" + task.getName() + "\" Task name is already used by another task");
+		if (snapshot.get().hasTask(task.getName())) {
+			nameClaims.remove(task.getName(), task);
+			throw new Exception("\"" + task.getName() + "\" Task name is already used by another task");
+		}
+	}
+	
+	/**
+	 * Get the schedule as it is right now. The snapshot never changes, and getting or reading it
+	 * never waits for a writer
 	 * @return
 	 */
+	public ScheduleSnapshot getSnapshot() {
+		return snapshot.get();
+	}
+	
+	/**
+	 * returns the first task that caused the last overlap fail on this thread in
+	 * {@link Scheduler#overlap(Task)} or {@link Scheduler#addTask(Task)}. Prefer
+	 * {@link ScheduleConflictException#getConflicts()}
+	 * @return the task, or null if the last check had no conflicts
+	 */
 	public Task getOverlapTask() {
-		return this.overlapConflict;
+		List<Task> conflicts = this.overlapConflicts.get();
+		return conflicts.isEmpty() ? null : conflicts.get(0);
+	}
+	
+	/**
+	 * returns every task that caused the last overlap fail on this thread in
+	 * {@link Scheduler#overlap(Task)} or {@link Scheduler#addTask(Task)}. Prefer
+	 * {@link ScheduleConflictException#getConflicts()}
+	 * @return the conflicting tasks in order of their start time
+	 */
+	public List<Task> getOverlapTasks() {
+		return this.overlapConflicts.get();
+	}
+	
+	/**
+	 * Checks the task against the schedule without adding it
+	 * @param task
+	 * @return every task it conflicts with, in order of their start time
+	 */
+	public List<Task> findOverlaps(Task task) {
+		BitSet stripes = stripesFor(task);
+		dayStripes.lock(stripes);
+		try {
+			return findConflicts(task, null);
+		} finally {
+			dayStripes.unlock(stripes);
+		}
+	}
+
+	/**
+	 * Check the whole schedule for conflicts. Tasks loaded with {@link Scheduler#Scheduler(List)} are
+	 * not validated, so this is the way to find out if a schedule from a file is any good. Every 
+	 * transient task and every occurance that is not cancelled goes into one sweep (see {@link ConflictSweep}),
+	 * the recurring tasks are expanded in parallel. Anti-tasks that do not line up with an occurance
+	 * of their recurring task, or cancel one that is already cancelled, are reported too.
+	 * Reads one snapshot and doesn't take any locks
+	 * @return one conflict for every pair of tasks that overlap, in order of where they first overlap
+	 */
+	public List<TaskConflict> auditConflicts() {
+		List<Task> tasks = snapshot.get().getTasks();
+		ConflictSweep sweep = new ConflictSweep();
+		sweep.addAllTasks(tasks, ConflictSweep.CHECKED);
+		List<TaskConflict> conflicts = sweep.sweep();
+		
+		List<TaskConflict> cancellations = new ArrayList<>();
+		for (Task task$iterator : tasks) {
+			if (task$iterator instanceof RecurringTask series)
+				auditCancellations(series, cancellations);
+		}
+		if (!cancellations.isEmpty()) {
+			conflicts.addAll(cancellations);
+			conflicts.sort(Comparator.comparingLong(TaskConflict::getStartEpochMinute));
+		}
+		return conflicts;
+	}
+	
+	/**
+	 * Find the anti-tasks of a series that don't cancel exactly one occurance of it
+	 * @param series
+	 * @param out
+	 */
+	private static void auditCancellations(RecurringTask series, List<TaskConflict> out) {
+		Set<Integer> cancelledDays = new HashSet<>();
+		for (AntiTask antiTask : series.getCancelledOccurances()) {
+			boolean linesUp = series.occursOn(antiTask.getEpochDay())
+					&& antiTask.getStartMinute() == series.getStartMinute()
+					&& antiTask.getDurationMinutes() == series.getDurationMinutes();
+			if (!cancelledDays.add(antiTask.getEpochDay()) || !linesUp)
+				out.add(new TaskConflict(series, antiTask, antiTask.getStartEpochMinute(), antiTask.getEndEpochMinute()));
+		}
+	}
+	
+	/**
+	 * Find the earliest free slot of a given length between two dates
+	 * @param fromDate the first day to look at in YYYYMMDD format
+	 * @param toDate the last day to look at in YYYYMMDD format
+	 * @param duration the length of the slot in hours, rounded to 15 minutes
+	 * @return the slot, or null if there is no gap long enough
+	 * @throws Exception if a date or the duration is invalid
+	 */
+	public FreeSlot findFreeSlot(int fromDate, int toDate, float duration) throws Exception {
+		List<FreeSlot> slots = findFreeSlots(fromDate, toDate, duration, 1);
+		return slots.isEmpty() ? null : slots.get(0);
+	}
+	
+	/**
+	 * Find the earliest free slots of a given length between two dates, one for each gap in the
+	 * schedule that is long enough. The slot starts where the gap starts, so a long gap is only
+	 * reported once. Occurances of recurring tasks take up time unless an anti-task cancelled them.
+	 * A gap can run past midnight, just like a task can.
+	 * <p>
+	 * The gaps are read straight from the occupancy bitmap a quarter hour at a time, so the cost
+	 * is a couple of bit scans for each day looked at, no matter how many tasks there are.
+	 * <p>
+	 * Only the stripe of the day being read is locked, one day after the other, so a long window
+	 * does not hold up the writers of every day. Each day is read as it was at one moment, but a
+	 * change to a day already read is not seen, and a gap running past midnight may join two
+	 * days read at different moments
+	 * @param fromDate the first day to look at in YYYYMMDD format
+	 * @param toDate the last day to look at in YYYYMMDD format
+	 * @param duration the length of the slots in hours, rounded to 15 minutes
+	 * @param limit the most slots to return
+	 * @return the slots in order of their start
+	 * @throws Exception if a date or the duration is invalid
+	 */
+	public List<FreeSlot> findFreeSlots(int fromDate, int toDate, float duration, int limit) throws Exception {
+		int fromDay = TimeHelper.toEpochDay(fromDate), toDay = TimeHelper.toEpochDay(toDate);
+		if (TimeHelper.fromEpochDay(fromDay) != fromDate || TimeHelper.fromEpochDay(toDay) != toDate || fromDay > toDay) {
+			throw new Exception("The dates " + fromDate + " to " + toDate + " are not a valid range");
+		}
+		if (duration <= 0 || !TimeHelper.isRounded(duration)) {
+			throw new Exception("The duration " + duration + " is invalid!");
+		}
+		int slotsNeeded = TimeHelper.toMinutes(duration) / DayOccupancy.SLOT_MINUTES;
+		
+		List<FreeSlot> freeSlots = new ArrayList<>();
+		// slots are counted from 1970-01-01 00:00, a gap that is still open at midnight carries over
+		long gapStart = -1;
+		for (int day = fromDay; day <= toDay && freeSlots.size() < limit; day++) {
+			DayOccupancy occupancy = dayStripes.getOccupancy(day);
+			long daySlot = day * (long) DayOccupancy.SLOTS_PER_DAY;
+			dayStripes.lockDay(day);
+			try {
+				int slot = 0;
+				while (slot < DayOccupancy.SLOTS_PER_DAY && freeSlots.size() < limit) {
+					int taken = occupancy.nextTakenSlot(day, slot);
+					if (taken > slot && gapStart < 0)
+						gapStart = daySlot + slot;
+					if (taken == DayOccupancy.SLOTS_PER_DAY)
+						break;
+					if (gapStart >= 0)
+						addFreeSlot(freeSlots, gapStart, daySlot + taken, slotsNeeded);
+					gapStart = -1;
+					slot = occupancy.nextFreeSlot(day, taken);
+				}
+			} finally {
+				dayStripes.unlockDay(day);
+			}
+		}
+		if (gapStart >= 0 && freeSlots.size() < limit)
+			addFreeSlot(freeSlots, gapStart, (toDay + 1L) * DayOccupancy.SLOTS_PER_DAY, slotsNeeded);
+		return freeSlots;
+	}
+	
+	/**
+	 * Add a slot at the start of the gap [gapStart, gapEnd) if it fits
+	 * @param freeSlots
+	 * @param gapStart in quarter hours since 1970-01-01 00:00
+	 * @param gapEnd in quarter hours since 1970-01-01 00:00
+	 * @param slotsNeeded
+	 */
+	private static void addFreeSlot(List<FreeSlot> freeSlots, long gapStart, long gapEnd, int slotsNeeded) {
+		if (gapEnd - gapStart < slotsNeeded)
+			return;
+		long start = gapStart * DayOccupancy.SLOT_MINUTES;
+		freeSlots.add(new FreeSlot(start, start + slotsNeeded * (long) DayOccupancy.SLOT_MINUTES, gapEnd * DayOccupancy.SLOT_MINUTES));
 	}
 	
 	/**
@@ -127,71 +611,275 @@ public class Scheduler {
 		return true;
 	}
 	
+	/**
+	 * Add a task to the schedule. Safe to call from many threads, tasks on different days are 
+	 * added at the same time
+	 * @param newTask
+	 * @throws ScheduleConflictException if the task overlaps tasks in the schedule
+	 * @throws Exception if the task is invalid, the name is taken or an anti-task cancels nothing
+	 */
 	public void addTask(Task newTask) throws Exception {
-		// Check for overlap
-		System.out.println("Validating Task...");
-		/**
-		if(overlap(newTask)) {
-			throw new Exception("\"" + newTask.getName() + "\" Task conflicts with existing task: \n" + this.getOverlapTask().toString());
-		}
-		 **/
-		int i = 0;
-		for(Task existingTask : tasks){
-			/**
-				if(newTask.getStartTime() < existingTask.getStartTime()) {
-				// validation: is task startTime less than currentTask
-				System.err.println("");
-				break;
+		DiagnosticLog.info("Validating Task...");
+		// Catch any malformed task
+		if (!newTask.isTaskValid()) {
+			throw new Exception("\"" + newTask.getName() + "\" Task is invalid: " + newTask.getInvalidReason());
+		}
+		
+		if (newTask instanceof AntiTask newAntiTask) {
+			// anti-tasks are not kept in the schedule, they are attached to the recurring task they cancel
+			addAntiTask(newAntiTask);
+			return;
+		}
+		
+		if (isNameTaken(newTask.getName())) {
+			throw new Exception("\"" + newTask.getName() + "\" Task name is already used by another task");
+		}
+		
+		BitSet stripes = stripesFor(newTask);
+		dayStripes.lock(stripes);
+		try {
+			if (overlap(newTask)) {
+				List<Task> conflicts = this.getOverlapTasks();
+				Task conflict = conflicts.get(0);
+				String reason = conflict instanceof RecurringTask ? "Task overlaps with a Future Recurring Task" : "Task conflicts with existing task";
+				throw new ScheduleConflictException("\"" + newTask.getName() + "\" " + reason + " (" + conflicts.size() + " conflict(s)): \n" + conflict.toString(), conflicts);
 			}
-		 	**/
-			// Catch any malformed task
-			if (!newTask.isTaskValid()) {
-				throw new Exception("\"" + newTask.getName() + "\" Task is invalid: " + newTask.getInvalidReason());
+			// the name is claimed before the journal entry, so the journal sees names in the same order
+			claimName(newTask);
+			try {
+				ScheduleJournal journal = this.journal;
+				if (journal != null)
+					journal.taskAdded(newTask);
+				publish(current -> current.withTask(newTask));
+			} finally {
+				nameClaims.remove(newTask.getName(), newTask);
 			}
-			
-			if (existingTask instanceof RecurringTask reccuringTask) {
-				// the new task is a reccuring one, we got to make sure future tasks don't overlap
-				if (newTask instanceof AntiTask newAntiTask) {
-					if (!reccuringTask.overlapsWith(newTask)) {
-						throw new Exception("\"" + newTask.getName() + "\" AntiTask does not overlap with a Future Recurring Task");
-					} else {
-						reccuringTask.addAntiTask(newAntiTask);
-						return;
-					}
-					
-				} else if (reccuringTask.overlapsWith(newTask)) {
-						throw new Exception("\"" + newTask.getName() + "\" Task overlaps with a Future Recurring Task: \n" + reccuringTask.getInvalidReason());
+			occupySlots(newTask);
+		} finally {
+			dayStripes.unlock(stripes);
+		}
+		DiagnosticLog.info("Added new task: ", newTask.getName());
+	}
+	
+	/**
+	 * Cancel the occurance of a series that the anti-task lands on. The series is found first, then
+	 * its stripes are locked and the match is checked again, in case another thread changed it
+	 * @param antiTask
+	 * @throws Exception if the anti-task does not match an occurance
+	 */
+	private void addAntiTask(AntiTask antiTask) throws Exception {
+		while (true) {
+			RecurringTask cancelledTask = findCancelledSeries(antiTask);
+			if (cancelledTask == null) {
+				throw new Exception("\"" + antiTask.getName() + "\" AntiTask does not overlap with a Future Recurring Task");
+			}
+			BitSet stripes = stripesFor(cancelledTask);
+			dayStripes.lock(stripes);
+			try {
+				// found again under the lock, in case another thread changed the series
+				RecurringTask series = findCancelledSeries(antiTask);
+				if (series != null && isSameTask(series, cancelledTask)) {
+					ScheduleJournal journal = this.journal;
+					if (journal != null)
+						journal.occurrenceCancelled(series.getName(), antiTask);
+					cancelOccurrence(series, antiTask);
+					return;
 				}
-			} else if (newTask instanceof RecurringTask newRecurringTask) {
-				if (newRecurringTask.overlapsWith(existingTask)) {
-					throw new Exception("\"" + newTask.getName() + "\" Task overlaps with a Future Recurring Task");
+			} finally {
+				dayStripes.unlock(stripes);
+			}
+		}
+	}
+	
+	/**
+	 * Add a batch of tasks all at once. The batch and the part of the schedule it covers are checked
+	 * in one sweep (see {@link ConflictSweep}) instead of one task at a time, and either every task 
+	 * is added or none are. Anti-tasks in the batch may cancel occurances of recurring tasks in the 
+	 * batch or in the schedule
+	 * @param taskList
+	 * @throws ScheduleConflictException with every conflicting pair if anything overlaps, nothing is added
+	 * @throws Exception if a task is invalid, a name is taken or an anti-task cancels nothing
+	 */
+	public void addAllTasks(List<Task> taskList) throws Exception {
+		if (DiagnosticLog.isEnabled(Level.INFO))
+			DiagnosticLog.info("Validating " + taskList.size() + " Tasks...");
+		List<Task> newTasks = new ArrayList<>(taskList.size());
+		List<AntiTask> newAntiTasks = new ArrayList<>();
+		Set<String> batchNames = new HashSet<>();
+		for (Task task : taskList) {
+			if (!task.isTaskValid()) {
+				throw new Exception("\"" + task.getName() + "\" Task is invalid: " + task.getInvalidReason());
 			}
+			if (task instanceof AntiTask antiTask) {
+				newAntiTasks.add(antiTask);
+			} else if (isNameTaken(task.getName()) || !batchNames.add(task.getName())) {
+				throw new Exception("\"" + task.getName() + "\" Task name is already used by another task");
+			} else {
+				newTasks.add(task);
+			}
+		}
+		
+		// anti-tasks can land on any series, so a batch with them holds every stripe
+		BitSet stripes = newAntiTasks.isEmpty() ? new BitSet() : dayStripes.all();
+		for (Task newTask : newTasks) {
+			if (dayStripes.isAll(stripes))
+				break;
+			stripes.or(stripesFor(newTask));
+		}
+		dayStripes.lock(stripes);
+		try {
+			Map<AntiTask, RecurringTask> cancellations = matchAntiTasks(newTasks, newAntiTasks);
+			Map<String, Set<Integer>> cancelledDays = new HashMap<>();
+			for (Map.Entry<AntiTask, RecurringTask> cancellation : cancellations.entrySet()) {
+				cancelledDays.computeIfAbsent(cancellation.getValue().getName(), name -> new HashSet<>()).add(cancellation.getKey().getEpochDay());
 			}
 			
+			List<TaskConflict> conflictPairs = sweepConflicts(newTasks, cancelledDays);
+			if (!conflictPairs.isEmpty()) {
+				Set<Task> conflicts = Collections.newSetFromMap(new IdentityHashMap<>());
+				StringBuilder message = new StringBuilder(conflictPairs.size() + " conflict(s) in the batch, no tasks were added:");
+				for (TaskConflict conflict : conflictPairs) {
+					conflicts.add(conflict.getFirst());
+					conflicts.add(conflict.getSecond());
+					message.append("\n").append(conflict);
+				}
+				List<Task> conflictList = new ArrayList<>(conflicts);
+				this.overlapConflicts.set(conflictList);
+				throw new ScheduleConflictException(message.toString(), conflictList, conflictPairs);
+			}
+			
+			List<Task> claimed = new ArrayList<>(newTasks.size());
+			try {
+				for (Task newTask : newTasks) {
+					claimName(newTask);
+					claimed.add(newTask);
+				}
+				ScheduleJournal journal = this.journal;
+				if (journal != null) {
+					Map<AntiTask, String> seriesNames = new LinkedHashMap<>();
+					cancellations.forEach((antiTask, series) -> seriesNames.put(antiTask, series.getName()));
+					journal.batchAdded(newTasks, seriesNames);
+				}
+			} catch (Exception e) {
+				for (Task claimedTask : claimed) {
+					nameClaims.remove(claimedTask.getName(), claimedTask);
+				}
+				throw e;
+			}
 			
+			// series of the batch are not published yet and take their anti-tasks as they are, 
+			// series in the schedule are copied so the version readers hold never changes
+			Set<Task> batch = Collections.newSetFromMap(new IdentityHashMap<>());
+			batch.addAll(newTasks);
+			Map<String, RecurringTask> publishedSeries = new LinkedHashMap<>();
+			Map<String, RecurringTask> cancelledSeries = new HashMap<>();
+			cancellations.forEach((antiTask, series) -> cancelledSeries.computeIfAbsent(series.getName(), name -> {
+				if (batch.contains(series))
+					return series;
+				publishedSeries.put(name, series);
+				return series.copy();
+			}).addAntiTask(antiTask));
 			
-			i++;
+			publish(current -> {
+				for (Task newTask : newTasks) {
+					current = current.withTask(newTask);
+				}
+				for (RecurringTask series : publishedSeries.values()) {
+					current = current.withReplaced(series, cancelledSeries.get(series.getName()));
+				}
+				return current;
+			});
+			for (Task newTask : newTasks) {
+				nameClaims.remove(newTask.getName(), newTask);
+			}
+			for (Task newTask : newTasks) {
+				occupySlots(newTask);
+				DiagnosticLog.info("Added new task: ", newTask.getName());
+			}
+			cancellations.forEach((antiTask, series) -> {
+				if (!batch.contains(series))
+					freeCancelledSlots(antiTask);
+			});
+		} finally {
+			dayStripes.unlock(stripes);
 		}
-		
-		tasks.add(i, newTask);
-		System.out.println("Added new task: " + newTask.getName());
 	}
 	
-	public void addAllTasks(List<Task> taskList) throws Exception {
-		for (Task task$iterator : taskList) {
-			this.addTask(task$iterator);
+	/**
+	 * Find the series each anti-task of a batch cancels an occurance of. Series in the batch come
+	 * first, then series in the schedule. The stripes of every series have to be held
+	 * @param newTasks the rest of the batch
+	 * @param newAntiTasks
+	 * @return each anti-task with its series, in the order of the batch
+	 * @throws Exception if an anti-task does not match an occurance
+	 */
+	private Map<AntiTask, RecurringTask> matchAntiTasks(List<Task> newTasks, List<AntiTask> newAntiTasks) throws Exception {
+		Map<AntiTask, RecurringTask> cancellations = new LinkedHashMap<>();
+		if (newAntiTasks.isEmpty())
+			return cancellations;
+		// an anti-task has to start and last exactly as long as the occurance it cancels
+		Map<Long, List<RecurringTask>> batchSeries = new HashMap<>();
+		for (Task newTask : newTasks) {
+			if (newTask instanceof RecurringTask series)
+				batchSeries.computeIfAbsent((long) series.getStartMinute() << 32 | series.getDurationMinutes(), key -> new ArrayList<>()).add(series);
+		}
+		Map<String, Set<Integer>> cancelledDays = new HashMap<>();
+		for (AntiTask antiTask : newAntiTasks) {
+			int day = antiTask.getEpochDay();
+			List<Task> candidates = new ArrayList<>(batchSeries.getOrDefault((long) antiTask.getStartMinute() << 32 | antiTask.getDurationMinutes(), Collections.emptyList()));
+			candidates.addAll(queryIndex(getSpanStart(antiTask), getSpanEnd(antiTask)));
+			RecurringTask match = null;
+			for (Task candidate : candidates) {
+				if (candidate instanceof RecurringTask series && series.matchesOccurrence(antiTask)
+						&& !cancelledDays.getOrDefault(series.getName(), Collections.emptySet()).contains(day)) {
+					match = series;
+					break;
+				}
+			}
+			if (match == null) {
+				throw new Exception("\"" + antiTask.getName() + "\" AntiTask does not overlap with a Future Recurring Task");
+			}
+			cancelledDays.computeIfAbsent(match.getName(), name -> new HashSet<>()).add(day);
+			cancellations.put(antiTask, match);
 		}
+		return cancellations;
 	}
 	
-	public Task findTask(String taskName) {
-		for(Task t: tasks) {
-			if(t.getName().equals(taskName)) {
-				return t;
-			}
+	/**
+	 * Sweep the batch together with the tasks in the schedule that fall in the time the batch covers.
+	 * The stripes of the batch have to be held
+	 * @param newTasks
+	 * @param cancelledDays occurances the batch is about to cancel, by the name of their series
+	 * @return every pair that overlaps and has a task from the batch in it
+	 */
+	private List<TaskConflict> sweepConflicts(List<Task> newTasks, Map<String, Set<Integer>> cancelledDays) {
+		if (newTasks.isEmpty())
+			return new ArrayList<>();
+		long windowStart = Long.MAX_VALUE, windowEnd = Long.MIN_VALUE;
+		ConflictSweep sweep = new ConflictSweep();
+		for (Task newTask : newTasks) {
+			long spanStart = getSpanStart(newTask), spanEnd = getSpanEnd(newTask);
+			windowStart = Math.min(windowStart, spanStart);
+			windowEnd = Math.max(windowEnd, spanEnd);
+			// the whole of a new task is checked, which is its own span
+			sweep.addTask(newTask, ConflictSweep.CHECKED, spanStart, spanEnd, cancelledDays.get(newTask.getName()));
 		}
-		
-		System.out.println("Error: Task not found.");
-		return null;
+		for (Task existingTask : queryIndex(windowStart, windowEnd)) {
+			sweep.addTask(existingTask, ConflictSweep.BACKGROUND, windowStart, windowEnd, cancelledDays.get(existingTask.getName()));
+		}
+		return sweep.sweep();
+	}
+	
+	/**
+	 * Find a task by its name using the name index
+	 * @param taskName
+	 * @return the task or null if there is no task with that name
+	 */
+	public Task findTask(String taskName) {
+		Task task = snapshot.get().findTask(taskName);
+		if (task == null)
+			System.out.println("Error: Task not found.");
+		return task;
 	}
 	
 	public void viewTask(String taskName) {
@@ -199,7 +887,28 @@ public class Scheduler {
 	}
 	
 	public boolean deleteTask(Task task) {
-		return tasks.remove(task);
+		if (task == null || !snapshot.get().contains(task))
+			return false;
+		BitSet stripes = stripesFor(task);
+		dayStripes.lock(stripes);
+		try {
+			if (!snapshot.get().contains(task))
+				return false;
+			ScheduleJournal journal = this.journal;
+			if (journal != null) {
+				try {
+					journal.taskDeleted(task.getName());
+				} catch (IOException e) {
+					DiagnosticLog.error("\"" + task.getName() + "\" Task could not be deleted, the journal could not be written: " + e.getMessage());
+					return false;
+				}
+			}
+			publish(current -> current.withoutTask(task));
+			releaseSlots(task);
+			return true;
+		} finally {
+			dayStripes.unlock(stripes);
+		}
 	}
 	
 	public void deleteTask(String taskName) {
@@ -229,7 +938,17 @@ public class Scheduler {
 			//edit name
 			case 1:
 				System.out.print("Enter new name: ");
-				task.setName(sc.nextLine());
+				String newName = sc.nextLine();
+				Task renamed = task.copy();
+				renamed.setName(newName);
+				try {
+					replaceTask(task, renamed);
+					task = renamed;
+				} catch (IOException e) {
+					DiagnosticLog.error("Error: Edit could not be saved to the journal: " + e.getMessage() + ". New name not saved.");
+				} catch (Exception e) {
+					System.out.println("Error: " + e.getMessage() + ". New name not saved.");
+				}
 				break;
 				
 			/*
@@ -240,24 +959,40 @@ public class Scheduler {
 				
 			case 3:
 				System.out.print("Enter new date (YYYYMMDD): ");
-				task.setDate(sc.nextInt());
+				int newDate = sc.nextInt();
+				Task moved = task.copy();
+				moved.setDate(newDate);
+				try {
+					replaceTask(task, moved);
+					task = moved;
+				} catch (ScheduleConflictException e) {
+					System.out.println("Error: New date causes overlap. New date not saved.");
+				} catch (IOException e) {
+					DiagnosticLog.error("Error: Edit could not be saved to the journal: " + e.getMessage() + ". New date not saved.");
+				} catch (Exception e) {
+					System.out.println("Error: " + e.getMessage() + ". New date not saved.");
+				}
 				break;
 				
 			case 4: 
 				
-				float oldStart = task.getStartTime();
-				float oldDuration = task.getDuration();
 				System.out.print("Enter new start time: ");
-				task.setStartTime(sc.nextFloat());
+				float newStart = sc.nextFloat();
 				System.out.print("Enter new duration: ");
-				task.setDuration(sc.nextFloat());
-				
-				if(overlap(task)) {
-					task.setStartTime(oldStart);
-					task.setDuration(oldDuration);
+				float newDuration = sc.nextFloat();
+				Task retimed = task.copy();
+				retimed.setStartTime(newStart);
+				retimed.setDuration(newDuration);
+				try {
+					replaceTask(task, retimed);
+					task = retimed;
+				} catch (ScheduleConflictException e) {
 					System.out.println("Error: New time causes overlap. New times not saved.");
+				} catch (IOException e) {
+					DiagnosticLog.error("Error: Edit could not be saved to the journal: " + e.getMessage() + ". New times not saved.");
+				} catch (Exception e) {
+					System.out.println("Error: " + e.getMessage() + ". New times not saved.");
 				}
-				
 				break;
 				
 			case 5:
@@ -270,12 +1005,81 @@ public class Scheduler {
 		}
 	}
 	
+	/**
+	 * Put an edited copy of a task in the schedule in place of the task. The copy is checked as if the
+	 * task were already gone, journaled, and published in one new snapshot, so a task that has been
+	 * published never changes and no snapshot has both or neither of them.
+	 * The stripes of the old and the new days are held, so a delete of the task waits for the edit
+	 * @param task the task in the schedule
+	 * @param edited the changed copy, see {@link Task#copy()}
+	 * @throws ScheduleConflictException if the copy overlaps another task, nothing is changed
+	 * @throws IOException if the edit could not be journaled, nothing is changed
+	 * @throws Exception if the task is no longer in the schedule or the new name is taken
+	 */
+	private void replaceTask(Task task, Task edited) throws Exception {
+		BitSet stripes = stripesFor(task);
+		stripes.or(stripesFor(edited));
+		dayStripes.lock(stripes);
+		try {
+			if (!snapshot.get().contains(task))
+				throw new Exception("\"" + task.getName() + "\" Task is no longer in the schedule");
+			boolean renamed = !edited.getName().equals(task.getName());
+			boolean moved = getSpanStart(edited) != getSpanStart(task) || getSpanEnd(edited) != getSpanEnd(task)
+					|| edited.getDurationMinutes() != task.getDurationMinutes();
+			// claim the new name first, so no one else can take it while the old one is still held
+			if (renamed)
+				claimName(edited);
+			try {
+				if (moved) {
+					releaseSlots(task);
+					if (overlap(edited, task)) {
+						List<Task> conflicts = this.getOverlapTasks();
+						throw new ScheduleConflictException("\"" + edited.getName() + "\" Task conflicts with existing task (" + conflicts.size() + " conflict(s)): \n" + conflicts.get(0).toString(), conflicts);
+					}
+				}
+				journalEdit(task.getName(), edited);
+			} catch (Exception e) {
+				if (moved)
+					occupySlots(task);
+				if (renamed)
+					nameClaims.remove(edited.getName(), edited);
+				throw e;
+			}
+			publish(current -> current.withReplaced(task, edited));
+			if (renamed)
+				nameClaims.remove(edited.getName(), edited);
+			if (moved)
+				occupySlots(edited);
+		} finally {
+			dayStripes.unlock(stripes);
+		}
+	}
+	
+	/**
+	 * Record an edit in the journal, if there is one. The edit is only published once it is in the journal
+	 * @param oldName the name of the task before the edit
+	 * @param task
+	 * @throws IOException if the journal could not be written, the edit has to be undone
+	 */
+	private void journalEdit(String oldName, Task task) throws IOException {
+		ScheduleJournal journal = this.journal;
+		if (journal != null)
+			journal.taskEdited(oldName, task);
+	}
+	
 	public void editTask(String taskName) {
 		editTask(findTask(taskName));
 	}
 	
+	/**
+	 * @return a copy of the tasks in the order they were added
+	 */
+	public List<Task> getTasks() {
+		return snapshot.get().getTasks();
+	}
+	
 	public void printTaskList() {
-		for (Task task$iterator : this.tasks) {
+		for (Task task$iterator : getTasks()) {
 			if (task$iterator instanceof TransientTask transienttask) {
 				transienttask.printTask();
 			}
@@ -287,6 +1091,75 @@ public class Scheduler {
 		}
 	}
 	
+	/**
+	 * Get everything on the schedule between two dates: transient tasks, and the occurances of
+	 * recurring tasks that were not cancelled. Reads the current snapshot
+	 * @param fromDate the first date in YYYYMMDD format (inclusive)
+	 * @param toDate the last date in YYYYMMDD format (inclusive)
+	 * @return the occurances in order of their start time
+	 * @throws Exception if a date is invalid or the dates are the wrong way around
+	 */
+	public List<Occurrence> getSchedule(int fromDate, int toDate) throws Exception {
+		int fromDay = TimeHelper.toEpochDay(fromDate), toDay = TimeHelper.toEpochDay(toDate);
+		if (TimeHelper.fromEpochDay(fromDay) != fromDate || TimeHelper.fromEpochDay(toDay) != toDate || fromDay > toDay) {
+			throw new Exception("The dates " + fromDate + " to " + toDate + " are not a valid range");
+		}
+		return snapshot.get().getOccurrencesBetweenDays(fromDay, toDay);
+	}
+	
+	/**
+	 * Get everything on the schedule on one day
+	 * @param date in YYYYMMDD format
+	 * @return
+	 * @throws Exception if the date is invalid
+	 */
+	public List<Occurrence> getDayView(int date) throws Exception {
+		return getSchedule(date, date);
+	}
+	
+	/**
+	 * Get everything on the schedule in the week (Sunday to Saturday) that has the date in it
+	 * @param date in YYYYMMDD format
+	 * @return
+	 * @throws Exception if the date is invalid
+	 */
+	public List<Occurrence> getWeekView(int date) throws Exception {
+		int epochDay = TimeHelper.toEpochDay(date);
+		if (TimeHelper.fromEpochDay(epochDay) != date) {
+			throw new Exception("The date " + date + " is invalid");
+		}
+		// 1970-01-01 was a Thursday
+		int sunday = epochDay - Math.floorMod(epochDay + 4, 7);
+		return getSchedule(TimeHelper.fromEpochDay(sunday), TimeHelper.fromEpochDay(sunday + 6));
+	}
+	
+	/**
+	 * Get everything on the schedule in the month that has the date in it
+	 * @param date in YYYYMMDD format
+	 * @return
+	 * @throws Exception if the date is invalid
+	 */
+	public List<Occurrence> getMonthView(int date) throws Exception {
+		if (TimeHelper.fromEpochDay(TimeHelper.toEpochDay(date)) != date) {
+			throw new Exception("The date " + date + " is invalid");
+		}
+		int firstOfMonth = date / 100 * 100 + 1;
+		int firstOfNextMonth = date % 10000 / 100 == 12 ? (date / 10000 + 1) * 10000 + 101 : firstOfMonth + 100;
+		return getSchedule(firstOfMonth, TimeHelper.fromEpochDay(TimeHelper.toEpochDay(firstOfNextMonth) - 1));
+	}
+	
+	/**
+	 * Print everything on the schedule between two dates, in order of start time
+	 * @param fromDate the first date in YYYYMMDD format (inclusive)
+	 * @param toDate the last date in YYYYMMDD format (inclusive)
+	 * @throws Exception if a date is invalid or the dates are the wrong way around
+	 */
+	public void printSchedule(int fromDate, int toDate) throws Exception {
+		for (Occurrence occurrence : getSchedule(fromDate, toDate)) {
+			occurrence.printTask();
+		}
+	}
+	
 	/**
 	 * write the current task list to a json file. You can specify
 	 * the name with this method.
@@ -294,7 +1167,7 @@ public class Scheduler {
 	 */
 	public void writeSchedule(String outputFileName) {
 		try {
-			JsonHelper.writeToJson(outputFileName, tasks);
+			JsonHelper.writeToJson(outputFileName, getTasks());
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
@@ -307,4 +1180,92 @@ public class Scheduler {
 	public void writeSchedule() {
 		writeSchedule("schedule");
 	}
+	
+	/**
+	 * Save the whole schedule, anti-tasks included, as a binary snapshot. This is much faster
+	 * to load than JSON, see {@link SnapshotHelper}
+	 * @param snapshotPath
+	 * @throws IOException
+	 */
+	public void writeSnapshot(String snapshotPath) throws IOException {
+		SnapshotHelper.writeSnapshot(Paths.get(snapshotPath), getTasks());
+	}
+	
+	/**
+	 * Load a schedule from a binary snapshot made by {@link Scheduler#writeSnapshot(String)}
+	 * @param snapshotPath
+	 * @return
+	 * @throws IOException
+	 */
+	public static Scheduler readSnapshot(String snapshotPath) throws IOException {
+		return new Scheduler(SnapshotHelper.readSnapshot(Paths.get(snapshotPath)));
+	}
+	
+	/**
+	 * Open a snapshot made by {@link Scheduler#writeSnapshot(String)} without loading it. The file is mapped
+	 * into memory and the schedule runs on it (see {@link OffHeapTaskStore}), so the tasks in it are only built
+	 * when they are read and a very large schedule stays off the heap. Changes are kept on the heap until the
+	 * next snapshot, which can go to the same file since a snapshot is written to a new file and moved in place
+	 * @param snapshotPath
+	 * @return
+	 * @throws IOException if the file can not be read or is not a snapshot
+	 */
+	public static Scheduler mapSnapshot(String snapshotPath) throws IOException {
+		return new Scheduler(OffHeapTaskStore.map(Paths.get(snapshotPath)));
+	}
+	
+	/**
+	 * Load the schedule kept in a journal directory and record every change made from now on
+	 * in that journal, see {@link ScheduleJournal}
+	 * @param journalDirectory
+	 * @return
+	 * @throws IOException if the journal could not be read
+	 */
+	public static Scheduler openJournal(String journalDirectory) throws IOException {
+		ScheduleJournal journal = ScheduleJournal.open(Paths.get(journalDirectory), "schedule");
+		Scheduler scheduler = new Scheduler(journal.getRecoveredTasks());
+		scheduler.journal = journal;
+		return scheduler;
+	}
+	
+	/**
+	 * Start recording every change to this schedule in a journal directory. Whatever the directory held
+	 * before is replaced by the schedule as it is now
+	 * @param journalDirectory
+	 * @throws IOException
+	 */
+	public void attachJournal(String journalDirectory) throws IOException {
+		closeJournal();
+		ScheduleJournal newJournal = ScheduleJournal.open(Paths.get(journalDirectory), "schedule");
+		// nothing may change between the snapshot and the first journal entry
+		BitSet allStripes = dayStripes.all();
+		dayStripes.lock(allStripes);
+		try {
+			newJournal.checkpoint(getTasks());
+			this.journal = newJournal;
+		} finally {
+			dayStripes.unlock(allStripes);
+		}
+	}
+	
+	/**
+	 * Fold the journal into a new snapshot in the background, so the next load replays less
+	 * @throws IOException
+	 */
+	public void compactJournal() throws IOException {
+		ScheduleJournal journal = this.journal;
+		if (journal != null)
+			journal.compact();
+	}
+	
+	/**
+	 * Stop recording changes. Everything recorded so far is already on disk
+	 * @throws IOException
+	 */
+	public void closeJournal() throws IOException {
+		ScheduleJournal closed = journal;
+		journal = null;
+		if (closed != null)
+			closed.close();
+	}
 }
@@ -0,0 +1,79 @@
+package main;
+
+import main.helpers.TimeHelper;
+import main.tasks.AntiTask;
+import main.tasks.Task;
+
+/**
+ * Two tasks that are scheduled at the same time. For a recurring task, the conflict is on the
+ * occurance where the two first overlap. An audit also reports a recurring task paired with one of
+ * its anti-tasks when the anti-task does not line up with a single occurance, see {@link TaskConflict#isCancellation()}
+ * @author CTS
+ *
+ */
+public final class TaskConflict {
+	private final Task first;
+	private final Task second;
+	private final long startMinute;
+	private final long endMinute;
+	
+	/**
+	 * @param first the task that starts first
+	 * @param second the other task
+	 * @param startMinute where the overlap starts, in minutes since 1970-01-01 00:00
+	 * @param endMinute where the overlap ends, in minutes since 1970-01-01 00:00
+	 */
+	public TaskConflict(Task first, Task second, long startMinute, long endMinute) {
+		this.first = first;
+		this.second = second;
+		this.startMinute = startMinute;
+		this.endMinute = endMinute;
+	}
+	
+	public Task getFirst() {
+		return first;
+	}
+	
+	public Task getSecond() {
+		return second;
+	}
+	
+	public long getStartEpochMinute() {
+		return startMinute;
+	}
+	
+	public long getEndEpochMinute() {
+		return endMinute;
+	}
+	
+	/**
+	 * Get the date the overlap starts on in YYYYMMDD format
+	 * @return
+	 */
+	public int getDate() {
+		return TimeHelper.fromEpochDay((int) Math.floorDiv(startMinute, TimeHelper.MINUTES_PER_DAY));
+	}
+	
+	/**
+	 * @return the time the overlap starts, in 24-hour format as a decimal
+	 */
+	public float getStartTime() {
+		return Math.floorMod(startMinute, TimeHelper.MINUTES_PER_DAY) / 60f;
+	}
+	
+	/**
+	 * Checks if this is a recurring task and an anti-task that does not cancel exactly one of its occurances
+	 * @return
+	 */
+	public boolean isCancellation() {
+		return second instanceof AntiTask;
+	}
+	
+	public String toString() {
+		if (isCancellation())
+			return "\"" + second.getName() + "\" does not cancel an occurance of \"" + first.getName() + "\" on " + getDate() 
+					+ " at " + getStartTime() + " for " + (endMinute - startMinute) / 60f + " hour(s)";
+		return "\"" + first.getName() + "\" conflicts with \"" + second.getName() + "\" on " + getDate() 
+				+ " at " + getStartTime() + " for " + (endMinute - startMinute) / 60f + " hour(s)";
+	}
+}
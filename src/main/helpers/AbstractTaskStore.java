@@ -0,0 +1,494 @@
+package main.helpers;
+
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import main.tasks.AntiTask;
+import main.tasks.Occurrence;
+import main.tasks.RecurringTask;
+import main.tasks.Task;
+
+/**
+ * A schedule kept as columns of primitive fields instead of task objects, one row per task, with
+ * the anti-tasks of a recurring task in columns of their own. The fields are the ones a snapshot
+ * record has (see {@link SnapshotHelper}), and names and types are numbers in a dictionary of strings.
+ * <p>
+ * Subclasses say where the columns live, {@link TaskStore} keeps them in arrays on the heap and
+ * {@link OffHeapTaskStore} in memory outside of it. Building tasks, scans and exports are written 
+ * once here against the column getters.
+ * <p>
+ * Scans go through a span index, the rows sorted by the day their time span starts with the latest
+ * end day of every range of them kept in a tree, so a scan only looks at the rows that reach into its window.
+ * The index is built the first time a scan needs it and takes 8 to 12 bytes a row. Cancelled days are
+ * looked up in a copy of the cancellation days with the ones of each row sorted, built the same way
+ * and taking 4 bytes an anti-task.
+ * @author CTS
+ *
+ */
+public abstract class AbstractTaskStore {
+	private volatile SpanIndex spanIndex;
+	/** The cancellation days, sorted within the range of each row */
+	private volatile IntBuffer cancelledDays;
+	
+	/**
+	 * @return the number of rows
+	 */
+	public abstract int size();
+	
+	/**
+	 * @return the number of anti-tasks over all rows
+	 */
+	public abstract int getCancellationCount();
+	
+	/**
+	 * @param value
+	 * @return the number of the string in the dictionary, or -1 if it isn't there
+	 */
+	public abstract int getStringId(String value);
+	
+	/**
+	 * Decode a string of the dictionary
+	 * @param id
+	 * @return
+	 */
+	public abstract String getString(int id);
+	
+	/**
+	 * @return the number of strings in the dictionary
+	 */
+	public abstract int getStringCount();
+	
+	/**
+	 * Find the row of a task
+	 * @param taskName
+	 * @return the first row with that name, or -1
+	 */
+	public abstract int findRow(String taskName);
+	
+	// <------------------ Columns -------------------------->
+	
+	/**
+	 * @param row
+	 * @return one of the KIND constants in {@link SnapshotHelper}
+	 */
+	public abstract byte getKind(int row);
+	
+	public abstract int getNameId(int row);
+	
+	public abstract int getTypeId(int row);
+	
+	public abstract int getEpochDay(int row);
+	
+	/**
+	 * @param row
+	 * @return the end date of a recurring task as an epoch day, the start day for a transient task
+	 */
+	public abstract int getEndEpochDay(int row);
+	
+	public abstract int getStartMinute(int row);
+	
+	public abstract int getDurationMinutes(int row);
+	
+	/**
+	 * @param row
+	 * @return 0 for a transient task
+	 */
+	public abstract int getFrequency(int row);
+	
+	/**
+	 * The anti-tasks of a row are the cancellations from here up to {@link AbstractTaskStore#getCancellationEnd(int)}
+	 */
+	public abstract int getCancellationStart(int row);
+	
+	public abstract int getCancellationEnd(int row);
+	
+	public abstract int getCancellationNameId(int cancellation);
+	
+	public abstract int getCancellationDay(int cancellation);
+	
+	public abstract int getCancellationStartMinute(int cancellation);
+	
+	public abstract int getCancellationDurationMinutes(int cancellation);
+	
+	public String getName(int row) {
+		return getString(getNameId(row));
+	}
+	
+	/**
+	 * @param row
+	 * @return the day of the last occurance of a recurring task, the start day for a transient task
+	 */
+	public int getLastOccurrenceDay(int row) {
+		int startDay = getEpochDay(row), frequency = getFrequency(row);
+		if (getKind(row) != SnapshotHelper.KIND_RECURRING || frequency <= 0)
+			return startDay;
+		return startDay + (getEndEpochDay(row) - startDay) / frequency * frequency;
+	}
+	
+	/**
+	 * The absolute start of a row in minutes since 1970-01-01 00:00, the first occurance of a recurring task
+	 * @param row
+	 * @return
+	 */
+	public long getSpanStart(int row) {
+		return getEpochDay(row) * (long) TimeHelper.MINUTES_PER_DAY + getStartMinute(row);
+	}
+	
+	/**
+	 * The absolute end of a row in minutes since 1970-01-01 00:00, the end of the last occurance of a recurring task
+	 * @param row
+	 * @return
+	 */
+	public long getSpanEnd(int row) {
+		return getLastOccurrenceDay(row) * (long) TimeHelper.MINUTES_PER_DAY + getStartMinute(row) + getDurationMinutes(row);
+	}
+	
+	/**
+	 * Checks if the task has the fields of the row, like a task built from the row that was not changed since
+	 * @param row
+	 * @param task
+	 * @return
+	 */
+	public boolean isTaskOf(int row, Task task) {
+		if (SnapshotHelper.kindOf(task) != getKind(row) || task.getEpochDay() != getEpochDay(row)
+				|| task.getStartMinute() != getStartMinute(row) || task.getDurationMinutes() != getDurationMinutes(row)
+				|| !task.getName().equals(getName(row)) || !task.getType().equals(getString(getTypeId(row))))
+			return false;
+		if (task instanceof RecurringTask series)
+			return series.getEndEpochDay() == getEndEpochDay(row) && series.getFrequency() == getFrequency(row)
+					&& series.getCancelledOccurances().size() == getCancellationEnd(row) - getCancellationStart(row);
+		return true;
+	}
+	
+	// <------------------ Tasks on demand -------------------------->
+	
+	/**
+	 * Build the task of a row, with its anti-tasks
+	 * @param row
+	 * @return a new task every time
+	 */
+	public Task getTask(int row) {
+		Task task = SnapshotHelper.newTask(getKind(row), getString(getNameId(row)), getString(getTypeId(row)), getEpochDay(row), getEndEpochDay(row),
+				getStartMinute(row), getDurationMinutes(row), getFrequency(row));
+		if (task instanceof RecurringTask recurringTask) {
+			for (int i = getCancellationStart(row); i < getCancellationEnd(row); i++) {
+				recurringTask.addAntiTask(new AntiTask(getString(getCancellationNameId(i)), "Cancellation", TimeHelper.fromEpochDay(getCancellationDay(i)),
+						getCancellationStartMinute(i) / 60f, getCancellationDurationMinutes(i) / 60f));
+			}
+		}
+		return task;
+	}
+	
+	/**
+	 * Build every task in the store
+	 * @return the tasks in row order
+	 */
+	public List<Task> getTasks() {
+		List<Task> taskList = new ArrayList<>(size());
+		for (int row = 0; row < size(); row++) {
+			taskList.add(getTask(row));
+		}
+		return taskList;
+	}
+	
+	// <------------------ Scans -------------------------->
+	
+	/**
+	 * Find every row with a live occurance that overlaps the absolute time [fromMinute, toMinute)
+	 * @param fromMinute minutes since 1970-01-01 00:00
+	 * @param toMinute minutes since 1970-01-01 00:00
+	 * @return the rows in row order
+	 */
+	public int[] findOverlaps(long fromMinute, long toMinute) {
+		int[] rows = new int[16];
+		int found = 0;
+		for (int row : findSpans(fromMinute, toMinute)) {
+			if (firstOverlappingDay(row, fromMinute, toMinute, null) != Integer.MIN_VALUE) {
+				if (found == rows.length)
+					rows = Arrays.copyOf(rows, found * 2);
+				rows[found++] = row;
+			}
+		}
+		return Arrays.copyOf(rows, found);
+	}
+	
+	/**
+	 * Find every row that would conflict with a task
+	 * @param task
+	 * @return the rows in row order
+	 */
+	public int[] findConflicts(Task task) {
+		RecurringTask series = task instanceof RecurringTask recurringTask ? recurringTask : null;
+		long fromMinute = task.getStartEpochMinute();
+		long toMinute = series == null ? task.getEndEpochMinute() 
+				: series.getLastOccurrenceDay() * (long) TimeHelper.MINUTES_PER_DAY + series.getStartMinute() + series.getDurationMinutes();
+		int[] rows = new int[16];
+		int found = 0;
+		for (int row : findSpans(fromMinute, toMinute)) {
+			if (firstOverlappingDay(row, fromMinute, toMinute, series) != Integer.MIN_VALUE) {
+				if (found == rows.length)
+					rows = Arrays.copyOf(rows, found * 2);
+				rows[found++] = row;
+			}
+		}
+		return Arrays.copyOf(rows, found);
+	}
+	
+	/**
+	 * Get the transient tasks and live occurances of recurring tasks that overlap the days [fromDay, toDay].
+	 * Only the rows that have something in the window are built into tasks
+	 * @param fromDay the first day as days since 1970-01-01 (inclusive)
+	 * @param toDay the last day as days since 1970-01-01 (inclusive)
+	 * @return the occurances in order of their start time
+	 */
+	public List<Occurrence> getOccurrencesBetweenDays(int fromDay, int toDay) {
+		long fromMinute = fromDay * (long) TimeHelper.MINUTES_PER_DAY;
+		long toMinute = (toDay + 1L) * TimeHelper.MINUTES_PER_DAY;
+		List<Occurrence> occurrences = new ArrayList<>();
+		for (int row : findOverlaps(fromMinute, toMinute)) {
+			Task task = getTask(row);
+			if (task instanceof RecurringTask series) {
+				series.occurrencesBetweenDays(fromDay - 1, toDay)
+						.filter(occurrence -> occurrence.getEndEpochMinute() > fromMinute && occurrence.getStartEpochMinute() < toMinute && !occurrence.isCancelled())
+						.forEach(occurrences::add);
+			} else {
+				occurrences.add(new Occurrence(task, task.getEpochDay()));
+			}
+		}
+		occurrences.sort((a, b) -> Long.compare(a.getStartEpochMinute(), b.getStartEpochMinute()));
+		return occurrences;
+	}
+	
+	/**
+	 * Write every row as JSON straight from the columns
+	 * @param writer
+	 * @throws IOException
+	 */
+	public void writeJson(JsonScheduleWriter writer) throws IOException {
+		writer.beginArray();
+		for (int row = 0; row < size(); row++) {
+			String name = getString(getNameId(row));
+			String type = getString(getTypeId(row));
+			int date = TimeHelper.fromEpochDay(getEpochDay(row));
+			if (getKind(row) == SnapshotHelper.KIND_RECURRING) {
+				writer.writeRecurringTask(name, type, date, getStartMinute(row) / 60f, getDurationMinutes(row) / 60f,
+						TimeHelper.fromEpochDay(getEndEpochDay(row)), getFrequency(row));
+				for (int i = getCancellationStart(row); i < getCancellationEnd(row); i++) {
+					writer.writeAntiTask(getString(getCancellationNameId(i)), TimeHelper.fromEpochDay(getCancellationDay(i)),
+							getCancellationStartMinute(i) / 60f, getCancellationDurationMinutes(i) / 60f);
+				}
+			} else {
+				writer.writeTransientTask(name, type, date, getStartMinute(row) / 60f, getDurationMinutes(row) / 60f);
+			}
+		}
+		writer.endArray();
+	}
+	
+	/**
+	 * Find the first day a row has a live occurance on that overlaps [fromMinute, toMinute)
+	 * @param series if not null, the occurance also has to overlap a live occurance of this series
+	 * @return the epoch day, or Integer.MIN_VALUE if there is none
+	 */
+	private int firstOverlappingDay(int row, long fromMinute, long toMinute, RecurringTask series) {
+		int startMinute = getStartMinute(row), duration = getDurationMinutes(row);
+		int startDay = getEpochDay(row);
+		if (getKind(row) != SnapshotHelper.KIND_RECURRING) {
+			long start = startDay * (long) TimeHelper.MINUTES_PER_DAY + startMinute;
+			boolean overlaps = start < toMinute && start + duration > fromMinute 
+					&& (series == null || series.occursBetween(start, start + duration));
+			return overlaps ? startDay : Integer.MIN_VALUE;
+		}
+		int frequency = getFrequency(row);
+		int lastDay = frequency <= 0 ? startDay : startDay + (getEndEpochDay(row) - startDay) / frequency * frequency;
+		// the occurance on day D covers [D * 1440 + start, D * 1440 + start + duration)
+		long firstDay = Math.max(startDay, Math.floorDiv(fromMinute - startMinute - duration, TimeHelper.MINUTES_PER_DAY) + 1);
+		long toDay = Math.min(lastDay, Math.floorDiv(toMinute - startMinute - 1, TimeHelper.MINUTES_PER_DAY));
+		if (firstDay > toDay)
+			return Integer.MIN_VALUE;
+		int step = Math.max(frequency, 1);
+		for (long day = startDay + (firstDay - startDay + step - 1) / step * step; day <= toDay; day += step) {
+			long start = day * TimeHelper.MINUTES_PER_DAY + startMinute;
+			if (!isCancelled(row, (int) day) && (series == null || series.occursBetween(start, start + duration)))
+				return (int) day;
+		}
+		return Integer.MIN_VALUE;
+	}
+	
+	/**
+	 * Checks if an anti-task of the row cancels the occurance on the day
+	 * @param row
+	 * @param epochDay
+	 * @return
+	 */
+	public boolean isCancelled(int row, int epochDay) {
+		int low = getCancellationStart(row), high = getCancellationEnd(row);
+		if (low >= high)
+			return false;
+		IntBuffer days = getCancelledDays();
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			int day = days.get(middle);
+			if (day == epochDay)
+				return true;
+			if (day < epochDay)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return false;
+	}
+	
+	private IntBuffer getCancelledDays() {
+		IntBuffer days = cancelledDays;
+		if (days != null)
+			return days;
+		synchronized (this) {
+			if (cancelledDays == null)
+				cancelledDays = buildCancelledDays();
+			return cancelledDays;
+		}
+	}
+	
+	private IntBuffer buildCancelledDays() {
+		int rowCount = size();
+		IntBuffer days = newIntBuffer(rowCount == 0 ? 0 : getCancellationEnd(rowCount - 1));
+		int[] rowDays = new int[16];
+		for (int row = 0; row < rowCount; row++) {
+			int start = getCancellationStart(row), count = getCancellationEnd(row) - start;
+			if (count > rowDays.length)
+				rowDays = new int[Math.max(count, rowDays.length * 2)];
+			for (int i = 0; i < count; i++) {
+				rowDays[i] = getCancellationDay(start + i);
+			}
+			Arrays.sort(rowDays, 0, count);
+			for (int i = 0; i < count; i++) {
+				days.put(start + i, rowDays[i]);
+			}
+		}
+		return days;
+	}
+	
+	// <------------------ Span index -------------------------->
+	
+	/**
+	 * Find every row whose time span overlaps [fromMinute, toMinute). The span of a recurring task runs
+	 * from its first to its last occurance, it does not have to occur in the range
+	 * @param fromMinute minutes since 1970-01-01 00:00
+	 * @param toMinute minutes since 1970-01-01 00:00
+	 * @return the rows in row order
+	 */
+	public int[] findSpans(long fromMinute, long toMinute) {
+		if (fromMinute >= toMinute || size() == 0)
+			return new int[0];
+		SpanIndex index = getSpanIndex();
+		int fromDay = (int) Math.floorDiv(fromMinute, TimeHelper.MINUTES_PER_DAY);
+		int toDay = (int) Math.floorDiv(toMinute - 1, TimeHelper.MINUTES_PER_DAY);
+		// the rows that start on or before the last day of the window
+		int low = 0, high = index.rows.capacity();
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (getSpanStartDay(index.rows.get(middle)) <= toDay)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		int[] rows = new int[16];
+		int[] found = { 0 };
+		rows = collectSpans(index, 1, 0, index.leafCount, low, fromDay, fromMinute, toMinute, rows, found);
+		rows = Arrays.copyOf(rows, found[0]);
+		Arrays.sort(rows);
+		return rows;
+	}
+	
+	/**
+	 * Walk the tree of end days down to the sorted rows before the limit that end on or after fromDay
+	 */
+	private int[] collectSpans(SpanIndex index, int node, int nodeStart, int nodeEnd, int limit, int fromDay,
+			long fromMinute, long toMinute, int[] rows, int[] found) {
+		if (nodeStart >= limit || index.maxEndDays.get(node) < fromDay)
+			return rows;
+		if (nodeEnd - nodeStart == 1) {
+			int row = index.rows.get(nodeStart);
+			if (getSpanStart(row) < toMinute && getSpanEnd(row) > fromMinute) {
+				if (found[0] == rows.length)
+					rows = Arrays.copyOf(rows, found[0] * 2);
+				rows[found[0]++] = row;
+			}
+			return rows;
+		}
+		int middle = (nodeStart + nodeEnd) >>> 1;
+		rows = collectSpans(index, 2 * node, nodeStart, middle, limit, fromDay, fromMinute, toMinute, rows, found);
+		return collectSpans(index, 2 * node + 1, middle, nodeEnd, limit, fromDay, fromMinute, toMinute, rows, found);
+	}
+	
+	private int getSpanStartDay(int row) {
+		return (int) Math.floorDiv(getSpanStart(row), TimeHelper.MINUTES_PER_DAY);
+	}
+	
+	private SpanIndex getSpanIndex() {
+		SpanIndex index = spanIndex;
+		if (index != null)
+			return index;
+		synchronized (this) {
+			if (spanIndex == null)
+				spanIndex = buildSpanIndex();
+			return spanIndex;
+		}
+	}
+	
+	private SpanIndex buildSpanIndex() {
+		int rowCount = size();
+		long[] keys = new long[rowCount];
+		for (int row = 0; row < rowCount; row++) {
+			keys[row] = (long) getSpanStartDay(row) << 32 | row;
+		}
+		Arrays.sort(keys);
+		int leafCount = Integer.highestOneBit(Math.max(rowCount, 1));
+		if (leafCount < rowCount)
+			leafCount *= 2;
+		IntBuffer rows = newIntBuffer(rowCount);
+		IntBuffer maxEndDays = newIntBuffer(2 * leafCount);
+		for (int i = 0; i < leafCount; i++) {
+			int endDay = Integer.MIN_VALUE;
+			if (i < rowCount) {
+				int row = (int) keys[i];
+				rows.put(i, row);
+				endDay = (int) Math.floorDiv(Math.max(getSpanEnd(row) - 1, getSpanStart(row)), TimeHelper.MINUTES_PER_DAY);
+			}
+			maxEndDays.put(leafCount + i, endDay);
+		}
+		for (int node = leafCount - 1; node >= 1; node--) {
+			maxEndDays.put(node, Math.max(maxEndDays.get(2 * node), maxEndDays.get(2 * node + 1)));
+		}
+		return new SpanIndex(rows, maxEndDays, leafCount);
+	}
+	
+	/**
+	 * Make a buffer for an index. On the heap unless a subclass keeps its indexes somewhere else
+	 * @param capacity
+	 * @return
+	 */
+	protected IntBuffer newIntBuffer(int capacity) {
+		return IntBuffer.allocate(capacity);
+	}
+	
+	/**
+	 * Called by a subclass after it added rows or anti-tasks, the indexes are built again by the next scan
+	 */
+	protected void rowsChanged() {
+		if (spanIndex != null)
+			spanIndex = null;
+		if (cancelledDays != null)
+			cancelledDays = null;
+	}
+	
+	/**
+	 * The rows sorted by start day, and a tree over them where node n covers nodes 2n and 2n + 1 and
+	 * keeps the latest end day under it. The leaves start at leafCount
+	 */
+	private record SpanIndex(IntBuffer rows, IntBuffer maxEndDays, int leafCount) {
+	}
+}
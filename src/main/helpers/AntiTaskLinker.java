@@ -0,0 +1,120 @@
+package main.helpers;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import main.helpers.DiagnosticLog.Level;
+import main.tasks.AntiTask;
+import main.tasks.RecurringTask;
+import main.tasks.Task;
+
+/**
+ * Collects the tasks read from a schedule file and attaches each anti-task to the
+ * recurring task it cancels. Every parse makes its own linker, so parses running at
+ * the same time do not share any state.
+ * <p>
+ * Linking is done in two passes. {@link AntiTaskLinker#add(Task)} only collects the tasks,
+ * then {@link AntiTaskLinker#getTasks()} indexes the recurring tasks by their start time, duration
+ * and the day of their cycle, and looks every anti-task up in that index. An anti-task can
+ * come before or after its recurring task in the file
+ * @author CTS
+ *
+ */
+class AntiTaskLinker {
+	private final List<Task> taskList;
+	private final List<RecurringTask> seriesList;
+	private final List<AntiTask> antiTaskList;
+	private boolean linked;
+
+	AntiTaskLinker() {
+		this.taskList = new ArrayList<>();
+		this.seriesList = new ArrayList<>();
+		this.antiTaskList = new ArrayList<>();
+	}
+
+	/**
+	 * Add the next task from the file, in the order of the file
+	 * @param task
+	 */
+	void add(Task task) {
+		if (task instanceof AntiTask antiTask) {
+			// anti-tasks are linked to existing reccuring tasks but are technically not a task
+			antiTaskList.add(antiTask);
+		} else {
+			if (task instanceof RecurringTask recTask)
+				seriesList.add(recTask);
+			taskList.add(task);
+		}
+	}
+
+	/**
+	 * Link the anti-tasks collected so far, if that has not been done yet
+	 * @return the transient and recurring tasks in the order they were added
+	 */
+	List<Task> getTasks() {
+		if (!linked) {
+			link();
+			linked = true;
+		}
+		return taskList;
+	}
+
+	/**
+	 * Attach every anti-task to the first recurring task in the file that has an occurance
+	 * with the same date, start time and duration that is not already cancelled.
+	 * Anti-tasks that match nothing are dropped
+	 */
+	private void link() {
+		if (antiTaskList.isEmpty())
+			return;
+
+		// a series occurs on day D when D = start (mod frequency), so the residue of the day
+		// together with the start time and duration picks out the only series that can match
+		Map<SeriesKey, List<Integer>> seriesIndex = new HashMap<>();
+		TreeSet<Integer> frequencies = new TreeSet<>();
+		for (int i = 0; i < seriesList.size(); i++) {
+			RecurringTask series = seriesList.get(i);
+			int frequency = series.getFrequency();
+			if (frequency <= 0)
+				continue;
+			frequencies.add(frequency);
+			SeriesKey key = new SeriesKey(series.getStartMinute(), series.getDurationMinutes(), frequency,
+					Math.floorMod(series.getEpochDay(), frequency));
+			seriesIndex.computeIfAbsent(key, k -> new ArrayList<>()).add(i);
+		}
+
+		for (AntiTask antiTask : antiTaskList) {
+			int day = antiTask.getEpochDay();
+			int match = Integer.MAX_VALUE;
+			for (int frequency : frequencies) {
+				List<Integer> candidates = seriesIndex.get(new SeriesKey(antiTask.getStartMinute(),
+						antiTask.getDurationMinutes(), frequency, Math.floorMod(day, frequency)));
+				if (candidates == null)
+					continue;
+				// candidates are in file order, so the first one that matches is the earliest for this frequency
+				for (int index : candidates) {
+					if (index >= match)
+						break;
+					RecurringTask series = seriesList.get(index);
+					if (series.occursOn(day) && !series.isCancelledOn(day)) {
+						match = index;
+						break;
+					}
+				}
+			}
+			if (match != Integer.MAX_VALUE)
+				seriesList.get(match).addAntiTask(antiTask);
+			else if (DiagnosticLog.isEnabled(Level.WARN))
+				DiagnosticLog.warn("Anti-Task \"" + antiTask.getName() + "\" did not have a matching recurring task");
+		}
+	}
+
+	/**
+	 * What an anti-task has to share with a series to cancel one of its occurances
+	 */
+	private record SeriesKey(int startMinute, int durationMinutes, int frequency, int residue) {
+	}
+}
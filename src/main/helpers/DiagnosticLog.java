@@ -0,0 +1,199 @@
+package main.helpers;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Diagnostic messages of the scheduler, like a task being added or two tasks overlapping. Every message has
+ * a {@link Level}, and messages below {@link DiagnosticLog#getLevel()} are dropped before anything is done with them.
+ * <p>
+ * A message that passes is put in a fixed size ring buffer and printed by a background thread, so the thread that
+ * logged it never waits on the console. Errors and warnings go to System.err, the rest to System.out. If the buffer
+ * is full the message is dropped and counted, see {@link DiagnosticLog#getDroppedCount()}.
+ * <p>
+ * A message that has to be built should be guarded, so nothing is concatenated when the level is off:
+ * <pre>
+ * if (DiagnosticLog.isEnabled(Level.WARN))
+ * 	DiagnosticLog.warn("The " + name + " task overlaps");
+ * </pre>
+ * @author CTS
+ *
+ */
+public final class DiagnosticLog {
+	
+	/**
+	 * How important a message is, from most to least. A level lets through itself and the ones above it
+	 */
+	public enum Level {
+		OFF, ERROR, WARN, INFO, DEBUG
+	}
+	
+	private static final int CAPACITY = 8192;
+	private static final int BATCH = 256;
+	
+	private static volatile Level level = Level.INFO;
+	private static final ArrayBlockingQueue<Event> ring = new ArrayBlockingQueue<>(CAPACITY);
+	private static final AtomicLong published = new AtomicLong();
+	private static final AtomicLong dropped = new AtomicLong();
+	private static final Object writtenLock = new Object();
+	private static long written;
+	private static volatile Thread writer;
+	
+	private DiagnosticLog() {
+	}
+	
+	/**
+	 * One logged message
+	 * @param level
+	 * @param timeMillis when it was logged
+	 * @param thread the name of the thread that logged it
+	 * @param message
+	 */
+	public record Event(Level level, long timeMillis, String thread, String message) {
+	}
+	
+	public static Level getLevel() {
+		return level;
+	}
+	
+	/**
+	 * Set the least important level that still gets printed, {@link Level#OFF} turns logging off
+	 * @param newLevel
+	 */
+	public static void setLevel(Level newLevel) {
+		level = newLevel;
+	}
+	
+	/**
+	 * @param messageLevel
+	 * @return true if a message of this level would be printed
+	 */
+	public static boolean isEnabled(Level messageLevel) {
+		return messageLevel != Level.OFF && messageLevel.ordinal() <= level.ordinal();
+	}
+	
+	public static void error(String message) {
+		log(Level.ERROR, message);
+	}
+	
+	public static void warn(String message) {
+		log(Level.WARN, message);
+	}
+	
+	public static void info(String message) {
+		log(Level.INFO, message);
+	}
+	
+	/**
+	 * Log the message followed by a detail, which is only concatenated if the message is printed
+	 * @param message
+	 * @param detail
+	 */
+	public static void info(String message, String detail) {
+		if (isEnabled(Level.INFO))
+			log(Level.INFO, message + detail);
+	}
+	
+	public static void debug(String message) {
+		log(Level.DEBUG, message);
+	}
+	
+	/**
+	 * Queue a message for the writer thread, if its level is on. Never blocks
+	 * @param messageLevel
+	 * @param message
+	 */
+	public static void log(Level messageLevel, String message) {
+		if (!isEnabled(messageLevel))
+			return;
+		if (writer == null)
+			startWriter();
+		if (ring.offer(new Event(messageLevel, System.currentTimeMillis(), Thread.currentThread().getName(), message)))
+			published.incrementAndGet();
+		else
+			dropped.incrementAndGet();
+	}
+	
+	/**
+	 * @return how many messages were dropped because the buffer was full
+	 */
+	public static long getDroppedCount() {
+		return dropped.get();
+	}
+	
+	/**
+	 * Wait until every message logged before this call has been printed
+	 * @param timeoutMillis the longest to wait
+	 * @return false if the time ran out first
+	 * @throws InterruptedException
+	 */
+	public static boolean flush(long timeoutMillis) throws InterruptedException {
+		long target = published.get();
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		synchronized (writtenLock) {
+			while (written < target) {
+				long left = deadline - System.currentTimeMillis();
+				if (left <= 0)
+					return false;
+				writtenLock.wait(left);
+			}
+		}
+		return true;
+	}
+	
+	private static synchronized void startWriter() {
+		if (writer != null)
+			return;
+		writer = new Thread(DiagnosticLog::drain, "diagnostic-log");
+		writer.setDaemon(true);
+		writer.start();
+		// print what is left when the program ends
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			try {
+				flush(1000);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}));
+	}
+	
+	/**
+	 * The writer thread, prints the messages in the order they were queued
+	 */
+	private static void drain() {
+		List<Event> batch = new ArrayList<>(BATCH);
+		while (true) {
+			try {
+				Event first = ring.poll(1, TimeUnit.SECONDS);
+				if (first == null)
+					continue;
+				batch.add(first);
+				ring.drainTo(batch, BATCH - 1);
+				PrintStream out = System.out, err = System.err;
+				for (Event event : batch) {
+					(event.level() == Level.ERROR || event.level() == Level.WARN ? err : out).println(event.message());
+				}
+				out.flush();
+				err.flush();
+				synchronized (writtenLock) {
+					written += batch.size();
+					writtenLock.notifyAll();
+				}
+				batch.clear();
+			} catch (InterruptedException e) {
+				return;
+			} catch (RuntimeException e) {
+				// a broken stream must not stop the writer, the messages are lost
+				synchronized (writtenLock) {
+					written += batch.size();
+					writtenLock.notifyAll();
+				}
+				batch.clear();
+			}
+		}
+	}
+}
@@ -0,0 +1,514 @@
+package main.helpers;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import main.tasks.AntiTask;
+import main.tasks.RecurringTask;
+import main.tasks.RecurringTask.RecurringTaskType;
+import main.tasks.Task;
+import main.tasks.TransientTask;
+import main.tasks.TransientTask.TransientTaskType;
+
+/**
+ * A single pass JSON reader for schedule files. It goes through the characters once, 
+ * keeps only a small buffer of the input and builds each {@link Task} as soon as its object closes.
+ * Keys and numbers are matched and parsed straight from the buffer, so the only strings 
+ * created are the task names (and types that are not one of the known ones).
+ * <p>
+ * The reader can also work on UTF-8 bytes, like a memory mapped file. Bytes are then read 
+ * straight from the buffer and only the names are decoded.
+ * <p>
+ * Anti-tasks are returned like any other task, in the order they appear. Linking them to
+ * their recurring task is left to {@link JsonHelper}. Does not validate the tasks.
+ * @author CTS
+ *
+ */
+public class JsonScheduleReader {
+	private static final String[] FIELD_NAMES = { "Name", "Type", "StartDate", "Date", "StartTime", "Duration", "EndDate", "Frequency" };
+	private static final int NAME = 0, TYPE = 1, START_DATE = 2, DATE = 3, START_TIME = 4, DURATION = 5, END_DATE = 6, FREQUENCY = 7;
+	private static final int UNKNOWN_FIELD = -1;
+	private static final String CANCELLATION = "Cancellation";
+	
+	private static final int BYTE_ORDER_MARK = 0xEFBBBF;
+	
+	// only one of reader and bytes is used
+	private final Reader reader;
+	private final ByteBuffer bytes;
+	private final char[] buffer;
+	private int position;
+	private int limit;
+	private long consumed;
+	
+	// the characters of the last string or number that was read
+	private char[] scratch = new char[64];
+	private int scratchLength;
+	// where the '?' standing in for an escaped high surrogate ends, -1 if the last escape was not one
+	private int highSurrogateEnd = -1;
+	private char highSurrogate;
+	
+	// the fields of the object being read
+	private String name;
+	private String type;
+	private RecurringTaskType recurringType;
+	private TransientTaskType transientType;
+	private boolean isCancellation;
+	private int date, endDate, frequency;
+	private float startTime, duration;
+	
+	/**
+	 * @param reader the JSON input, it is read in chunks so it does not need to be buffered
+	 */
+	public JsonScheduleReader(Reader reader) {
+		this.reader = reader;
+		this.bytes = null;
+		this.buffer = new char[8192];
+	}
+	
+	/**
+	 * Read UTF-8 JSON straight from a byte buffer, from its position to its limit
+	 * @param bytes the JSON input, usually a {@link java.nio.MappedByteBuffer}
+	 */
+	public JsonScheduleReader(ByteBuffer bytes) {
+		this.reader = null;
+		this.bytes = bytes;
+		this.buffer = null;
+		if (bytes.remaining() >= 3) {
+			int start = bytes.position();
+			int mark = (bytes.get(start) & 0xFF) << 16 | (bytes.get(start + 1) & 0xFF) << 8 | (bytes.get(start + 2) & 0xFF);
+			if (mark == BYTE_ORDER_MARK)
+				bytes.position(start + 3);
+		}
+	}
+	
+	/**
+	 * Read every task in the file into a list
+	 * @return the tasks, including anti-tasks, in the order of the file
+	 * @throws IOException if the input could not be read or is not valid JSON
+	 * @throws Exception if a task has a type that could not be determined
+	 */
+	public List<Task> readTasks() throws Exception {
+		List<Task> taskList = new ArrayList<>();
+		readTasks(taskList::add);
+		return taskList;
+	}
+	
+	/**
+	 * Read the tasks one at a time and pass each to the consumer as soon as its object is closed.
+	 * The file may be a single object, an array of objects, or a run of objects separated by
+	 * commas (a chunk cut out of an array). Nothing but white space may follow
+	 * @param consumer
+	 * @throws IOException if the input could not be read or is not valid JSON
+	 * @throws Exception if a task has a type that could not be determined
+	 */
+	public void readTasks(Consumer<? super Task> consumer) throws Exception {
+		int c = nextToken();
+		if (c == '{') {
+			consumer.accept(readTask());
+			while ((c = nextToken()) == ',') {
+				c = nextToken();
+				if (c != '{')
+					throw error("Expected '{'", c);
+				consumer.accept(readTask());
+			}
+			if (c != -1)
+				throw error("Expected ',' or end of input", c);
+		} else if (c == '[') {
+			c = nextToken();
+			if (c != ']') {
+				while (true) {
+					if (c != '{')
+						throw error("Expected '{'", c);
+					consumer.accept(readTask());
+					c = nextToken();
+					if (c == ']')
+						break;
+					if (c != ',')
+						throw error("Expected ',' or ']'", c);
+					c = nextToken();
+				}
+			}
+			c = nextToken();
+			if (c != -1)
+				throw error("Expected end of input", c);
+		} else if (c != -1) {
+			throw error("Expected '[' or '{'", c);
+		}
+	}
+	
+	/**
+	 * Read the fields of an object (the '{' has been read) and build its task
+	 */
+	private Task readTask() throws Exception {
+		name = "";
+		type = "";
+		recurringType = null;
+		transientType = TransientTaskType.NONE;
+		isCancellation = false;
+		date = endDate = frequency = 0;
+		startTime = duration = 0F;
+		
+		int c = nextToken();
+		if (c != '}') {
+			while (true) {
+				if (c != '"')
+					throw error("Expected a key", c);
+				readString();
+				int field = matchField();
+				c = nextToken();
+				if (c != ':')
+					throw error("Expected ':'", c);
+				readField(field);
+				c = nextToken();
+				if (c == '}')
+					break;
+				if (c != ',')
+					throw error("Expected ',' or '}'", c);
+				c = nextToken();
+			}
+		}
+		return buildTask();
+	}
+	
+	private void readField(int field) throws IOException {
+		int c = nextToken();
+		switch (field) {
+		case NAME:
+			readScalar(c);
+			name = decodeScratch();
+			break;
+		case TYPE:
+			readScalar(c);
+			matchType();
+			break;
+		case START_DATE:
+		case DATE:
+			readScalar(c);
+			date = (int) parseLong();
+			break;
+		case END_DATE:
+			readScalar(c);
+			endDate = (int) parseLong();
+			break;
+		case FREQUENCY:
+			readScalar(c);
+			frequency = (int) parseLong();
+			break;
+		case START_TIME:
+			readScalar(c);
+			startTime = parseFloat();
+			break;
+		case DURATION:
+			readScalar(c);
+			duration = parseFloat();
+			break;
+		default:
+			skipValue(c);
+			break;
+		}
+	}
+	
+	private Task buildTask() throws Exception {
+		if (recurringType != null)
+			return new RecurringTask(name, recurringType, date, endDate, startTime, duration, frequency);
+		if (transientType != TransientTaskType.NONE)
+			return new TransientTask(name, transientType, date, startTime, duration);
+		if (isCancellation)
+			return new AntiTask(name, CANCELLATION, date, startTime, duration);
+		// Not any of the 3 task types
+		throw new Exception("Task type not defined");
+	}
+	
+	// <------------------ Matching without strings -------------------------->
+	
+	private int matchField() {
+		for (int field = 0; field < FIELD_NAMES.length; field++) {
+			if (scratchEquals(FIELD_NAMES[field]))
+				return field;
+		}
+		return UNKNOWN_FIELD;
+	}
+	
+	/**
+	 * Find the type in the task type enums, only making a string if it is not a known type
+	 */
+	private void matchType() {
+		for (RecurringTaskType taskType : RecurringTaskType.values()) {
+			if (scratchEquals(taskType.getId())) {
+				recurringType = taskType;
+				type = taskType.getId();
+				return;
+			}
+		}
+		for (TransientTaskType taskType : TransientTaskType.values()) {
+			if (taskType != TransientTaskType.NONE && scratchEquals(taskType.getId())) {
+				transientType = taskType;
+				type = taskType.getId();
+				return;
+			}
+		}
+		if (scratchEquals(CANCELLATION)) {
+			isCancellation = true;
+			type = CANCELLATION;
+			return;
+		}
+		type = decodeScratch();
+	}
+	
+	/**
+	 * Turn the scratch buffer into a string. When reading bytes, the scratch buffer holds 
+	 * UTF-8 bytes, which only need decoding if one of them is not ASCII
+	 */
+	private String decodeScratch() {
+		if (bytes == null)
+			return new String(scratch, 0, scratchLength);
+		boolean ascii = true;
+		for (int i = 0; i < scratchLength && ascii; i++) {
+			ascii = scratch[i] < 0x80;
+		}
+		if (ascii)
+			return new String(scratch, 0, scratchLength);
+		byte[] utf8 = new byte[scratchLength];
+		for (int i = 0; i < scratchLength; i++) {
+			utf8[i] = (byte) scratch[i];
+		}
+		return new String(utf8, StandardCharsets.UTF_8);
+	}
+	
+	private boolean scratchEquals(String value) {
+		if (value.length() != scratchLength)
+			return false;
+		for (int i = 0; i < scratchLength; i++) {
+			if (scratch[i] != value.charAt(i))
+				return false;
+		}
+		return true;
+	}
+	
+	private long parseLong() throws IOException {
+		if (scratchLength == 0)
+			throw error("Expected a number", -1);
+		boolean negative = scratch[0] == '-';
+		long value = 0;
+		for (int i = negative ? 1 : 0; i < scratchLength; i++) {
+			char digit = scratch[i];
+			if (digit < '0' || digit > '9')
+				throw error("Expected a whole number", digit);
+			value = value * 10 + (digit - '0');
+		}
+		return negative ? -value : value;
+	}
+	
+	/**
+	 * Parse a decimal number like 17, 1.25 or "10.0". Falls back to {@link Float#parseFloat(String)}
+	 * for anything with an exponent or too many digits
+	 */
+	private float parseFloat() throws IOException {
+		if (scratchLength == 0)
+			throw error("Expected a number", -1);
+		boolean negative = scratch[0] == '-';
+		long mantissa = 0;
+		int decimals = -1;
+		for (int i = negative ? 1 : 0; i < scratchLength; i++) {
+			char c = scratch[i];
+			if (c >= '0' && c <= '9' && mantissa < 100_000_000_000_000L) {
+				mantissa = mantissa * 10 + (c - '0');
+				if (decimals >= 0)
+					decimals++;
+			} else if (c == '.' && decimals < 0) {
+				decimals = 0;
+			} else {
+				try {
+					return Float.parseFloat(new String(scratch, 0, scratchLength));
+				} catch (NumberFormatException e) {
+					throw error("Expected a number", c);
+				}
+			}
+		}
+		double value = mantissa;
+		for (int i = 0; i < decimals; i++) {
+			value /= 10;
+		}
+		return (float) (negative ? -value : value);
+	}
+	
+	// <------------------ Tokenizer -------------------------->
+	
+	/**
+	 * Read a string, or a bare number/literal, into the scratch buffer
+	 * @param c the first character of the value
+	 */
+	private void readScalar(int c) throws IOException {
+		if (c == '"') {
+			readString();
+			return;
+		}
+		scratchLength = 0;
+		while (c != -1 && c != ',' && c != '}' && c != ']' && !isWhitespace(c)) {
+			if (c == '{' || c == '[' || c == '"' || c == ':')
+				throw error("Unexpected character in value", c);
+			append((char) c);
+			c = read();
+		}
+		if (scratchLength == 0)
+			throw error("Expected a value", c);
+		// the character that ended the value belongs to the caller
+		if (c != -1)
+			unread();
+	}
+	
+	/**
+	 * Read a string (the opening quote has been read) into the scratch buffer
+	 */
+	private void readString() throws IOException {
+		scratchLength = 0;
+		highSurrogateEnd = -1;
+		while (true) {
+			int c = read();
+			if (c == '"')
+				return;
+			if (c == -1)
+				throw error("Unterminated string", c);
+			if (c == '\\') {
+				c = read();
+				switch (c) {
+				case 'n': c = '\n'; break;
+				case 't': c = '\t'; break;
+				case 'r': c = '\r'; break;
+				case 'b': c = '\b'; break;
+				case 'f': c = '\f'; break;
+				case 'u':
+					int code = 0;
+					for (int i = 0; i < 4; i++) {
+						int hex = Character.digit(read(), 16);
+						if (hex < 0)
+							throw error("Invalid unicode escape", c);
+						code = code * 16 + hex;
+					}
+					if (bytes != null) {
+						// keep the scratch buffer all UTF-8 bytes
+						appendUtf8(code);
+						continue;
+					}
+					c = code;
+					break;
+				case '"':
+				case '\\':
+				case '/':
+					break;
+				default:
+					throw error("Invalid escape", c);
+				}
+			}
+			append((char) c);
+		}
+	}
+	
+	/**
+	 * Skip a value of a key that is not used by any task, including nested objects and arrays
+	 */
+	private void skipValue(int c) throws IOException {
+		if (c == '{' || c == '[') {
+			int depth = 1;
+			while (depth > 0) {
+				c = read();
+				if (c == -1)
+					throw error("Unexpected end of input", c);
+				if (c == '"')
+					readString();
+				else if (c == '{' || c == '[')
+					depth++;
+				else if (c == '}' || c == ']')
+					depth--;
+			}
+		} else {
+			readScalar(c);
+		}
+	}
+	
+	/**
+	 * Append a character from a unicode escape as UTF-8 bytes. A surrogate pair is two escapes, the
+	 * high half is held as a '?' until the low half right after it turns both into one 4-byte sequence.
+	 * A lone half of a pair can not be encoded on its own, so it stays '?'
+	 */
+	private void appendUtf8(int code) {
+		if (Character.isLowSurrogate((char) code) && highSurrogateEnd == scratchLength) {
+			int codePoint = Character.toCodePoint(highSurrogate, (char) code);
+			scratchLength--;
+			highSurrogateEnd = -1;
+			append((char) (0xF0 | codePoint >> 18));
+			append((char) (0x80 | codePoint >> 12 & 0x3F));
+			append((char) (0x80 | codePoint >> 6 & 0x3F));
+			append((char) (0x80 | codePoint & 0x3F));
+		} else if (code < 0x80) {
+			append((char) code);
+		} else if (code < 0x800) {
+			append((char) (0xC0 | code >> 6));
+			append((char) (0x80 | code & 0x3F));
+		} else if (Character.isSurrogate((char) code)) {
+			append('?');
+			if (Character.isHighSurrogate((char) code)) {
+				highSurrogate = (char) code;
+				highSurrogateEnd = scratchLength;
+			}
+		} else {
+			append((char) (0xE0 | code >> 12));
+			append((char) (0x80 | code >> 6 & 0x3F));
+			append((char) (0x80 | code & 0x3F));
+		}
+	}
+	
+	private void append(char c) {
+		if (scratchLength == scratch.length)
+			scratch = java.util.Arrays.copyOf(scratch, scratch.length * 2);
+		scratch[scratchLength++] = c;
+	}
+	
+	/**
+	 * Get the next character that is not whitespace
+	 */
+	private int nextToken() throws IOException {
+		int c = read();
+		while (isWhitespace(c)) {
+			c = read();
+		}
+		return c;
+	}
+	
+	private int read() throws IOException {
+		if (bytes != null)
+			return bytes.hasRemaining() ? bytes.get() & 0xFF : -1;
+		if (position == limit) {
+			consumed += limit;
+			limit = reader.read(buffer, 0, buffer.length);
+			position = 0;
+			if (limit <= 0) {
+				limit = 0;
+				return -1;
+			}
+		}
+		return buffer[position++];
+	}
+	
+	private void unread() {
+		if (bytes != null)
+			bytes.position(bytes.position() - 1);
+		else
+			position--;
+	}
+	
+	private static boolean isWhitespace(int c) {
+		return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+	}
+	
+	private IOException error(String message, int c) {
+		String found = c == -1 ? "end of input" : "'" + (char) c + "'";
+		long offset = bytes != null ? bytes.position() : consumed + position;
+		return new IOException(message + " but found " + found + " at character " + offset);
+	}
+}
@@ -0,0 +1,224 @@
+package main.helpers;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.Writer;
+
+import main.tasks.AntiTask;
+import main.tasks.RecurringTask;
+import main.tasks.Task;
+import main.tasks.TransientTask;
+
+/**
+ * Writes tasks as JSON straight into a {@link Writer}, in the same layout the schedule files
+ * have always used. Numbers are written digit by digit from a reusable buffer, so no string
+ * is built per field. The anti-tasks of a recurring task are written right after it as
+ * "Cancellation" objects, which {@link JsonHelper} links back up when reading.
+ * @author CTS
+ *
+ */
+public class JsonScheduleWriter implements Closeable {
+	private final Writer writer;
+	private final char[] digits = new char[20];
+	private boolean firstTask = true;
+	
+	/**
+	 * @param writer where the JSON goes, it should be buffered
+	 */
+	public JsonScheduleWriter(Writer writer) {
+		this.writer = writer;
+	}
+	
+	/**
+	 * Write a whole task list as a JSON array
+	 * @param taskList
+	 * @throws IOException
+	 */
+	public void writeTasks(Iterable<? extends Task> taskList) throws IOException {
+		beginArray();
+		for (Task task$iterator : taskList) {
+			writeTask(task$iterator);
+		}
+		endArray();
+	}
+	
+	public void beginArray() throws IOException {
+		writer.write("[\n");
+		firstTask = true;
+	}
+	
+	public void endArray() throws IOException {
+		writer.write("\n]");
+	}
+	
+	/**
+	 * Write one task as an object in the array. Recurring tasks are followed by their anti-tasks
+	 * @param task
+	 * @throws InvalidObjectException if the task is not one of the 3 kinds of task
+	 * @throws IOException
+	 */
+	public void writeTask(Task task) throws IOException {
+		if (task instanceof TransientTask) {
+			writeTransientTask(task.getName(), task.getType(), task.getDate(), task.getStartTime(), task.getDuration());
+		} else if (task instanceof RecurringTask recurringTask) {
+			writeRecurringTask(recurringTask.getName(), recurringTask.getType(), recurringTask.getDate(), recurringTask.getStartTime(), 
+					recurringTask.getDuration(), recurringTask.getEndDate(), recurringTask.getFrequency());
+			for (AntiTask antiTask : recurringTask.getCancelledOccurances()) {
+				writeTask(antiTask);
+			}
+		} else if (task instanceof AntiTask antiTask) {
+			writeAntiTask(antiTask.getName(), antiTask.getDate(), antiTask.getStartTime(), antiTask.getDuration());
+		} else {
+			throw new InvalidObjectException("Task could not be added");
+		}
+	}
+	
+	/**
+	 * Write a transient task from its fields, without a task object
+	 * @throws IOException
+	 */
+	public void writeTransientTask(String name, String type, int date, float startTime, float duration) throws IOException {
+		beginObject();
+		writeStringField("Name", name, true);
+		writeStringField("Type", type, true);
+		writeIntField("Date", date, true);
+		writeFloatField("StartTime", startTime, true);
+		writeFloatField("Duration", duration, false);
+		endObject();
+	}
+	
+	/**
+	 * Write a recurring task from its fields, without a task object. Its anti-tasks have to be written right after it
+	 * @throws IOException
+	 */
+	public void writeRecurringTask(String name, String type, int startDate, float startTime, float duration, int endDate, int frequency) throws IOException {
+		beginObject();
+		writeStringField("Name", name, true);
+		writeStringField("Type", type, true);
+		writeIntField("StartDate", startDate, true);
+		writeFloatField("StartTime", startTime, true);
+		writeFloatField("Duration", duration, true);
+		writeIntField("EndDate", endDate, true);
+		writeIntField("Frequency", frequency, false);
+		endObject();
+	}
+	
+	/**
+	 * Write an anti-task from its fields, without a task object
+	 * @throws IOException
+	 */
+	public void writeAntiTask(String name, int date, float startTime, float duration) throws IOException {
+		beginObject();
+		writeStringField("Name", name, true);
+		writeStringField("Type", "Cancellation", true);
+		writeIntField("Date", date, true);
+		writeFloatField("StartTime", startTime, true);
+		writeFloatField("Duration", duration, false);
+		endObject();
+	}
+	
+	public void flush() throws IOException {
+		writer.flush();
+	}
+	
+	@Override
+	public void close() throws IOException {
+		writer.close();
+	}
+	
+	// <------------------ Field output -------------------------->
+	
+	private void beginObject() throws IOException {
+		writer.write(firstTask ? "\t{\n" : ",\n\t{\n");
+		firstTask = false;
+	}
+	
+	private void endObject() throws IOException {
+		writer.write("\t}");
+	}
+	
+	private void writeKey(String key) throws IOException {
+		writer.write("\t\t\"");
+		writer.write(key);
+		writer.write("\":\"");
+	}
+	
+	private void endField(boolean more) throws IOException {
+		writer.write(more ? "\",\n" : "\"\n");
+	}
+	
+	private void writeStringField(String key, String value, boolean more) throws IOException {
+		writeKey(key);
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"': writer.write("\\\""); break;
+			case '\\': writer.write("\\\\"); break;
+			case '\n': writer.write("\\n"); break;
+			case '\r': writer.write("\\r"); break;
+			case '\t': writer.write("\\t"); break;
+			default:
+				if (c < 0x20) {
+					writer.write("\\u00");
+					writer.write(Character.forDigit(c >> 4, 16));
+					writer.write(Character.forDigit(c & 0xF, 16));
+				} else {
+					writer.write(c);
+				}
+			}
+		}
+		endField(more);
+	}
+	
+	private void writeIntField(String key, long value, boolean more) throws IOException {
+		writeKey(key);
+		writeLong(value);
+		endField(more);
+	}
+	
+	/**
+	 * Writes the float the same way {@link Float#toString(float)} would. Times and durations are
+	 * in quarter hours, so they are written from their hundredths without a string
+	 */
+	private void writeFloatField(String key, float value, boolean more) throws IOException {
+		writeKey(key);
+		double hundredths = value * 100.0;
+		if (Math.abs(value) < 1e7f && hundredths == Math.rint(hundredths)) {
+			long fixed = (long) hundredths;
+			if (fixed < 0 || (fixed == 0 && 1 / value < 0)) {
+				writer.write('-');
+				fixed = -fixed;
+			}
+			writeLong(fixed / 100);
+			writer.write('.');
+			int fraction = (int) (fixed % 100);
+			if (fraction % 10 == 0) {
+				writer.write('0' + fraction / 10);
+			} else {
+				writer.write('0' + fraction / 10);
+				writer.write('0' + fraction % 10);
+			}
+		} else {
+			writer.write(Float.toString(value));
+		}
+		endField(more);
+	}
+	
+	private void writeLong(long value) throws IOException {
+		if (value < 0) {
+			writer.write('-');
+			if (value == Long.MIN_VALUE) {
+				writer.write("9223372036854775808");
+				return;
+			}
+			value = -value;
+		}
+		int start = digits.length;
+		do {
+			digits[--start] = (char) ('0' + value % 10);
+			value /= 10;
+		} while (value != 0);
+		writer.write(digits, start, digits.length - start);
+	}
+}
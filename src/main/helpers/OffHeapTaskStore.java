@@ -0,0 +1,353 @@
+package main.helpers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+
+import main.tasks.Task;
+
+/**
+ * Holds a very large schedule outside of the heap. The rows are read straight from the bytes of a snapshot
+ * (see {@link SnapshotHelper}), either a snapshot file mapped into memory or a direct buffer the store was
+ * copied into, so the garbage collector only ever sees a handful of buffer objects however many tasks there are.
+ * The indexes built when the store is opened (where each string and row starts, and a hash table of the names)
+ * are direct buffers as well, and so is the span index built by the first scan.
+ * {@link main.Scheduler#mapSnapshot(String)} runs a schedule on a mapped snapshot.
+ * <p>
+ * A row is its 24 byte record and 4 bytes of index. The anti-tasks of a row are the records right after it, so
+ * the numbers {@link AbstractTaskStore#getCancellationStart(int)} hands out are record numbers.
+ * Like {@link TaskStore}, a {@link Task} is only built when one is asked for, and it is a copy.
+ * <p>
+ * The store can not be changed and reads never move a buffer position, so it can be read from any number of threads.
+ * A store is limited to a 2GB snapshot, about 89 million records
+ * @author CTS
+ *
+ */
+public final class OffHeapTaskStore extends AbstractTaskStore {
+	private final ByteBuffer snapshot;
+	private final int recordStart;
+	private final int recordCount;
+	private final int stringCount;
+	
+	/** Where the length of string i is in the snapshot, its UTF-8 bytes follow */
+	private final IntBuffer stringPositions;
+	private final IntBuffer stringHashes;
+	/** Open addressing table of string numbers by hash, -1 is empty */
+	private final IntBuffer stringTable;
+	/** The first row of each name, -1 if no row has it */
+	private final IntBuffer rowsByName;
+	/** The record of each row, plus the record count at the end */
+	private final IntBuffer rowRecords;
+	private final int rowCount;
+	
+	private OffHeapTaskStore(ByteBuffer snapshot) throws IOException {
+		this.snapshot = snapshot;
+		if (snapshot.capacity() < SnapshotHelper.HEADER_BYTES || snapshot.getInt(0) != SnapshotHelper.MAGIC)
+			throw new IOException("Not a schedule snapshot");
+		short version = snapshot.getShort(4);
+		if (version != SnapshotHelper.VERSION)
+			throw new IOException("Unsupported snapshot version: " + version);
+		this.stringCount = snapshot.getInt(8);
+		this.recordCount = snapshot.getInt(12);
+		// every string takes at least its length, so a bigger count can not be right and is not allocated
+		if (stringCount < 0 || recordCount < 0
+				|| stringCount > (snapshot.capacity() - SnapshotHelper.HEADER_BYTES) / Integer.BYTES)
+			throw new IOException("Snapshot header is broken");
+	
+		this.stringPositions = newIntBuffer(stringCount);
+		this.stringHashes = newIntBuffer(stringCount);
+		int position = SnapshotHelper.HEADER_BYTES;
+		for (int id = 0; id < stringCount; id++) {
+			if (snapshot.capacity() - position < Integer.BYTES)
+				throw new IOException("Snapshot is cut short in the dictionary");
+			int length = snapshot.getInt(position);
+			if (length < 0 || snapshot.capacity() - position - Integer.BYTES < length)
+				throw new IOException("Snapshot is cut short in the dictionary");
+			stringPositions.put(id, position);
+			stringHashes.put(id, hash(position + Integer.BYTES, length));
+			position += Integer.BYTES + length;
+		}
+		this.recordStart = position;
+		if (snapshot.capacity() - recordStart < (long) recordCount * SnapshotHelper.RECORD_BYTES)
+			throw new IOException("Snapshot is cut short, expected " + recordCount + " records");
+	
+		this.stringTable = newIntBuffer(Integer.highestOneBit(Math.max(stringCount, 8)) * 4);
+		for (int slot = 0; slot < stringTable.capacity(); slot++) {
+			stringTable.put(slot, -1);
+		}
+		for (int id = 0; id < stringCount; id++) {
+			int slot = findSlot(stringPositions.get(id) + Integer.BYTES, snapshot.getInt(stringPositions.get(id)), stringHashes.get(id));
+			if (stringTable.get(slot) < 0)
+				stringTable.put(slot, id);
+		}
+		this.rowsByName = newIntBuffer(stringCount);
+		for (int id = 0; id < stringCount; id++) {
+			rowsByName.put(id, -1);
+		}
+		this.rowCount = indexRows();
+		this.rowRecords = newIntBuffer(rowCount + 1);
+		int row = 0;
+		for (int record = 0; record < recordCount; record++) {
+			if (kindOf(record) != SnapshotHelper.KIND_ANTI_TASK) {
+				rowRecords.put(row, record);
+				int nameId = snapshot.getInt(recordPosition(record) + 4);
+				if (rowsByName.get(nameId) < 0)
+					rowsByName.put(nameId, row);
+				row++;
+			}
+		}
+		rowRecords.put(rowCount, recordCount);
+	}
+	
+	/**
+	 * Open a snapshot file as a store. The file is mapped read-only and never copied, so the store
+	 * must not outlive changes to the file
+	 * @param path
+	 * @return
+	 * @throws IOException if the file can not be read or is not a snapshot
+	 */
+	public static OffHeapTaskStore map(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE)
+				throw new IOException("The snapshot is " + channel.size() + " bytes, too big for one buffer");
+			return new OffHeapTaskStore(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+	
+	/**
+	 * Copy a store into memory outside of the heap
+	 * @param store
+	 * @return
+	 * @throws IOException if the store is too big for one buffer
+	 */
+	public static OffHeapTaskStore copyOf(AbstractTaskStore store) throws IOException {
+		return new OffHeapTaskStore(SnapshotHelper.writeSnapshotBuffer(store));
+	}
+	
+	/**
+	 * Copy tasks into memory outside of the heap
+	 * @param taskList
+	 * @return
+	 * @throws IOException if the tasks are too many for one buffer
+	 */
+	public static OffHeapTaskStore of(Collection<Task> taskList) throws IOException {
+		return copyOf(TaskStore.of(taskList));
+	}
+	
+	@Override
+	public int getStringId(String value) {
+		byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+		int hash = Arrays.hashCode(utf8);
+		int mask = stringTable.capacity() - 1;
+		for (int slot = (hash ^ (hash >>> 16)) & mask; ; slot = (slot + 1) & mask) {
+			int id = stringTable.get(slot);
+			if (id < 0)
+				return -1;
+			int position = stringPositions.get(id);
+			if (stringHashes.get(id) == hash && equalsAt(position + Integer.BYTES, snapshot.getInt(position), utf8))
+				return id;
+		}
+	}
+	
+	/**
+	 * Decode a string of the dictionary, a new string every time
+	 * @param id
+	 * @return
+	 */
+	@Override
+	public String getString(int id) {
+		if (id < 0 || id >= stringCount)
+			throw new IndexOutOfBoundsException("No string " + id);
+		int position = stringPositions.get(id);
+		byte[] utf8 = new byte[snapshot.getInt(position)];
+		snapshot.get(position + Integer.BYTES, utf8);
+		return new String(utf8, StandardCharsets.UTF_8);
+	}
+	
+	@Override
+	public int getStringCount() {
+		return stringCount;
+	}
+	
+	@Override
+	public int size() {
+		return rowCount;
+	}
+	
+	@Override
+	public int getCancellationCount() {
+		return recordCount - rowCount;
+	}
+	
+	@Override
+	public int findRow(String taskName) {
+		int id = getStringId(taskName);
+		return id < 0 ? -1 : rowsByName.get(id);
+	}
+	
+	// <------------------ Columns -------------------------->
+	
+	@Override
+	public byte getKind(int row) {
+		return snapshot.get(rowPosition(row));
+	}
+	
+	@Override
+	public int getNameId(int row) {
+		return snapshot.getInt(rowPosition(row) + 4);
+	}
+	
+	@Override
+	public int getTypeId(int row) {
+		return snapshot.getInt(rowPosition(row) + 8);
+	}
+	
+	@Override
+	public int getEpochDay(int row) {
+		return snapshot.getInt(rowPosition(row) + 12);
+	}
+	
+	@Override
+	public int getEndEpochDay(int row) {
+		return snapshot.getInt(rowPosition(row) + 16);
+	}
+	
+	@Override
+	public int getStartMinute(int row) {
+		return snapshot.getShort(rowPosition(row) + 20);
+	}
+	
+	@Override
+	public int getDurationMinutes(int row) {
+		return snapshot.getShort(rowPosition(row) + 22);
+	}
+	
+	@Override
+	public int getFrequency(int row) {
+		return snapshot.getShort(rowPosition(row) + 2);
+	}
+	
+	@Override
+	public int getCancellationStart(int row) {
+		return rowRecords.get(row) + 1;
+	}
+	
+	@Override
+	public int getCancellationEnd(int row) {
+		return rowRecords.get(row + 1);
+	}
+	
+	@Override
+	public int getCancellationNameId(int cancellation) {
+		return snapshot.getInt(recordPosition(cancellation) + 4);
+	}
+	
+	@Override
+	public int getCancellationDay(int cancellation) {
+		return snapshot.getInt(recordPosition(cancellation) + 12);
+	}
+	
+	@Override
+	public int getCancellationStartMinute(int cancellation) {
+		return snapshot.getShort(recordPosition(cancellation) + 20);
+	}
+	
+	@Override
+	public int getCancellationDurationMinutes(int cancellation) {
+		return snapshot.getShort(recordPosition(cancellation) + 22);
+	}
+	
+	// <------------------ Layout -------------------------->
+	
+	private int rowPosition(int row) {
+		if (row < 0 || row >= rowCount)
+			throw new IndexOutOfBoundsException("No row " + row);
+		return recordPosition(rowRecords.get(row));
+	}
+	
+	private int recordPosition(int record) {
+		return recordStart + record * SnapshotHelper.RECORD_BYTES;
+	}
+	
+	private byte kindOf(int record) {
+		return snapshot.get(recordPosition(record));
+	}
+	
+	/**
+	 * Check every record once and count the rows
+	 */
+	private int indexRows() throws IOException {
+		int rows = 0;
+		byte lastKind = -1;
+		for (int record = 0; record < recordCount; record++) {
+			int position = recordPosition(record);
+			byte kind = snapshot.get(position);
+			int nameId = snapshot.getInt(position + 4);
+			int typeId = snapshot.getInt(position + 8);
+			if (nameId < 0 || nameId >= stringCount || typeId < 0 || typeId >= stringCount)
+				throw new IOException("Record " + record + " points outside the dictionary");
+			if (kind == SnapshotHelper.KIND_ANTI_TASK) {
+				if (lastKind != SnapshotHelper.KIND_RECURRING)
+					throw new IOException("Anti-task record " + record + " does not follow a recurring task");
+				continue;
+			}
+			if (kind != SnapshotHelper.KIND_TRANSIENT && kind != SnapshotHelper.KIND_RECURRING)
+				throw new IOException("Unknown record kind " + kind + " at record " + record);
+			lastKind = kind;
+			rows++;
+		}
+		return rows;
+	}
+	
+	/**
+	 * The same hash {@link Arrays#hashCode(byte[])} gives the bytes
+	 */
+	private int hash(int position, int length) {
+		int hash = 1;
+		for (int i = 0; i < length; i++) {
+			hash = 31 * hash + snapshot.get(position + i);
+		}
+		return hash;
+	}
+	
+	private boolean equalsAt(int position, int length, byte[] utf8) {
+		if (length != utf8.length)
+			return false;
+		for (int i = 0; i < length; i++) {
+			if (snapshot.get(position + i) != utf8[i])
+				return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Find the slot of the table that has the string at the position, or the empty slot it would go in
+	 */
+	private int findSlot(int position, int length, int hash) {
+		int mask = stringTable.capacity() - 1;
+		for (int slot = (hash ^ (hash >>> 16)) & mask; ; slot = (slot + 1) & mask) {
+			int id = stringTable.get(slot);
+			if (id < 0)
+				return slot;
+			int other = stringPositions.get(id);
+			if (stringHashes.get(id) == hash && snapshot.getInt(other) == length
+					&& snapshot.slice(other + Integer.BYTES, length).equals(snapshot.slice(position, length)))
+				return slot;
+		}
+	}
+	
+	/**
+	 * The indexes, the span index included, are kept outside of the heap as well
+	 */
+	@Override
+	protected IntBuffer newIntBuffer(int capacity) {
+		return ByteBuffer.allocateDirect(capacity * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer();
+	}
+}
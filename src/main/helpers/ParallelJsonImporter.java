@@ -0,0 +1,242 @@
+package main.helpers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import main.tasks.Task;
+
+/**
+ * Imports a large JSON schedule on a fork-join pool. The array is cut into chunks at the 
+ * boundaries of its top level objects, every chunk is parsed by its own {@link JsonScheduleReader}
+ * into its own list, and the lists are then joined in file order. Anti-tasks are linked to their
+ * recurring task after the join, in file order, so the result is the same as a sequential parse.
+ * The importer takes exactly the input the sequential {@link JsonScheduleReader} takes, and when the
+ * array can not be cut the sequential reader is run on it to throw the same error.
+ * @author CTS
+ *
+ */
+class ParallelJsonImporter {
+	/** Chunks smaller than this are not worth handing to another thread */
+	private static final int MIN_CHUNK_BYTES = 64 * 1024;
+	/** More chunks than threads so a slow chunk doesn't hold up the rest */
+	private static final int CHUNKS_PER_THREAD = 4;
+	
+	private final ForkJoinPool pool;
+	
+	ParallelJsonImporter(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+	
+	/**
+	 * Parse UTF-8 JSON from the position to the limit of the buffer
+	 * @param json
+	 * @return the transient and recurring tasks, anti-tasks attached
+	 * @throws Exception When the JSON is malformed or a task type could not be determined
+	 */
+	List<Task> importTasks(ByteBuffer json) throws Exception {
+		AntiTaskLinker linker = new AntiTaskLinker();
+		if (firstByte(json) != '[') {
+			// a single object or a run of them has nothing to split, the reader takes it as is
+			new JsonScheduleReader(json.duplicate()).readTasks(linker::add);
+			return linker.getTasks();
+		}
+		int maxChunks = Math.max(1, Math.min(pool.getParallelism() * CHUNKS_PER_THREAD, json.remaining() / MIN_CHUNK_BYTES));
+		List<int[]> chunks;
+		try {
+			chunks = findChunks(json, maxChunks);
+		} catch (IOException e) {
+			// the sequential reader finds the same mistake and says where it is the same way
+			new JsonScheduleReader(json.duplicate()).readTasks();
+			throw e;
+		}
+		
+		List<List<Task>> parsedChunks;
+		try {
+			parsedChunks = pool.invoke(new ChunkParser(json, chunks, 0, chunks.size()));
+		} catch (RuntimeException e) {
+			throw unwrap(e);
+		}
+		
+		// the merge is sequential and in file order, which keeps the linking deterministic
+		for (List<Task> chunk : parsedChunks) {
+			for (Task task : chunk) {
+				linker.add(task);
+			}
+		}
+		return linker.getTasks();
+	}
+	
+	/**
+	 * The pool wraps what a chunk threw, maybe more than once if it was joined on another thread.
+	 * Dig out what the reader threw, the first checked exception in the chain, so callers see the
+	 * same exception a sequential parse would give
+	 * @param e
+	 * @return
+	 */
+	static Exception unwrap(RuntimeException e) {
+		Exception innermost = e;
+		for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+			if (!(cause instanceof Exception exception))
+				break;
+			if (!(exception instanceof RuntimeException))
+				return exception;
+			innermost = exception;
+		}
+		return innermost;
+	}
+	
+	/**
+	 * @param json
+	 * @return the first byte that is not white space, -1 if there is none
+	 */
+	private static int firstByte(ByteBuffer json) {
+		int first = firstToken(json);
+		return first < json.limit() ? json.get(first) & 0xFF : -1;
+	}
+	
+	/**
+	 * Skip the white space at the start, after a byte order mark if the input starts with one.
+	 * Like {@link JsonScheduleReader}, only one mark and only right at the start is skipped
+	 * @param json
+	 * @return the index of the first byte that is not white space, the limit if there is none
+	 */
+	private static int firstToken(ByteBuffer json) {
+		int i = json.position();
+		if (json.limit() - i >= 3 && (json.get(i) & 0xFF) == 0xEF && (json.get(i + 1) & 0xFF) == 0xBB && (json.get(i + 2) & 0xFF) == 0xBF)
+			i += 3;
+		while (i < json.limit() && isWhiteSpace(json.get(i) & 0xFF)) {
+			i++;
+		}
+		return i;
+	}
+	
+	private static boolean isWhiteSpace(int b) {
+		return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+	}
+	
+	/**
+	 * Find where to cut the array. Only the structure is looked at (braces, brackets and
+	 * strings), no values are parsed. Between the objects of the array the commas are checked
+	 * the way the sequential reader checks them, one between each pair and none after the last
+	 * @param json
+	 * @param maxChunks
+	 * @return the [start, end) byte ranges of the chunks, each one a run of whole objects
+	 * @throws IOException if the input is not an array of objects
+	 */
+	static List<int[]> findChunks(ByteBuffer json, int maxChunks) throws IOException {
+		if (firstByte(json) != '[')
+			throw new IOException("Only an array of tasks can be split into chunks");
+		int start = json.position(), end = json.limit();
+		int targetBytes = Math.max(1, (end - start) / maxChunks);
+		List<int[]> chunks = new ArrayList<>(maxChunks + 1);
+		
+		int firstArray = firstToken(json);
+		int depth = 1;
+		boolean inString = false;
+		// at the top of the array, whether an object or the closing bracket may come next
+		boolean objectAllowed = true, endAllowed = true;
+		int chunkStart = -1;
+		for (int i = firstArray + 1; i < end; i++) {
+			byte b = json.get(i);
+			if (inString) {
+				if (b == '\\')
+					i++;
+				else if (b == '"')
+					inString = false;
+				continue;
+			}
+			// between the objects of the array there may only be commas, and nothing after it
+			if (depth == 0 && !isWhiteSpace(b))
+				throw new IOException("Expected end of input at byte " + i);
+			if (depth == 1 && !isWhiteSpace(b)) {
+				boolean allowed = b == '{' ? objectAllowed : b == ']' ? endAllowed : b == ',' && !objectAllowed;
+				if (!allowed)
+					throw new IOException("Expected " + (objectAllowed ? "an object" : "',' or ']'") + " at byte " + i);
+				objectAllowed = b == ',';
+				endAllowed = false;
+			}
+			switch (b) {
+			case '"':
+				inString = true;
+				break;
+			case '[':
+			case '{':
+				depth++;
+				// a top level object opens at depth 2, inside the array
+				if (b == '{' && chunkStart < 0 && depth == 2)
+					chunkStart = i;
+				break;
+			case ']':
+			case '}':
+				depth--;
+				if (b == '}' && depth == 1)
+					endAllowed = true;
+				if (b == '}' && depth == 1 && chunkStart >= 0 && i + 1 - chunkStart >= targetBytes) {
+					chunks.add(new int[] { chunkStart, i + 1 });
+					chunkStart = -1;
+				}
+				break;
+			default:
+				break;
+			}
+		}
+		if (depth != 0 || inString)
+			throw new IOException("Unbalanced JSON, could not split it into objects");
+		if (chunkStart >= 0) {
+			// the last chunk ends at the last closing brace of an object
+			int last = end - 1;
+			while (last > chunkStart && json.get(last) != '}') {
+				last--;
+			}
+			chunks.add(new int[] { chunkStart, last + 1 });
+		}
+		return chunks;
+	}
+	
+	/**
+	 * Splits the chunk list in half until one chunk is left, then parses it
+	 */
+	private static class ChunkParser extends RecursiveTask<List<List<Task>>> {
+		private static final long serialVersionUID = 1L;
+		private final ByteBuffer json;
+		private final List<int[]> chunks;
+		private final int from, to;
+		
+		ChunkParser(ByteBuffer json, List<int[]> chunks, int from, int to) {
+			this.json = json;
+			this.chunks = chunks;
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		protected List<List<Task>> compute() {
+			if (to - from > 1) {
+				int middle = (from + to) >>> 1;
+				ChunkParser secondHalf = new ChunkParser(json, chunks, middle, to);
+				secondHalf.fork();
+				List<List<Task>> result = new ChunkParser(json, chunks, from, middle).compute();
+				result.addAll(secondHalf.join());
+				return result;
+			}
+			List<List<Task>> result = new ArrayList<>(1);
+			if (to > from) {
+				int[] chunk = chunks.get(from);
+				// every thread gets its own view of the buffer so positions are not shared
+				ByteBuffer slice = json.duplicate();
+				slice.limit(chunk[1]).position(chunk[0]);
+				try {
+					result.add(new JsonScheduleReader(slice).readTasks());
+				} catch (Exception e) {
+					throw new CompletionException(e);
+				}
+			}
+			return result;
+		}
+	}
+}
@@ -0,0 +1,626 @@
+package main.helpers;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import main.tasks.AntiTask;
+import main.tasks.RecurringTask;
+import main.tasks.Task;
+
+/**
+ * An append-only journal of the changes made to a schedule, so a crash only loses what was
+ * not yet written instead of everything since the last save. Every change is one small entry,
+ * so saving costs the same no matter how big the schedule is.
+ * <p>
+ * The journal lives in a directory as numbered files:
+ * <pre>
+ * name.N.snapshot   the schedule after every journal file before N (see {@link SnapshotHelper})
+ * name.N.journal    magic 'TMSJ', short version, short unused, then entries:
+ *                   int body length, int CRC32 of the body, body (byte op, then the op's fields)
+ * </pre>
+ * On {@link ScheduleJournal#open(Path, String)} the newest snapshot is loaded and every journal file
+ * from that number on is replayed over it. When the journal file being written gets too big it is
+ * closed, a new one is started, and a background thread folds the closed files into a new snapshot.
+ * <p>
+ * Entries are synced in groups: a thread that appends waits until its entry is on disk, but one sync
+ * covers every entry written before it, so threads appending at the same time share the cost.
+ * @author CTS
+ *
+ */
+public class ScheduleJournal implements Closeable {
+	public static final int MAGIC = 0x544D534A;
+	public static final short VERSION = 1;
+	public static final long DEFAULT_ROLL_BYTES = 4 * 1024 * 1024;
+
+	private static final int HEADER_BYTES = 8;
+	private static final int ENTRY_HEADER_BYTES = 8;
+	private static final String SNAPSHOT_SUFFIX = ".snapshot";
+	private static final String JOURNAL_SUFFIX = ".journal";
+
+	private static final byte OP_ADD = 1;
+	private static final byte OP_CANCEL = 2;
+	private static final byte OP_DELETE = 3;
+	private static final byte OP_EDIT = 4;
+	private static final byte OP_BATCH = 5;
+
+	private final Path directory;
+	private final String name;
+	private final long rollBytes;
+	private final ExecutorService compactor;
+	private final List<Task> recoveredTasks;
+
+	// the lock order is syncLock, then writeLock
+	private final Object writeLock = new Object();
+	private final Object syncLock = new Object();
+	private FileChannel channel;
+	private int segment;
+	/** Bytes written over the life of this journal, across every file */
+	private long writtenBytes;
+	private volatile long syncedBytes;
+	private volatile IOException compactionFailure;
+
+	private ScheduleJournal(Path directory, String name, long rollBytes) throws IOException {
+		this.directory = directory;
+		this.name = name;
+		this.rollBytes = rollBytes;
+		Files.createDirectories(directory);
+
+		TreeSet<Integer> snapshots = findFiles(SNAPSHOT_SUFFIX);
+		TreeSet<Integer> segments = findFiles(JOURNAL_SUFFIX);
+		int base = snapshots.isEmpty() ? 0 : snapshots.last();
+		ReplayedSchedule schedule = new ReplayedSchedule(snapshots.isEmpty() ? new ArrayList<>() : SnapshotHelper.readSnapshot(snapshotPath(base)));
+		for (int replayed : segments.tailSet(base)) {
+			// only the last file can have been cut off by a crash, anything before it was closed cleanly
+			long validBytes = replay(journalPath(replayed), schedule, replayed == segments.last());
+			if (replayed == segments.last())
+				truncate(journalPath(replayed), validBytes);
+		}
+		this.recoveredTasks = schedule.getTasks();
+
+		this.segment = segments.isEmpty() || segments.last() < base ? base : segments.last();
+		openSegment(segment);
+		deleteBefore(base);
+
+		this.compactor = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "schedule-journal-compactor");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Open the journal in a directory, recovering the schedule it holds
+	 * @param directory
+	 * @param name the prefix of the journal files, e.g. "schedule"
+	 * @return
+	 * @throws IOException if the snapshot or a closed journal file is damaged
+	 */
+	public static ScheduleJournal open(Path directory, String name) throws IOException {
+		return new ScheduleJournal(directory, name, DEFAULT_ROLL_BYTES);
+	}
+
+	/**
+	 * Open the journal in a directory, starting a new journal file once the current one is this big
+	 * @param directory
+	 * @param name the prefix of the journal files, e.g. "schedule"
+	 * @param rollBytes
+	 * @return
+	 * @throws IOException if the snapshot or a closed journal file is damaged
+	 */
+	public static ScheduleJournal open(Path directory, String name, long rollBytes) throws IOException {
+		return new ScheduleJournal(directory, name, rollBytes);
+	}
+
+	/**
+	 * @return the schedule the journal held when it was opened, anti-tasks attached
+	 */
+	public List<Task> getRecoveredTasks() {
+		return recoveredTasks;
+	}
+
+	// <------------------ Appending -------------------------->
+
+	/**
+	 * A transient or recurring task was added
+	 * @param task
+	 * @throws IOException
+	 */
+	public void taskAdded(Task task) throws IOException {
+		ByteBuffer entry = newEntry(OP_ADD);
+		entry = putTask(entry, task);
+		append(entry);
+	}
+
+	/**
+	 * An anti-task cancelled an occurance of a series
+	 * @param seriesName the name of the recurring task
+	 * @param antiTask
+	 * @throws IOException
+	 */
+	public void occurrenceCancelled(String seriesName, AntiTask antiTask) throws IOException {
+		ByteBuffer entry = newEntry(OP_CANCEL);
+		entry = putString(entry, seriesName);
+		entry = putTask(entry, antiTask);
+		append(entry);
+	}
+
+	/**
+	 * A task was deleted
+	 * @param taskName
+	 * @throws IOException
+	 */
+	public void taskDeleted(String taskName) throws IOException {
+		ByteBuffer entry = newEntry(OP_DELETE);
+		entry = putString(entry, taskName);
+		append(entry);
+	}
+
+	/**
+	 * The name, date, start time or duration of a task was changed
+	 * @param oldName the name of the task before the change
+	 * @param task the task after the change
+	 * @throws IOException
+	 */
+	public void taskEdited(String oldName, Task task) throws IOException {
+		ByteBuffer entry = newEntry(OP_EDIT);
+		entry = putString(entry, oldName);
+		entry = putTask(entry, task);
+		append(entry);
+	}
+
+	/**
+	 * A batch of tasks was added and occurances cancelled, all at once. The batch is a single entry,
+	 * so after a crash either all of it is replayed or none of it
+	 * @param tasks the transient and recurring tasks that were added
+	 * @param cancellations each anti-task with the name of the recurring task it cancels an occurance of
+	 * @throws IOException
+	 */
+	public void batchAdded(List<Task> tasks, Map<AntiTask, String> cancellations) throws IOException {
+		ByteBuffer entry = newEntry(OP_BATCH);
+		entry = ensureRoom(entry, Integer.BYTES);
+		entry.putInt(tasks.size() + cancellations.size());
+		for (Task task : tasks) {
+			entry = ensureRoom(entry, 1);
+			entry.put(OP_ADD);
+			entry = putTask(entry, task);
+		}
+		for (Map.Entry<AntiTask, String> cancellation : cancellations.entrySet()) {
+			entry = ensureRoom(entry, 1);
+			entry.put(OP_CANCEL);
+			entry = putString(entry, cancellation.getValue());
+			entry = putTask(entry, cancellation.getKey());
+		}
+		append(entry);
+	}
+	
+	/**
+	 * Write the entry and wait until it is synced to disk
+	 */
+	private void append(ByteBuffer entry) throws IOException {
+		entry.flip();
+		CRC32 crc = new CRC32();
+		crc.update(entry.duplicate().position(ENTRY_HEADER_BYTES));
+		entry.putInt(0, entry.limit() - ENTRY_HEADER_BYTES).putInt(4, (int) crc.getValue());
+
+		long end;
+		boolean full;
+		synchronized (writeLock) {
+			if (channel == null)
+				throw new IOException("Journal is closed");
+			while (entry.hasRemaining()) {
+				channel.write(entry);
+			}
+			end = writtenBytes += entry.limit();
+			full = channel.position() >= rollBytes;
+		}
+		sync(end);
+		if (full)
+			roll(false);
+	}
+
+	/**
+	 * Sync the journal up to the byte count. Whoever syncs first covers everyone who wrote before
+	 * them, the others find their bytes already synced and return
+	 */
+	private void sync(long end) throws IOException {
+		if (syncedBytes >= end)
+			return;
+		synchronized (syncLock) {
+			if (syncedBytes >= end)
+				return;
+			FileChannel syncedChannel;
+			long target;
+			synchronized (writeLock) {
+				syncedChannel = channel;
+				target = writtenBytes;
+			}
+			if (syncedChannel == null)
+				throw new IOException("Journal is closed");
+			syncedChannel.force(false);
+			syncedBytes = target;
+		}
+	}
+
+	// <------------------ Compaction -------------------------->
+
+	/**
+	 * Start a new journal file and fold everything before it into a snapshot in the background
+	 * @throws IOException
+	 */
+	public void compact() throws IOException {
+		roll(true);
+	}
+
+	/**
+	 * Make a snapshot of the schedule right now and start a new journal file after it. Used when a
+	 * journal is attached to a schedule that was loaded from somewhere else. Nothing may be appended
+	 * while this runs.
+	 * <p>
+	 * The snapshot is written before anything else changes. If writing it fails the journal is left
+	 * as it was, and after a crash at any point the directory holds either the old journal or the new
+	 * snapshot, never a new journal file without the snapshot it follows
+	 * @param taskList the whole schedule
+	 * @throws IOException
+	 */
+	public void checkpoint(Collection<Task> taskList) throws IOException {
+		synchronized (syncLock) {
+			synchronized (writeLock) {
+				if (channel == null)
+					throw new IOException("Journal is closed");
+				int next = segment + 1;
+				SnapshotHelper.writeSnapshot(snapshotPath(next), taskList);
+				startSegment();
+				deleteBefore(next);
+			}
+		}
+		compactionFailure = null;
+	}
+	
+	/**
+	 * A failed background compaction does not stop the journal, the entries stay in the journal
+	 * files and the next compaction folds them in again
+	 * @return why the last compaction failed, or null if it did not. {@link ScheduleJournal#close()} 
+	 * throws it as well
+	 */
+	public IOException getCompactionFailure() {
+		return compactionFailure;
+	}
+
+	private void roll(boolean always) throws IOException {
+		int sealed;
+		synchronized (syncLock) {
+			synchronized (writeLock) {
+				if (channel == null || !always && channel.position() < rollBytes)
+					return;
+				sealed = startSegment();
+			}
+		}
+		compactor.execute(() -> {
+			try {
+				compactInto(sealed);
+				compactionFailure = null;
+			} catch (IOException e) {
+				DiagnosticLog.error("Error: The journal could not be compacted: " + e.getMessage());
+				compactionFailure = e;
+			}
+		});
+	}
+
+	/**
+	 * Close the current journal file and open the next one. Both locks have to be held
+	 * @return the number of the new file
+	 */
+	private int startSegment() throws IOException {
+		channel.force(false);
+		channel.close();
+		openSegment(segment + 1);
+		syncedBytes = writtenBytes;
+		return segment;
+	}
+
+	/**
+	 * Replay the journal files before this number over the newest snapshot and save the result as
+	 * the snapshot with this number. Runs on the compaction thread, nothing it reads is being written
+	 */
+	private void compactInto(int next) throws IOException {
+		TreeSet<Integer> snapshots = findFiles(SNAPSHOT_SUFFIX);
+		int base = snapshots.isEmpty() ? 0 : snapshots.last();
+		if (base >= next)
+			return;
+		ReplayedSchedule schedule = new ReplayedSchedule(snapshots.isEmpty() ? new ArrayList<>() : SnapshotHelper.readSnapshot(snapshotPath(base)));
+		for (int replayed : findFiles(JOURNAL_SUFFIX).subSet(base, next)) {
+			replay(journalPath(replayed), schedule, false);
+		}
+		SnapshotHelper.writeSnapshot(snapshotPath(next), schedule.getTasks());
+		deleteBefore(next);
+	}
+
+	/**
+	 * Wait for a running compaction and close the journal file
+	 * @throws IOException if the last compaction failed, the journal is closed all the same
+	 */
+	@Override
+	public void close() throws IOException {
+		compactor.shutdown();
+		try {
+			compactor.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		synchronized (syncLock) {
+			synchronized (writeLock) {
+				if (channel != null) {
+					channel.force(false);
+					channel.close();
+					channel = null;
+				}
+			}
+		}
+		IOException failure = compactionFailure;
+		if (failure != null)
+			throw new IOException("Journal compaction failed", failure);
+	}
+
+	// <------------------ Files -------------------------->
+
+	private void openSegment(int number) throws IOException {
+		Path path = journalPath(number);
+		channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+		segment = number;
+		if (channel.size() == 0) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putShort(VERSION).putShort((short) 0).flip();
+			while (header.hasRemaining()) {
+				channel.write(header);
+			}
+		} else {
+			channel.position(channel.size());
+		}
+	}
+
+	private Path snapshotPath(int number) {
+		return directory.resolve(name + "." + number + SNAPSHOT_SUFFIX);
+	}
+
+	private Path journalPath(int number) {
+		return directory.resolve(name + "." + number + JOURNAL_SUFFIX);
+	}
+
+	/**
+	 * Find the numbers of the snapshot or journal files in the directory
+	 */
+	private TreeSet<Integer> findFiles(String suffix) throws IOException {
+		TreeSet<Integer> numbers = new TreeSet<>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, name + ".*" + suffix)) {
+			for (Path file : files) {
+				String fileName = file.getFileName().toString();
+				String number = fileName.substring(name.length() + 1, fileName.length() - suffix.length());
+				try {
+					numbers.add(Integer.parseInt(number));
+				} catch (NumberFormatException e) {
+					// not one of ours
+				}
+			}
+		}
+		return numbers;
+	}
+
+	/**
+	 * Delete the snapshots and journal files that the snapshot with this number replaces
+	 */
+	private void deleteBefore(int number) throws IOException {
+		for (int old : findFiles(SNAPSHOT_SUFFIX).headSet(number)) {
+			Files.deleteIfExists(snapshotPath(old));
+		}
+		for (int old : findFiles(JOURNAL_SUFFIX).headSet(number)) {
+			Files.deleteIfExists(journalPath(old));
+		}
+	}
+
+	private static void truncate(Path path, long validBytes) throws IOException {
+		try (FileChannel file = FileChannel.open(path, StandardOpenOption.WRITE)) {
+			if (file.size() > validBytes) {
+				file.truncate(validBytes);
+				file.force(true);
+			}
+		}
+	}
+
+	// <------------------ Replay -------------------------->
+
+	/**
+	 * Apply every entry in a journal file to the schedule
+	 * @param path
+	 * @param schedule
+	 * @param mayBeTorn true if the file may end in an entry that was not fully written
+	 * @return the number of bytes up to the end of the last good entry
+	 * @throws IOException if the file is damaged somewhere it should not be
+	 */
+	private static long replay(Path path, ReplayedSchedule schedule, boolean mayBeTorn) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+		if (buffer.remaining() < HEADER_BYTES) {
+			if (mayBeTorn)
+				return 0;
+			throw new IOException(path + " is not a schedule journal");
+		}
+		if (buffer.getInt() != MAGIC)
+			throw new IOException(path + " is not a schedule journal");
+		short version = buffer.getShort();
+		if (version != VERSION)
+			throw new IOException("Unsupported journal version: " + version);
+		buffer.getShort();
+
+		CRC32 crc = new CRC32();
+		while (buffer.hasRemaining()) {
+			int entryStart = buffer.position();
+			boolean complete = buffer.remaining() >= ENTRY_HEADER_BYTES;
+			int length = complete ? buffer.getInt() : 0;
+			int checksum = complete ? buffer.getInt() : 0;
+			complete = complete && length > 0 && length <= buffer.remaining();
+			if (complete) {
+				crc.reset();
+				crc.update(buffer.duplicate().limit(buffer.position() + length));
+				complete = (int) crc.getValue() == checksum;
+			}
+			if (!complete) {
+				if (mayBeTorn)
+					return entryStart;
+				throw new IOException(path + " is damaged at byte " + entryStart);
+			}
+			ByteBuffer body = buffer.slice(buffer.position(), length);
+			buffer.position(buffer.position() + length);
+			schedule.apply(body, path, entryStart);
+		}
+		return buffer.position();
+	}
+
+	/**
+	 * The schedule as it is rebuilt from a snapshot and journal entries. The entries were checked by
+	 * the scheduler when they were made, so they are applied without checking for overlaps
+	 */
+	private static class ReplayedSchedule {
+		private final Set<Task> tasks;
+		private final Map<String, Task> taskNames;
+
+		ReplayedSchedule(List<Task> taskList) {
+			this.tasks = new LinkedHashSet<>(taskList);
+			this.taskNames = new HashMap<>();
+			for (Task task : taskList) {
+				taskNames.putIfAbsent(task.getName(), task);
+			}
+		}
+
+		void apply(ByteBuffer body, Path path, int entryStart) throws IOException {
+			byte op = body.get();
+			switch (op) {
+			case OP_ADD: {
+				Task task = getTask(body);
+				if (task instanceof AntiTask || taskNames.putIfAbsent(task.getName(), task) != null)
+					throw new IOException(path + " adds \"" + task.getName() + "\" twice, at byte " + entryStart);
+				tasks.add(task);
+				break;
+			}
+			case OP_CANCEL: {
+				String seriesName = getString(body);
+				Task antiTask = getTask(body);
+				if (!(taskNames.get(seriesName) instanceof RecurringTask series) || !(antiTask instanceof AntiTask))
+					throw new IOException(path + " cancels an occurance of unknown task \"" + seriesName + "\", at byte " + entryStart);
+				series.addAntiTask((AntiTask) antiTask);
+				break;
+			}
+			case OP_DELETE: {
+				String taskName = getString(body);
+				Task task = taskNames.remove(taskName);
+				if (task == null)
+					throw new IOException(path + " deletes unknown task \"" + taskName + "\", at byte " + entryStart);
+				tasks.remove(task);
+				break;
+			}
+			case OP_EDIT: {
+				String oldName = getString(body);
+				Task edited = getTask(body);
+				Task task = taskNames.remove(oldName);
+				if (task == null)
+					throw new IOException(path + " edits unknown task \"" + oldName + "\", at byte " + entryStart);
+				task.setName(edited.getName());
+				task.setDate(edited.getDate());
+				task.setStartTime(edited.getStartTime());
+				task.setDuration(edited.getDuration());
+				taskNames.put(task.getName(), task);
+				break;
+			}
+			case OP_BATCH: {
+				int changes = body.getInt();
+				for (int i = 0; i < changes; i++) {
+					apply(body, path, entryStart);
+				}
+				break;
+			}
+			default:
+				throw new IOException(path + " has an unknown entry " + op + " at byte " + entryStart);
+			}
+		}
+
+		List<Task> getTasks() {
+			return new ArrayList<>(tasks);
+		}
+	}
+
+	// <------------------ Entry encoding -------------------------->
+
+	private static ByteBuffer newEntry(byte op) {
+		// the length and checksum are filled in once the entry is complete
+		return ByteBuffer.allocate(128).position(ENTRY_HEADER_BYTES).put(op);
+	}
+
+	/**
+	 * Tasks are stored with the fields of a snapshot record, strings written out in place
+	 */
+	private static ByteBuffer putTask(ByteBuffer entry, Task task) {
+		int endDay = task instanceof RecurringTask recurringTask ? recurringTask.getEndEpochDay() : task.getEpochDay();
+		int frequency = task instanceof RecurringTask recurringTask ? recurringTask.getFrequency() : 0;
+		entry = putString(entry, task.getName());
+		entry = putString(entry, task.getType());
+		entry = ensureRoom(entry, 17);
+		return entry.put(SnapshotHelper.kindOf(task))
+			.putShort((short) frequency)
+			.putInt(task.getEpochDay())
+			.putInt(endDay)
+			.putShort((short) task.getStartMinute())
+			.putShort((short) task.getDurationMinutes())
+			.putShort((short) 0);
+	}
+
+	private static Task getTask(ByteBuffer body) throws IOException {
+		String taskName = getString(body);
+		String type = getString(body);
+		byte kind = body.get();
+		int frequency = body.getShort();
+		int startDay = body.getInt();
+		int endDay = body.getInt();
+		int startMinute = body.getShort();
+		int durationMinutes = body.getShort();
+		body.getShort();
+		Task task = SnapshotHelper.newTask(kind, taskName, type, startDay, endDay, startMinute, durationMinutes, frequency);
+		if (task == null)
+			throw new IOException("Unknown task kind " + kind + " in journal");
+		return task;
+	}
+
+	private static ByteBuffer putString(ByteBuffer entry, String value) {
+		byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+		entry = ensureRoom(entry, Integer.BYTES + utf8.length);
+		return entry.putInt(utf8.length).put(utf8);
+	}
+
+	private static String getString(ByteBuffer body) {
+		byte[] utf8 = new byte[body.getInt()];
+		body.get(utf8);
+		return new String(utf8, StandardCharsets.UTF_8);
+	}
+
+	private static ByteBuffer ensureRoom(ByteBuffer entry, int bytes) {
+		if (entry.remaining() >= bytes)
+			return entry;
+		ByteBuffer bigger = ByteBuffer.allocate(Math.max(entry.capacity() * 2, entry.position() + bytes));
+		return bigger.put(entry.flip());
+	}
+}
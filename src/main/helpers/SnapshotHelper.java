@@ -0,0 +1,394 @@
+package main.helpers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import main.tasks.AntiTask;
+import main.tasks.RecurringTask;
+import main.tasks.RecurringTask.RecurringTaskType;
+import main.tasks.Task;
+import main.tasks.TransientTask;
+
+/**
+ * Reads and writes the whole schedule in a compact binary snapshot. JSON is still the format
+ * for sharing schedules, this is for saving and loading the schedule quickly.
+ * <p>
+ * Layout (big endian):
+ * <pre>
+ * header      int magic 'TMSS', short version, short flags, int string count, int record count
+ * dictionary  for each string: int byte length, UTF-8 bytes (names and types)
+ * records     24 bytes each:
+ *             byte kind, byte unused, short frequency, int name id, int type id,
+ *             int start epoch day, int end epoch day, short start minute, short duration minutes
+ * </pre>
+ * The anti-tasks of a recurring task are the records right after it. Times are stored
+ * in whole minutes, so a task that keeps its date or times as they were given (see
+ * {@link Task#hasGivenTime()}) can not be written.
+ * @author CTS
+ *
+ */
+public class SnapshotHelper {
+	public static final int MAGIC = 0x544D5353;
+	public static final short VERSION = 1;
+	public static final int HEADER_BYTES = 16;
+	public static final int RECORD_BYTES = 24;
+	
+	public static final byte KIND_TRANSIENT = 0;
+	public static final byte KIND_RECURRING = 1;
+	public static final byte KIND_ANTI_TASK = 2;
+	
+	private static final int BUFFER_BYTES = 64 * 1024;
+	
+	/**
+	 * Write the tasks (and the anti-tasks of recurring tasks) to a snapshot file. The snapshot is
+	 * written next to the file first and then moved over it, so a crash never leaves half a snapshot
+	 * @param path
+	 * @param taskList
+	 * @throws IOException if a task has a date or time that is not whole days and minutes, nothing is written then
+	 */
+	public static void writeSnapshot(Path path, Collection<Task> taskList) throws IOException {
+		// the dictionary goes first in the file, so the strings are collected before writing
+		Map<String, Integer> dictionary = new LinkedHashMap<>();
+		int recordCount = 0;
+		for (Task task : taskList) {
+			checkTime(task);
+			intern(dictionary, task.getName());
+			intern(dictionary, task.getType());
+			recordCount++;
+			if (task instanceof RecurringTask recurringTask) {
+				for (AntiTask antiTask : recurringTask.getCancelledOccurances()) {
+					checkTime(antiTask);
+					intern(dictionary, antiTask.getName());
+					intern(dictionary, antiTask.getType());
+					recordCount++;
+				}
+			}
+		}
+		
+		Path temporary = temporaryFile(path);
+		try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+			putHeader(channel, buffer, dictionary.keySet(), recordCount);
+			for (Task task : taskList) {
+				ensureRoom(channel, buffer, RECORD_BYTES);
+				putRecord(buffer, task, dictionary);
+				if (task instanceof RecurringTask recurringTask) {
+					for (AntiTask antiTask : recurringTask.getCancelledOccurances()) {
+						ensureRoom(channel, buffer, RECORD_BYTES);
+						putRecord(buffer, antiTask, dictionary);
+					}
+				}
+			}
+			drain(channel, buffer);
+			channel.force(true);
+		}
+		Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+	
+	/**
+	 * Write a task store to a snapshot file, straight from its columns. The file is the same
+	 * as the one {@link SnapshotHelper#writeSnapshot(Path, Collection)} writes for the same tasks
+	 * @param path
+	 * @param store
+	 * @throws IOException
+	 */
+	public static void writeSnapshot(Path path, AbstractTaskStore store) throws IOException {
+		Path temporary = temporaryFile(path);
+		try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+			putStore(channel, buffer, store);
+			drain(channel, buffer);
+			channel.force(true);
+		}
+		Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+	
+	/**
+	 * Write a task store as a snapshot into a new direct buffer, outside of the heap
+	 * @param store
+	 * @return the buffer, ready to read from the start
+	 * @throws IOException if the snapshot would not fit in one buffer
+	 */
+	static ByteBuffer writeSnapshotBuffer(AbstractTaskStore store) throws IOException {
+		long bytes = HEADER_BYTES + (long) RECORD_BYTES * (store.size() + store.getCancellationCount());
+		for (String value : dictionaryOf(store)) {
+			bytes += Integer.BYTES + value.getBytes(StandardCharsets.UTF_8).length;
+		}
+		if (bytes > Integer.MAX_VALUE)
+			throw new IOException("The snapshot is " + bytes + " bytes, too big for one buffer");
+		ByteBuffer buffer = ByteBuffer.allocateDirect((int) bytes);
+		putStore(null, buffer, store);
+		return buffer.flip();
+	}
+	
+	/**
+	 * Read a snapshot file into a {@link TaskStore}, without building any tasks
+	 * @param path
+	 * @return
+	 * @throws IOException if the file can not be read or is not a snapshot
+	 */
+	public static TaskStore readTaskStore(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			TaskStore store = new TaskStore();
+			int recordCount = readHeader(buffer, store::intern);
+			for (int i = 0; i < recordCount; i++) {
+				byte kind = buffer.get();
+				buffer.get();
+				int frequency = buffer.getShort();
+				int nameId = buffer.getInt();
+				int typeId = buffer.getInt();
+				int startDay = buffer.getInt();
+				int endDay = buffer.getInt();
+				int startMinute = buffer.getShort();
+				int durationMinutes = buffer.getShort();
+				if (nameId < 0 || nameId >= store.getStringCount() || typeId < 0 || typeId >= store.getStringCount())
+					throw new IOException("Record " + i + " points outside the dictionary");
+				if (kind == KIND_ANTI_TASK) {
+					if (store.size() == 0 || store.getKind(store.size() - 1) != KIND_RECURRING)
+						throw new IOException("Anti-task record " + i + " does not follow a recurring task");
+					store.addCancellation(nameId, startDay, startMinute, durationMinutes);
+				} else if (kind == KIND_TRANSIENT || kind == KIND_RECURRING) {
+					store.addRow(kind, nameId, typeId, startDay, endDay, startMinute, durationMinutes, frequency);
+				} else {
+					throw new IOException("Unknown record kind " + kind + " at record " + i);
+				}
+			}
+			return store;
+		}
+	}
+	
+	/**
+	 * Read a snapshot file. The file is memory mapped and the tasks are built straight from it
+	 * @param path
+	 * @return the transient and recurring tasks, with the anti-tasks attached to their recurring task
+	 * @throws IOException if the file can not be read or is not a snapshot
+	 */
+	public static List<Task> readSnapshot(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return readSnapshot(buffer);
+		}
+	}
+	
+	/**
+	 * Read a snapshot from a buffer, from its position
+	 * @param buffer
+	 * @return the transient and recurring tasks, with the anti-tasks attached to their recurring task
+	 * @throws IOException if the buffer does not hold a snapshot
+	 */
+	public static List<Task> readSnapshot(ByteBuffer buffer) throws IOException {
+		List<String> strings = new ArrayList<>();
+		int recordCount = readHeader(buffer, strings::add);
+		String[] dictionary = strings.toArray(new String[0]);
+		
+		List<Task> taskList = new ArrayList<>(recordCount);
+		RecurringTask lastRecurringTask = null;
+		for (int i = 0; i < recordCount; i++) {
+			byte kind = buffer.get();
+			buffer.get();
+			int frequency = buffer.getShort();
+			int nameId = buffer.getInt();
+			int typeId = buffer.getInt();
+			int startDay = buffer.getInt();
+			int endDay = buffer.getInt();
+			int startMinute = buffer.getShort();
+			int durationMinutes = buffer.getShort();
+			if (nameId < 0 || nameId >= dictionary.length || typeId < 0 || typeId >= dictionary.length)
+				throw new IOException("Record " + i + " points outside the dictionary");
+			
+			Task task = newTask(kind, dictionary[nameId], dictionary[typeId], startDay, endDay, startMinute, durationMinutes, frequency);
+			if (task == null)
+				throw new IOException("Unknown record kind " + kind + " at record " + i);
+			if (task instanceof AntiTask antiTask) {
+				if (lastRecurringTask == null)
+					throw new IOException("Anti-task record " + i + " does not follow a recurring task");
+				lastRecurringTask.addAntiTask(antiTask);
+			} else {
+				lastRecurringTask = task instanceof RecurringTask recurringTask ? recurringTask : null;
+				taskList.add(task);
+			}
+		}
+		return taskList;
+	}
+	
+	/**
+	 * Build the task a record describes. Also used by {@link ScheduleJournal}, which stores
+	 * tasks the same way
+	 * @return the task, or null if the kind is unknown
+	 */
+	static Task newTask(byte kind, String name, String type, int startDay, int endDay, int startMinute, int durationMinutes, int frequency) {
+		int date = TimeHelper.fromEpochDay(startDay);
+		float startTime = startMinute / 60f;
+		float duration = durationMinutes / 60f;
+		switch (kind) {
+		case KIND_TRANSIENT:
+			return new TransientTask(name, type, date, startTime, duration);
+		case KIND_RECURRING:
+			RecurringTaskType recurringType = RecurringTaskType.fromString(type);
+			return new RecurringTask(name, recurringType != null ? recurringType : RecurringTaskType.NONE, date, TimeHelper.fromEpochDay(endDay), startTime, duration, frequency);
+		case KIND_ANTI_TASK:
+			return new AntiTask(name, type, date, startTime, duration);
+		default:
+			return null;
+		}
+	}
+	
+	static byte kindOf(Task task) {
+		return task instanceof RecurringTask ? KIND_RECURRING : task instanceof AntiTask ? KIND_ANTI_TASK : KIND_TRANSIENT;
+	}
+	
+	/**
+	 * Read the header and the dictionary, leaving the buffer at the first record
+	 * @param buffer
+	 * @param strings gets the strings of the dictionary in order
+	 * @return the number of records
+	 * @throws IOException if the buffer does not hold a snapshot
+	 */
+	private static int readHeader(ByteBuffer buffer, Consumer<String> strings) throws IOException {
+		if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC)
+			throw new IOException("Not a schedule snapshot");
+		short version = buffer.getShort();
+		if (version != VERSION)
+			throw new IOException("Unsupported snapshot version: " + version);
+		buffer.getShort();
+		int stringCount = buffer.getInt();
+		int recordCount = buffer.getInt();
+		// every string takes at least its length
+		if (stringCount < 0 || recordCount < 0 || stringCount > buffer.remaining() / Integer.BYTES)
+			throw new IOException("Snapshot header is broken");
+		
+		for (int i = 0; i < stringCount; i++) {
+			if (buffer.remaining() < Integer.BYTES)
+				throw new IOException("Snapshot is cut short in the dictionary");
+			int length = buffer.getInt();
+			if (length < 0 || length > buffer.remaining())
+				throw new IOException("Snapshot is cut short in the dictionary");
+			byte[] utf8 = new byte[length];
+			buffer.get(utf8);
+			strings.accept(new String(utf8, StandardCharsets.UTF_8));
+		}
+		if (buffer.remaining() < (long) recordCount * RECORD_BYTES)
+			throw new IOException("Snapshot is cut short, expected " + recordCount + " records");
+		return recordCount;
+	}
+	
+	// <------------------ Record output -------------------------->
+	
+	private static Path temporaryFile(Path path) throws IOException {
+		Path parent = path.toAbsolutePath().getParent();
+		if (parent != null)
+			Files.createDirectories(parent);
+		return path.resolveSibling(path.getFileName() + ".tmp");
+	}
+	
+	private static void putHeader(FileChannel channel, ByteBuffer buffer, Collection<String> dictionary, int recordCount) throws IOException {
+		buffer.putInt(MAGIC).putShort(VERSION).putShort((short) 0).putInt(dictionary.size()).putInt(recordCount);
+		for (String value : dictionary) {
+			byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+			ensureRoom(channel, buffer, Integer.BYTES);
+			buffer.putInt(utf8.length);
+			for (int offset = 0; offset < utf8.length; ) {
+				ensureRoom(channel, buffer, 1);
+				int length = Math.min(buffer.remaining(), utf8.length - offset);
+				buffer.put(utf8, offset, length);
+				offset += length;
+			}
+		}
+	}
+	
+	/**
+	 * The dictionary a snapshot of the store has. The store does not keep the type of its anti-tasks,
+	 * they are all written as cancellations
+	 */
+	private static List<String> dictionaryOf(AbstractTaskStore store) {
+		List<String> dictionary = new ArrayList<>(store.getStringCount() + 1);
+		for (int id = 0; id < store.getStringCount(); id++) {
+			dictionary.add(store.getString(id));
+		}
+		if (store.getStringId("Cancellation") < 0 && store.getCancellationCount() > 0)
+			dictionary.add("Cancellation");
+		return dictionary;
+	}
+	
+	/**
+	 * Put a whole snapshot of the store. With no channel, the buffer has to be big enough for all of it
+	 */
+	private static void putStore(FileChannel channel, ByteBuffer buffer, AbstractTaskStore store) throws IOException {
+		List<String> dictionary = dictionaryOf(store);
+		int cancellationType = dictionary.lastIndexOf("Cancellation");
+		putHeader(channel, buffer, dictionary, store.size() + store.getCancellationCount());
+		for (int row = 0; row < store.size(); row++) {
+			ensureRoom(channel, buffer, RECORD_BYTES);
+			putRecord(buffer, store.getKind(row), store.getFrequency(row), store.getNameId(row), store.getTypeId(row), store.getEpochDay(row),
+					store.getEndEpochDay(row), store.getStartMinute(row), store.getDurationMinutes(row));
+			for (int i = store.getCancellationStart(row); i < store.getCancellationEnd(row); i++) {
+				ensureRoom(channel, buffer, RECORD_BYTES);
+				int day = store.getCancellationDay(i);
+				putRecord(buffer, KIND_ANTI_TASK, 0, store.getCancellationNameId(i), cancellationType, day, day,
+						store.getCancellationStartMinute(i), store.getCancellationDurationMinutes(i));
+			}
+		}
+	}
+	
+	private static void putRecord(ByteBuffer buffer, Task task, Map<String, Integer> dictionary) {
+		int endDay = task instanceof RecurringTask recurringTask ? recurringTask.getEndEpochDay() : task.getEpochDay();
+		int frequency = task instanceof RecurringTask recurringTask ? recurringTask.getFrequency() : 0;
+		putRecord(buffer, kindOf(task), frequency, dictionary.get(task.getName()), dictionary.get(task.getType()), task.getEpochDay(),
+				endDay, task.getStartMinute(), task.getDurationMinutes());
+	}
+	
+	private static void putRecord(ByteBuffer buffer, byte kind, int frequency, int nameId, int typeId, int startDay, int endDay, int startMinute, int durationMinutes) {
+		buffer.put(kind)
+			.put((byte) 0)
+			.putShort((short) frequency)
+			.putInt(nameId)
+			.putInt(typeId)
+			.putInt(startDay)
+			.putInt(endDay)
+			.putShort((short) startMinute)
+			.putShort((short) durationMinutes);
+	}
+	
+	/**
+	 * A record only has days and minutes, the date and times a task kept as given would be lost
+	 */
+	private static void checkTime(Task task) throws IOException {
+		if (task.hasGivenTime())
+			throw new IOException("The task " + task.getName() + " on " + task.getDate() + " at " + task.getStartTime() 
+					+ " for " + task.getDuration() + " hours can not be stored in whole days and minutes");
+	}
+	
+	private static void intern(Map<String, Integer> dictionary, String value) {
+		dictionary.putIfAbsent(value, dictionary.size());
+	}
+	
+	/**
+	 * Write the buffer out to the channel if it can't fit the next bytes
+	 */
+	private static void ensureRoom(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+		if (channel != null && buffer.remaining() < bytes)
+			drain(channel, buffer);
+	}
+	
+	private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+}
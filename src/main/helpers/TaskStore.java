@@ -0,0 +1,401 @@
+package main.helpers;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+
+import main.tasks.AntiTask;
+import main.tasks.RecurringTask;
+import main.tasks.Task;
+
+/**
+ * Holds a very large schedule in columns on the heap instead of task objects. Every task is a row, and each
+ * field is a primitive array indexed by the row, the same fields a snapshot record has (see
+ * {@link SnapshotHelper}). Names and types are stored once, as UTF-8 in one byte array, and the rows
+ * only keep their number in that dictionary. The anti-tasks of a recurring task are kept in their own columns, the ones for row
+ * r are at [cancelOffsets[r], cancelOffsets[r + 1]).
+ * <p>
+ * A row takes about 30 bytes plus the bytes of its name, and no objects at all. Overlap checks and range queries
+ * only look at the rows the span index hands back, exports are single passes over the arrays, and a {@link Task} is only built when
+ * {@link AbstractTaskStore#getTask(int)} asks for one. That task is a copy, changing it does not change the store.
+ * Times are kept in whole minutes, like a snapshot.
+ * <p>
+ * Rows can only be added. The store is not thread-safe, build it on one thread and then read it from as many as you like
+ * @author CTS
+ *
+ */
+public final class TaskStore extends AbstractTaskStore {
+	private static final int INITIAL_ROWS = 64;
+	
+	// dictionary, the UTF-8 bytes of string i are at [stringOffsets[i], stringOffsets[i + 1])
+	private byte[] stringBytes;
+	private int[] stringOffsets;
+	private int[] stringHashes;
+	private int stringCount;
+	/** Open addressing table of string numbers by hash, -1 is empty */
+	private int[] stringTable;
+	private int[] rowsByName;
+	
+	// one entry per row
+	private byte[] kinds;
+	private short[] frequencies;
+	private int[] nameIds;
+	private int[] typeIds;
+	private int[] startDays;
+	private int[] endDays;
+	private short[] startMinutes;
+	private short[] durationMinutes;
+	private int[] cancelOffsets;
+	private int rowCount;
+	
+	// one entry per anti-task
+	private int[] cancelNameIds;
+	private int[] cancelDays;
+	private short[] cancelStartMinutes;
+	private short[] cancelDurationMinutes;
+	private int cancelCount;
+	
+	public TaskStore() {
+		this.stringBytes = new byte[INITIAL_ROWS * 16];
+		this.stringOffsets = new int[INITIAL_ROWS + 1];
+		this.stringHashes = new int[INITIAL_ROWS];
+		this.stringTable = new int[INITIAL_ROWS * 2];
+		Arrays.fill(stringTable, -1);
+		this.rowsByName = new int[INITIAL_ROWS];
+		Arrays.fill(rowsByName, -1);
+		this.kinds = new byte[INITIAL_ROWS];
+		this.frequencies = new short[INITIAL_ROWS];
+		this.nameIds = new int[INITIAL_ROWS];
+		this.typeIds = new int[INITIAL_ROWS];
+		this.startDays = new int[INITIAL_ROWS];
+		this.endDays = new int[INITIAL_ROWS];
+		this.startMinutes = new short[INITIAL_ROWS];
+		this.durationMinutes = new short[INITIAL_ROWS];
+		this.cancelOffsets = new int[INITIAL_ROWS + 1];
+		this.cancelNameIds = new int[INITIAL_ROWS];
+		this.cancelDays = new int[INITIAL_ROWS];
+		this.cancelStartMinutes = new short[INITIAL_ROWS];
+		this.cancelDurationMinutes = new short[INITIAL_ROWS];
+	}
+	
+	/**
+	 * Copy tasks into a new store
+	 * @param taskList transient and recurring tasks, anti-tasks should already be attached to their recurring task
+	 * @return
+	 */
+	public static TaskStore of(Collection<Task> taskList) {
+		TaskStore store = new TaskStore();
+		for (Task task$iterator : taskList) {
+			store.add(task$iterator);
+		}
+		return store;
+	}
+	
+	/**
+	 * Copy a task into a new row, with the anti-tasks of a recurring task
+	 * @param task a transient or recurring task
+	 * @return the row
+	 * @throws IllegalArgumentException if the task or one of its anti-tasks has a date or time that is not whole days and minutes
+	 */
+	public int add(Task task) {
+		checkTime(task);
+		if (task instanceof RecurringTask recurringTask) {
+			for (AntiTask antiTask : recurringTask.getCancelledOccurances()) {
+				checkTime(antiTask);
+			}
+		}
+		int endDay = task instanceof RecurringTask recurringTask ? recurringTask.getEndEpochDay() : task.getEpochDay();
+		int frequency = task instanceof RecurringTask recurringTask ? recurringTask.getFrequency() : 0;
+		int row = addRow(SnapshotHelper.kindOf(task), intern(task.getName()), intern(task.getType()), task.getEpochDay(), endDay,
+				task.getStartMinute(), task.getDurationMinutes(), frequency);
+		if (task instanceof RecurringTask recurringTask) {
+			for (AntiTask antiTask : recurringTask.getCancelledOccurances()) {
+				int nameId = intern(antiTask.getName());
+				// only so the dictionary comes out in the same order as a snapshot of the tasks
+				intern(antiTask.getType());
+				addCancellation(nameId, antiTask.getEpochDay(), antiTask.getStartMinute(), antiTask.getDurationMinutes());
+			}
+		}
+		return row;
+	}
+	
+	/**
+	 * Add a row from its fields, the way a snapshot record stores them. Cancellations added after
+	 * this belong to this row
+	 * @param kind one of the KIND constants in {@link SnapshotHelper}
+	 * @param nameId from {@link TaskStore#intern(String)}
+	 * @param typeId from {@link TaskStore#intern(String)}
+	 * @param startDay
+	 * @param endDay the end date as an epoch day, the same as the start for a transient task
+	 * @param startMinute
+	 * @param durationMinutes
+	 * @param frequency 0 for a transient task
+	 * @return the row
+	 * @throws IllegalArgumentException if the frequency, start or duration does not fit in a short like a snapshot stores it
+	 */
+	public int addRow(byte kind, int nameId, int typeId, int startDay, int endDay, int startMinute, int durationMinutes, int frequency) {
+		checkShort("frequency", frequency);
+		checkShort("start minute", startMinute);
+		checkShort("duration", durationMinutes);
+		if (rowCount == kinds.length)
+			growRows();
+		int row = rowCount++;
+		kinds[row] = kind;
+		frequencies[row] = (short) frequency;
+		nameIds[row] = nameId;
+		typeIds[row] = typeId;
+		startDays[row] = startDay;
+		endDays[row] = endDay;
+		startMinutes[row] = (short) startMinute;
+		this.durationMinutes[row] = (short) durationMinutes;
+		cancelOffsets[row] = cancelCount;
+		cancelOffsets[row + 1] = cancelCount;
+		if (nameId >= rowsByName.length)
+			growNames(nameId + 1);
+		if (rowsByName[nameId] < 0)
+			rowsByName[nameId] = row;
+		rowsChanged();
+		return row;
+	}
+	
+	/**
+	 * Add an anti-task to the last row
+	 * @param nameId from {@link TaskStore#intern(String)}
+	 * @param epochDay the day it cancels
+	 * @param startMinute
+	 * @param durationMinutes
+	 * @throws IllegalArgumentException if the start or duration does not fit in a short
+	 */
+	public void addCancellation(int nameId, int epochDay, int startMinute, int durationMinutes) {
+		if (rowCount == 0)
+			throw new IllegalStateException("An anti-task has to follow a recurring task");
+		checkShort("start minute", startMinute);
+		checkShort("duration", durationMinutes);
+		if (cancelCount == cancelDays.length)
+			growCancellations();
+		cancelNameIds[cancelCount] = nameId;
+		cancelDays[cancelCount] = epochDay;
+		cancelStartMinutes[cancelCount] = (short) startMinute;
+		cancelDurationMinutes[cancelCount] = (short) durationMinutes;
+		cancelCount++;
+		cancelOffsets[rowCount] = cancelCount;
+		rowsChanged();
+	}
+	
+	/**
+	 * Get the number of a string in the dictionary, adding it if it is new
+	 * @param value
+	 * @return
+	 */
+	public int intern(String value) {
+		byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+		int hash = Arrays.hashCode(utf8);
+		int slot = findSlot(utf8, hash);
+		if (stringTable[slot] >= 0)
+			return stringTable[slot];
+		
+		int id = stringCount++;
+		if (id == stringHashes.length) {
+			stringHashes = Arrays.copyOf(stringHashes, id * 2);
+			stringOffsets = Arrays.copyOf(stringOffsets, id * 2 + 1);
+		}
+		int offset = stringOffsets[id];
+		if (offset + utf8.length > stringBytes.length)
+			stringBytes = Arrays.copyOf(stringBytes, Math.max(offset + utf8.length, stringBytes.length * 2));
+		System.arraycopy(utf8, 0, stringBytes, offset, utf8.length);
+		stringOffsets[id + 1] = offset + utf8.length;
+		stringHashes[id] = hash;
+		stringTable[slot] = id;
+		if (2 * stringCount > stringTable.length)
+			growStringTable();
+		return id;
+	}
+	
+	/**
+	 * @param value
+	 * @return the number of the string in the dictionary, or -1 if it isn't there
+	 */
+	@Override
+	public int getStringId(String value) {
+		byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+		return stringTable[findSlot(utf8, Arrays.hashCode(utf8))];
+	}
+	
+	/**
+	 * Decode a string of the dictionary, a new string every time
+	 * @param id
+	 * @return
+	 */
+	@Override
+	public String getString(int id) {
+		if (id < 0 || id >= stringCount)
+			throw new IndexOutOfBoundsException("No string " + id);
+		return new String(stringBytes, stringOffsets[id], stringOffsets[id + 1] - stringOffsets[id], StandardCharsets.UTF_8);
+	}
+	
+	/**
+	 * @return the number of strings in the dictionary
+	 */
+	@Override
+	public int getStringCount() {
+		return stringCount;
+	}
+	
+	@Override
+	public int size() {
+		return rowCount;
+	}
+	
+	@Override
+	public int getCancellationCount() {
+		return cancelCount;
+	}
+	
+	/**
+	 * Find the row of a task
+	 * @param taskName
+	 * @return the first row with that name, or -1
+	 */
+	@Override
+	public int findRow(String taskName) {
+		int id = getStringId(taskName);
+		return id < 0 || id >= rowsByName.length ? -1 : rowsByName[id];
+	}
+	
+	// <------------------ Columns -------------------------->
+	
+	@Override
+	public byte getKind(int row) {
+		return kinds[row];
+	}
+	
+	@Override
+	public int getNameId(int row) {
+		return nameIds[row];
+	}
+	
+	@Override
+	public int getTypeId(int row) {
+		return typeIds[row];
+	}
+	
+	@Override
+	public int getEpochDay(int row) {
+		return startDays[row];
+	}
+	
+	@Override
+	public int getEndEpochDay(int row) {
+		return endDays[row];
+	}
+	
+	@Override
+	public int getStartMinute(int row) {
+		return startMinutes[row];
+	}
+	
+	@Override
+	public int getDurationMinutes(int row) {
+		return durationMinutes[row];
+	}
+	
+	@Override
+	public int getFrequency(int row) {
+		return frequencies[row];
+	}
+	
+	@Override
+	public int getCancellationStart(int row) {
+		return cancelOffsets[row];
+	}
+	
+	@Override
+	public int getCancellationEnd(int row) {
+		return cancelOffsets[row + 1];
+	}
+	
+	@Override
+	public int getCancellationNameId(int cancellation) {
+		return cancelNameIds[cancellation];
+	}
+	
+	@Override
+	public int getCancellationDay(int cancellation) {
+		return cancelDays[cancellation];
+	}
+	
+	@Override
+	public int getCancellationStartMinute(int cancellation) {
+		return cancelStartMinutes[cancellation];
+	}
+	
+	@Override
+	public int getCancellationDurationMinutes(int cancellation) {
+		return cancelDurationMinutes[cancellation];
+	}
+	
+	private static void checkTime(Task task) {
+		if (task.hasGivenTime())
+			throw new IllegalArgumentException("The task " + task.getName() + " has a date or time that can not be stored in whole days and minutes");
+	}
+	
+	private static void checkShort(String field, int value) {
+		if (value < Short.MIN_VALUE || value > Short.MAX_VALUE)
+			throw new IllegalArgumentException("The " + field + " " + value + " is out of range for a task store");
+	}
+	
+	// <------------------ Growth -------------------------->
+	
+	/**
+	 * Find the slot of the table that has the string, or the empty slot it would go in
+	 */
+	private int findSlot(byte[] utf8, int hash) {
+		int mask = stringTable.length - 1;
+		for (int slot = (hash ^ (hash >>> 16)) & mask; ; slot = (slot + 1) & mask) {
+			int id = stringTable[slot];
+			if (id < 0 || stringHashes[id] == hash 
+					&& Arrays.equals(stringBytes, stringOffsets[id], stringOffsets[id + 1], utf8, 0, utf8.length))
+				return slot;
+		}
+	}
+	
+	private void growStringTable() {
+		stringTable = new int[stringTable.length * 2];
+		Arrays.fill(stringTable, -1);
+		int mask = stringTable.length - 1;
+		for (int id = 0; id < stringCount; id++) {
+			int slot = (stringHashes[id] ^ (stringHashes[id] >>> 16)) & mask;
+			while (stringTable[slot] >= 0) {
+				slot = (slot + 1) & mask;
+			}
+			stringTable[slot] = id;
+		}
+	}
+	
+	private void growRows() {
+		int capacity = kinds.length * 2;
+		kinds = Arrays.copyOf(kinds, capacity);
+		frequencies = Arrays.copyOf(frequencies, capacity);
+		nameIds = Arrays.copyOf(nameIds, capacity);
+		typeIds = Arrays.copyOf(typeIds, capacity);
+		startDays = Arrays.copyOf(startDays, capacity);
+		endDays = Arrays.copyOf(endDays, capacity);
+		startMinutes = Arrays.copyOf(startMinutes, capacity);
+		durationMinutes = Arrays.copyOf(durationMinutes, capacity);
+		cancelOffsets = Arrays.copyOf(cancelOffsets, capacity + 1);
+	}
+	
+	private void growNames(int needed) {
+		int oldLength = rowsByName.length;
+		rowsByName = Arrays.copyOf(rowsByName, Math.max(needed, oldLength * 2));
+		Arrays.fill(rowsByName, oldLength, rowsByName.length, -1);
+	}
+	
+	private void growCancellations() {
+		int capacity = cancelDays.length * 2;
+		cancelNameIds = Arrays.copyOf(cancelNameIds, capacity);
+		cancelDays = Arrays.copyOf(cancelDays, capacity);
+		cancelStartMinutes = Arrays.copyOf(cancelStartMinutes, capacity);
+		cancelDurationMinutes = Arrays.copyOf(cancelDurationMinutes, capacity);
+	}
+}
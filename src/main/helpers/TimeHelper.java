@@ -4,6 +4,8 @@ import main.tasks.Task;
 
 public class TimeHelper {
 
+	public static final int MINUTES_PER_DAY = 24 * 60;
+
 	/**
 	 * Converts a time in 12-hour format represented a s afloat to a float
 	 * in 24-hour time. This method will already parse the string. <b>Cannot have
@@ -98,6 +100,62 @@ public class TimeHelper {
 		}
 	}
 	
+	/**
+	 * Converts a date in YYYYMMDD format to the number of days since 1970-01-01.
+	 * Uses plain arithmetic so no calendar or string is created. Assumes the date is valid
+	 * @param date the date in YYYYMMDD format
+	 * @return the epoch day
+	 */
+	public static int toEpochDay(int date) {
+		int year = date / 10000;
+		int month = (date / 100) % 100;
+		int day = date % 100;
+		// shift the year so it starts in March, that way the leap day is the last day
+		year -= month <= 2 ? 1 : 0;
+		int era = Math.floorDiv(year, 400);
+		int yearOfEra = year - era * 400;
+		int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+		int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		return era * 146097 + dayOfEra - 719468;
+	}
+
+	/**
+	 * Converts the number of days since 1970-01-01 back to a date in YYYYMMDD format
+	 * @param epochDay the epoch day
+	 * @return the date in YYYYMMDD format
+	 */
+	public static int fromEpochDay(int epochDay) {
+		int shifted = epochDay + 719468;
+		int era = Math.floorDiv(shifted, 146097);
+		int dayOfEra = shifted - era * 146097;
+		int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+		int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		int shiftedMonth = (5 * dayOfYear + 2) / 153;
+		int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+		int month = shiftedMonth + (shiftedMonth < 10 ? 3 : -9);
+		int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+		return year * 10000 + month * 100 + day;
+	}
+
+	/**
+	 * Converts a time or duration in hours (as a decimal) to whole minutes
+	 * @param hours
+	 * @return
+	 */
+	public static int toMinutes(float hours) {
+		return Math.round(hours * 60);
+	}
+
+	/**
+	 * Get the absolute minute (minutes since 1970-01-01 00:00) of a time on a date
+	 * @param date the date in YYYYMMDD format
+	 * @param time the time in 24-hour format as a decimal
+	 * @return
+	 */
+	public static long toEpochMinute(int date, float time) {
+		return toEpochDay(date) * (long) MINUTES_PER_DAY + toMinutes(time);
+	}
+
 	public static boolean isDateValid(int date, int month, int day) {
 		if (date >= 10000000) {
 			// validate date: has the form YYYYMMDD as an integer
@@ -106,15 +164,15 @@ public class TimeHelper {
 				if (day > 0 && day < 31) {
 					// day has to be 1-31 (not checking for months with less days)
 				} else {
-					System.err.println("The day is invalid");
+					DiagnosticLog.warn("The day is invalid");
 					return false;
 				}
 			} else {
-				System.err.println("The month is invalid");
+				DiagnosticLog.warn("The month is invalid");
 				return false;
 			} 
 		} else {
-			System.err.println("The date is invalid");
+			DiagnosticLog.warn("The date is invalid");
 			return false;
 		}
 		return true;
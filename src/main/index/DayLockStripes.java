@@ -0,0 +1,157 @@
+package main.index;
+
+import java.util.BitSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Locks for the days of a schedule, split into stripes by epoch day. Day D belongs to stripe
+ * D mod the stripe count, so writers working on days in different stripes never wait on each other.
+ * Each stripe also owns the {@link DayOccupancy} bitmap of its days, which may only be used while
+ * holding the stripe.
+ * <p>
+ * A writer collects every stripe it needs into a {@link BitSet} and takes them with
+ * {@link DayLockStripes#lock(BitSet)}, which always locks in increasing stripe order. A recurring
+ * series that spans many days takes many stripes, but because the order is fixed two writers can
+ * not deadlock.
+ * @author CTS
+ *
+ */
+public class DayLockStripes {
+	public static final int DEFAULT_STRIPES = 64;
+	private static final int MINUTES_PER_DAY = 24 * 60;
+	
+	private final ReentrantLock[] locks;
+	private final DayOccupancy[] occupancy;
+	
+	public DayLockStripes() {
+		this(DEFAULT_STRIPES);
+	}
+	
+	public DayLockStripes(int stripeCount) {
+		this.locks = new ReentrantLock[stripeCount];
+		this.occupancy = new DayOccupancy[stripeCount];
+		for (int i = 0; i < stripeCount; i++) {
+			locks[i] = new ReentrantLock();
+			occupancy[i] = new DayOccupancy();
+		}
+	}
+	
+	public int getStripeCount() {
+		return locks.length;
+	}
+	
+	public int stripeOf(int epochDay) {
+		return Math.floorMod(epochDay, locks.length);
+	}
+	
+	/**
+	 * Add the stripes of every day touched by the absolute time range [fromMinute, toMinute)
+	 * @param stripes
+	 * @param fromMinute minutes since 1970-01-01 00:00
+	 * @param toMinute minutes since 1970-01-01 00:00
+	 */
+	public void addMinutes(BitSet stripes, long fromMinute, long toMinute) {
+		int fromDay = (int) Math.floorDiv(fromMinute, MINUTES_PER_DAY);
+		int toDay = (int) Math.floorDiv(Math.max(toMinute, fromMinute + 1) - 1, MINUTES_PER_DAY);
+		if ((long) toDay - fromDay + 1 >= locks.length) {
+			stripes.set(0, locks.length);
+			return;
+		}
+		for (int day = fromDay; day <= toDay; day++) {
+			stripes.set(stripeOf(day));
+		}
+	}
+	
+	/**
+	 * @param stripes
+	 * @return true if the set already holds every stripe
+	 */
+	public boolean isAll(BitSet stripes) {
+		return stripes.cardinality() == locks.length;
+	}
+	
+	public BitSet all() {
+		BitSet stripes = new BitSet(locks.length);
+		stripes.set(0, locks.length);
+		return stripes;
+	}
+	
+	/**
+	 * Lock the stripes in increasing order
+	 * @param stripes
+	 */
+	public void lock(BitSet stripes) {
+		for (int stripe = stripes.nextSetBit(0); stripe >= 0; stripe = stripes.nextSetBit(stripe + 1)) {
+			locks[stripe].lock();
+		}
+	}
+	
+	public void unlock(BitSet stripes) {
+		for (int stripe = stripes.nextSetBit(0); stripe >= 0; stripe = stripes.nextSetBit(stripe + 1)) {
+			locks[stripe].unlock();
+		}
+	}
+	
+	/**
+	 * Lock the stripe of a single day. Meant for a reader that holds no other stripe while it has
+	 * this one, so it can not get in the way of the increasing order writers lock in
+	 * @param epochDay
+	 */
+	public void lockDay(int epochDay) {
+		locks[stripeOf(epochDay)].lock();
+	}
+	
+	public void unlockDay(int epochDay) {
+		locks[stripeOf(epochDay)].unlock();
+	}
+	
+	// <------------------ Occupancy -------------------------->
+	// the caller has to hold the stripes of every day in the range
+	
+	/**
+	 * @see DayOccupancy#isFree(long, long)
+	 */
+	public boolean isFree(long fromMinute, long toMinute) {
+		while (fromMinute < toMinute) {
+			int day = (int) Math.floorDiv(fromMinute, MINUTES_PER_DAY);
+			long dayEnd = Math.min(toMinute, (day + 1L) * MINUTES_PER_DAY);
+			if (!occupancy[stripeOf(day)].isFree(fromMinute, dayEnd))
+				return false;
+			fromMinute = dayEnd;
+		}
+		return true;
+	}
+	
+	/**
+	 * @see DayOccupancy#mark(long, long)
+	 */
+	public void mark(long fromMinute, long toMinute) {
+		while (fromMinute < toMinute) {
+			int day = (int) Math.floorDiv(fromMinute, MINUTES_PER_DAY);
+			long dayEnd = Math.min(toMinute, (day + 1L) * MINUTES_PER_DAY);
+			occupancy[stripeOf(day)].mark(fromMinute, dayEnd);
+			fromMinute = dayEnd;
+		}
+	}
+	
+	/**
+	 * @see DayOccupancy#clear(long, long)
+	 */
+	public void clear(long fromMinute, long toMinute) {
+		while (fromMinute < toMinute) {
+			int day = (int) Math.floorDiv(fromMinute, MINUTES_PER_DAY);
+			long dayEnd = Math.min(toMinute, (day + 1L) * MINUTES_PER_DAY);
+			occupancy[stripeOf(day)].clear(fromMinute, dayEnd);
+			fromMinute = dayEnd;
+		}
+	}
+	
+	/**
+	 * Get the occupancy bitmap of the stripe a day is in
+	 * @param epochDay
+	 * @return
+	 */
+	public DayOccupancy getOccupancy(int epochDay) {
+		return occupancy[stripeOf(epochDay)];
+	}
+}
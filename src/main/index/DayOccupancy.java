@@ -0,0 +1,216 @@
+package main.index;
+
+/**
+ * A bitmap of which quarter hours are taken, kept per day. Every start time and duration
+ * is rounded to 15 minutes (see {@link main.helpers.TimeHelper#isRounded(float)}), so a day is 
+ * 96 slots and fits in two longs. Days are stored in an open addressing table keyed by the
+ * epoch day, so checking or marking a day is a hash lookup and a couple of AND/OR operations.
+ * <p>
+ * Times are turned into slots by rounding the start down and the end up, so the bitmap
+ * can only say a range is taken when it is free, never the other way around.
+ * @author CTS
+ *
+ */
+public class DayOccupancy {
+	public static final int SLOT_MINUTES = 15;
+	public static final int SLOTS_PER_DAY = 96;
+	private static final int EMPTY = Integer.MIN_VALUE;
+	
+	private int[] days;
+	private long[] words;
+	private int size;
+	
+	public DayOccupancy() {
+		this.days = new int[64];
+		this.words = new long[128];
+		java.util.Arrays.fill(days, EMPTY);
+	}
+	
+	/**
+	 * Checks if every slot touched by the absolute time range [fromMinute, toMinute) is free
+	 * @param fromMinute minutes since 1970-01-01 00:00
+	 * @param toMinute minutes since 1970-01-01 00:00
+	 * @return
+	 */
+	public boolean isFree(long fromMinute, long toMinute) {
+		long fromSlot = Math.floorDiv(fromMinute, SLOT_MINUTES);
+		long toSlot = -Math.floorDiv(-toMinute, SLOT_MINUTES);
+		while (fromSlot < toSlot) {
+			int day = (int) Math.floorDiv(fromSlot, SLOTS_PER_DAY);
+			int first = (int) (fromSlot - day * (long) SLOTS_PER_DAY);
+			int last = (int) Math.min(SLOTS_PER_DAY, toSlot - day * (long) SLOTS_PER_DAY);
+			int index = find(day);
+			if (index >= 0 && ((words[2 * index] & lowMask(first, last)) != 0 || (words[2 * index + 1] & highMask(first, last)) != 0))
+				return false;
+			fromSlot += last - first;
+		}
+		return true;
+	}
+	
+	/**
+	 * Mark every slot touched by [fromMinute, toMinute) as taken
+	 */
+	public void mark(long fromMinute, long toMinute) {
+		update(fromMinute, toMinute, true);
+	}
+	
+	/**
+	 * Mark every slot touched by [fromMinute, toMinute) as free
+	 */
+	public void clear(long fromMinute, long toMinute) {
+		update(fromMinute, toMinute, false);
+	}
+	
+	/**
+	 * Get slots 0 to 63 of a day, the bit for a slot is set if it is taken
+	 * @param epochDay
+	 * @return
+	 */
+	public long getLowWord(int epochDay) {
+		int index = find(epochDay);
+		return index < 0 ? 0L : words[2 * index];
+	}
+	
+	/**
+	 * Get slots 64 to 95 of a day in the low 32 bits, the bit for a slot is set if it is taken
+	 * @param epochDay
+	 * @return
+	 */
+	public long getHighWord(int epochDay) {
+		int index = find(epochDay);
+		return index < 0 ? 0L : words[2 * index + 1];
+	}
+	
+	/**
+	 * Find the first taken slot of a day at or after a slot
+	 * @param epochDay
+	 * @param fromSlot
+	 * @return the slot, or {@link DayOccupancy#SLOTS_PER_DAY} if the rest of the day is free
+	 */
+	public int nextTakenSlot(int epochDay, int fromSlot) {
+		int index = find(epochDay);
+		if (index < 0)
+			return SLOTS_PER_DAY;
+		return nextSlot(words[2 * index], words[2 * index + 1], fromSlot);
+	}
+	
+	/**
+	 * Find the first free slot of a day at or after a slot
+	 * @param epochDay
+	 * @param fromSlot
+	 * @return the slot, or {@link DayOccupancy#SLOTS_PER_DAY} if the rest of the day is taken
+	 */
+	public int nextFreeSlot(int epochDay, int fromSlot) {
+		int index = find(epochDay);
+		if (index < 0)
+			return Math.min(fromSlot, SLOTS_PER_DAY);
+		return nextSlot(~words[2 * index], ~words[2 * index + 1] & lowMask(0, SLOTS_PER_DAY - 64), fromSlot);
+	}
+	
+	// <------------------ Bitmap internals -------------------------->
+	
+	private void update(long fromMinute, long toMinute, boolean taken) {
+		long fromSlot = Math.floorDiv(fromMinute, SLOT_MINUTES);
+		long toSlot = -Math.floorDiv(-toMinute, SLOT_MINUTES);
+		while (fromSlot < toSlot) {
+			int day = (int) Math.floorDiv(fromSlot, SLOTS_PER_DAY);
+			int first = (int) (fromSlot - day * (long) SLOTS_PER_DAY);
+			int last = (int) Math.min(SLOTS_PER_DAY, toSlot - day * (long) SLOTS_PER_DAY);
+			if (taken) {
+				int index = findOrInsert(day);
+				words[2 * index] |= lowMask(first, last);
+				words[2 * index + 1] |= highMask(first, last);
+			} else {
+				int index = find(day);
+				if (index >= 0) {
+					words[2 * index] &= ~lowMask(first, last);
+					words[2 * index + 1] &= ~highMask(first, last);
+				}
+			}
+			fromSlot += last - first;
+		}
+	}
+	
+	/**
+	 * The bits of slots [first, last) that land in the low word
+	 */
+	static long lowMask(int first, int last) {
+		return bits(Math.min(first, 64), Math.min(last, 64));
+	}
+	
+	/**
+	 * The bits of slots [first, last) that land in the high word
+	 */
+	static long highMask(int first, int last) {
+		return bits(Math.max(first, 64) - 64, Math.max(last, 64) - 64);
+	}
+	
+	/**
+	 * The first set bit at or after a slot, counting the high word as slots 64 and up
+	 */
+	private static int nextSlot(long low, long high, int fromSlot) {
+		if (fromSlot < 64) {
+			long rest = low & (-1L << fromSlot);
+			if (rest != 0)
+				return Long.numberOfTrailingZeros(rest);
+			fromSlot = 64;
+		}
+		if (fromSlot >= SLOTS_PER_DAY)
+			return SLOTS_PER_DAY;
+		long rest = high & (-1L << (fromSlot - 64));
+		return rest == 0 ? SLOTS_PER_DAY : Math.min(64 + Long.numberOfTrailingZeros(rest), SLOTS_PER_DAY);
+	}
+	
+	private static long bits(int from, int to) {
+		if (from >= to)
+			return 0L;
+		return (-1L >>> (64 - (to - from))) << from;
+	}
+	
+	private static int hash(int day) {
+		int h = day * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+	
+	private int find(int day) {
+		int mask = days.length - 1;
+		for (int index = hash(day) & mask; ; index = (index + 1) & mask) {
+			if (days[index] == day)
+				return index;
+			if (days[index] == EMPTY)
+				return -1;
+		}
+	}
+	
+	private int findOrInsert(int day) {
+		if (2 * (size + 1) > days.length)
+			grow();
+		int mask = days.length - 1;
+		int index = hash(day) & mask;
+		while (days[index] != EMPTY) {
+			if (days[index] == day)
+				return index;
+			index = (index + 1) & mask;
+		}
+		days[index] = day;
+		size++;
+		return index;
+	}
+	
+	private void grow() {
+		int[] oldDays = days;
+		long[] oldWords = words;
+		days = new int[oldDays.length * 2];
+		words = new long[oldWords.length * 2];
+		java.util.Arrays.fill(days, EMPTY);
+		size = 0;
+		for (int i = 0; i < oldDays.length; i++) {
+			// days that were cleared back to empty are dropped here
+			if (oldDays[i] != EMPTY && (oldWords[2 * i] | oldWords[2 * i + 1]) != 0) {
+				int index = findOrInsert(oldDays[i]);
+				words[2 * index] = oldWords[2 * i];
+				words[2 * index + 1] = oldWords[2 * i + 1];
+			}
+		}
+	}
+}
@@ -0,0 +1,210 @@
+package main.index;
+
+import java.util.List;
+
+/**
+ * An immutable augmented AVL tree of half-open intervals [start, end). Every node keeps the largest
+ * end time of its subtree so that an overlap query can skip whole subtrees, which makes a query
+ * O(log n + k) where k is the number of hits. Intervals with the same start are kept apart by the
+ * order they were inserted in.
+ * <p>
+ * Inserting or removing returns a new tree that
+ * shares every node off the changed path with the old one, so it costs O(log n) and anyone still
+ * holding the old tree keeps seeing it exactly as it was. Safe to read from any thread without locks.
+ * @author CTS
+ *
+ * @param <T> the value stored with each interval
+ */
+public final class PersistentIntervalTree<T> {
+	private static final PersistentIntervalTree<?> EMPTY = new PersistentIntervalTree<>(null, 0, 0);
+	
+	private final Node<T> root;
+	private final long nextSequence;
+	private final int size;
+	
+	private PersistentIntervalTree(Node<T> root, long nextSequence, int size) {
+		this.root = root;
+		this.nextSequence = nextSequence;
+		this.size = size;
+	}
+	
+	@SuppressWarnings("unchecked")
+	public static <T> PersistentIntervalTree<T> empty() {
+		return (PersistentIntervalTree<T>) EMPTY;
+	}
+	
+	/**
+	 * @param start the inclusive start of the interval
+	 * @param end the exclusive end of the interval
+	 * @param value
+	 * @return a tree with the interval added
+	 */
+	public PersistentIntervalTree<T> insert(long start, long end, T value) {
+		Node<T> newRoot = insert(root, start, end, nextSequence, value);
+		return new PersistentIntervalTree<>(newRoot, nextSequence + 1, size + 1);
+	}
+	
+	/**
+	 * @param start the start the value was inserted with
+	 * @param value the value to remove (compared by reference)
+	 * @return a tree without the interval, or this tree if the value was not found
+	 */
+	public PersistentIntervalTree<T> remove(long start, T value) {
+		Node<T> target = find(root, start, value);
+		if (target == null)
+			return this;
+		return new PersistentIntervalTree<>(delete(root, target.start, target.sequence), nextSequence, size - 1);
+	}
+	
+	/**
+	 * Collect every value whose interval overlaps [from, to)
+	 * @param from the inclusive start of the query
+	 * @param to the exclusive end of the query
+	 * @param out the list the hits are added to, in start order
+	 * @return the same list that was passed in
+	 */
+	public List<T> query(long from, long to, List<T> out) {
+		query(root, from, to, out);
+		return out;
+	}
+	
+	public boolean contains(long start, T value) {
+		return find(root, start, value) != null;
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	
+	// <------------------ Tree internals -------------------------->
+	
+	private static <T> void query(Node<T> node, long from, long to, List<T> out) {
+		if (node == null || node.maxEnd <= from)
+			return;
+		query(node.left, from, to, out);
+		if (node.start >= to)
+			return;
+		if (node.end > from)
+			out.add(node.value);
+		query(node.right, from, to, out);
+	}
+	
+	private static <T> Node<T> find(Node<T> node, long start, T value) {
+		if (node == null)
+			return null;
+		if (start < node.start)
+			return find(node.left, start, value);
+		if (start > node.start)
+			return find(node.right, start, value);
+		// equal starts can sit on either side after a rotation
+		if (node.value == value)
+			return node;
+		Node<T> found = find(node.left, start, value);
+		return found != null ? found : find(node.right, start, value);
+	}
+	
+	private static int compare(long start, long sequence, Node<?> node) {
+		int byStart = Long.compare(start, node.start);
+		return byStart != 0 ? byStart : Long.compare(sequence, node.sequence);
+	}
+	
+	private static <T> Node<T> insert(Node<T> node, long start, long end, long sequence, T value) {
+		if (node == null)
+			return new Node<>(start, end, sequence, value, null, null);
+		if (compare(start, sequence, node) < 0)
+			return rebalance(node, insert(node.left, start, end, sequence, value), node.right);
+		return rebalance(node, node.left, insert(node.right, start, end, sequence, value));
+	}
+	
+	private static <T> Node<T> delete(Node<T> node, long start, long sequence) {
+		if (node == null)
+			return null;
+		int cmp = compare(start, sequence, node);
+		if (cmp < 0)
+			return rebalance(node, delete(node.left, start, sequence), node.right);
+		if (cmp > 0)
+			return rebalance(node, node.left, delete(node.right, start, sequence));
+		if (node.left == null)
+			return node.right;
+		if (node.right == null)
+			return node.left;
+		// replace this node with the smallest node on the right
+		Node<T> successor = node.right;
+		while (successor.left != null)
+			successor = successor.left;
+		return rebalance(successor, node.left, deleteMin(node.right));
+	}
+	
+	private static <T> Node<T> deleteMin(Node<T> node) {
+		if (node.left == null)
+			return node.right;
+		return rebalance(node, deleteMin(node.left), node.right);
+	}
+	
+	/**
+	 * Make a copy of the node with new children, rotating if the children are out of balance
+	 */
+	private static <T> Node<T> rebalance(Node<T> node, Node<T> left, Node<T> right) {
+		int balance = height(left) - height(right);
+		if (balance > 1) {
+			if (height(left.left) < height(left.right))
+				left = rotateLeft(left, left.left, left.right);
+			return rotateRight(node, left, right);
+		}
+		if (balance < -1) {
+			if (height(right.right) < height(right.left))
+				right = rotateRight(right, right.left, right.right);
+			return rotateLeft(node, left, right);
+		}
+		return node.with(left, right);
+	}
+	
+	private static <T> Node<T> rotateLeft(Node<T> node, Node<T> left, Node<T> right) {
+		return right.with(node.with(left, right.left), right.right);
+	}
+	
+	private static <T> Node<T> rotateRight(Node<T> node, Node<T> left, Node<T> right) {
+		return left.with(left.left, node.with(left.right, right));
+	}
+	
+	private static int height(Node<?> node) {
+		return node == null ? 0 : node.height;
+	}
+	
+	private static final class Node<T> {
+		final long start;
+		final long end;
+		final long sequence;
+		final T value;
+		final long maxEnd;
+		final int height;
+		final Node<T> left;
+		final Node<T> right;
+		
+		Node(long start, long end, long sequence, T value, Node<T> left, Node<T> right) {
+			this.start = start;
+			this.end = end;
+			this.sequence = sequence;
+			this.value = value;
+			this.left = left;
+			this.right = right;
+			this.height = 1 + Math.max(height(left), height(right));
+			long maxEnd = end;
+			if (left != null && left.maxEnd > maxEnd)
+				maxEnd = left.maxEnd;
+			if (right != null && right.maxEnd > maxEnd)
+				maxEnd = right.maxEnd;
+			this.maxEnd = maxEnd;
+		}
+		
+		Node<T> with(Node<T> left, Node<T> right) {
+			if (left == this.left && right == this.right)
+				return this;
+			return new Node<>(start, end, sequence, value, left, right);
+		}
+	}
+}
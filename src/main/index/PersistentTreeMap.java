@@ -0,0 +1,188 @@
+package main.index;
+
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * An immutable sorted map, kept as an AVL tree. {@link PersistentTreeMap#put(Comparable, Object)} and
+ * {@link PersistentTreeMap#remove(Comparable)} return a new map that shares every node off the
+ * changed path with the old one, so they cost O(log n) and the old map never changes. Safe to read
+ * from any thread without locks.
+ * @author CTS
+ *
+ * @param <K>
+ * @param <V>
+ */
+public final class PersistentTreeMap<K extends Comparable<? super K>, V> {
+	private static final PersistentTreeMap<?, ?> EMPTY = new PersistentTreeMap<>(null, 0);
+	
+	private final Node<K, V> root;
+	private final int size;
+	
+	private PersistentTreeMap(Node<K, V> root, int size) {
+		this.root = root;
+		this.size = size;
+	}
+	
+	@SuppressWarnings("unchecked")
+	public static <K extends Comparable<? super K>, V> PersistentTreeMap<K, V> empty() {
+		return (PersistentTreeMap<K, V>) EMPTY;
+	}
+	
+	public V get(K key) {
+		Node<K, V> node = root;
+		while (node != null) {
+			int cmp = key.compareTo(node.key);
+			if (cmp == 0)
+				return node.value;
+			node = cmp < 0 ? node.left : node.right;
+		}
+		return null;
+	}
+	
+	public boolean containsKey(K key) {
+		return get(key) != null;
+	}
+	
+	/**
+	 * @param key
+	 * @param value not null
+	 * @return a map with the key set to the value
+	 */
+	public PersistentTreeMap<K, V> put(K key, V value) {
+		boolean replaced = containsKey(key);
+		return new PersistentTreeMap<>(put(root, key, value), replaced ? size : size + 1);
+	}
+	
+	/**
+	 * @param key
+	 * @return a map without the key, or this map if it did not have the key
+	 */
+	public PersistentTreeMap<K, V> remove(K key) {
+		if (!containsKey(key))
+			return this;
+		return new PersistentTreeMap<>(remove(root, key), size - 1);
+	}
+	
+	/**
+	 * Add every value to the list in key order
+	 * @param out
+	 * @return the same list that was passed in
+	 */
+	public List<V> values(List<V> out) {
+		values(root, out);
+		return out;
+	}
+	
+	/**
+	 * Pass every entry to the action in key order
+	 * @param action
+	 */
+	public void forEach(BiConsumer<? super K, ? super V> action) {
+		forEach(root, action);
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	
+	// <------------------ Tree internals -------------------------->
+	
+	private static <K, V> void values(Node<K, V> node, List<V> out) {
+		while (node != null) {
+			values(node.left, out);
+			out.add(node.value);
+			node = node.right;
+		}
+	}
+	
+	private static <K, V> void forEach(Node<K, V> node, BiConsumer<? super K, ? super V> action) {
+		while (node != null) {
+			forEach(node.left, action);
+			action.accept(node.key, node.value);
+			node = node.right;
+		}
+	}
+	
+	private static <K extends Comparable<? super K>, V> Node<K, V> put(Node<K, V> node, K key, V value) {
+		if (node == null)
+			return new Node<>(key, value, null, null);
+		int cmp = key.compareTo(node.key);
+		if (cmp < 0)
+			return rebalance(node, put(node.left, key, value), node.right);
+		if (cmp > 0)
+			return rebalance(node, node.left, put(node.right, key, value));
+		return new Node<>(key, value, node.left, node.right);
+	}
+	
+	private static <K extends Comparable<? super K>, V> Node<K, V> remove(Node<K, V> node, K key) {
+		int cmp = key.compareTo(node.key);
+		if (cmp < 0)
+			return rebalance(node, remove(node.left, key), node.right);
+		if (cmp > 0)
+			return rebalance(node, node.left, remove(node.right, key));
+		if (node.left == null)
+			return node.right;
+		if (node.right == null)
+			return node.left;
+		// replace this node with the smallest node on the right
+		Node<K, V> successor = node.right;
+		while (successor.left != null)
+			successor = successor.left;
+		return rebalance(successor, node.left, removeMin(node.right));
+	}
+	
+	private static <K, V> Node<K, V> removeMin(Node<K, V> node) {
+		if (node.left == null)
+			return node.right;
+		return rebalance(node, removeMin(node.left), node.right);
+	}
+	
+	/**
+	 * Make a copy of the node with new children, rotating if the children are out of balance
+	 */
+	private static <K, V> Node<K, V> rebalance(Node<K, V> node, Node<K, V> left, Node<K, V> right) {
+		int balance = height(left) - height(right);
+		if (balance > 1) {
+			if (height(left.left) < height(left.right))
+				left = left.right.with(left.with(left.left, left.right.left), left.right.right);
+			return left.with(left.left, node.with(left.right, right));
+		}
+		if (balance < -1) {
+			if (height(right.right) < height(right.left))
+				right = right.left.with(right.left.left, right.with(right.left.right, right.right));
+			return right.with(node.with(left, right.left), right.right);
+		}
+		return node.with(left, right);
+	}
+	
+	private static int height(Node<?, ?> node) {
+		return node == null ? 0 : node.height;
+	}
+	
+	private static final class Node<K, V> {
+		final K key;
+		final V value;
+		final int height;
+		final Node<K, V> left;
+		final Node<K, V> right;
+		
+		Node(K key, V value, Node<K, V> left, Node<K, V> right) {
+			this.key = key;
+			this.value = value;
+			this.left = left;
+			this.right = right;
+			this.height = 1 + Math.max(height(left), height(right));
+		}
+		
+		Node<K, V> with(Node<K, V> left, Node<K, V> right) {
+			if (left == this.left && right == this.right)
+				return this;
+			return new Node<>(key, value, left, right);
+		}
+	}
+}
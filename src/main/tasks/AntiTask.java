@@ -3,6 +3,8 @@ package main.tasks;
 import java.time.LocalDate;
 import java.time.LocalTime;
 
+import main.helpers.DiagnosticLog;
+
 public class AntiTask extends Task {
     private State currentState;
 
@@ -76,28 +78,28 @@ class NullState implements State {
 
     @Override
     public void createTask() {
-        System.out.println("Anti-task created.");
+        DiagnosticLog.info("Anti-task created.");
         antiTask.setCurrentState(new CreatedState(antiTask));
     }
 
     @Override
     public void addToSchedule() {
-        System.out.println("Error: Cannot add anti-task to schedule. Anti-task doesn't exist.");
+        DiagnosticLog.error("Error: Cannot add anti-task to schedule. Anti-task doesn't exist.");
     }
 
     @Override
     public void findMatchWithRecurringTask() {
-        System.out.println("Error: Cannot find match for anti-task. Anti-task doesn't exist.");
+        DiagnosticLog.error("Error: Cannot find match for anti-task. Anti-task doesn't exist.");
     }
 
     @Override
     public void scheduled() {
-        System.out.println("Error: Anti-task cannot be scheduled. Anti-task doesn't exist.");
+        DiagnosticLog.error("Error: Anti-task cannot be scheduled. Anti-task doesn't exist.");
     }
 
     @Override
     public void removed() {
-        System.out.println("Error: Anti-task cannot be removed. Anti-task doesn't exist.");
+        DiagnosticLog.error("Error: Anti-task cannot be removed. Anti-task doesn't exist.");
     }
 }
 
@@ -111,28 +113,28 @@ class CreatedState implements State {
 
     @Override
     public void createTask() {
-        System.out.println("Error: Anti-task already exists.");
+        DiagnosticLog.error("Error: Anti-task already exists.");
     }
 
     @Override
     public void addToSchedule() {
-        System.out.println("Anti-task added to schedule.");
+        DiagnosticLog.info("Anti-task added to schedule.");
         antiTask.setCurrentState(new PendingState(antiTask));
     }
 
     @Override
     public void findMatchWithRecurringTask() {
-        System.out.println("Error: Cannot find match for anti-task. Anti-task not yet added to schedule.");
+        DiagnosticLog.error("Error: Cannot find match for anti-task. Anti-task not yet added to schedule.");
     }
 
     @Override
     public void scheduled() {
-        System.out.println("Error: Anti-task cannot be scheduled. Anti-task is not in pending state.");
+        DiagnosticLog.error("Error: Anti-task cannot be scheduled. Anti-task is not in pending state.");
     }
 
     @Override
     public void removed() {
-        System.out.println("Error: Anti-task cannot be removed. Anti-task is not in pending state.");
+        DiagnosticLog.error("Error: Anti-task cannot be removed. Anti-task is not in pending state.");
     }
 }
 
@@ -146,29 +148,29 @@ class PendingState implements State {
 
     @Override
     public void createTask() {
-        System.out.println("Error: Anti-task already exists.");
+        DiagnosticLog.error("Error: Anti-task already exists.");
     }
 
     @Override
     public void addToSchedule() {
-        System.out.println("Error: Anti-task is already in the schedule.");
+        DiagnosticLog.error("Error: Anti-task is already in the schedule.");
     }
 
     @Override
     public void findMatchWithRecurringTask() {
-        System.out.println("No match found for anti-task. Anti-task removed from schedule.");
+        DiagnosticLog.warn("No match found for anti-task. Anti-task removed from schedule.");
         antiTask.setCurrentState(new RemovedState(antiTask));
     }
 
     @Override
     public void scheduled() {
-        System.out.println("Anti-task scheduled.");
+        DiagnosticLog.info("Anti-task scheduled.");
         antiTask.setCurrentState(new ScheduledState(antiTask));
     }
 
     @Override
     public void removed() {
-        System.out.println("Anti-task removed from schedule.");
+        DiagnosticLog.info("Anti-task removed from schedule.");
         antiTask.setCurrentState(new RemovedState(antiTask));
     }
 }
@@ -183,27 +185,27 @@ class ScheduledState implements State {
 
     @Override
     public void createTask() {
-        System.out.println("Error: Anti-task already exists.");
+        DiagnosticLog.error("Error: Anti-task already exists.");
     }
 
     @Override
     public void addToSchedule() {
-        System.out.println("Error: Anti-task is already in the schedule.");
+        DiagnosticLog.error("Error: Anti-task is already in the schedule.");
     }
 
     @Override
     public void findMatchWithRecurringTask() {
-        System.out.println("Error: Anti-task is already scheduled.");
+        DiagnosticLog.error("Error: Anti-task is already scheduled.");
     }
 
     @Override
     public void scheduled() {
-        System.out.println("Error: Anti-task is already scheduled.");
+        DiagnosticLog.error("Error: Anti-task is already scheduled.");
     }
 
     @Override
     public void removed() {
-        System.out.println("Error: Anti-task cannot be removed once scheduled.");
+        DiagnosticLog.error("Error: Anti-task cannot be removed once scheduled.");
     }
 }
 
@@ -217,26 +219,26 @@ class RemovedState implements State {
 
     @Override
     public void createTask() {
-        System.out.println("Error: Anti-task already exists.");
+        DiagnosticLog.error("Error: Anti-task already exists.");
     }
 
     @Override
     public void addToSchedule() {
-        System.out.println("Error: Cannot add anti-task to schedule. Anti-task is removed.");
+        DiagnosticLog.error("Error: Cannot add anti-task to schedule. Anti-task is removed.");
     }
 
     @Override
     public void findMatchWithRecurringTask() {
-        System.out.println("Error: Cannot find match for anti-task. Anti-task is removed.");
+        DiagnosticLog.error("Error: Cannot find match for anti-task. Anti-task is removed.");
     }
 
     @Override
     public void scheduled() {
-        System.out.println("Error: Anti-task cannot be scheduled. Anti-task is removed.");
+        DiagnosticLog.error("Error: Anti-task cannot be scheduled. Anti-task is removed.");
     }
 
     @Override
     public void removed() {
-        System.out.println("Error: Anti-task already removed.");
+        DiagnosticLog.error("Error: Anti-task already removed.");
     }
 }
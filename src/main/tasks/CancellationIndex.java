@@ -0,0 +1,73 @@
+package main.tasks;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Keeps the anti-tasks that cancel occurances of one recurring series. Every cancelled day is 
+ * a bit in a bitset that starts at the first day of the series, so checking a day is O(1).
+ * The same index is shared (not copied) by the occurance tasks made from the series.
+ * The methods are synchronized, since a scheduler may check a series on one thread while
+ * another thread cancels one of its occurances.
+ * @author CTS
+ *
+ */
+final class CancellationIndex {
+	private final List<AntiTask> antiTasks;
+	private BitSet cancelledDays;
+	private int baseDay;
+	
+	/**
+	 * @param baseDay the epoch day that the first bit stands for, normally the start of the series
+	 * @param span the number of days the series covers, used to size the bitset up front
+	 */
+	CancellationIndex(int baseDay, int span) {
+		this.antiTasks = new ArrayList<>();
+		this.cancelledDays = new BitSet(Math.max(span, 1));
+		this.baseDay = baseDay;
+	}
+	
+	/**
+	 * @return an index with the same anti-tasks that is not shared with this one
+	 */
+	synchronized CancellationIndex copy() {
+		CancellationIndex copy = new CancellationIndex(baseDay, 1);
+		copy.antiTasks.addAll(antiTasks);
+		copy.cancelledDays = (BitSet) cancelledDays.clone();
+		return copy;
+	}
+	
+	/**
+	 * Checks if an anti-task cancels the occurance on this day
+	 * @param epochDay
+	 * @return
+	 */
+	synchronized boolean contains(int epochDay) {
+		return epochDay >= baseDay && cancelledDays.get(epochDay - baseDay);
+	}
+	
+	synchronized void add(AntiTask antiTask) {
+		int epochDay = antiTask.getEpochDay();
+		if (epochDay < baseDay) {
+			// the series was moved earlier than when the index was made, shift the bits over
+			BitSet shifted = new BitSet(cancelledDays.length() + baseDay - epochDay);
+			for (int bit = cancelledDays.nextSetBit(0); bit >= 0; bit = cancelledDays.nextSetBit(bit + 1)) {
+				shifted.set(bit + baseDay - epochDay);
+			}
+			cancelledDays = shifted;
+			baseDay = epochDay;
+		}
+		antiTasks.add(antiTask);
+		cancelledDays.set(epochDay - baseDay);
+	}
+	
+	synchronized List<AntiTask> getAntiTasks() {
+		return Collections.unmodifiableList(new ArrayList<>(antiTasks));
+	}
+	
+	synchronized int size() {
+		return antiTasks.size();
+	}
+}
@@ -0,0 +1,99 @@
+package main.tasks;
+
+import main.helpers.TimeHelper;
+
+/**
+ * A lightweight view of one occurance of a task on a single day. Recurring tasks hand these out 
+ * instead of building a full {@link RecurringTask} for every date. For a transient task, 
+ * the only occurance is the task itself on its date.
+ * @author CTS
+ *
+ */
+public final class Occurrence {
+	private final Task task;
+	private final int epochDay;
+	
+	/**
+	 * @param task the task (or recurring series) this is an occurance of
+	 * @param epochDay the day of the occurance as days since 1970-01-01
+	 */
+	public Occurrence(Task task, int epochDay) {
+		this.task = task;
+		this.epochDay = epochDay;
+	}
+	
+	public Task getTask() {
+		return task;
+	}
+	
+	public int getEpochDay() {
+		return epochDay;
+	}
+	
+	/**
+	 * Get the date of this occurance in YYYYMMDD format
+	 * @return
+	 */
+	public int getDate() {
+		return TimeHelper.fromEpochDay(epochDay);
+	}
+	
+	public String getName() {
+		return task.getName();
+	}
+	
+	public String getType() {
+		return task.getType();
+	}
+	
+	public float getStartTime() {
+		return task.getStartTime();
+	}
+	
+	public float getDuration() {
+		return task.getDuration();
+	}
+	
+	public long getStartEpochMinute() {
+		return epochDay * (long) TimeHelper.MINUTES_PER_DAY + task.getStartMinute();
+	}
+	
+	public long getEndEpochMinute() {
+		return getStartEpochMinute() + task.getDurationMinutes();
+	}
+	
+	/**
+	 * Checks if an anti-task cancelled this occurance. Always false for a task that does not recur
+	 * @return
+	 */
+	public boolean isCancelled() {
+		return task instanceof RecurringTask recurringTask && recurringTask.isCancelledOn(epochDay);
+	}
+	
+	/**
+	 * Build a full recurring task that starts on this occurance, the same as
+	 * {@link RecurringTask#getNextOccurrance()} used to return. Only use this when a 
+	 * {@link RecurringTask} is really needed
+	 * @return
+	 */
+	public RecurringTask toRecurringTask() {
+		RecurringTask series = (RecurringTask) task;
+		RecurringTask occurrenceTask = new RecurringTask(series.getName(), series.type, getDate(), series.getEndDate(), 
+				series.getStartTime(), series.getDuration(), series.getFrequency());
+		occurrenceTask.shareCancellations(series);
+		occurrenceTask.setCancelled(isCancelled());
+		return occurrenceTask;
+	}
+	
+	@Override
+	public String toString() {
+		int date = getDate();
+		return getName() + " | Type: " + getType() + (isCancelled() ? " | Cancelled" : "") + "\n" 
+				+ "Date: " + TimeHelper.getMonthName((date / 100) % 100) + " " + (date % 100) + ", " + (date / 10000)
+				+ " | Start Time: " + getStartTime() + " | Duration: " + getDuration();
+	}
+	
+	public void printTask() {
+		System.out.println(this.toString());
+	}
+}
@@ -0,0 +1,67 @@
+package main.tasks;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Hands out the occurances of a recurring task one at a time without storing them. 
+ * Occurances are numbered from the start of the series, so a split just cuts the 
+ * range of numbers (and the date range) in half, which lets parallel streams share the work.
+ * @author CTS
+ *
+ */
+final class OccurrenceSpliterator implements Spliterator<Occurrence> {
+	private final RecurringTask series;
+	private final int startDay;
+	private final int frequency;
+	private int index;
+	private final int fence;
+	
+	/**
+	 * @param series the recurring task
+	 * @param index the number of the first occurance to hand out (0 is the start date)
+	 * @param fence one past the number of the last occurance to hand out
+	 */
+	OccurrenceSpliterator(RecurringTask series, int index, int fence) {
+		this.series = series;
+		this.startDay = series.getEpochDay();
+		this.frequency = Math.max(series.getFrequency(), 1);
+		this.index = index;
+		this.fence = fence;
+	}
+	
+	@Override
+	public boolean tryAdvance(Consumer<? super Occurrence> action) {
+		if (index >= fence)
+			return false;
+		action.accept(new Occurrence(series, startDay + index++ * frequency));
+		return true;
+	}
+	
+	@Override
+	public void forEachRemaining(Consumer<? super Occurrence> action) {
+		for (; index < fence; index++) {
+			action.accept(new Occurrence(series, startDay + index * frequency));
+		}
+	}
+	
+	@Override
+	public Spliterator<Occurrence> trySplit() {
+		int middle = (index + fence) >>> 1;
+		if (middle <= index)
+			return null;
+		Spliterator<Occurrence> firstHalf = new OccurrenceSpliterator(series, index, middle);
+		index = middle;
+		return firstHalf;
+	}
+	
+	@Override
+	public long estimateSize() {
+		return Math.max(fence - index, 0);
+	}
+	
+	@Override
+	public int characteristics() {
+		return ORDERED | SIZED | SUBSIZED | DISTINCT | NONNULL | IMMUTABLE;
+	}
+}
@@ -1,20 +1,26 @@
 package main.tasks;
 
 import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.GregorianCalendar;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import main.helpers.DiagnosticLog;
+import main.helpers.DiagnosticLog.Level;
 import main.helpers.TimeHelper;
 
 public class RecurringTask extends Task {
+	/** Returned by {@link RecurringTask#findSharedOccurrence(RecurringTask)} when the series never overlap */
+	public static final int NO_OCCURRENCE = Integer.MIN_VALUE;
+	
 	RecurringTaskType type;
 	int endDate;
-	float endTime;
-	GregorianCalendar endGregorianDate;
+	int endEpochDay;
 	int frequency;
-	AntiTask cancelledOccurance;
-	List<AntiTask> cancelledOccurances;
+	CancellationIndex cancellations;
 	boolean isCancelled = false;
 	
 	/**
@@ -30,11 +36,10 @@ public class RecurringTask extends Task {
 	 */
 	public RecurringTask(String taskName, RecurringTaskType taskType, int startDate, int endDate, float startTime, float taskDuration, int taskFrequency) {
 		super(taskName, taskType.getId(), startDate, startTime, taskDuration);
-		this.endTime = startTime + taskDuration >= 24 ? (startTime + taskDuration) - 24 : startTime + taskDuration;
 		this.type = taskType;
-		this.endDate = endDate;
+		this.setEndDate(endDate);
 		this.frequency = taskFrequency;
-		this.endGregorianDate = new GregorianCalendar(this.getEndYear(), this.getEndMonth() - 1, this.getEndDay());
+		this.cancellations = new CancellationIndex(this.getEpochDay(), this.getEndEpochDay() - this.getEpochDay() + 1);
 	}
 	
 	@Override
@@ -45,10 +50,8 @@ public class RecurringTask extends Task {
 	}
 	
 	private String getNumberOfCancelledSeries() {
-		if (this.getCancelledOccurances() != null && !this.getCancelledOccurances().isEmpty()) {
-			return " | Cancelled Series: " + this.getCancelledOccurances().size() + "";
-		} else if (this.getCancelledOccurance() != null) {
-			return "| Cancelled Series: 1";
+		if (cancellations.size() > 0) {
+			return " | Cancelled Series: " + cancellations.size();
 		}
 		return "";
 	}
@@ -59,85 +62,221 @@ public class RecurringTask extends Task {
 	}
 
 	/**
-	 * returns wheter or not the passed task occurs during this task's occurances
+	 * returns wheter or not the passed task occurs during this task's occurances. 
+	 * For an {@link AntiTask}, this checks that it exactly matches one of the occurances
 	 * @param taskToCheck
 	 * @return false if the task doesn't overlap, true if there is an overlap
 	 */
 	public boolean overlapsWith(Task taskToCheck) {
-		boolean validating = true;
-		RecurringTask nextInstance = this;
-		
-		//System.out.println("check against the future occurances of this task");
-		while(validating) {
-			//System.out.println("Checking if this task occurs on the same day");
-			if (nextInstance.isCancelled) {
-				//System.out.println("The nextInstance is cancelled, so there is no overlaps");
+		if (taskToCheck instanceof AntiTask antiTask) {
+			// anti-tasks indicate single cancelations of reaccuring tasks
+			if (matchesOccurrence(antiTask)) {
+				DiagnosticLog.debug("This anti task equals this recurring task's time exactly");
+				return true;
 			}
-			else if (taskToCheck.getStartGregorianDate().compareTo(nextInstance.getStartGregorianDate()) == 0) {
-				
-				
-				if (taskToCheck instanceof RecurringTask recurringTask) {
-					if (recurringTask.isCancelled) {
-						//System.out.println("This task is cancelled by an antitask, nextInstance will not overlap");
-						return false;
-					}
-					
-					
-						
-					// if the tasks happen on the same day, we should check if they occur at the same time
-					if (recurringTask.getStartTime() == nextInstance.getStartTime()
-							|| (recurringTask.getEndTime() > nextInstance.getStartTime() && (recurringTask.getEndTime()) <= (nextInstance.getEndTime()))) {
-						// first argument checks if the start time is start time of the nextInstance
-						// second argument checks if the endTime of the comparator task is within the endTime of the nextInstance
-						System.err.println("The " + recurringTask.getName() + " recurring task has an overlapping date with the " + this.getName() + " task: " + nextInstance.getStartPrettyPrintDate());
-						return true;
-					} 
-				} else if(taskToCheck instanceof AntiTask antiTask) {
-					float endTime = (antiTask.getStartTime() + antiTask.duration);
-					// anti-tasks indicate single cancelations of reaccuring tasks
-					if (antiTask.getStartTime() == nextInstance.getStartTime()) {
-						System.out.println("This anti task equals this recurring task's time exactly");
-						return true;
-					}
-					
-					if ((antiTask.getStartTime() + antiTask.duration) <= nextInstance.getEndTime()) {
-						System.out.println("The end time of the antitask is within the time of the next reccurance");
-						return true;
-					}
-					
-					if ((antiTask.getStartTime() + (endTime / 2)) <= nextInstance.getEndTime()) {
-						
-						System.out.println("The " + antiTask.getName() + " antitask has an overlapping date with the " + this.getName() + " task: " + nextInstance.getStartPrettyPrintDate());
-						return true;
-					}
-				} else {
-					if (taskToCheck.getStartTime() == nextInstance.getStartTime()) {
-						System.out.println("This task equals this recurring task's time exactly");
-						return true;
-					}
-					
-					if (taskToCheck.getStartTime() + taskToCheck.duration > nextInstance.getStartTime() && (taskToCheck.getStartTime() + taskToCheck.duration) <= nextInstance.getEndTime()) {
-						System.err.println("The end time of the task is within the time of the next reccurance: \n" + nextInstance.toString());
-						return true;
-					}
-					
-					if ((taskToCheck.getStartTime() + (endTime / 2)) <= nextInstance.getEndTime()) {
-						System.out.println("The " + taskToCheck.getName() + " task has an overlapping date with the "+ this.getName() + " task: " + nextInstance.getStartPrettyPrintDate());
-						return true;
-					}
-				}
+			return false;
+		}
+		
+		if (taskToCheck instanceof RecurringTask recurringTask) {
+			int sharedDay = this.findSharedOccurrence(recurringTask);
+			if (sharedDay != NO_OCCURRENCE) {
+				if (DiagnosticLog.isEnabled(Level.WARN))
+					DiagnosticLog.warn("The " + recurringTask.getName() + " recurring task has an overlapping date with the " + this.getName() + " task: " + TimeHelper.fromEpochDay(sharedDay));
+				return true;
 			}
-			nextInstance = nextInstance.getNextOccurrance();
-			if (nextInstance != null) {
-				// if the next instance's date is the same as the end date, then we have checked all occurances
-				if (nextInstance.getStartGregorianDate().compareTo(this.getEndGregorianDate()) >= 0)
-					validating = false;
-			} else
-				validating = false;
+			return false;
+		}
+		
+		if (occursBetween(taskToCheck.getStartEpochMinute(), taskToCheck.getEndEpochMinute())) {
+			if (DiagnosticLog.isEnabled(Level.WARN))
+				DiagnosticLog.warn("The " + taskToCheck.getName() + " task has an overlapping date with the " + this.getName() + " task: " + taskToCheck.getPrettyPrintDate());
+			return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Find the first day this series has an occurance that overlaps an occurance of the other series.
+	 * Instead of walking the days, the day offset between the two occurances is fixed by their times, 
+	 * and for each offset the shared days are solved as a pair of congruences (gcd/CRT). 
+	 * The cost does not depend on how long the series run, only on how many of the 
+	 * shared days are cancelled
+	 * @param other
+	 * @return the epoch day of this series' occurance, or {@link RecurringTask#NO_OCCURRENCE}
+	 */
+	public int findSharedOccurrence(RecurringTask other) {
+		int startA = this.getStartMinute(), durationA = this.getDurationMinutes();
+		int startB = other.getStartMinute(), durationB = other.getDurationMinutes();
+		// the occurance of B on day (D + k) overlaps the occurance of A on day D when
+		// startA - startB - durationB < k * 1440 < startA + durationA - startB
+		int minOffset = Math.floorDiv(startA - startB - durationB, TimeHelper.MINUTES_PER_DAY) + 1;
+		int maxOffset = -Math.floorDiv(-(startA + durationA - startB), TimeHelper.MINUTES_PER_DAY) - 1;
+		
+		int first = NO_OCCURRENCE;
+		for (int offset = minOffset; offset <= maxOffset; offset++) {
+			int day = this.findSharedOccurrence(other, offset);
+			if (day != NO_OCCURRENCE && (first == NO_OCCURRENCE || day < first))
+				first = day;
+		}
+		return first;
+	}
+	
+	/**
+	 * Solve for the first day D this series occurs on where the other series occurs on D + offset
+	 * and neither occurance is cancelled
+	 * @param other
+	 * @param offset
+	 * @return the day D or {@link RecurringTask#NO_OCCURRENCE}
+	 */
+	private int findSharedOccurrence(RecurringTask other, int offset) {
+		long startA = this.getEpochDay(), startB = other.getEpochDay() - (long) offset;
+		long lastDay = Math.min(this.getLastOccurrenceDay(), other.getLastOccurrenceDay() - (long) offset);
+		long firstDay = Math.max(startA, startB);
+		if (firstDay > lastDay)
+			return NO_OCCURRENCE;
+		
+		long frequencyA = Math.max(this.getFrequency(), 1), frequencyB = Math.max(other.getFrequency(), 1);
+		long gcd = gcd(frequencyA, frequencyB);
+		long difference = startB - startA;
+		if (Math.floorMod(difference, gcd) != 0)
+			return NO_OCCURRENCE;
+		
+		// x = startA + frequencyA * t where frequencyA * t = difference (mod frequencyB)
+		long period = frequencyA / gcd * frequencyB;
+		long reducedModulus = frequencyB / gcd;
+		long t = Math.floorMod((difference / gcd) % reducedModulus * modInverse(frequencyA / gcd, reducedModulus), reducedModulus);
+		long solution = startA + frequencyA * t;
+		long day = solution + Math.floorDiv(firstDay - solution + period - 1, period) * period;
+		
+		// only cancelled days can push the answer further than the first solution
+		for (; day <= lastDay; day += period) {
+			if (!this.isCancelledOn((int) day) && !other.isCancelledOn((int) (day + offset)))
+				return (int) day;
+		}
+		return NO_OCCURRENCE;
+	}
+	
+	private static long gcd(long a, long b) {
+		while (b != 0) {
+			long remainder = a % b;
+			a = b;
+			b = remainder;
+		}
+		return a;
+	}
+	
+	/**
+	 * The inverse of a modulo m using the extended euclidean algorithm. a and m must be coprime
+	 */
+	private static long modInverse(long a, long m) {
+		if (m == 1)
+			return 0;
+		long oldR = Math.floorMod(a, m), r = m;
+		long oldS = 1, s = 0;
+		while (r != 0) {
+			long quotient = oldR / r;
+			long nextR = oldR - quotient * r;
+			oldR = r;
+			r = nextR;
+			long nextS = oldS - quotient * s;
+			oldS = s;
+			s = nextS;
+		}
+		return Math.floorMod(oldS, m);
+	}
+	
+	/**
+	 * Checks if an anti-task lands exactly on one of the occurances that has not been cancelled yet
+	 * @param antiTask
+	 * @return true if the date, start time and duration all match an occurance
+	 */
+	public boolean matchesOccurrence(AntiTask antiTask) {
+		int day = antiTask.getEpochDay();
+		return this.occursOn(day) && !this.isCancelledOn(day)
+				&& antiTask.getStartMinute() == this.getStartMinute()
+				&& antiTask.getDurationMinutes() == this.getDurationMinutes();
+	}
+	
+	/**
+	 * Checks if an occurance of this task that is not cancelled overlaps the absolute time [from, to).
+	 * Only the (at most two or three) days the time range touches are checked
+	 * @param fromMinute the start in minutes since 1970-01-01 00:00
+	 * @param toMinute the end in minutes since 1970-01-01 00:00
+	 * @return
+	 */
+	public boolean occursBetween(long fromMinute, long toMinute) {
+		int startMinute = this.getStartMinute();
+		int durationMinutes = this.getDurationMinutes();
+		// an occurance on day D covers [D * 1440 + start, D * 1440 + start + duration)
+		int firstDay = (int) Math.floorDiv(fromMinute - startMinute - durationMinutes, TimeHelper.MINUTES_PER_DAY) + 1;
+		int lastDay = (int) Math.floorDiv(toMinute - startMinute - 1, TimeHelper.MINUTES_PER_DAY);
+		for (int day = firstDay; day <= lastDay; day++) {
+			if (this.occursOn(day) && !this.isCancelledOn(day))
+				return true;
 		}
-		// System.out.println("No overlap found with: " + this.getName());
 		return false;
 	}
+	
+	/**
+	 * Checks if the series has an occurance on the day, cancelled or not
+	 * @param epochDay the day as days since 1970-01-01
+	 * @return
+	 */
+	public boolean occursOn(int epochDay) {
+		int startDay = this.getEpochDay();
+		return epochDay >= startDay && epochDay <= this.getEndEpochDay() 
+				&& frequency > 0 && (epochDay - startDay) % frequency == 0;
+	}
+	
+	/**
+	 * Checks if the occurance on this day was cancelled by an anti-task. This is a 
+	 * lookup in the cancellation index, so it does not depend on how many anti-tasks there are
+	 * @param epochDay the day as days since 1970-01-01
+	 * @return
+	 */
+	public boolean isCancelledOn(int epochDay) {
+		return cancellations.contains(epochDay);
+	}
+	
+	/**
+	 * Get the first day on or after the passed day that this series occurs on. 
+	 * The result is past {@link RecurringTask#getLastOccurrenceDay()} if there is none
+	 * @param epochDay the day as days since 1970-01-01
+	 * @return
+	 */
+	public int getFirstOccurrenceOnOrAfter(int epochDay) {
+		int startDay = this.getEpochDay();
+		if (epochDay <= startDay)
+			return startDay;
+		if (frequency <= 0)
+			return Integer.MAX_VALUE;
+		int steps = (epochDay - startDay + frequency - 1) / frequency;
+		return startDay + steps * frequency;
+	}
+	
+	/**
+	 * Get the day of the last occurance, which is the end date or the last day before it
+	 * that lines up with the frequency
+	 * @return
+	 */
+	public int getLastOccurrenceDay() {
+		int startDay = this.getEpochDay();
+		if (frequency <= 0)
+			return startDay;
+		return startDay + ((this.getEndEpochDay() - startDay) / frequency) * frequency;
+	}
+	
+	public int getEndEpochDay() {
+		return endEpochDay;
+	}
+	
+	/**
+	 * The number of occurances in this series, including cancelled ones
+	 * @return
+	 */
+	public int getOccurrenceCount() {
+		return (this.getLastOccurrenceDay() - this.getEpochDay()) / Math.max(frequency, 1) + 1;
+	}
 
 	/**
 	 * Override of the validation method that validates the EndDate and TaskType 
@@ -164,25 +303,23 @@ public class RecurringTask extends Task {
 	}
 	
 	/**
-	 * Add an anti task to this recurring task. Handles the cases where there is already 
-	 * a cancelation or multiple cancelations
-	 * @param cancelationTask
+	 * A copy of the series with its own cancellation index, so cancelling an occurance of
+	 * the copy does not cancel it in this series or its occurances
 	 */
-	public void addAntiTask(AntiTask cancelationTask) {
-		if (this.getCancelledOccurance() != null) {
-			// there is already an antitask, move both to the list
-			this.addAntiTaskToList(this.getCancelledOccurance());
-			this.addAntiTaskToList(cancelationTask);
-		} else if (this.getCancelledOccurances() != null && !this.getCancelledOccurances().isEmpty()) {
-			this.addAntiTaskToList(cancelationTask);
-		} else {
-			this.setCancelledOccurance(cancelationTask);
-		}
-		
+	@Override
+	public RecurringTask copy() {
+		RecurringTask copy = (RecurringTask) super.copy();
+		copy.cancellations = cancellations.copy();
+		return copy;
 	}
 	
-	private void addAntiTaskToList(AntiTask antiTask) {
-		this.getCancelledOccurances().add(antiTask);
+	/**
+	 * Add an anti task to this recurring task. The day it cancels is added to the 
+	 * cancellation index that this series shares with its occurances
+	 * @param cancelationTask
+	 */
+	public void addAntiTask(AntiTask cancelationTask) {
+		cancellations.add(cancelationTask);
 	}
 
 	public int getEndDate() {
@@ -204,7 +341,7 @@ public class RecurringTask extends Task {
 	 * @return
 	 */
 	public float getEndTime() {
-		float endTime = this.getStartTime() + this.duration;
+		float endTime = this.getStartTime() + this.getDuration();
 		return endTime > 24 ? endTime-24 : endTime;
 	}
 
@@ -213,8 +350,7 @@ public class RecurringTask extends Task {
 	 * @return
 	 */
 	public int getEndYear() {
-		String dateAsString = Integer.toString(this.getEndDate());
-		return Integer.parseInt(dateAsString.substring(0, 4));
+		return this.getEndDate() / 10000;
 	}
 
 	/**
@@ -222,8 +358,7 @@ public class RecurringTask extends Task {
 	 * @return
 	 */
 	public int getEndMonth() {
-		String dateAsString = Integer.toString(this.getEndDate());
-		return Integer.parseInt(dateAsString.substring(4, 6));
+		return this.getEndDate() / 100 % 100;
 	}
 
 	/**
@@ -231,107 +366,94 @@ public class RecurringTask extends Task {
 	 * @return
 	 */
 	public int getEndDay() {
-		String dateAsString = Integer.toString(this.getEndDate());
-		return Integer.parseInt(dateAsString.substring(6, 8));
+		return this.getEndDate() % 100;
 	}
 
 	/**
-	 * We have to return a copy of the date beacuse any destructive updates will mess up the date
+	 * Makes a new calendar for the end date every time, changing it does not change the task
 	 * @return
 	 */
-	@Override
-	public GregorianCalendar getStartGregorianDate() {
-		return (GregorianCalendar)startGregorianDate.clone();
-	}
-
 	public GregorianCalendar getEndGregorianDate() {
-		return endGregorianDate;
+		return new GregorianCalendar(this.getEndYear(), this.getEndMonth() - 1, this.getEndDay());
 	}
 
 	public int getFrequency() {
 		return frequency;
 	}
 
+	/**
+	 * Get the next occurance of this task as its own recurring task. The date is found by 
+	 * adding the frequency to the epoch day of this occurance
+	 * @return the next occurance or null if it would be past the end date
+	 */
 	public RecurringTask getNextOccurrance() {
-			GregorianCalendar localStartDate = this.getStartGregorianDate();
-			GregorianCalendar localEndDate = this.getEndGregorianDate();
-			String dayString;
-			String monthString;
-			
-	;		// System.out.println("Set the time for this rec instance: " + startGregorianDate.getTime().toString());
-			// System.out.println("Actual time for ref: " + this.getDate());
-			switch (this.frequency) {
-			case 1:
-				// occurs daily
-				// next instance is +1 day, so lets advance the calender
-				localStartDate.add(Calendar.DAY_OF_MONTH, getFrequency());
-				if (localStartDate.compareTo(localEndDate) > 0) {
-					//System.err.println("Next requested occurance is past end date: " + localStartDate.getTime().toString());
-					return null;
-				}
-				
-				dayString = localStartDate.get(Calendar.DAY_OF_MONTH) < 10 ? "0" + localStartDate.get(Calendar.DAY_OF_MONTH) : "" + localStartDate.get(Calendar.DAY_OF_MONTH);
-				monthString = localStartDate.get(Calendar.MONTH) < 10 ? "0" + (localStartDate.get(Calendar.MONTH) + 1) : "" + (localStartDate.get(Calendar.MONTH) + 1);
-				String nextDailyDate = localStartDate.get(Calendar.YEAR) + monthString + dayString;
-				//System.out.println("Next Daily Occurance: " +  nextDailyDate);
-				RecurringTask nextDailyTask = new RecurringTask(getName(), type, Integer.parseInt(nextDailyDate), getEndDate(), startTime, duration, frequency);
-				nextDailyTask.setCancelledOccurance(this.getCancelledOccurance());
-				nextDailyTask.setCancelledOccurances(this.getCancelledOccurances());
-				if (this.getCancelledOccurance() != null) {
-					if (nextDailyTask.getDate() == this.getCancelledOccurance().getDate())
-						nextDailyTask.setCancelled(true);
-					
-				} else if (this.getCancelledOccurances() != null) {
-					for (AntiTask antiTask : this.getCancelledOccurances()) {
-						if (nextDailyTask.getDate() == antiTask.getDate())
-							nextDailyTask.setCancelled(true);
-					}
-				}
-				return nextDailyTask;
-			case 7:
-				// add 7 days to the start date
-				localStartDate.add(Calendar.DAY_OF_MONTH, getFrequency());
-				// if the new startDate is over the 
-				if (localStartDate.compareTo(localEndDate) >= 0) {
-					//System.err.println("Next requested occurance is past end date: " + localStartDate.getTime().toString());
-					return null;
-				}
-				
-				dayString = localStartDate.get(Calendar.DAY_OF_MONTH) < 10 ? "0" + localStartDate.get(Calendar.DAY_OF_MONTH) : "" + localStartDate.get(Calendar.DAY_OF_MONTH);
-				monthString = localStartDate.get(Calendar.MONTH) < 10 ? "0" + (localStartDate.get(Calendar.MONTH) + 1) : "" + (localStartDate.get(Calendar.MONTH) + 1);
-				String nextWeeklyDate = "" + localStartDate.get(Calendar.YEAR) + monthString + dayString;
-				//System.out.println("Next Weekly Occurance: " +  nextWeeklyDate);
-				RecurringTask nextWeeklyTask = new RecurringTask(getName(), type, Integer.parseInt(nextWeeklyDate), getEndDate(), startTime, duration, frequency);
-				nextWeeklyTask.setCancelledOccurance(this.getCancelledOccurance());
-				nextWeeklyTask.setCancelledOccurances(this.getCancelledOccurances());
-				if (this.getCancelledOccurance() != null) {
-					if (nextWeeklyTask.getDate() == this.getCancelledOccurance().getDate())
-						nextWeeklyTask.setCancelled(true);
-					
-				} else if (this.getCancelledOccurances() != null) {
-					for (AntiTask antiTask : this.getCancelledOccurances()) {
-						if (nextWeeklyTask.getDate() == antiTask.getDate())
-							nextWeeklyTask.setCancelled(true);
-					}
-				}
-				return nextWeeklyTask;
-			default:
-				break;
-			}
+		if (frequency <= 0)
 			return null;
-		}
+		int nextDay = this.getEpochDay() + frequency;
+		if (nextDay > this.getEndEpochDay())
+			return null;
+		
+		RecurringTask nextTask = new RecurringTask(getName(), type, TimeHelper.fromEpochDay(nextDay), getEndDate(), getStartTime(), getDuration(), frequency);
+		nextTask.shareCancellations(this);
+		nextTask.setCancelled(this.isCancelledOn(nextDay));
+		return nextTask;
+	}
 
+	/**
+	 * Get every occurance after this one as a full recurring task. This builds the whole list,
+	 * use {@link RecurringTask#occurrences(int, int)} to go through them lazily instead
+	 * @return
+	 */
+	@Deprecated
 	public List<RecurringTask> getAllFutureOccurances() {
-		ArrayList<RecurringTask> allOccurances = new ArrayList<>();
-		RecurringTask nextRecurringTask = this.getNextOccurrance();
-		while (nextRecurringTask != null) {
-			
-			if (nextRecurringTask != null) {
-				allOccurances.add(nextRecurringTask);
-			}
-			nextRecurringTask = nextRecurringTask.getNextOccurrance();
-		}
-		return allOccurances;
+		return this.occurrencesBetweenDays(this.getEpochDay() + 1, this.getLastOccurrenceDay())
+				.map(Occurrence::toRecurringTask)
+				.collect(Collectors.toCollection(ArrayList::new));
+	}
+	
+	/**
+	 * Lazily stream every occurance of this series, cancelled ones included
+	 * @return
+	 */
+	public Stream<Occurrence> occurrences() {
+		return this.occurrencesBetweenDays(this.getEpochDay(), this.getLastOccurrenceDay());
+	}
+	
+	/**
+	 * Lazily stream the occurances of this series that fall within a date window. Nothing is
+	 * stored, and the stream can be made parallel to split the window by date
+	 * @param fromDate the first date in YYYYMMDD format (inclusive)
+	 * @param toDate the last date in YYYYMMDD format (inclusive)
+	 * @return the occurances in date order, cancelled ones included
+	 */
+	public Stream<Occurrence> occurrences(int fromDate, int toDate) {
+		return this.occurrencesBetweenDays(TimeHelper.toEpochDay(fromDate), TimeHelper.toEpochDay(toDate));
+	}
+	
+	/**
+	 * Same as {@link RecurringTask#occurrences(int, int)} but with epoch days
+	 * @param fromDay the first day (inclusive)
+	 * @param toDay the last day (inclusive)
+	 * @return
+	 */
+	public Stream<Occurrence> occurrencesBetweenDays(int fromDay, int toDay) {
+		return StreamSupport.stream(this.occurrenceSpliterator(fromDay, toDay), false);
+	}
+	
+	/**
+	 * A spliterator over the occurances between two epoch days (inclusive)
+	 * @param fromDay
+	 * @param toDay
+	 * @return
+	 */
+	public Spliterator<Occurrence> occurrenceSpliterator(int fromDay, int toDay) {
+		int frequency = Math.max(this.getFrequency(), 1);
+		int startDay = this.getEpochDay();
+		int first = (this.getFirstOccurrenceOnOrAfter(fromDay) - startDay) / frequency;
+		int last = (Math.min(toDay, this.getLastOccurrenceDay()) - startDay);
+		// floorDiv so that a window ending before the start gives an empty range
+		int fence = Math.floorDiv(last, frequency) + 1;
+		return new OccurrenceSpliterator(this, first, Math.max(first, fence));
 	}
 	
 	public boolean isCancelled() {
@@ -342,22 +464,6 @@ public class RecurringTask extends Task {
 		this.isCancelled = isCancelled;
 	}
 	
-	/**
-	public boolean isCancelled() {
-		if (this.getCancelledOccurances() != null) {
-			for (AntiTask cancelledInstance : this.getCancelledOccurances()) {
-				if (this.overlapsWith(cancelledInstance))
-					return true;
-			}
-			
-		} else if (this.getCancelledOccurance() != null) {
-			if (this.overlapsWith(this.getCancelledOccurance()))
-				return true;
-		}
-		return false;
-	}
-	 **/
-
 	public String getStartPrettyPrintDate() {
 		return TimeHelper.getMonthName(this.getMonth()) + " " + this.getDay() + ", " + this.getYear();
 	}
@@ -366,32 +472,36 @@ public class RecurringTask extends Task {
 		return TimeHelper.getMonthName(this.getEndMonth()) + " " + this.getEndDay() + ", " + this.getEndYear();
 	}
 	
-	/** 
-	 * Get the next (or only) anti-task cancellation for this recurring series
-	 * @return
-	 */
-	public AntiTask getCancelledOccurance() {
-		return cancelledOccurance;
-	}
-	
 	/**
 	 * Get all the anti-task cancellation for this recurring task
-	 * @return
+	 * @return a read only list, use {@link RecurringTask#addAntiTask(AntiTask)} to add to it
 	 */
 	public List<AntiTask> getCancelledOccurances() {
-		return cancelledOccurances;
+		return cancellations.getAntiTasks();
 	}
 	
-	public void setCancelledOccurance(AntiTask cancelledOccurance) {
-		this.cancelledOccurance = cancelledOccurance;
+	/**
+	 * Replace the cancellations of this recurring task with the passed anti-tasks
+	 * @param cancelledOccurances
+	 */
+	public void setCancelledOccurances(List<AntiTask> cancelledOccurances) {
+		this.cancellations = new CancellationIndex(this.getEpochDay(), this.getEndEpochDay() - this.getEpochDay() + 1);
+		for (AntiTask antiTask : cancelledOccurances) {
+			this.cancellations.add(antiTask);
+		}
 	}
 	
-	public void setCancelledOccurances(List<AntiTask> cancelledOccurances) {
-		this.cancelledOccurances = cancelledOccurances;
+	/**
+	 * Use the same cancellation index as another task of the same series
+	 * @param series
+	 */
+	void shareCancellations(RecurringTask series) {
+		this.cancellations = series.cancellations;
 	}
 
 	public void setEndDate(int endDate) {
 		this.endDate = endDate;
+		this.endEpochDay = TimeHelper.toEpochDay(endDate);
 	}
 	
 	/**
@@ -1,38 +1,50 @@
 package main.tasks;
 
+import java.util.Calendar;
 import java.util.GregorianCalendar;
 
 import main.helpers.TimeHelper;
 
-public abstract class Task {
+/**
+ * The base of every task. The start is kept as a day since 1970-01-01 and minutes past midnight,
+ * so the checks the scheduler runs over and over are plain integer math. The YYYYMMDD date, 
+ * the decimal times and the calendar are worked out from those when asked for.
+ * <p>
+ * A date or time that can't be stored that way (a date like 20201301, or a time that isn't a
+ * whole minute) is kept exactly as it was given next to the numbers, so an invalid task still
+ * reads back and fails validation the same way
+ */
+public abstract class Task implements Cloneable {
 
 	String name;
 	String type;
-	int date;
-	GregorianCalendar startGregorianDate;
-	float startTime;
-	float duration;
+	int epochDay;
+	int startMinute;
+	int durationMinutes;
+	/** Only set when the date or a time did not fit the fields above */
+	GivenTime givenTime;
 	String invalidReason;
 	
 	public Task(String taskName, String taskType, int startDate, float startTime, float taskDuration) {
 		this.name = taskName;
 		this.type = taskType;
-		this.date = startDate;
-		this.startTime = startTime;
-		this.duration = taskDuration;
-		this.startGregorianDate = new GregorianCalendar(this.getYear(), this.getMonth() - 1, this.getDay());
+		this.setTime(startDate, startTime, taskDuration);
 	}
 	
 	public int getDate() {
-		return date;
+		return givenTime != null ? givenTime.date : TimeHelper.fromEpochDay(epochDay);
 	}
 	
+	/**
+	 * Makes a new calendar for the start date every time, changing it does not change the task
+	 * @return
+	 */
 	public GregorianCalendar getStartGregorianDate() {
-		return startGregorianDate;
+		return new GregorianCalendar(this.getYear(), this.getMonth() - 1, this.getDay());
 	}
 	
 	public float getDuration() {
-		return duration;
+		return givenTime != null ? givenTime.duration : durationMinutes / 60f;
 	}
 	
 	public String getName() {
@@ -40,23 +52,72 @@ public abstract class Task {
 	}
 	
 	public float getStartTime() {
-		return startTime;
+		return givenTime != null ? givenTime.startTime : startMinute / 60f;
 	}
 	
 	public String getType() {
 		return type;
 	}
 	
+	/**
+	 * Get the start date as the number of days since 1970-01-01
+	 * @return
+	 */
+	public int getEpochDay() {
+		return epochDay;
+	}
+	
+	/**
+	 * Get the start time as minutes past midnight
+	 * @return
+	 */
+	public int getStartMinute() {
+		return startMinute;
+	}
+	
+	public int getDurationMinutes() {
+		return durationMinutes;
+	}
+	
+	/**
+	 * Get the absolute start of this task in minutes since 1970-01-01 00:00
+	 * @return
+	 */
+	public long getStartEpochMinute() {
+		return epochDay * (long) TimeHelper.MINUTES_PER_DAY + startMinute;
+	}
+	
+	/**
+	 * Get the absolute end of this task in minutes since 1970-01-01 00:00. For recurring tasks 
+	 * this is the end of the first occurance
+	 * @return
+	 */
+	public long getEndEpochMinute() {
+		return getStartEpochMinute() + durationMinutes;
+	}
+	
+	/**
+	 * @return true if the date or a time did not fit in days and minutes and is kept as it was given
+	 */
+	public boolean hasGivenTime() {
+		return givenTime != null;
+	}
+	
 	public void setDate(int date) {
-		this.date = date;
+		this.setTime(date, this.getStartTime(), this.getDuration());
 	}
 	
+	/**
+	 * Move the task to the date of the calendar
+	 * @param startGregorianDate
+	 */
 	public void setStartGregorianDate(GregorianCalendar startGregorianDate) {
-		this.startGregorianDate = startGregorianDate;
+		this.setDate(startGregorianDate.get(Calendar.YEAR) * 10000 + (startGregorianDate.get(Calendar.MONTH) + 1) * 100 
+				+ startGregorianDate.get(Calendar.DAY_OF_MONTH));
 	}
 	
 	public void setDuration(float duration) {
-		this.duration = duration;
+		this.setTime(this.getDate(), this.getStartTime(), duration);
 	}
 	
 	public void setName(String name) {
@@ -64,7 +125,20 @@ public abstract class Task {
 	}
 	
 	public void setStartTime(float startTime) {
-		this.startTime = startTime;
+		this.setTime(this.getDate(), startTime, this.getDuration());
+	}
+	
+	/**
+	 * Store the date and times as days and minutes, and keep the given values as well if
+	 * they don't come back out the same
+	 */
+	private void setTime(int date, float startTime, float duration) {
+		this.epochDay = TimeHelper.toEpochDay(date);
+		this.startMinute = TimeHelper.toMinutes(startTime);
+		this.durationMinutes = TimeHelper.toMinutes(duration);
+		boolean exact = TimeHelper.fromEpochDay(epochDay) == date 
+				&& startMinute / 60f == startTime && durationMinutes / 60f == duration;
+		this.givenTime = exact ? null : new GivenTime(date, startTime, duration);
 	}
 	
 	public void setType(String type) {
@@ -75,6 +149,19 @@ public abstract class Task {
 		return this.name == task.name ? true : false;
 	}
 	
+	/**
+	 * Make a copy of the task that can be changed without changing this one. The scheduler edits
+	 * copies, so a task it has published never changes
+	 * @return
+	 */
+	public Task copy() {
+		try {
+			return (Task) super.clone();
+		} catch (CloneNotSupportedException e) {
+			throw new AssertionError(e);
+		}
+	}
+	
 	public void setInvalidReason(String invalidReason) {
 		this.invalidReason = invalidReason;
 	}
@@ -94,13 +181,13 @@ public abstract class Task {
 		}
 		
 		// validate start time: is a float rounded to the nearest 15 minutes
-		if (!TimeHelper.isRounded(this.startTime) ) {
+		if (!TimeHelper.isRounded(this.getStartTime()) ) {
 			this.setInvalidReason("The start time is invalid!");
 			return false;
 		}
 		
 		// validate duration: is a float rounded to the neaest 15 minutes
-		if (!TimeHelper.isRounded(this.duration)) {
+		if (!TimeHelper.isRounded(this.getDuration())) {
 			this.setInvalidReason("The duration is invalid!");
 			return false;
 		}
@@ -111,18 +198,15 @@ public abstract class Task {
 	// <------------------ Output Utils -------------------------->
 	
 	public int getYear() {
-		String dateAsString = Integer.toString(getDate());
-		return Integer.parseInt(dateAsString.substring(0, 4));
+		return getDate() / 10000;
 	}
 	
 	public int getMonth() {
-		String dateAsString = Integer.toString(getDate());
-		return Integer.parseInt(dateAsString.substring(4, 6));
+		return getDate() / 100 % 100;
 	}
 
 	public int getDay() {
-		String dateAsString = Integer.toString(getDate());
-		return Integer.parseInt(dateAsString.substring(6, 8));
+		return getDate() % 100;
 	}
 	
 	public String getPrettyPrintDate() {
@@ -141,6 +225,12 @@ public abstract class Task {
 		System.out.println(this.toString());
 	}
 	
+	/**
+	 * A date and times exactly as they were given
+	 */
+	record GivenTime(int date, float startTime, float duration) {
+	}
+	
 	public enum Tasktype {
 		NONE;
 	}
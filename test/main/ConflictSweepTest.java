@@ -0,0 +1,274 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import main.helpers.DiagnosticLog;
+import main.helpers.DiagnosticLog.Level;
+import main.helpers.TimeHelper;
+import main.tasks.AntiTask;
+import main.tasks.RecurringTask;
+import main.tasks.RecurringTask.RecurringTaskType;
+import main.tasks.Task;
+import main.tasks.TransientTask;
+
+/**
+ * Checks {@link ConflictSweep} against checking every pair of tasks with {@link RecurringTask#overlapsWith(Task)}
+ * @author CTS
+ *
+ */
+class ConflictSweepTest {
+	private static final int FIRST_DAY = TimeHelper.toEpochDay(20200101);
+	private static final int DAYS = 14;
+	// the window every task is swept in, a day either side of the days the tasks start on
+	private static final long FROM_MINUTE = (FIRST_DAY - 1) * (long) TimeHelper.MINUTES_PER_DAY;
+	private static final long TO_MINUTE = (FIRST_DAY + DAYS + 1) * (long) TimeHelper.MINUTES_PER_DAY;
+	private static Level level;
+	
+	@BeforeAll
+	static void quiet() {
+		// every overlap found pair by pair is logged as a warning
+		level = DiagnosticLog.getLevel();
+		DiagnosticLog.setLevel(Level.OFF);
+	}
+	
+	@AfterAll
+	static void restore() {
+		DiagnosticLog.setLevel(level);
+	}
+	
+	@Test
+	void findsEveryPairThatOverlaps() {
+		Random random = new Random(17);
+		for (int round = 0; round < 200; round++) {
+			List<Task> tasks = randomTasks(random, "task", 25);
+			ConflictSweep sweep = new ConflictSweep();
+			for (Task task : tasks)
+				sweep.addTask(task, ConflictSweep.CHECKED, FROM_MINUTE, TO_MINUTE, null);
+			List<TaskConflict> conflicts = sweep.sweep();
+			
+			assertEquals(pairwiseConflicts(tasks, tasks), pairs(conflicts));
+			for (TaskConflict conflict : conflicts) {
+				long[] firstOverlap = firstOverlap(conflict.getFirst(), conflict.getSecond());
+				assertEquals(firstOverlap[0], conflict.getStartEpochMinute(), conflict::toString);
+				assertEquals(firstOverlap[1], conflict.getEndEpochMinute(), conflict::toString);
+			}
+			for (int i = 1; i < conflicts.size(); i++) {
+				assertTrue(conflicts.get(i - 1).getStartEpochMinute() <= conflicts.get(i).getStartEpochMinute());
+			}
+		}
+	}
+	
+	@Test
+	void takesAWindowWiderThanAnIntOfDays() {
+		Random random = new Random(2017);
+		for (int round = 0; round < 100; round++) {
+			List<Task> tasks = randomTasks(random, "task", 25);
+			ConflictSweep sweep = new ConflictSweep();
+			// anywhere from far before the tasks to far after them, up to the window the scheduler used to pass
+			long fromMinute = FROM_MINUTE - (long) (random.nextDouble() * (Long.MAX_VALUE / 2));
+			long toMinute = TO_MINUTE + (long) (random.nextDouble() * (Long.MAX_VALUE / 2));
+			for (Task task : tasks)
+				sweep.addTask(task, ConflictSweep.CHECKED, fromMinute, toMinute, null);
+			assertEquals(pairwiseConflicts(tasks, tasks), pairs(sweep.sweep()));
+		}
+	}
+	
+	@Test
+	void onlyReportsPairsWithACheckedTask() {
+		Random random = new Random(1017);
+		for (int round = 0; round < 200; round++) {
+			List<Task> checked = randomTasks(random, "checked", 10);
+			List<Task> background = randomTasks(random, "background", 20);
+			List<Task> expectedTasks = new ArrayList<>();
+			ConflictSweep sweep = new ConflictSweep();
+			for (Task task : checked) {
+				expectedTasks.add(addWithCancellations(sweep, task, ConflictSweep.CHECKED, random));
+			}
+			for (Task task : background) {
+				expectedTasks.add(addWithCancellations(sweep, task, ConflictSweep.BACKGROUND, random));
+			}
+			
+			// the copies have the days cancelled for real, so overlapsWith sees the same schedule as the sweep
+			Set<String> expected = pairwiseConflicts(expectedTasks.subList(0, checked.size()), expectedTasks);
+			assertEquals(expected, pairs(sweep.sweep()));
+		}
+	}
+	
+	@Test
+	void expandsWholeTasksLikeAWindow() {
+		Random random = new Random(18);
+		for (int round = 0; round < 200; round++) {
+			List<Task> tasks = randomTasks(random, "task", 25);
+			ConflictSweep sweep = new ConflictSweep();
+			sweep.addAllTasks(tasks, ConflictSweep.CHECKED);
+			assertEquals(pairwiseConflicts(tasks, tasks), pairs(sweep.sweep()));
+		}
+	}
+	
+	@Test
+	void auditsPairsAndCancellationsThatDoNotLineUp() {
+		Random random = new Random(1018);
+		for (int round = 0; round < 100; round++) {
+			List<Task> tasks = randomTasks(random, "task", 25);
+			Set<String> expected = new HashSet<>();
+			for (Task task : tasks) {
+				if (task instanceof RecurringTask series && random.nextBoolean()) {
+					// a day the series is not on, or the right day at the wrong time, or a day cancelled twice
+					int day = series.getEpochDay() + random.nextInt(DAYS);
+					float startTime = random.nextBoolean() ? series.getStartTime() : (series.getStartTime() + 0.25f) % 24;
+					AntiTask antiTask = new AntiTask("bad" + day, "Cancellation", TimeHelper.fromEpochDay(day), startTime, series.getDuration());
+					boolean linesUp = series.occursOn(day) && antiTask.getStartMinute() == series.getStartMinute() && !series.isCancelledOn(day);
+					series.addAntiTask(antiTask);
+					if (!linesUp)
+						expected.add(series.getName() + " ! " + antiTask.getName());
+				}
+			}
+			// an anti-task at the wrong time still takes its day out, for the audit and for overlapsWith
+			expected.addAll(pairwiseConflicts(tasks, tasks));
+			
+			Set<String> audited = new HashSet<>();
+			List<TaskConflict> conflicts = new Scheduler(tasks).auditConflicts();
+			for (TaskConflict conflict : conflicts) {
+				String entry = conflict.isCancellation() ? conflict.getFirst().getName() + " ! " + conflict.getSecond().getName() : pair(conflict.getFirst(), conflict.getSecond());
+				assertTrue(audited.add(entry), () -> "reported twice: " + conflict);
+			}
+			assertEquals(expected, audited);
+			for (int i = 1; i < conflicts.size(); i++) {
+				assertTrue(conflicts.get(i - 1).getStartEpochMinute() <= conflicts.get(i).getStartEpochMinute());
+			}
+		}
+	}
+	
+	/**
+	 * Add a task to the sweep with a few occurances about to be cancelled
+	 * @return a copy of the task with those occurances cancelled
+	 */
+	private static Task addWithCancellations(ConflictSweep sweep, Task task, int group, Random random) {
+		if (!(task instanceof RecurringTask series)) {
+			sweep.addTask(task, group, FROM_MINUTE, TO_MINUTE, null);
+			return task;
+		}
+		List<AntiTask> cancellations = new ArrayList<>(series.getCancelledOccurances());
+		Set<Integer> days = new HashSet<>();
+		for (int day = series.getEpochDay(); day <= series.getLastOccurrenceDay(); day += series.getFrequency()) {
+			if (random.nextInt(5) == 0 && !series.isCancelledOn(day)) {
+				days.add(day);
+				cancellations.add(new AntiTask("extra" + day, "Cancellation", TimeHelper.fromEpochDay(day), series.getStartTime(), series.getDuration()));
+			}
+		}
+		RecurringTask cancelled = new RecurringTask(series.getName(), RecurringTaskType.fromString(series.getType()), series.getDate(), series.getEndDate(), 
+				series.getStartTime(), series.getDuration(), series.getFrequency());
+		cancelled.setCancelledOccurances(cancellations);
+		sweep.addTask(task, group, FROM_MINUTE, TO_MINUTE, days);
+		return cancelled;
+	}
+	
+	/**
+	 * Tasks packed into two weeks so most of them overlap something and many intervals are open at once.
+	 * Times are on the quarter hour, so plenty of intervals end just as another starts, and the longest 
+	 * run past midnight. Series repeat every day, every other day or weekly, a few days cancelled
+	 */
+	private static List<Task> randomTasks(Random random, String prefix, int count) {
+		List<Task> tasks = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			String name = prefix + i;
+			int day = FIRST_DAY + random.nextInt(DAYS);
+			float startTime = random.nextInt(96) / 4f, duration = (1 + random.nextInt(random.nextInt(4) == 0 ? 32 : 8)) / 4f;
+			if (random.nextBoolean()) {
+				tasks.add(new TransientTask(name, "Visit", TimeHelper.fromEpochDay(day), startTime, duration));
+				continue;
+			}
+			int frequency = new int[] { 1, 2, 7 }[random.nextInt(3)];
+			RecurringTask series = new RecurringTask(name, RecurringTaskType.WORK, TimeHelper.fromEpochDay(day), TimeHelper.fromEpochDay(FIRST_DAY + DAYS - 1),
+					startTime, duration, frequency);
+			List<AntiTask> cancellations = new ArrayList<>();
+			for (int cancelled = series.getEpochDay(); cancelled <= series.getLastOccurrenceDay(); cancelled += frequency) {
+				if (random.nextInt(6) == 0)
+					cancellations.add(new AntiTask(name + cancelled, "Cancellation", TimeHelper.fromEpochDay(cancelled), startTime, duration));
+			}
+			series.setCancelledOccurances(cancellations);
+			tasks.add(series);
+		}
+		return tasks;
+	}
+	
+	/**
+	 * Check each task of the first list against every task of the second, the way the scheduler checks one task
+	 * @return every overlapping pair, see {@link ConflictSweepTest#pair(Task, Task)}
+	 */
+	private static Set<String> pairwiseConflicts(List<Task> checked, List<Task> tasks) {
+		Set<String> conflicts = new HashSet<>();
+		for (Task task : checked) {
+			for (Task other : tasks) {
+				if (task == other)
+					continue;
+				boolean overlaps;
+				if (task instanceof RecurringTask series)
+					overlaps = series.overlapsWith(other);
+				else if (other instanceof RecurringTask series)
+					overlaps = series.overlapsWith(task);
+				else
+					overlaps = task.getStartEpochMinute() < other.getEndEpochMinute() && other.getStartEpochMinute() < task.getEndEpochMinute();
+				if (overlaps)
+					conflicts.add(pair(task, other));
+			}
+		}
+		return conflicts;
+	}
+	
+	private static Set<String> pairs(List<TaskConflict> conflicts) {
+		Set<String> pairs = new HashSet<>();
+		for (TaskConflict conflict : conflicts) {
+			assertTrue(pairs.add(pair(conflict.getFirst(), conflict.getSecond())), () -> "reported twice: " + conflict);
+		}
+		return pairs;
+	}
+	
+	/**
+	 * Names the pair the same way whichever task comes first. A copy made for cancelling has the name of its task
+	 */
+	private static String pair(Task first, Task second) {
+		return first.getName().compareTo(second.getName()) < 0 ? first.getName() + " & " + second.getName() : second.getName() + " & " + first.getName();
+	}
+	
+	/**
+	 * Walk every live occurance of both tasks
+	 * @return the start and end of the overlap that starts first
+	 */
+	private static long[] firstOverlap(Task first, Task second) {
+		long[] overlap = null;
+		for (long[] interval : intervals(first)) {
+			for (long[] other : intervals(second)) {
+				long start = Math.max(interval[0], other[0]), end = Math.min(interval[1], other[1]);
+				if (start < end && (overlap == null || start < overlap[0]))
+					overlap = new long[] { start, end };
+			}
+		}
+		return overlap;
+	}
+	
+	private static List<long[]> intervals(Task task) {
+		List<long[]> intervals = new ArrayList<>();
+		if (task instanceof RecurringTask series) {
+			for (int day = series.getEpochDay(); day <= series.getLastOccurrenceDay(); day += series.getFrequency()) {
+				long start = day * (long) TimeHelper.MINUTES_PER_DAY + series.getStartMinute();
+				if (!series.isCancelledOn(day))
+					intervals.add(new long[] { start, start + series.getDurationMinutes() });
+			}
+		} else {
+			intervals.add(new long[] { task.getStartEpochMinute(), task.getEndEpochMinute() });
+		}
+		return intervals;
+	}
+}
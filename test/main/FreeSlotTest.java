@@ -0,0 +1,180 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+
+import main.helpers.TimeHelper;
+import main.tasks.AntiTask;
+import main.tasks.RecurringTask;
+import main.tasks.RecurringTask.RecurringTaskType;
+import main.tasks.Task;
+import main.tasks.TransientTask;
+
+/**
+ * Checks {@link Scheduler#findFreeSlots(int, int, float, int)} against marking every taken minute in an array
+ * @author CTS
+ *
+ */
+class FreeSlotTest {
+	private static final int FIRST_DAY = TimeHelper.toEpochDay(20200101);
+	
+	@Test
+	void carriesAGapOverMidnight() throws Exception {
+		Scheduler scheduler = new Scheduler();
+		scheduler.addTask(new TransientTask("Evening", "Visit", 20200101, 18, 4));
+		scheduler.addTask(new TransientTask("Morning", "Visit", 20200102, 6, 2));
+		scheduler.addTask(new TransientTask("Night", "Visit", 20200102, 23, 2));
+		
+		// the gaps are the morning of the 1st, 22:00 to 06:00, and 08:00 to 23:00 on the 2nd
+		List<FreeSlot> slots = scheduler.findFreeSlots(20200101, 20200102, 7, 10);
+		assertEquals(3, slots.size());
+		long midnight = TimeHelper.toEpochDay(20200102) * (long) TimeHelper.MINUTES_PER_DAY;
+		assertEquals(midnight - 2 * 60, slots.get(1).getStartEpochMinute());
+		assertEquals(midnight + 5 * 60, slots.get(1).getEndEpochMinute());
+		assertEquals(midnight + 6 * 60, slots.get(1).getFreeUntilEpochMinute());
+		// looking from the 2nd, the gap starts at midnight
+		assertEquals(midnight, scheduler.findFreeSlot(20200102, 20200102, 6).getStartEpochMinute());
+		assertNull(scheduler.findFreeSlot(20200102, 20200102, 16));
+	}
+	
+	@Test
+	void matchesAMinuteByMinuteScan() throws Exception {
+		Random random = new Random(19);
+		for (int round = 0; round < 100; round++) {
+			Scheduler scheduler = new Scheduler();
+			for (int i = 0; i < 40; i++) {
+				try {
+					scheduler.addTask(randomTask(random, "task" + i));
+				} catch (ScheduleConflictException e) {
+					// the slot was taken, leave it
+				}
+			}
+			for (Task task : scheduler.getTasks()) {
+				if (task instanceof RecurringTask series && random.nextBoolean()) {
+					int day = series.getEpochDay() + series.getFrequency() * random.nextInt(3);
+					// the 31st of a month does not pass validation
+					if (day <= series.getLastOccurrenceDay() && TimeHelper.fromEpochDay(day) % 100 != 31)
+						scheduler.addTask(new AntiTask("skip" + day, "Cancellation", TimeHelper.fromEpochDay(day), series.getStartTime(), series.getDuration()));
+				}
+			}
+			
+			int fromDay = FIRST_DAY + random.nextInt(10), toDay = fromDay + random.nextInt(10);
+			float duration = (1 + random.nextInt(random.nextBoolean() ? 8 : 120)) / 4f;
+			int limit = 1 + random.nextInt(20);
+			List<long[]> expected = scanForGaps(scheduler.getTasks(), fromDay, toDay, TimeHelper.toMinutes(duration), limit);
+			List<long[]> actual = new ArrayList<>();
+			for (FreeSlot slot : scheduler.findFreeSlots(TimeHelper.fromEpochDay(fromDay), TimeHelper.fromEpochDay(toDay), duration, limit)) {
+				actual.add(new long[] { slot.getStartEpochMinute(), slot.getEndEpochMinute(), slot.getFreeUntilEpochMinute() });
+			}
+			assertEquals(describe(expected), describe(actual), "round " + round);
+		}
+	}
+	
+	@Test
+	void readsEachDayWholeWhileItChanges() throws Exception {
+		Scheduler scheduler = new Scheduler();
+		for (int day = 0; day < 100; day++) {
+			// the 31st of a month does not pass validation
+			if (TimeHelper.fromEpochDay(FIRST_DAY + day) % 100 != 31)
+				scheduler.addTask(new TransientTask("Work" + day, "Visit", TimeHelper.fromEpochDay(FIRST_DAY + day), 8, 2));
+		}
+		int from = TimeHelper.fromEpochDay(FIRST_DAY), to = TimeHelper.fromEpochDay(FIRST_DAY + 99);
+		List<FreeSlot> without = scheduler.findFreeSlots(from, to, 1, 1000);
+		// the afternoon and evening of day 50 are taken and given back over and over
+		Task churn = new TransientTask("Churn", "Visit", TimeHelper.fromEpochDay(FIRST_DAY + 50), 12, 11);
+		scheduler.addTask(churn);
+		List<FreeSlot> with = scheduler.findFreeSlots(from, to, 1, 1000);
+		assertNotEquals(describeSlots(without), describeSlots(with));
+		
+		AtomicBoolean done = new AtomicBoolean();
+		Thread writer = new Thread(() -> {
+			try {
+				while (!done.get()) {
+					scheduler.deleteTask(scheduler.findTask("Churn"));
+					scheduler.addTask(churn);
+				}
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+		});
+		writer.start();
+		try {
+			for (int i = 0; i < 500; i++) {
+				List<String> slots = describeSlots(scheduler.findFreeSlots(from, to, 1, 1000));
+				assertTrue(slots.equals(describeSlots(without)) || slots.equals(describeSlots(with)), "read " + i);
+			}
+		} finally {
+			done.set(true);
+			writer.join();
+		}
+	}
+	
+	/**
+	 * Visits over three weeks, some late enough to run into the next day, and a few daily or weekly series
+	 */
+	private static Task randomTask(Random random, String name) {
+		int date = TimeHelper.fromEpochDay(FIRST_DAY + random.nextInt(21));
+		float startTime = random.nextInt(96) / 4f, duration = (1 + random.nextInt(24)) / 4f;
+		if (random.nextInt(8) == 0)
+			return new RecurringTask(name, RecurringTaskType.WORK, date, 20200330, startTime, Math.min(duration, 2), random.nextBoolean() ? 1 : 7);
+		return new TransientTask(name, "Visit", date, startTime, duration);
+	}
+	
+	/**
+	 * Mark every minute that a live occurance takes, then walk the window for gaps that are long enough
+	 * @return the [start, end, free until] minutes of each slot
+	 */
+	private static List<long[]> scanForGaps(List<Task> tasks, int fromDay, int toDay, int minutes, int limit) {
+		long windowStart = fromDay * (long) TimeHelper.MINUTES_PER_DAY, windowEnd = (toDay + 1L) * TimeHelper.MINUTES_PER_DAY;
+		boolean[] taken = new boolean[(int) (windowEnd - windowStart)];
+		for (Task task : tasks) {
+			int lastDay = task instanceof RecurringTask series ? series.getLastOccurrenceDay() : task.getEpochDay();
+			int frequency = task instanceof RecurringTask series ? series.getFrequency() : 1;
+			for (int day = task.getEpochDay(); day <= lastDay; day += frequency) {
+				if (task instanceof RecurringTask series && series.isCancelledOn(day))
+					continue;
+				long start = day * (long) TimeHelper.MINUTES_PER_DAY + task.getStartMinute();
+				for (long minute = Math.max(start, windowStart); minute < Math.min(start + task.getDurationMinutes(), windowEnd); minute++)
+					taken[(int) (minute - windowStart)] = true;
+			}
+		}
+		List<long[]> slots = new ArrayList<>();
+		int minute = 0;
+		while (minute < taken.length && slots.size() < limit) {
+			if (taken[minute]) {
+				minute++;
+				continue;
+			}
+			int gapEnd = minute;
+			while (gapEnd < taken.length && !taken[gapEnd])
+				gapEnd++;
+			if (gapEnd - minute >= minutes)
+				slots.add(new long[] { windowStart + minute, windowStart + minute + minutes, windowStart + gapEnd });
+			minute = gapEnd;
+		}
+		return slots;
+	}
+	
+	private static List<String> describeSlots(List<FreeSlot> slots) {
+		List<String> lines = new ArrayList<>();
+		for (FreeSlot slot : slots)
+			lines.add(slot.getStartEpochMinute() + " to " + slot.getEndEpochMinute() + ", free until " + slot.getFreeUntilEpochMinute());
+		return lines;
+	}
+	
+	private static List<String> describe(List<long[]> slots) {
+		List<String> lines = new ArrayList<>();
+		for (long[] slot : slots)
+			lines.add(slot[0] + " to " + slot[1] + ", free until " + slot[2]);
+		return lines;
+	}
+}
@@ -0,0 +1,91 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import main.helpers.TimeHelper;
+import main.tasks.AntiTask;
+import main.tasks.RecurringTask;
+import main.tasks.RecurringTask.RecurringTaskType;
+import main.tasks.Task;
+import main.tasks.TransientTask;
+
+/**
+ * Checks what a {@link Scheduler} publishes: the tasks it loads, and that a snapshot taken before a change never sees it
+ * @author CTS
+ *
+ */
+class ScheduleSnapshotTest {
+	
+	@Test
+	void keepsATaskNamedLikeALoadedAntiTask() {
+		RecurringTask standup = new RecurringTask("Standup", RecurringTaskType.WORK, 20200106, 20200306, 9, 0.25f, 7);
+		AntiTask holiday = new AntiTask("Holiday", "Cancellation", 20200113, 9, 0.25f);
+		standup.addAntiTask(holiday);
+		Task party = new TransientTask("Holiday", "Visit", 20200113, 18, 2);
+	
+		Scheduler scheduler = new Scheduler(List.of(standup, holiday, party));
+		assertSame(party, scheduler.findTask("Holiday"));
+		assertEquals(2, scheduler.getSnapshot().size());
+	}
+	
+	@Test
+	void leavesEarlierSnapshotsAlone() throws Exception {
+		Scheduler scheduler = new Scheduler();
+		scheduler.addTask(new RecurringTask("Standup", RecurringTaskType.WORK, 20200106, 20200306, 9, 0.25f, 7));
+		scheduler.addTask(new TransientTask("Dentist", "Appointment", 20200108, 14.5f, 1));
+		ScheduleSnapshot before = scheduler.getSnapshot();
+		
+		scheduler.addTask(new AntiTask("Holiday", "Cancellation", 20200113, 9, 0.25f));
+		// rename the dentist and move it a day later
+		InputStream in = System.in;
+		PrintStream out = System.out;
+		System.setIn(new ByteArrayInputStream("1\nDoctor\n3\n20200109\n5\n".getBytes(StandardCharsets.UTF_8)));
+		System.setOut(new PrintStream(new ByteArrayOutputStream(), true, StandardCharsets.UTF_8));
+		try {
+			scheduler.editTask("Dentist");
+		} finally {
+			System.setIn(in);
+			System.setOut(out);
+		}
+		
+		Task dentist = before.findTask("Dentist");
+		assertEquals(20200108, dentist.getDate());
+		assertTrue(before.contains(dentist));
+		assertNull(before.findTask("Doctor"));
+		assertFalse(((RecurringTask) before.findTask("Standup")).isCancelledOn(TimeHelper.toEpochDay(20200113)));
+		
+		ScheduleSnapshot after = scheduler.getSnapshot();
+		assertNull(after.findTask("Dentist"));
+		assertEquals(20200109, after.findTask("Doctor").getDate());
+		assertFalse(after.contains(dentist));
+		assertTrue(((RecurringTask) after.findTask("Standup")).isCancelledOn(TimeHelper.toEpochDay(20200113)));
+	}
+	
+	@Test
+	void cancelsOnlyTheCopyOfASeries() {
+		RecurringTask standup = new RecurringTask("Standup", RecurringTaskType.WORK, 20200106, 20200306, 9, 0.25f, 7);
+		standup.addAntiTask(new AntiTask("Holiday", "Cancellation", 20200113, 9, 0.25f));
+		RecurringTask copy = standup.copy();
+		copy.setName("Copy");
+		copy.addAntiTask(new AntiTask("Offsite", "Cancellation", 20200127, 9, 0.25f));
+		
+		assertEquals("Standup", standup.getName());
+		assertTrue(copy.isCancelledOn(TimeHelper.toEpochDay(20200113)));
+		assertTrue(copy.isCancelledOn(TimeHelper.toEpochDay(20200127)));
+		assertFalse(standup.isCancelledOn(TimeHelper.toEpochDay(20200127)));
+	}
+}
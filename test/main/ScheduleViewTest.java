@@ -0,0 +1,112 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import main.helpers.TimeHelper;
+import main.tasks.AntiTask;
+import main.tasks.Occurrence;
+import main.tasks.RecurringTask;
+import main.tasks.RecurringTask.RecurringTaskType;
+import main.tasks.Task;
+import main.tasks.TransientTask;
+
+/**
+ * Checks the date range queries against expanding every task from its first day
+ * @author CTS
+ *
+ */
+class ScheduleViewTest {
+	private static final int FIRST_DAY = TimeHelper.toEpochDay(20200101);
+	
+	@Test
+	void viewsAWeekFromSundayAndAWholeMonth() throws Exception {
+		Scheduler scheduler = new Scheduler(List.of(new RecurringTask("Daily", RecurringTaskType.WORK, 20191201, 20200330, 9, 1, 1)));
+		// 2020-01-15 was a Wednesday
+		List<Occurrence> week = scheduler.getWeekView(20200115);
+		assertEquals(7, week.size());
+		assertEquals(20200112, week.get(0).getDate());
+		assertEquals(20200118, week.get(6).getDate());
+		List<Occurrence> february = scheduler.getMonthView(20200215);
+		assertEquals(29, february.size());
+		assertEquals(20200229, february.get(28).getDate());
+		assertEquals(31, scheduler.getMonthView(20191231).size());
+	}
+	
+	@Test
+	void matchesExpandingEveryTask() throws Exception {
+		Random random = new Random(20);
+		for (int round = 0; round < 100; round++) {
+			List<Task> tasks = randomTasks(random);
+			Scheduler scheduler = new Scheduler(tasks);
+			for (int query = 0; query < 20; query++) {
+				int fromDay = FIRST_DAY - 5 + random.nextInt(100), toDay = fromDay + random.nextInt(random.nextBoolean() ? 3 : 40);
+				List<Occurrence> actual = scheduler.getSchedule(TimeHelper.fromEpochDay(fromDay), TimeHelper.fromEpochDay(toDay));
+				for (int i = 1; i < actual.size(); i++) {
+					assertTrue(actual.get(i - 1).getStartEpochMinute() <= actual.get(i).getStartEpochMinute());
+				}
+				assertEquals(scan(tasks, fromDay, toDay), describe(actual), "round " + round + " from " + fromDay + " to " + toDay);
+			}
+		}
+	}
+	
+	/**
+	 * Long series and visits over three months, with late starts that run into the next day
+	 */
+	private static List<Task> randomTasks(Random random) {
+		List<Task> tasks = new ArrayList<>();
+		for (int i = 0; i < 60; i++) {
+			int day = FIRST_DAY + random.nextInt(90);
+			float startTime = random.nextInt(96) / 4f, duration = (1 + random.nextInt(24)) / 4f;
+			if (random.nextInt(5) > 0) {
+				tasks.add(new TransientTask("visit" + i, "Visit", TimeHelper.fromEpochDay(day), startTime, duration));
+				continue;
+			}
+			int frequency = random.nextBoolean() ? 1 : 7;
+			RecurringTask series = new RecurringTask("series" + i, RecurringTaskType.WORK, TimeHelper.fromEpochDay(day), 
+					TimeHelper.fromEpochDay(day + random.nextInt(90)), startTime, duration, frequency);
+			List<AntiTask> cancellations = new ArrayList<>();
+			for (int cancelled = series.getEpochDay(); cancelled <= series.getLastOccurrenceDay(); cancelled += frequency) {
+				if (random.nextInt(3) == 0)
+					cancellations.add(new AntiTask("skip" + cancelled, "Cancellation", TimeHelper.fromEpochDay(cancelled), startTime, duration));
+			}
+			series.setCancelledOccurances(cancellations);
+			tasks.add(series);
+		}
+		return tasks;
+	}
+	
+	/**
+	 * Every live occurance of every task that overlaps the days, sorted by start and then name
+	 */
+	private static List<String> scan(List<Task> tasks, int fromDay, int toDay) {
+		long fromMinute = fromDay * (long) TimeHelper.MINUTES_PER_DAY, toMinute = (toDay + 1L) * TimeHelper.MINUTES_PER_DAY;
+		List<Occurrence> occurrences = new ArrayList<>();
+		for (Task task : tasks) {
+			int lastDay = task instanceof RecurringTask series ? series.getLastOccurrenceDay() : task.getEpochDay();
+			int frequency = task instanceof RecurringTask series ? series.getFrequency() : 1;
+			for (int day = task.getEpochDay(); day <= lastDay; day += frequency) {
+				Occurrence occurrence = new Occurrence(task, day);
+				if (!occurrence.isCancelled() && occurrence.getStartEpochMinute() < toMinute && occurrence.getEndEpochMinute() > fromMinute)
+					occurrences.add(occurrence);
+			}
+		}
+		return describe(occurrences);
+	}
+	
+	private static List<String> describe(List<Occurrence> occurrences) {
+		List<Occurrence> sorted = new ArrayList<>(occurrences);
+		sorted.sort(Comparator.comparingLong(Occurrence::getStartEpochMinute).thenComparing(Occurrence::getName));
+		List<String> lines = new ArrayList<>();
+		for (Occurrence occurrence : sorted)
+			lines.add(occurrence.getName() + " " + occurrence.getDate());
+		return lines;
+	}
+}
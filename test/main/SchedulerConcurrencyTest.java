@@ -0,0 +1,185 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.jupiter.api.Test;
+
+import main.helpers.TimeHelper;
+import main.tasks.RecurringTask;
+import main.tasks.RecurringTask.RecurringTaskType;
+import main.tasks.Task;
+import main.tasks.TransientTask;
+
+/**
+ * Adds tasks from several threads at once, then checks the schedule against comparing every pair of occurances
+ * @author CTS
+ *
+ */
+class SchedulerConcurrencyTest {
+	private static final int THREADS = 8;
+	
+	@Test
+	void keepsOnlyTasksThatDoNotOverlap() throws Exception {
+		Scheduler scheduler = new Scheduler();
+		ConcurrentLinkedQueue<Task> rejected = new ConcurrentLinkedQueue<>();
+		runOnThreads(thread -> {
+			Random random = new Random(thread);
+			for (int i = 0; i < 150; i++) {
+				Task task = randomTask(random, thread + "-" + i);
+				try {
+					scheduler.addTask(task);
+				} catch (ScheduleConflictException e) {
+					rejected.add(task);
+				}
+			}
+		});
+		
+		List<Task> kept = scheduler.getTasks();
+		assertEquals(THREADS * 150, kept.size() + rejected.size());
+		for (int i = 0; i < kept.size(); i++) {
+			for (int j = i + 1; j < kept.size(); j++) {
+				assertTrue(!overlaps(kept.get(i), kept.get(j)), kept.get(i) + " and " + kept.get(j));
+			}
+		}
+		// nothing is ever deleted, so whatever a task was turned down for is still there
+		for (Task task : rejected) {
+			assertTrue(kept.stream().anyMatch(other -> overlaps(task, other)), task::toString);
+		}
+	}
+	
+	@Test
+	void givesANameToOnlyOneThread() throws Exception {
+		Scheduler scheduler = new Scheduler();
+		AtomicInteger added = new AtomicInteger();
+		runOnThreads(thread -> {
+			// every thread uses a different day, so only the name can clash
+			try {
+				scheduler.addTask(new TransientTask("Same", "Visit", TimeHelper.fromEpochDay(TimeHelper.toEpochDay(20200101) + thread), 9, 1));
+				added.incrementAndGet();
+			} catch (ScheduleConflictException e) {
+				throw e;
+			} catch (Exception e) {
+				// the name was taken
+			}
+		});
+		assertEquals(1, added.get());
+		assertEquals(1, scheduler.getTasks().size());
+	}
+	
+	@Test
+	void keepsNamesUniqueWhileTasksComeAndGo() throws Exception {
+		Scheduler scheduler = new Scheduler();
+		String[] names = { "a", "b" };
+		AtomicIntegerArray added = new AtomicIntegerArray(names.length), deleted = new AtomicIntegerArray(names.length);
+		runOnThreads(thread -> {
+			Random random = new Random(100 + thread);
+			for (int i = 0; i < 300; i++) {
+				int first = random.nextInt(names.length), second = (first + 1 + random.nextInt(names.length - 1)) % names.length;
+				try {
+					switch (random.nextInt(3)) {
+					case 0:
+						scheduler.addTask(randomTask(random, names[first]));
+						added.incrementAndGet(first);
+						break;
+					case 1:
+						scheduler.addAllTasks(List.of(randomTask(random, names[first]), randomTask(random, names[second])));
+						added.incrementAndGet(first);
+						added.incrementAndGet(second);
+						break;
+					default:
+						if (scheduler.deleteTask(scheduler.findTask(names[first])))
+							deleted.incrementAndGet(first);
+						break;
+					}
+				} catch (ScheduleConflictException e) {
+					// the slot was taken
+				} catch (Exception e) {
+					// the name was taken
+				}
+			}
+		});
+		
+		List<Task> kept = scheduler.getTasks();
+		for (int i = 0; i < names.length; i++) {
+			String name = names[i];
+			long count = kept.stream().filter(task -> task.getName().equals(name)).count();
+			// a name is only given out again after its task was deleted
+			assertEquals(count, added.get(i) - deleted.get(i), name);
+			assertTrue(count <= 1, name);
+		}
+	}
+	
+	/**
+	 * Mostly short visits over three weeks, with the odd weekly series so the recurring paths lock many stripes
+	 */
+	private static Task randomTask(Random random, String name) {
+		int date = TimeHelper.fromEpochDay(TimeHelper.toEpochDay(20200101) + random.nextInt(21));
+		float startTime = random.nextInt(96) / 4f, duration = (1 + random.nextInt(12)) / 4f;
+		if (random.nextInt(20) == 0)
+			return new RecurringTask(name, RecurringTaskType.WORK, date, 20200330, startTime, duration, 7);
+		return new TransientTask(name, "Visit", date, startTime, duration);
+	}
+	
+	private static boolean overlaps(Task first, Task second) {
+		for (long[] occurrence : occurrences(first)) {
+			for (long[] other : occurrences(second)) {
+				if (occurrence[0] < other[1] && other[0] < occurrence[1])
+					return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * @return the [start, end) minutes of every occurance of the task
+	 */
+	private static List<long[]> occurrences(Task task) {
+		List<long[]> occurrences = new ArrayList<>();
+		int lastDay = task instanceof RecurringTask series ? series.getLastOccurrenceDay() : task.getEpochDay();
+		int frequency = task instanceof RecurringTask series ? series.getFrequency() : 1;
+		for (int day = task.getEpochDay(); day <= lastDay; day += frequency) {
+			long start = day * (long) TimeHelper.MINUTES_PER_DAY + task.getStartMinute();
+			occurrences.add(new long[] { start, start + task.getDurationMinutes() });
+		}
+		return occurrences;
+	}
+	
+	private interface Work {
+		void run(int thread) throws Exception;
+	}
+	
+	/**
+	 * Start every thread at the same moment and wait for all of them, rethrowing the first failure
+	 */
+	private static void runOnThreads(Work work) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<Object>> results = new ArrayList<>();
+		for (int thread = 0; thread < THREADS; thread++) {
+			int number = thread;
+			results.add(executor.submit(() -> {
+				start.await();
+				work.run(number);
+				return null;
+			}));
+		}
+		start.countDown();
+		for (Future<Object> result : results) {
+			result.get(1, TimeUnit.MINUTES);
+		}
+		executor.shutdown();
+	}
+}
@@ -0,0 +1,102 @@
+package main.helpers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import main.tasks.AntiTask;
+import main.tasks.RecurringTask;
+import main.tasks.RecurringTask.RecurringTaskType;
+import main.tasks.Task;
+import main.tasks.TransientTask;
+
+/**
+ * Checks the series index of the linker against trying every series in file order
+ * @author CTS
+ *
+ */
+class AntiTaskLinkerTest {
+	@Test
+	void linksToTheFirstSeriesThatIsNotCancelledYet() {
+		RecurringTask first = new RecurringTask("first", RecurringTaskType.WORK, 20200101, 20200131, 9, 1, 7);
+		RecurringTask second = new RecurringTask("second", RecurringTaskType.STUDY, 20200101, 20200131, 9, 1, 1);
+		AntiTaskLinker linker = new AntiTaskLinker();
+		linker.add(new AntiTask("one", "Cancellation", 20200108, 9, 1));
+		linker.add(first);
+		linker.add(second);
+		linker.add(new AntiTask("two", "Cancellation", 20200108, 9, 1));
+		linker.add(new AntiTask("late", "Cancellation", 20200108, 10, 1));
+		linker.getTasks();
+		// "late" starts an hour after both series, so it is dropped
+		assertEquals(1, first.getCancelledOccurances().size());
+		assertEquals("one", first.getCancelledOccurances().get(0).getName());
+		assertEquals(1, second.getCancelledOccurances().size());
+		assertEquals("two", second.getCancelledOccurances().get(0).getName());
+	}
+	
+	@Test
+	void matchesTryingEverySeries() {
+		for (int seed = 0; seed < 300; seed++) {
+			AntiTaskLinker linker = new AntiTaskLinker();
+			for (Task task : randomFile(new Random(seed)))
+				linker.add(task);
+			List<Task> linked = linker.getTasks();
+			assertEquals(SnapshotHelperTest.describe(scanLink(randomFile(new Random(seed)))), SnapshotHelperTest.describe(linked), "seed " + seed);
+		}
+	}
+	
+	/**
+	 * A file where many series share a start time and duration, so an anti-task often matches
+	 * more than one of them, with anti-tasks before and after their series
+	 */
+	private static List<Task> randomFile(Random random) {
+		List<Task> file = new ArrayList<>();
+		List<RecurringTask> seriesList = new ArrayList<>();
+		for (int i = random.nextInt(30); i > 0; i--) {
+			int startDate = 20200101 + random.nextInt(20);
+			float startTime = 8 + random.nextInt(3) / 2f, duration = 1 + random.nextInt(2) / 2f;
+			RecurringTask series = new RecurringTask("series" + i, RecurringTaskType.WORK, startDate, 20200131 + 100 * random.nextInt(2), 
+					startTime, duration, 1 + random.nextInt(10));
+			seriesList.add(series);
+			file.add(series);
+			if (random.nextInt(4) == 0)
+				file.add(new TransientTask("visit" + i, "Visit", startDate, startTime, duration));
+		}
+		for (int i = random.nextInt(60); i > 0 && !seriesList.isEmpty(); i--) {
+			// usually a day that one of the series has, sometimes one that none do
+			RecurringTask series = seriesList.get(random.nextInt(seriesList.size()));
+			int day = series.getEpochDay() + series.getFrequency() * random.nextInt(10) + (random.nextInt(5) == 0 ? 1 : 0);
+			float startTime = random.nextInt(5) == 0 ? series.getStartTime() + 0.5f : series.getStartTime();
+			file.add(random.nextInt(file.size() + 1), new AntiTask("skip" + i, "Cancellation", TimeHelper.fromEpochDay(day), startTime, series.getDuration()));
+		}
+		return file;
+	}
+	
+	/**
+	 * Give every anti-task, in file order, to the first series in file order with a matching occurance that is not cancelled yet
+	 */
+	private static List<Task> scanLink(List<Task> file) {
+		List<Task> taskList = new ArrayList<>();
+		for (Task task : file) {
+			if (!(task instanceof AntiTask))
+				taskList.add(task);
+		}
+		for (Task task : file) {
+			if (task instanceof AntiTask antiTask) {
+				for (Task other : taskList) {
+					if (other instanceof RecurringTask series && series.getStartMinute() == antiTask.getStartMinute() 
+							&& series.getDurationMinutes() == antiTask.getDurationMinutes() 
+							&& series.occursOn(antiTask.getEpochDay()) && !series.isCancelledOn(antiTask.getEpochDay())) {
+						series.addAntiTask(antiTask);
+						break;
+					}
+				}
+			}
+		}
+		return taskList;
+	}
+}
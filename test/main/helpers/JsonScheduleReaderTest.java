@@ -0,0 +1,219 @@
+package main.helpers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import main.tasks.AntiTask;
+import main.tasks.RecurringTask;
+import main.tasks.Task;
+
+/**
+ * Checks the streaming tokenizer against the fields each object was written from, 
+ * the offsets it reports for broken input, and that reading UTF-8 bytes gives the same tasks
+ * @author CTS
+ *
+ */
+class JsonScheduleReaderTest {
+	// written as they are in the file, so the escapes stay escaped and the rest is raw UTF-8
+	private static final String[] NAME_ENDINGS = { "", ", with \\\"quotes\\\": \\u00e9\\u20ac", " caf\u00e9 \u2615 \uD83D\uDE00", " \\ud83d\\ude00 \\uD83C\\uDF89" };
+	private static final byte[] BYTE_ORDER_MARK = { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF };
+	private static final String[] TYPES = { "Class", "Study", "Sleep", "Exercise", "Work", "Meal", "Visit", "Shopping", "Appointment", "Cancellation" };
+	
+	@Test
+	void keepsPunctuationInsideNames() throws Exception {
+		List<Task> tasks = read("[{\"Name\":\"a, b: \\\"c\\\" {d}\",\"Type\":\"Visit\",\"Date\":20200101,\"StartTime\":9,\"Duration\":1}]");
+		assertEquals("a, b: \"c\" {d}", tasks.get(0).getName());
+	}
+	
+	@Test
+	void skipsUnknownKeysWithNestedValues() throws Exception {
+		List<Task> tasks = read("{\"Extra\":{\"a\":[1,{\"b\":\"]}\"}]},\"Name\":\"x\",\"Type\":\"Visit\",\"Date\":\"20200101\",\"StartTime\":\"9.25\",\"Duration\":\"1\"}");
+		assertEquals(1, tasks.size());
+		assertEquals(9.25f, tasks.get(0).getStartTime());
+	}
+	
+	@Test
+	void reportsTheOffsetOfTheBadCharacter() {
+		// the stray quote is the 14th character
+		String broken = "[{\"Name\":\"a\" \"Type\":\"Visit\"}]";
+		assertEquals("Expected ',' or '}' but found '\"' at character 14", assertThrows(IOException.class, () -> read(broken)).getMessage());
+		// past the first 8K buffer, and fed one character at a time
+		String padded = " ".repeat(10000) + broken;
+		assertEquals("Expected ',' or '}' but found '\"' at character 10014", 
+				assertThrows(IOException.class, () -> new JsonScheduleReader(oneCharAtATime(padded)).readTasks()).getMessage());
+		assertEquals("Unterminated string but found end of input at character 11", 
+				assertThrows(IOException.class, () -> read("[{\"Name\":\"a")).getMessage());
+		assertThrows(IOException.class, () -> read("[{\"Name\":\"a\",\"Type\":\"Visit\",\"Date\":20200x01}]"));
+		assertThrows(IOException.class, () -> read("[{\"Name\":\"a\",\"Type\":\"Visit\",\"Date\":20200101,\"StartTime\":9,\"Duration\":1},]"));
+	}
+	
+	@Test
+	void matchesTheFieldsThatWereWritten() throws Exception {
+		Random random = new Random(8);
+		for (int i = 0; i < 300; i++) {
+			List<String> expected = new ArrayList<>();
+			String json = randomSchedule(random, expected);
+			Reader reader = random.nextBoolean() ? new StringReader(json) : oneCharAtATime(json);
+			assertEquals(expected, describe(new JsonScheduleReader(reader).readTasks()), json);
+		}
+	}
+	
+	@Test
+	void readsBytesTheSameAsCharacters() throws Exception {
+		Random random = new Random(9);
+		for (int i = 0; i < 300; i++) {
+			String json = randomSchedule(random, new ArrayList<>());
+			byte[] utf8 = json.getBytes(StandardCharsets.UTF_8);
+			if (random.nextBoolean()) {
+				utf8 = Arrays.copyOf(BYTE_ORDER_MARK, BYTE_ORDER_MARK.length + utf8.length);
+				System.arraycopy(json.getBytes(StandardCharsets.UTF_8), 0, utf8, BYTE_ORDER_MARK.length, utf8.length - BYTE_ORDER_MARK.length);
+			}
+			assertEquals(describe(read(json)), describe(new JsonScheduleReader(ByteBuffer.wrap(utf8)).readTasks()), json);
+		}
+		// all of the input is ASCII, so the byte offset is the same as the character offset
+		assertEquals("Expected ',' or '}' but found '\"' at character 14", assertThrows(IOException.class, 
+				() -> new JsonScheduleReader(ByteBuffer.wrap("[{\"Name\":\"a\" \"Type\":\"Visit\"}]".getBytes(StandardCharsets.UTF_8))).readTasks()).getMessage());
+	}
+	
+	@Test
+	void joinsEscapedSurrogatePairsInEveryMode(@TempDir Path folder) throws Exception {
+		// a pair, a pair in capitals, each half alone, a high half before a pair, and a pair cut by a character
+		String[] names = { "\\ud83d\\ude00", "x\\uD83D\\uDE00y", "a\\ud83d", "\\ude00b", "\\ud83d\\ud83d\\ude00", "\\ud83dx\\ude00" };
+		for (String name : names) {
+			String json = "[{\"Name\":\"" + name + "\",\"Type\":\"Visit\",\"Date\":20200101,\"StartTime\":9,\"Duration\":1}]";
+			Path file = folder.resolve("schedule.json");
+			Files.writeString(file, json, StandardCharsets.UTF_8);
+			String read = read(json).get(0).getName();
+			// a lone half can not be UTF-8, from bytes it reads back as '?' like String.getBytes writes it
+			String fromBytes = new String(read.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+			assertEquals(fromBytes, new JsonScheduleReader(ByteBuffer.wrap(json.getBytes(StandardCharsets.UTF_8))).readTasks().get(0).getName(), name);
+			assertEquals(fromBytes, JsonHelper.parseJsonFile(file.toString()).get(0).getName(), name);
+		}
+		assertEquals("\uD83D\uDE00", read("[{\"Name\":\"\\ud83d\\ude00\",\"Type\":\"Visit\",\"Date\":20200101,\"StartTime\":9,\"Duration\":1}]").get(0).getName());
+	}
+	
+	@Test
+	void parsesAMappedFileLikeItsContents(@TempDir Path folder) throws Exception {
+		String json = randomSchedule(new Random(10), new ArrayList<>());
+		Path file = folder.resolve("schedule.json");
+		Files.writeString(file, json, StandardCharsets.UTF_8);
+		assertEquals(describe(JsonHelper.parseJsonContent(json)), describe(JsonHelper.parseJsonFile(file.toString())));
+	}
+	
+	/**
+	 * A file of up to 40 random objects
+	 * @param expected gets how each object should read back
+	 */
+	static String randomSchedule(Random random, List<String> expected) {
+		return randomSchedule(random, random.nextInt(40), expected);
+	}
+	
+	/**
+	 * A file of random objects, with every kind of task, names that need escaping or are not ASCII, 
+	 * quoted and bare numbers, unknown keys and random spacing
+	 * @param count the number of objects
+	 * @param expected gets how each object should read back
+	 */
+	static String randomSchedule(Random random, int count, List<String> expected) {
+		StringBuilder json = new StringBuilder("[");
+		for (int i = 0; i < count; i++) {
+			if (i > 0)
+				json.append(space(random)).append(',');
+			expected.add(writeRandomTask(random, json, i));
+		}
+		return json.append(space(random)).append(']').toString();
+	}
+	
+	/**
+	 * Append one object with its keys in a random order, random spacing, and numbers 
+	 * that are sometimes quoted, and return how it should read back
+	 */
+	private static String writeRandomTask(Random random, StringBuilder json, int number) {
+		boolean recurring = random.nextInt(TYPES.length) < 6;
+		String type = recurring ? TYPES[random.nextInt(6)] : TYPES[6 + random.nextInt(4)];
+		String name = "Task " + number + NAME_ENDINGS[random.nextInt(NAME_ENDINGS.length)];
+		int date = 20200101 + random.nextInt(28), endDate = 20200301 + random.nextInt(28);
+		float startTime = random.nextInt(96) / 4f, duration = (1 + random.nextInt(16)) / 4f;
+		int frequency = random.nextBoolean() ? 1 : 7;
+		
+		List<String> fields = new ArrayList<>();
+		fields.add(field(random, "Name", "\"" + name + "\""));
+		fields.add(field(random, "Type", "\"" + type + "\""));
+		fields.add(field(random, recurring ? "StartDate" : "Date", number(random, Integer.toString(date))));
+		fields.add(field(random, "StartTime", number(random, Float.toString(startTime))));
+		fields.add(field(random, "Duration", number(random, Float.toString(duration))));
+		if (recurring) {
+			fields.add(field(random, "EndDate", number(random, Integer.toString(endDate))));
+			fields.add(field(random, "Frequency", number(random, Integer.toString(frequency))));
+		}
+		if (random.nextInt(4) == 0)
+			fields.add(field(random, "Notes", "[\"x\", {\"y\": null}]"));
+		Collections.shuffle(fields, random);
+		json.append(space(random)).append('{').append(String.join(",", fields)).append(space(random)).append('}');
+		
+		String readName = name.replace("\\\"", "\"").replace("\\u00e9", "\u00e9").replace("\\u20ac", "\u20ac")
+				.replace("\\ud83d\\ude00", "\uD83D\uDE00").replace("\\uD83C\\uDF89", "\uD83C\uDF89");
+		String kind = recurring ? "RecurringTask" : type.equals("Cancellation") ? "AntiTask" : "TransientTask";
+		return kind + " " + readName + " " + type + " " + date + " " + startTime + " " + duration
+				+ (recurring ? " " + endDate + " " + frequency : "");
+	}
+	
+	private static String field(Random random, String key, String value) {
+		return space(random) + "\"" + key + "\"" + space(random) + ":" + space(random) + value;
+	}
+	
+	private static String number(Random random, String value) {
+		return random.nextBoolean() ? "\"" + value + "\"" : value;
+	}
+	
+	private static String space(Random random) {
+		return new String[] { "", " ", "\n\t\t", "\r\n" }[random.nextInt(4)];
+	}
+	
+	private static List<String> describe(List<Task> tasks) {
+		List<String> lines = new ArrayList<>();
+		for (Task task : tasks)
+			lines.add(describe(task));
+		return lines;
+	}
+	
+	private static String describe(Task task) {
+		String kind = task instanceof RecurringTask ? "RecurringTask" : task instanceof AntiTask ? "AntiTask" : "TransientTask";
+		String line = kind + " " + task.getName() + " " + task.getType() + " " + task.getDate() + " " + task.getStartTime() + " " + task.getDuration();
+		if (task instanceof RecurringTask recurringTask)
+			line += " " + recurringTask.getEndDate() + " " + recurringTask.getFrequency();
+		return line;
+	}
+	
+	private static List<Task> read(String json) throws Exception {
+		return new JsonScheduleReader(new StringReader(json)).readTasks();
+	}
+	
+	/**
+	 * A reader that only ever hands back one character, so every token crosses a buffer refill
+	 */
+	private static Reader oneCharAtATime(String json) {
+		return new StringReader(json) {
+			@Override
+			public int read(char[] buffer, int offset, int length) throws IOException {
+				return super.read(buffer, offset, Math.min(length, 1));
+			}
+		};
+	}
+}
@@ -0,0 +1,159 @@
+package main.helpers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import main.tasks.RecurringTask;
+import main.tasks.RecurringTask.RecurringTaskType;
+import main.tasks.Task;
+import main.tasks.TransientTask;
+
+/**
+ * Checks that cutting a file into chunks and parsing them on a pool gives the same tasks as one sequential parse
+ * @author CTS
+ *
+ */
+class ParallelJsonImporterTest {
+	private final ForkJoinPool pool = new ForkJoinPool(4);
+	
+	@AfterEach
+	void shutDown() {
+		pool.shutdown();
+	}
+	
+	@Test
+	void cutsOnlyBetweenObjects() throws Exception {
+		Random random = new Random(12);
+		for (int i = 0; i < 200; i++) {
+			String json = JsonScheduleReaderTest.randomSchedule(random, new ArrayList<>());
+			byte[] utf8 = json.getBytes(StandardCharsets.UTF_8);
+			int maxChunks = 1 + random.nextInt(12);
+			List<int[]> chunks = ParallelJsonImporter.findChunks(ByteBuffer.wrap(utf8), maxChunks);
+			
+			// every chunk is a run of whole objects, and only commas and spaces are left between them
+			List<Task> chunkedTasks = new ArrayList<>();
+			int previousEnd = 1;
+			for (int[] chunk : chunks) {
+				String between = new String(utf8, previousEnd, chunk[0] - previousEnd, StandardCharsets.UTF_8);
+				assertTrue(between.matches("[\\s,]*"), json);
+				chunkedTasks.addAll(new JsonScheduleReader(ByteBuffer.wrap(utf8, chunk[0], chunk[1] - chunk[0])).readTasks());
+				previousEnd = chunk[1];
+			}
+			assertTrue(new String(utf8, previousEnd, utf8.length - previousEnd, StandardCharsets.UTF_8).matches("[\\s,]*\\]"), json);
+			assertTrue(chunks.size() <= maxChunks + 1, json);
+			assertEquals(SnapshotHelperTest.describe(JsonHelper.parseJsonContent(json)), 
+					SnapshotHelperTest.describe(linkAntiTasks(chunkedTasks)), json);
+		}
+	}
+	
+	@Test
+	void matchesTheSequentialParse() throws Exception {
+		Random random = new Random(13);
+		for (int i = 0; i < 5; i++) {
+			// big enough for the importer to cut it into a chunk for every thread. No anti-tasks, 
+			// linking those is checked above and gets slow with thousands of tasks
+			List<Task> taskList = new ArrayList<>();
+			for (int j = 4000 + random.nextInt(4000); j > 0; j--) {
+				int date = 20200101 + random.nextInt(28);
+				float startTime = random.nextInt(96) / 4f, duration = (1 + random.nextInt(16)) / 4f;
+				if (random.nextBoolean())
+					taskList.add(new TransientTask("Task " + j + " \u00e9", "Visit", date, startTime, duration));
+				else
+					taskList.add(new RecurringTask("Task " + j, RecurringTaskType.WORK, date, 20200331, startTime, duration, 7));
+			}
+			StringWriter json = new StringWriter();
+			new JsonScheduleWriter(json).writeTasks(taskList);
+			List<Task> parallel = new ParallelJsonImporter(pool).importTasks(ByteBuffer.wrap(json.toString().getBytes(StandardCharsets.UTF_8)));
+			assertEquals(SnapshotHelperTest.describe(JsonHelper.parseJsonContent(json.toString())), SnapshotHelperTest.describe(parallel));
+		}
+	}
+	
+	@Test
+	void takesAnythingButAnArrayWhole() throws Exception {
+		String task = "{\"Name\": \"Dentist\", \"Type\": \"Appointment\", \"Date\": 20200415, \"StartTime\": 9, \"Duration\": 1}";
+		for (String json : new String[] { task, " " + task, task + ",\n" + task.replace("Dentist", "Doctor") }) {
+			assertThrows(IOException.class, () -> ParallelJsonImporter.findChunks(ByteBuffer.wrap(json.getBytes(StandardCharsets.UTF_8)), 4));
+			List<Task> parallel = new ParallelJsonImporter(pool).importTasks(ByteBuffer.wrap(json.getBytes(StandardCharsets.UTF_8)));
+			assertEquals(SnapshotHelperTest.describe(JsonHelper.parseJsonContent(json)), SnapshotHelperTest.describe(parallel), json);
+		}
+	}
+	
+	@Test
+	void rejectsAnythingBetweenTheObjects() {
+		String task = "{\"Name\": \"Dentist\", \"Type\": \"Appointment\", \"Date\": 20200415, \"StartTime\": 9, \"Duration\": 1}";
+		for (String json : new String[] { "[" + task + " 1, " + task + "]", "[" + task + ", [" + task + "]]", "[" + task + "] " + task }) {
+			assertThrows(IOException.class, () -> ParallelJsonImporter.findChunks(ByteBuffer.wrap(json.getBytes(StandardCharsets.UTF_8)), 4), json);
+		}
+	}
+	
+	@Test
+	void takesExactlyWhatTheSequentialParseTakes() throws Exception {
+		String task = "{\"Name\": \"Dentist\", \"Type\": \"Appointment\", \"Date\": 20200415, \"StartTime\": 9, \"Duration\": 1}";
+		String other = task.replace("Dentist", "Doctor");
+		String bom = "\ufeff";
+		String[] inputs = { "[]", " [ ] ", "[" + task + "]", "[" + task + ", " + other + "]\n",
+				"[" + task + ",]", "[" + task + ", " + other + ", ]", "[," + task + "]", "[" + task + ",, " + other + "]",
+				"[" + task + " " + other + "]", "[" + task + "],", "[" + task + "] ]",
+				bom + "[" + task + "]", bom + " [" + task + "]", bom + bom + "[" + task + "]", " " + bom + "[" + task + "]" };
+		for (String json : inputs) {
+			byte[] utf8 = json.getBytes(StandardCharsets.UTF_8);
+			String sequential, parallel;
+			try {
+				sequential = SnapshotHelperTest.describe(linkAntiTasks(new JsonScheduleReader(ByteBuffer.wrap(utf8)).readTasks())).toString();
+			} catch (IOException e) {
+				sequential = e.getMessage();
+			}
+			try {
+				parallel = SnapshotHelperTest.describe(new ParallelJsonImporter(pool).importTasks(ByteBuffer.wrap(utf8))).toString();
+			} catch (IOException e) {
+				parallel = e.getMessage();
+			}
+			assertEquals(sequential, parallel, json);
+			
+			boolean split;
+			try {
+				ParallelJsonImporter.findChunks(ByteBuffer.wrap(utf8), 4);
+				split = true;
+			} catch (IOException e) {
+				split = false;
+			}
+			assertEquals(!sequential.startsWith("Expected") && !sequential.startsWith("Unbalanced"), split, json);
+		}
+	}
+	
+	@Test
+	void throwsWhatTheSequentialParseThrows() throws Exception {
+		List<Task> taskList = new ArrayList<>();
+		for (int i = 0; i < 3000; i++) {
+			taskList.add(new TransientTask("Task " + i, "Visit", 20200101 + i % 28, i % 96 / 4f, 0.25f));
+		}
+		StringWriter writer = new StringWriter();
+		new JsonScheduleWriter(writer).writeTasks(taskList);
+		// a broken value well inside one of the later chunks
+		String json = writer.toString().replace("\"Task 2500\"", "\"Task 2500\" 7");
+		Exception sequential = assertThrows(Exception.class, () -> JsonHelper.parseJsonContent(json));
+		Exception parallel = assertThrows(Exception.class, () -> new ParallelJsonImporter(pool).importTasks(ByteBuffer.wrap(json.getBytes(StandardCharsets.UTF_8))));
+		assertEquals(IOException.class, parallel.getClass());
+		assertEquals(sequential.getMessage(), parallel.getMessage());
+	}
+	
+	private static List<Task> linkAntiTasks(List<Task> tasks) {
+		AntiTaskLinker linker = new AntiTaskLinker();
+		for (Task task : tasks)
+			linker.add(task);
+		return linker.getTasks();
+	}
+}
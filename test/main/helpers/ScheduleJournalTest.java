@@ -0,0 +1,280 @@
+package main.helpers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import main.Scheduler;
+import main.tasks.AntiTask;
+import main.tasks.RecurringTask;
+import main.tasks.RecurringTask.RecurringTaskType;
+import main.tasks.Task;
+import main.tasks.TransientTask;
+
+/**
+ * Writes changes to a journal, then opens it again and checks that replaying it gives the same schedule
+ * @author CTS
+ *
+ */
+class ScheduleJournalTest {
+	private static final String NAME = "schedule";
+	
+	@TempDir
+	Path directory;
+	
+	@Test
+	void replaysEveryKindOfChange() throws IOException {
+		RecurringTask series = new RecurringTask("Standup", RecurringTaskType.WORK, 20200106, 20200306, 9, 0.25f, 7);
+		try (ScheduleJournal journal = ScheduleJournal.open(directory, NAME)) {
+			journal.taskAdded(series);
+			journal.taskAdded(new TransientTask("Dentist", "Appointment", 20200108, 14.5f, 1));
+			journal.occurrenceCancelled("Standup", new AntiTask("Holiday", "Cancellation", 20200113, 9, 0.25f));
+			journal.taskAdded(new TransientTask("Movie", "Visit", 20200110, 20, 2));
+			journal.occurrenceCancelled("Standup", new AntiTask("Offsite", "Cancellation", 20200127, 9, 0.25f));
+			journal.taskDeleted("Dentist");
+		}
+		
+		List<Task> recovered = reopen();
+		assertEquals(2, recovered.size());
+		RecurringTask recoveredSeries = (RecurringTask) recovered.get(0);
+		assertEquals("Standup", recoveredSeries.getName());
+		assertEquals(2, recoveredSeries.getCancelledOccurances().size());
+		assertTrue(recoveredSeries.isCancelledOn(TimeHelper.toEpochDay(20200127)));
+		assertEquals("Movie", recovered.get(1).getName());
+	}
+	
+	@Test
+	void followsRenamesInOrder() throws IOException {
+		try (ScheduleJournal journal = ScheduleJournal.open(directory, NAME)) {
+			journal.taskAdded(new TransientTask("a", "Visit", 20200101, 9, 1));
+			journal.taskAdded(new TransientTask("b", "Visit", 20200102, 9, 1));
+			journal.taskDeleted("a");
+			// the name freed by the delete is taken by a rename, then the old name is used again
+			journal.taskEdited("b", new TransientTask("a", "Visit", 20200103, 10, 2));
+			journal.taskAdded(new TransientTask("b", "Visit", 20200104, 9, 1));
+		}
+		
+		List<Task> recovered = reopen();
+		assertEquals(2, recovered.size());
+		assertEquals("a", recovered.get(0).getName());
+		assertEquals(20200103, recovered.get(0).getDate());
+		assertEquals(10 * 60, recovered.get(0).getStartMinute());
+		assertEquals("b", recovered.get(1).getName());
+		assertEquals(20200104, recovered.get(1).getDate());
+	}
+	
+	@Test
+	void refusesADeleteOfTheNameBeforeARename() throws IOException {
+		try (ScheduleJournal journal = ScheduleJournal.open(directory, NAME)) {
+			journal.taskAdded(new TransientTask("a", "Visit", 20200101, 9, 1));
+			journal.taskEdited("a", new TransientTask("b", "Visit", 20200101, 9, 1));
+			journal.taskDeleted("a");
+		}
+		assertThrows(IOException.class, () -> ScheduleJournal.open(directory, NAME).close());
+	}
+	
+	@Test
+	void dropsATornLastEntry() throws IOException {
+		try (ScheduleJournal journal = ScheduleJournal.open(directory, NAME)) {
+			journal.taskAdded(new TransientTask("a", "Visit", 20200101, 9, 1));
+			journal.taskAdded(new TransientTask("b", "Visit", 20200102, 9, 1));
+		}
+		Path journalFile = lastJournalFile();
+		long goodBytes = Files.size(journalFile);
+		try (ScheduleJournal journal = ScheduleJournal.open(directory, NAME)) {
+			journal.taskAdded(new TransientTask("c", "Visit", 20200103, 9, 1));
+		}
+		byte[] written = Files.readAllBytes(journalFile);
+		
+		// the crash came halfway through writing the entry
+		Files.write(journalFile, Arrays.copyOf(written, (int) (goodBytes + (written.length - goodBytes) / 2)));
+		assertEquals(List.of("a", "b"), names(reopen()));
+		assertEquals(goodBytes, Files.size(journalFile));
+		
+		// the entry is all there but its last byte did not make it to disk
+		written[written.length - 1] ^= 1;
+		Files.write(journalFile, written);
+		assertEquals(List.of("a", "b"), names(reopen()));
+		assertEquals(goodBytes, Files.size(journalFile));
+		
+		// the journal goes on after the cut
+		try (ScheduleJournal journal = ScheduleJournal.open(directory, NAME)) {
+			journal.taskAdded(new TransientTask("d", "Visit", 20200104, 9, 1));
+		}
+		assertEquals(List.of("a", "b", "d"), names(reopen()));
+	}
+	
+	@Test
+	void replaysABatchWholeOrNotAtAll() throws IOException {
+		try (ScheduleJournal journal = ScheduleJournal.open(directory, NAME)) {
+			journal.taskAdded(new RecurringTask("Standup", RecurringTaskType.WORK, 20200106, 20200306, 9, 0.25f, 7));
+		}
+		Path journalFile = lastJournalFile();
+		long goodBytes = Files.size(journalFile);
+		try (ScheduleJournal journal = ScheduleJournal.open(directory, NAME)) {
+			Map<AntiTask, String> cancellations = new LinkedHashMap<>();
+			cancellations.put(new AntiTask("Offsite", "Cancellation", 20200127, 9, 0.25f), "Standup");
+			journal.batchAdded(List.of(new TransientTask("Movie", "Visit", 20200110, 20, 2)), cancellations);
+		}
+		byte[] written = Files.readAllBytes(journalFile);
+		List<Task> replayed = reopen();
+		assertEquals(List.of("Standup", "Movie"), names(replayed));
+		assertTrue(((RecurringTask) replayed.get(0)).isCancelledOn(TimeHelper.toEpochDay(20200127)));
+		
+		Files.write(journalFile, Arrays.copyOf(written, (int) (goodBytes + (written.length - goodBytes) / 2)));
+		replayed = reopen();
+		assertEquals(List.of("Standup"), names(replayed));
+		assertFalse(((RecurringTask) replayed.get(0)).isCancelledOn(TimeHelper.toEpochDay(20200127)));
+	}
+	
+	@Test
+	void keepsAppendingAfterACompactionFails() throws Exception {
+		ScheduleJournal journal = ScheduleJournal.open(directory, NAME);
+		journal.taskAdded(new TransientTask("a", "Visit", 20200101, 9, 1));
+		// the compaction reads this snapshot first and fails on it
+		Path damaged = directory.resolve(NAME + ".0.snapshot");
+		Files.write(damaged, new byte[] {1, 2, 3});
+		journal.compact();
+		for (int i = 0; i < 500 && journal.getCompactionFailure() == null; i++) {
+			Thread.sleep(10);
+		}
+		assertTrue(journal.getCompactionFailure() != null);
+		
+		journal.taskAdded(new TransientTask("b", "Visit", 20200102, 9, 1));
+		assertThrows(IOException.class, journal::close);
+		
+		Files.delete(damaged);
+		assertEquals(List.of("a", "b"), names(reopen()));
+	}
+	
+	@Test
+	void leavesTheJournalAloneWhenACheckpointFails() throws IOException {
+		try (ScheduleJournal journal = ScheduleJournal.open(directory, NAME)) {
+			journal.taskAdded(new TransientTask("a", "Visit", 20200101, 9, 1));
+			// the snapshot cannot be written where a directory is in the way
+			Path blocker = Files.createDirectory(directory.resolve(NAME + ".1.snapshot.tmp"));
+			List<Path> before = journalFiles();
+			assertThrows(IOException.class, () -> journal.checkpoint(List.of(new TransientTask("a", "Visit", 20200101, 9, 1))));
+			assertEquals(before, journalFiles());
+			journal.taskAdded(new TransientTask("b", "Visit", 20200102, 9, 1));
+			Files.delete(blocker);
+			
+			journal.checkpoint(List.of(new TransientTask("a", "Visit", 20200101, 9, 1), new TransientTask("b", "Visit", 20200102, 9, 1)));
+			assertEquals(1, journalFiles().size());
+		}
+		assertEquals(List.of("a", "b"), names(reopen()));
+	}
+	
+	@Test
+	void reopensTheScheduleASchedulerJournaled() throws Exception {
+		Scheduler scheduler = Scheduler.openJournal(directory.toString());
+		scheduler.addTask(new RecurringTask("Standup", RecurringTaskType.WORK, 20200106, 20200306, 9, 0.25f, 7));
+		scheduler.addTask(new TransientTask("Dentist", "Appointment", 20200108, 14.5f, 1));
+		scheduler.addTask(new AntiTask("Holiday", "Cancellation", 20200113, 9, 0.25f));
+		scheduler.compactJournal();
+		scheduler.addAllTasks(List.of(new TransientTask("Movie", "Visit", 20200110, 20, 2),
+				new AntiTask("Offsite", "Cancellation", 20200127, 9, 0.25f)));
+		assertTrue(scheduler.deleteTask(scheduler.findTask("Dentist")));
+		List<Task> expected = tasksOf(scheduler);
+		scheduler.closeJournal();
+		
+		Scheduler reopened = Scheduler.openJournal(directory.toString());
+		assertEquals(SnapshotHelperTest.describe(expected), SnapshotHelperTest.describe(tasksOf(reopened)));
+		reopened.closeJournal();
+	}
+	
+	@Test
+	void givesUpEditsOfADeletedTask() throws Exception {
+		Scheduler scheduler = Scheduler.openJournal(directory.toString());
+		Task dentist = new TransientTask("Dentist", "Appointment", 20200108, 14.5f, 1);
+		scheduler.addTask(dentist);
+		scheduler.addTask(new TransientTask("Movie", "Visit", 20200110, 20, 2));
+		assertTrue(scheduler.deleteTask(dentist));
+		// a rename, a new date and new times, none of which may reach the journal
+		edit(scheduler, dentist, "1\nDoctor\n3\n20200109\n4\n10\n1\n5\n");
+		assertEquals("Dentist", dentist.getName());
+		assertNull(scheduler.findTask("Doctor"));
+		List<Task> expected = tasksOf(scheduler);
+		scheduler.closeJournal();
+		
+		Scheduler reopened = Scheduler.openJournal(directory.toString());
+		assertEquals(SnapshotHelperTest.describe(expected), SnapshotHelperTest.describe(tasksOf(reopened)));
+		reopened.closeJournal();
+	}
+	
+	/**
+	 * Answer the prompts of {@link Scheduler#editTask(Task)} with the given lines
+	 */
+	private static void edit(Scheduler scheduler, Task task, String answers) {
+		InputStream in = System.in;
+		PrintStream out = System.out;
+		System.setIn(new ByteArrayInputStream(answers.getBytes(StandardCharsets.UTF_8)));
+		System.setOut(new PrintStream(new ByteArrayOutputStream(), true, StandardCharsets.UTF_8));
+		try {
+			scheduler.editTask(task);
+		} finally {
+			System.setIn(in);
+			System.setOut(out);
+		}
+	}
+	
+	private List<Task> reopen() throws IOException {
+		try (ScheduleJournal journal = ScheduleJournal.open(directory, NAME)) {
+			return journal.getRecoveredTasks();
+		}
+	}
+	
+	/**
+	 * The tasks of a scheduler, read back through a snapshot of it
+	 */
+	private List<Task> tasksOf(Scheduler scheduler) throws IOException {
+		Path path = Files.createTempFile(Files.createDirectories(directory.resolve("copies")), "tasks", ".snapshot");
+		scheduler.writeSnapshot(path.toString());
+		return SnapshotHelper.readSnapshot(path);
+	}
+	
+	private List<Path> journalFiles() throws IOException {
+		try (var files = Files.list(directory)) {
+			return files.filter(file -> file.getFileName().toString().endsWith(".journal")).sorted().toList();
+		}
+	}
+	
+	private Path lastJournalFile() throws IOException {
+		try (var files = Files.list(directory)) {
+			return files.filter(file -> file.getFileName().toString().endsWith(".journal"))
+					.max((first, second) -> Integer.compare(number(first), number(second))).orElseThrow();
+		}
+	}
+	
+	private static int number(Path file) {
+		String fileName = file.getFileName().toString();
+		return Integer.parseInt(fileName.substring(NAME.length() + 1, fileName.length() - ".journal".length()));
+	}
+	
+	private static List<String> names(List<Task> taskList) {
+		List<String> names = new ArrayList<>();
+		for (Task task : taskList) {
+			names.add(task.getName());
+		}
+		return names;
+	}
+}
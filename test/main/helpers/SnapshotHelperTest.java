@@ -0,0 +1,206 @@
+package main.helpers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import main.tasks.AntiTask;
+import main.tasks.RecurringTask;
+import main.tasks.RecurringTask.RecurringTaskType;
+import main.tasks.Task;
+import main.tasks.TransientTask;
+
+/**
+ * Reads snapshots back, whole and broken. A broken snapshot has to be turned down with an IOException by
+ * every reader: the task list, the {@link TaskStore} and the {@link OffHeapTaskStore}
+ * @author CTS
+ *
+ */
+class SnapshotHelperTest {
+	@TempDir
+	Path directory;
+	
+	@Test
+	void readsBackWhatWasWritten() throws IOException {
+		List<Task> taskList = sampleTasks();
+		Path path = directory.resolve("schedule.snapshot");
+		SnapshotHelper.writeSnapshot(path, taskList);
+		
+		assertEquals(describe(taskList), describe(SnapshotHelper.readSnapshot(path)));
+		assertEquals(describe(taskList), describe(SnapshotHelper.readTaskStore(path).getTasks()));
+		assertEquals(describe(taskList), describe(OffHeapTaskStore.map(path).getTasks()));
+	}
+	
+	@Test
+	void refusesTimesItCanNotHold() {
+		RecurringTask series = new RecurringTask("Standup", RecurringTaskType.WORK, 20200106, 20200306, 9, 0.25f, 7);
+		// a start that is not a whole minute, on an anti-task
+		series.addAntiTask(new AntiTask("Holiday", "Cancellation", 20200113, 9.01f, 0.25f));
+		TransientTask badDate = new TransientTask("Dentist", "Appointment", 20201301, 14.5f, 1);
+		for (Task task : new Task[] { series, badDate }) {
+			Path path = directory.resolve(task.getName() + ".snapshot");
+			assertThrows(IOException.class, () -> SnapshotHelper.writeSnapshot(path, List.of(task)));
+			assertFalse(Files.exists(path));
+			TaskStore store = new TaskStore();
+			assertThrows(IllegalArgumentException.class, () -> store.add(task));
+			assertEquals(0, store.size());
+		}
+	}
+	
+	@Test
+	void rejectsABrokenHeader() throws IOException {
+		byte[] snapshot = sampleSnapshot();
+		assertRejected(withInt(snapshot, 0, 0x12345678));
+		assertRejected(withShort(snapshot, 4, (short) (SnapshotHelper.VERSION + 1)));
+		assertRejected(withInt(snapshot, 8, -1));
+		assertRejected(withInt(snapshot, 8, Integer.MAX_VALUE));
+		assertRejected(withInt(snapshot, 12, -1));
+		assertRejected(withInt(snapshot, 12, recordCount(snapshot) + 1));
+		assertRejected(Arrays.copyOf(snapshot, SnapshotHelper.HEADER_BYTES - 1));
+	}
+	
+	@Test
+	void rejectsABrokenDictionary() throws IOException {
+		byte[] snapshot = sampleSnapshot();
+		assertRejected(withInt(snapshot, SnapshotHelper.HEADER_BYTES, -1));
+		assertRejected(withInt(snapshot, SnapshotHelper.HEADER_BYTES, snapshot.length));
+		assertRejected(Arrays.copyOf(snapshot, SnapshotHelper.HEADER_BYTES + 2));
+	}
+	
+	@Test
+	void rejectsRecordsThatPointOutsideTheDictionary() throws IOException {
+		byte[] snapshot = sampleSnapshot();
+		int stringCount = ByteBuffer.wrap(snapshot).getInt(8);
+		assertRejected(withInt(snapshot, recordPosition(snapshot, 1) + 4, stringCount));
+		assertRejected(withInt(snapshot, recordPosition(snapshot, 1) + 8, -1));
+	}
+	
+	@Test
+	void rejectsAnAntiTaskWithoutItsSeries() throws IOException {
+		byte[] snapshot = sampleSnapshot();
+		// the first record is the series, the second its anti-task
+		assertRejected(withByte(snapshot, recordPosition(snapshot, 0), SnapshotHelper.KIND_ANTI_TASK));
+		assertRejected(withByte(snapshot, recordPosition(snapshot, 0), SnapshotHelper.KIND_TRANSIENT));
+		assertRejected(withByte(snapshot, recordPosition(snapshot, 0), (byte) 9));
+	}
+	
+	@Test
+	void neverThrowsAnythingButIOExceptionOnDamage() throws IOException {
+		byte[] snapshot = sampleSnapshot();
+		Path path = directory.resolve("damaged.snapshot");
+		Random random = new Random(11);
+		for (int i = 0; i < 2000; i++) {
+			byte[] damaged = snapshot.clone();
+			for (int changes = 1 + random.nextInt(3); changes > 0; changes--) {
+				damaged[random.nextInt(damaged.length)] = (byte) random.nextInt(256);
+			}
+			if (random.nextInt(4) == 0)
+				damaged = Arrays.copyOf(damaged, random.nextInt(damaged.length));
+			Files.write(path, damaged);
+			byte[] input = damaged;
+			readOrReject(() -> SnapshotHelper.readSnapshot(ByteBuffer.wrap(input)));
+			readOrReject(() -> SnapshotHelper.readSnapshot(path));
+			readOrReject(() -> SnapshotHelper.readTaskStore(path));
+			readOrReject(() -> OffHeapTaskStore.map(path));
+		}
+	}
+	
+	private interface Reader {
+		void read() throws IOException;
+	}
+	
+	private static void readOrReject(Reader reader) {
+		try {
+			reader.read();
+		} catch (IOException e) {
+			// turned down the right way
+		} catch (RuntimeException e) {
+			fail("A damaged snapshot should give an IOException", e);
+		}
+	}
+	
+	private void assertRejected(byte[] snapshot) throws IOException {
+		Path path = directory.resolve("broken.snapshot");
+		Files.write(path, snapshot);
+		assertThrows(IOException.class, () -> SnapshotHelper.readSnapshot(ByteBuffer.wrap(snapshot)));
+		assertThrows(IOException.class, () -> SnapshotHelper.readSnapshot(path));
+		assertThrows(IOException.class, () -> SnapshotHelper.readTaskStore(path));
+		assertThrows(IOException.class, () -> OffHeapTaskStore.map(path));
+	}
+	
+	static List<Task> sampleTasks() {
+		List<Task> taskList = new ArrayList<>();
+		RecurringTask series = new RecurringTask("Standup", RecurringTaskType.WORK, 20200106, 20200306, 9, 0.25f, 7);
+		series.addAntiTask(new AntiTask("Holiday", "Cancellation", 20200113, 9, 0.25f));
+		series.addAntiTask(new AntiTask("Offsite", "Cancellation", 20200127, 9, 0.25f));
+		taskList.add(series);
+		taskList.add(new TransientTask("Dentist", "Appointment", 20200108, 14.5f, 1));
+		taskList.add(new RecurringTask("Lunch", RecurringTaskType.MEAL, 20200101, 20200131, 12, 1, 1));
+		taskList.add(new TransientTask("Café", "Visit", 20200215, 23.75f, 0.5f));
+		return taskList;
+	}
+	
+	/**
+	 * @return the fields of every task and anti-task, one line each
+	 */
+	static String describe(List<Task> taskList) {
+		StringBuilder description = new StringBuilder();
+		for (Task task : taskList) {
+			description.append(task.getName()).append(' ').append(task.getType()).append(' ').append(task.getEpochDay())
+					.append(' ').append(task.getStartMinute()).append(' ').append(task.getDurationMinutes());
+			if (task instanceof RecurringTask series) {
+				description.append(' ').append(series.getEndEpochDay()).append(' ').append(series.getFrequency());
+				for (AntiTask antiTask : series.getCancelledOccurances()) {
+					description.append("\n\t").append(antiTask.getName()).append(' ').append(antiTask.getEpochDay());
+				}
+			}
+			description.append('\n');
+		}
+		return description.toString();
+	}
+	
+	private byte[] sampleSnapshot() throws IOException {
+		Path path = directory.resolve("sample.snapshot");
+		SnapshotHelper.writeSnapshot(path, sampleTasks());
+		return Files.readAllBytes(path);
+	}
+	
+	private static int recordCount(byte[] snapshot) {
+		return ByteBuffer.wrap(snapshot).getInt(12);
+	}
+	
+	private static int recordPosition(byte[] snapshot, int record) {
+		return snapshot.length - (recordCount(snapshot) - record) * SnapshotHelper.RECORD_BYTES;
+	}
+	
+	private static byte[] withInt(byte[] snapshot, int position, int value) {
+		byte[] changed = snapshot.clone();
+		ByteBuffer.wrap(changed).putInt(position, value);
+		return changed;
+	}
+	
+	private static byte[] withShort(byte[] snapshot, int position, short value) {
+		byte[] changed = snapshot.clone();
+		ByteBuffer.wrap(changed).putShort(position, value);
+		return changed;
+	}
+	
+	private static byte[] withByte(byte[] snapshot, int position, byte value) {
+		byte[] changed = snapshot.clone();
+		changed[position] = value;
+		return changed;
+	}
+}
@@ -0,0 +1,286 @@
+package main.helpers;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import main.Scheduler;
+import main.tasks.AntiTask;
+import main.tasks.RecurringTask;
+import main.tasks.RecurringTask.RecurringTaskType;
+import main.tasks.Task;
+import main.tasks.TransientTask;
+
+/**
+ * Checks that a {@link TaskStore} and an {@link OffHeapTaskStore} hold the same schedule as the task list
+ * they were made from: the same snapshot bytes, the same tasks back out, the same rows as scanning the tasks,
+ * and the same scheduler on top
+ * @author CTS
+ *
+ */
+class TaskStoreTest {
+	private static final int FIRST_DAY = TimeHelper.toEpochDay(20200101);
+	
+	@TempDir
+	Path directory;
+	
+	@Test
+	void writesTheSameSnapshotAsTheTaskList() throws IOException {
+		List<Task> taskList = SnapshotHelperTest.sampleTasks();
+		byte[] expected = write("list", taskList);
+	
+		TaskStore store = TaskStore.of(taskList);
+		assertArrayEquals(expected, write("store", store));
+		Path path = directory.resolve("list.snapshot");
+		assertArrayEquals(expected, write("read", SnapshotHelper.readTaskStore(path)));
+		assertArrayEquals(expected, write("mapped", OffHeapTaskStore.map(path)));
+		assertArrayEquals(expected, write("copied", OffHeapTaskStore.copyOf(store)));
+		assertEquals(SnapshotHelperTest.describe(taskList), SnapshotHelperTest.describe(store.getTasks()));
+		assertEquals(SnapshotHelperTest.describe(taskList), SnapshotHelperTest.describe(OffHeapTaskStore.of(taskList).getTasks()));
+	}
+	
+	@Test
+	void findsTheSameRowsAsScanningTheTasks() throws IOException {
+		Random random = new Random(2022);
+		List<Task> taskList = new ArrayList<>();
+		TaskStore store = new TaskStore();
+		for (int round = 0; round < 3; round++) {
+			// rows added after a scan have to show up in the next one
+			for (Task task : randomTasks(random, 200)) {
+				task.setName("round" + round + "_" + task.getName());
+				taskList.add(task);
+				store.add(task);
+			}
+			OffHeapTaskStore offHeap = OffHeapTaskStore.copyOf(store);
+			for (Task task : taskList) {
+				assertEquals(store.findRow(task.getName()), offHeap.findRow(task.getName()));
+			}
+			assertEquals(-1, offHeap.findRow("missing"));
+			for (int i = 0; i < 300; i++) {
+				long from = (FIRST_DAY - 5L + random.nextInt(200)) * TimeHelper.MINUTES_PER_DAY + random.nextInt(TimeHelper.MINUTES_PER_DAY);
+				long to = from + 1 + random.nextInt(3 * TimeHelper.MINUTES_PER_DAY);
+				assertArrayEquals(scan(taskList, from, to, null), store.findOverlaps(from, to));
+				assertArrayEquals(scan(taskList, from, to, null), offHeap.findOverlaps(from, to));
+				
+				Task probe = randomTasks(random, 1).get(0);
+				RecurringTask series = probe instanceof RecurringTask recurringTask ? recurringTask : null;
+				long probeEnd = series == null ? probe.getEndEpochMinute()
+						: series.getLastOccurrenceDay() * (long) TimeHelper.MINUTES_PER_DAY + series.getStartMinute() + series.getDurationMinutes();
+				int[] expected = scan(taskList, probe.getStartEpochMinute(), probeEnd, series);
+				assertArrayEquals(expected, store.findConflicts(probe));
+				assertArrayEquals(expected, offHeap.findConflicts(probe));
+			}
+		}
+	}
+	
+	@Test
+	void findsCancelledDaysInAnyOrder() throws IOException {
+		Random random = new Random(2023);
+		TaskStore store = new TaskStore();
+		int type = store.intern("Work"), cancellation = store.intern("Cancellation");
+		List<List<Integer>> cancelledDays = new ArrayList<>();
+		for (int row = 0; row < 40; row++) {
+			int frequency = 1 + random.nextInt(7), lastDay = FIRST_DAY + frequency * random.nextInt(60);
+			store.addRow(SnapshotHelper.KIND_RECURRING, store.intern("series" + row), type, FIRST_DAY, lastDay, 540, 60, frequency);
+			List<Integer> days = new ArrayList<>();
+			for (int day = FIRST_DAY; day <= lastDay; day += frequency) {
+				if (random.nextInt(3) == 0)
+					days.add(day);
+			}
+			// anti-tasks come in the order they were added, not by day
+			Collections.shuffle(days, random);
+			for (int day : days) {
+				store.addCancellation(cancellation, day, 540, 60);
+				if (random.nextInt(4) == 0)
+					assertCancelled(store, row, days.subList(0, days.indexOf(day) + 1));
+			}
+			cancelledDays.add(days);
+		}
+		OffHeapTaskStore offHeap = OffHeapTaskStore.copyOf(store);
+		for (int row = 0; row < cancelledDays.size(); row++) {
+			assertCancelled(store, row, cancelledDays.get(row));
+			assertCancelled(offHeap, row, cancelledDays.get(row));
+		}
+	}
+	
+	@Test
+	void rejectsValuesThatDoNotFitInAShort() {
+		TaskStore store = new TaskStore();
+		int name = store.intern("a"), type = store.intern("Work");
+		assertThrows(IllegalArgumentException.class, () -> store.addRow(SnapshotHelper.KIND_RECURRING, name, type, FIRST_DAY, FIRST_DAY, 0, 60, 1 << 16));
+		assertThrows(IllegalArgumentException.class, () -> store.addRow(SnapshotHelper.KIND_TRANSIENT, name, type, FIRST_DAY, FIRST_DAY, Short.MAX_VALUE + 1, 60, 0));
+		assertThrows(IllegalArgumentException.class, () -> store.addRow(SnapshotHelper.KIND_TRANSIENT, name, type, FIRST_DAY, FIRST_DAY, 0, Short.MIN_VALUE - 1, 0));
+		assertEquals(0, store.size());
+		store.addRow(SnapshotHelper.KIND_RECURRING, name, type, FIRST_DAY, FIRST_DAY + 7, 0, 60, 7);
+		assertThrows(IllegalArgumentException.class, () -> store.addCancellation(name, FIRST_DAY, 40000, 60));
+		assertEquals(0, store.getCancellationCount());
+	}
+	
+	@Test
+	void runsTheSameSchedulerAsTheTaskList() throws Exception {
+		DiagnosticLog.Level level = DiagnosticLog.getLevel();
+		DiagnosticLog.setLevel(DiagnosticLog.Level.OFF);
+		try {
+			Random random = new Random(122);
+			Scheduler seed = new Scheduler();
+			for (Task task : randomTasks(random, 60)) {
+				tryAdd(seed, task);
+			}
+			List<Task> taskList = seed.getTasks();
+			Scheduler onList = new Scheduler(taskList);
+			Scheduler onStore = new Scheduler(TaskStore.of(taskList));
+			assertEquals(describe(onList), describe(onStore));
+			
+			for (int i = 0; i < 300; i++) {
+				Task task = randomTasks(random, 1).get(0);
+				String name = "task" + random.nextInt(60);
+				switch (random.nextInt(3)) {
+				case 0:
+					task.setName("new" + i);
+					assertEquals(tryAdd(onList, task), tryAdd(onStore, task.copy()));
+					break;
+				case 1:
+					assertEquals(onList.deleteTask(onList.getSnapshot().findTask(name)), onStore.deleteTask(onStore.getSnapshot().findTask(name)));
+					break;
+				default:
+					if (!(onList.getSnapshot().findTask(name) instanceof RecurringTask series))
+						break;
+					int day = series.getFirstOccurrenceOnOrAfter(series.getEpochDay() + random.nextInt(30));
+					AntiTask antiTask = new AntiTask("skip" + i, "Cancellation", TimeHelper.fromEpochDay(day), series.getStartTime(), series.getDuration());
+					assertEquals(tryAdd(onList, antiTask), tryAdd(onStore, antiTask));
+				}
+			}
+			assertEquals(describe(onList), describe(onStore));
+		} finally {
+			DiagnosticLog.setLevel(level);
+		}
+	}
+	
+	@Test
+	void writesAMappedScheduleBackOverItsFile() throws Exception {
+		Path path = directory.resolve("schedule.snapshot");
+		Scheduler onList = new Scheduler(SnapshotHelperTest.sampleTasks());
+		onList.writeSnapshot(path.toString());
+		Scheduler mapped = Scheduler.mapSnapshot(path.toString());
+		assertEquals(describe(onList), describe(mapped));
+		
+		for (Scheduler scheduler : List.of(onList, mapped)) {
+			scheduler.addTask(new TransientTask("Late", "Visit", TimeHelper.fromEpochDay(FIRST_DAY + 40), 23, 2));
+			scheduler.deleteTask(scheduler.getTasks().get(0));
+		}
+		mapped.writeSnapshot(path.toString());
+		assertEquals(describe(onList), describe(mapped));
+		assertEquals(describe(onList), describe(Scheduler.readSnapshot(path.toString())));
+	}
+	
+	private static boolean tryAdd(Scheduler scheduler, Task task) {
+		try {
+			scheduler.addTask(task);
+			return true;
+		} catch (Exception e) {
+			// only the tasks that fit are kept
+			return false;
+		}
+	}
+	
+	/**
+	 * @return the tasks of the schedule, then where it has room for an hour
+	 */
+	private static String describe(Scheduler scheduler) throws Exception {
+		return SnapshotHelperTest.describe(scheduler.getTasks())
+				+ scheduler.findFreeSlots(TimeHelper.fromEpochDay(FIRST_DAY - 1), TimeHelper.fromEpochDay(FIRST_DAY + 120), 1, 1000);
+	}
+	
+	private byte[] write(String name, List<Task> taskList) throws IOException {
+		Path path = directory.resolve(name + ".snapshot");
+		SnapshotHelper.writeSnapshot(path, taskList);
+		return Files.readAllBytes(path);
+	}
+	
+	private static void assertCancelled(AbstractTaskStore store, int row, List<Integer> cancelledDays) {
+		for (int day = FIRST_DAY - 1; day <= store.getEndEpochDay(row) + 1; day++) {
+			assertEquals(cancelledDays.contains(day), store.isCancelled(row, day), "row " + row + " day " + day);
+		}
+	}
+	
+	private byte[] write(String name, AbstractTaskStore store) throws IOException {
+		Path path = directory.resolve(name + ".snapshot");
+		SnapshotHelper.writeSnapshot(path, store);
+		return Files.readAllBytes(path);
+	}
+	
+	/**
+	 * Short and long series on any frequency with a third of their occurances cancelled, and
+	 * transient tasks between them, some of both running past midnight
+	 */
+	private static List<Task> randomTasks(Random random, int count) {
+		List<Task> taskList = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			String name = "task" + i;
+			int day = FIRST_DAY + random.nextInt(90);
+			float startTime = random.nextInt(96) / 4f, duration = (1 + random.nextInt(24)) / 4f;
+			if (random.nextBoolean()) {
+				taskList.add(new TransientTask(name, "Visit", TimeHelper.fromEpochDay(day), startTime, duration));
+				continue;
+			}
+			int frequency = 1 + random.nextInt(14);
+			int span = random.nextInt(5) == 0 ? 100 + random.nextInt(300) : random.nextInt(40);
+			RecurringTask series = new RecurringTask(name, RecurringTaskType.WORK, TimeHelper.fromEpochDay(day), TimeHelper.fromEpochDay(day + span),
+					startTime, duration, frequency);
+			List<AntiTask> cancelled = new ArrayList<>();
+			for (int occurrence = series.getEpochDay(); occurrence <= series.getLastOccurrenceDay(); occurrence += frequency) {
+				if (random.nextInt(3) == 0)
+					cancelled.add(new AntiTask(name + "_" + occurrence, "Cancellation", TimeHelper.fromEpochDay(occurrence), startTime, duration));
+			}
+			series.setCancelledOccurances(cancelled);
+			taskList.add(series);
+		}
+		return taskList;
+	}
+	
+	/**
+	 * Walk every live occurance of every task
+	 * @param series if not null, an occurance also has to overlap a live occurance of this series
+	 * @return the indexes of the tasks with an occurance overlapping [from, to)
+	 */
+	private static int[] scan(List<Task> taskList, long from, long to, RecurringTask series) {
+		int[] rows = new int[taskList.size()];
+		int found = 0;
+		for (int row = 0; row < taskList.size(); row++) {
+			Task task = taskList.get(row);
+			int frequency = task instanceof RecurringTask recurringTask ? recurringTask.getFrequency() : 1;
+			int lastDay = task instanceof RecurringTask recurringTask ? recurringTask.getLastOccurrenceDay() : task.getEpochDay();
+			for (int day = task.getEpochDay(); day <= lastDay; day += frequency) {
+				if (task instanceof RecurringTask recurringTask && recurringTask.isCancelledOn(day))
+					continue;
+				long start = day * (long) TimeHelper.MINUTES_PER_DAY + task.getStartMinute(), end = start + task.getDurationMinutes();
+				if (start < to && from < end && (series == null || overlapsSeries(series, start, end))) {
+					rows[found++] = row;
+					break;
+				}
+			}
+		}
+		return Arrays.copyOf(rows, found);
+	}
+	
+	private static boolean overlapsSeries(RecurringTask series, long from, long to) {
+		for (int day = series.getEpochDay(); day <= series.getLastOccurrenceDay(); day += series.getFrequency()) {
+			long start = day * (long) TimeHelper.MINUTES_PER_DAY + series.getStartMinute();
+			if (!series.isCancelledOn(day) && start < to && from < start + series.getDurationMinutes())
+				return true;
+		}
+		return false;
+	}
+}
@@ -0,0 +1,36 @@
+package main.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import main.helpers.TimeHelper;
+
+/**
+ * Checks which stripes a time range locks against going through its days one by one
+ * @author CTS
+ *
+ */
+class DayLockStripesTest {
+	@Test
+	void locksTheStripeOfEveryDayTouched() {
+		Random random = new Random(15);
+		DayLockStripes stripes = new DayLockStripes(16);
+		for (int i = 0; i < 5000; i++) {
+			// some ranges end right on midnight, which does not touch the next day
+			long from = TimeHelper.toEpochDay(20200101) * (long) TimeHelper.MINUTES_PER_DAY + random.nextInt(30 * TimeHelper.MINUTES_PER_DAY);
+			long to = random.nextInt(4) == 0 ? (from / TimeHelper.MINUTES_PER_DAY + 1 + random.nextInt(3)) * TimeHelper.MINUTES_PER_DAY 
+					: from + 1 + random.nextInt(random.nextBoolean() ? 120 : 20 * TimeHelper.MINUTES_PER_DAY);
+			BitSet expected = new BitSet();
+			for (long minute = from; minute < to; minute++) {
+				expected.set(Math.floorMod((int) (minute / TimeHelper.MINUTES_PER_DAY), 16));
+			}
+			BitSet actual = new BitSet();
+			stripes.addMinutes(actual, from, to);
+			assertEquals(expected, actual, from + " to " + to);
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package main.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import main.helpers.TimeHelper;
+
+/**
+ * Checks the packed quarter-hour words, and the search for the next taken or free slot, against a plain array with one flag per slot
+ * @author CTS
+ *
+ */
+class DayOccupancyTest {
+	private static final int FIRST_DAY = TimeHelper.toEpochDay(20200101);
+	private static final int DAYS = 200;
+	
+	@Test
+	void roundsOutToWholeSlots() {
+		DayOccupancy occupancy = new DayOccupancy();
+		long midnight = FIRST_DAY * (long) TimeHelper.MINUTES_PER_DAY;
+		occupancy.mark(midnight + 20, midnight + 40);
+		// 20 to 40 touches the slots 15-30 and 30-45
+		assertEquals(0b110L, occupancy.getLowWord(FIRST_DAY));
+		assertFalse(occupancy.isFree(midnight + 15, midnight + 16));
+		assertTrue(occupancy.isFree(midnight, midnight + 15));
+		assertTrue(occupancy.isFree(midnight + 45, midnight + 60));
+	}
+	
+	@Test
+	void splitsARangeOverMidnight() {
+		DayOccupancy occupancy = new DayOccupancy();
+		long midnight = (FIRST_DAY + 1) * (long) TimeHelper.MINUTES_PER_DAY;
+		occupancy.mark(midnight - 30, midnight + 15);
+		assertEquals(0b11L << 30, occupancy.getHighWord(FIRST_DAY));
+		assertEquals(0b1L, occupancy.getLowWord(FIRST_DAY + 1));
+		assertFalse(occupancy.isFree(midnight - 1, midnight));
+		occupancy.clear(midnight - 15, midnight + 15);
+		assertEquals(0b1L << 30, occupancy.getHighWord(FIRST_DAY));
+		assertEquals(0L, occupancy.getLowWord(FIRST_DAY + 1));
+	}
+	
+	@Test
+	void matchesAnArrayOfSlots() {
+		Random random = new Random(6);
+		DayOccupancy occupancy = new DayOccupancy();
+		boolean[] slots = new boolean[DAYS * DayOccupancy.SLOTS_PER_DAY];
+		long firstMinute = FIRST_DAY * (long) TimeHelper.MINUTES_PER_DAY;
+		for (int i = 0; i < 20000; i++) {
+			// any minute, lasting up to two days so some ranges cover a whole day or more
+			long from = firstMinute + random.nextInt((DAYS - 3) * TimeHelper.MINUTES_PER_DAY);
+			long to = from + 1 + random.nextInt(random.nextInt(8) == 0 ? 2 * TimeHelper.MINUTES_PER_DAY : 300);
+			int fromSlot = (int) ((from - firstMinute) / DayOccupancy.SLOT_MINUTES);
+			int toSlot = (int) ((to - firstMinute + DayOccupancy.SLOT_MINUTES - 1) / DayOccupancy.SLOT_MINUTES);
+			switch (random.nextInt(3)) {
+			case 0:
+				occupancy.mark(from, to);
+				Arrays.fill(slots, fromSlot, toSlot, true);
+				break;
+			case 1:
+				occupancy.clear(from, to);
+				Arrays.fill(slots, fromSlot, toSlot, false);
+				break;
+			default:
+				boolean free = true;
+				for (int slot = fromSlot; slot < toSlot; slot++)
+					free &= !slots[slot];
+				assertEquals(free, occupancy.isFree(from, to), from + " to " + to);
+			}
+		}
+		for (int day = 0; day < DAYS; day++) {
+			for (int slot = 0; slot < DayOccupancy.SLOTS_PER_DAY; slot++) {
+				assertEquals(scanFor(slots, day, slot, true), occupancy.nextTakenSlot(FIRST_DAY + day, slot), "day " + day + " slot " + slot);
+				assertEquals(scanFor(slots, day, slot, false), occupancy.nextFreeSlot(FIRST_DAY + day, slot), "day " + day + " slot " + slot);
+			}
+			long low = 0, high = 0;
+			for (int slot = 0; slot < DayOccupancy.SLOTS_PER_DAY; slot++) {
+				if (slots[day * DayOccupancy.SLOTS_PER_DAY + slot]) {
+					if (slot < 64)
+						low |= 1L << slot;
+					else
+						high |= 1L << (slot - 64);
+				}
+			}
+			assertEquals(low, occupancy.getLowWord(FIRST_DAY + day), "day " + day);
+			assertEquals(high, occupancy.getHighWord(FIRST_DAY + day), "day " + day);
+		}
+	}
+	
+	/**
+	 * @return the first slot of the day at or after fromSlot that is taken (or free), or the number of slots in a day
+	 */
+	private static int scanFor(boolean[] slots, int day, int fromSlot, boolean taken) {
+		for (int slot = fromSlot; slot < DayOccupancy.SLOTS_PER_DAY; slot++) {
+			if (slots[day * DayOccupancy.SLOTS_PER_DAY + slot] == taken)
+				return slot;
+		}
+		return DayOccupancy.SLOTS_PER_DAY;
+	}
+}
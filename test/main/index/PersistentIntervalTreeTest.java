@@ -0,0 +1,81 @@
+package main.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the persistent interval tree against scanning a list of intervals, and that older versions do not change
+ * @author CTS
+ *
+ */
+class PersistentIntervalTreeTest {
+	private record Interval(long start, long end, String value) {
+	}
+	
+	@Test
+	void staysBalancedWhenIntervalsComeInOrder() {
+		PersistentIntervalTree<String> tree = PersistentIntervalTree.empty();
+		for (int start = 0; start < 200_000; start++) {
+			tree = tree.insert(start, start + 10, "v" + start);
+		}
+		assertEquals(List.of("v99991", "v99992", "v99993", "v99994", "v99995", "v99996", "v99997", "v99998", "v99999", "v100000"), 
+				tree.query(100_000, 100_001, new ArrayList<>()));
+	}
+	
+	@Test
+	void matchesScanningEveryInterval() {
+		Random random = new Random(17);
+		PersistentIntervalTree<String> tree = PersistentIntervalTree.empty();
+		List<Interval> intervals = new ArrayList<>();
+		List<PersistentIntervalTree<String>> versions = new ArrayList<>();
+		List<List<Interval>> expectedVersions = new ArrayList<>();
+		for (int i = 0; i < 10000; i++) {
+			if (!intervals.isEmpty() && random.nextInt(3) == 0) {
+				Interval removed = intervals.remove(random.nextInt(intervals.size()));
+				assertTrue(tree.contains(removed.start(), removed.value()));
+				tree = tree.remove(removed.start(), removed.value());
+				assertFalse(tree.contains(removed.start(), removed.value()));
+			} else {
+				// few distinct starts, so many intervals share one
+				long start = random.nextInt(1000);
+				Interval added = new Interval(start, start + 1 + random.nextInt(random.nextInt(10) == 0 ? 500 : 20), "v" + i);
+				intervals.add(added);
+				tree = tree.insert(added.start(), added.end(), added.value());
+			}
+			assertEquals(intervals.size(), tree.size());
+			long from = random.nextInt(1100) - 50, to = from + random.nextInt(60);
+			assertEquals(scan(intervals, from, to), tree.query(from, to, new ArrayList<>()), from + " to " + to);
+			if (i % 500 == 0) {
+				versions.add(tree);
+				expectedVersions.add(new ArrayList<>(intervals));
+			}
+		}
+		for (int i = 0; i < versions.size(); i++) {
+			assertEquals(scan(expectedVersions.get(i), 0, 2000), versions.get(i).query(0, 2000, new ArrayList<>()), "version " + i);
+		}
+	}
+	
+	/**
+	 * The values overlapping [from, to), by start and then in the order they were added
+	 */
+	private static List<String> scan(List<Interval> intervals, long from, long to) {
+		List<Interval> hits = new ArrayList<>();
+		for (Interval interval : intervals) {
+			if (interval.start() < to && from < interval.end())
+				hits.add(interval);
+		}
+		hits.sort(Comparator.comparingLong(Interval::start).thenComparingInt(interval -> Integer.parseInt(interval.value().substring(1))));
+		List<String> values = new ArrayList<>();
+		for (Interval interval : hits)
+			values.add(interval.value());
+		return values;
+	}
+}
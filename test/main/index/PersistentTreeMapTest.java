@@ -0,0 +1,63 @@
+package main.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the persistent map against a {@link TreeMap}, and that older versions do not change
+ * @author CTS
+ *
+ */
+class PersistentTreeMapTest {
+	@Test
+	void staysBalancedWhenKeysComeInOrder() {
+		// without rebalancing these would make a list, and the recursion would run out of stack
+		PersistentTreeMap<Integer, Integer> map = PersistentTreeMap.empty();
+		for (int key = 0; key < 200_000; key++) {
+			map = map.put(key, key);
+		}
+		for (int key = 0; key < 100_000; key++) {
+			map = map.remove(key);
+		}
+		for (int key = -1; key > -100_000; key--) {
+			map = map.put(key, key);
+		}
+		assertEquals(199_999, map.size());
+		assertEquals(150_000, map.get(150_000));
+		assertEquals(null, map.get(50_000));
+	}
+	
+	@Test
+	void matchesATreeMap() {
+		Random random = new Random(16);
+		List<PersistentTreeMap<Integer, String>> versions = new ArrayList<>();
+		List<TreeMap<Integer, String>> expectedVersions = new ArrayList<>();
+		PersistentTreeMap<Integer, String> map = PersistentTreeMap.empty();
+		TreeMap<Integer, String> expected = new TreeMap<>();
+		for (int i = 0; i < 20000; i++) {
+			int key = random.nextInt(500);
+			if (random.nextInt(3) == 0) {
+				map = map.remove(key);
+				expected.remove(key);
+			} else {
+				map = map.put(key, "v" + i);
+				expected.put(key, "v" + i);
+			}
+			assertEquals(expected.size(), map.size());
+			assertEquals(expected.get(key), map.get(key));
+			if (i % 500 == 0) {
+				versions.add(map);
+				expectedVersions.add(new TreeMap<>(expected));
+			}
+		}
+		for (int i = 0; i < versions.size(); i++) {
+			assertEquals(new ArrayList<>(expectedVersions.get(i).values()), versions.get(i).values(new ArrayList<>()), "version " + i);
+		}
+	}
+}
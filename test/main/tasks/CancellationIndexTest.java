@@ -0,0 +1,74 @@
+package main.tasks;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import main.helpers.TimeHelper;
+
+/**
+ * Checks the cancelled-day bitset against scanning the anti-task list, including when a 
+ * cancellation lands before the day the index started at
+ * @author CTS
+ *
+ */
+class CancellationIndexTest {
+	private static final int FIRST_DAY = TimeHelper.toEpochDay(20200101);
+	
+	@Test
+	void movesTheBaseBackForAnEarlierDay() {
+		CancellationIndex index = new CancellationIndex(FIRST_DAY, 30);
+		index.add(cancellation(FIRST_DAY + 3));
+		index.add(cancellation(FIRST_DAY - 100));
+		assertTrue(index.contains(FIRST_DAY + 3));
+		assertTrue(index.contains(FIRST_DAY - 100));
+		assertFalse(index.contains(FIRST_DAY));
+		assertFalse(index.contains(FIRST_DAY - 99));
+		assertFalse(index.contains(FIRST_DAY - 101));
+		assertEquals(2, index.size());
+	}
+	
+	@Test
+	void keepsEveryCancellationOfASeries() {
+		RecurringTask daily = new RecurringTask("daily", RecurringTask.RecurringTaskType.WORK, 20200101, 20200131, 9, 1, 1);
+		daily.addAntiTask(cancellation(FIRST_DAY + 1));
+		daily.addAntiTask(cancellation(FIRST_DAY + 2));
+		daily.addAntiTask(cancellation(FIRST_DAY + 5));
+		assertEquals(3, daily.getCancelledOccurances().size());
+		assertTrue(daily.isCancelledOn(FIRST_DAY + 5));
+		assertFalse(daily.isCancelledOn(FIRST_DAY + 3));
+	}
+	
+	@Test
+	void matchesScanningTheAntiTasks() {
+		Random random = new Random(5);
+		for (int i = 0; i < 500; i++) {
+			CancellationIndex index = new CancellationIndex(FIRST_DAY, random.nextInt(60));
+			int count = random.nextInt(20);
+			for (int j = 0; j < count; j++) {
+				// mostly inside the series, sometimes before its start so the bits have to move
+				index.add(cancellation(FIRST_DAY + (random.nextInt(5) == 0 ? -random.nextInt(200) : random.nextInt(120))));
+				for (int day = FIRST_DAY - 210; day < FIRST_DAY + 130; day++) {
+					assertEquals(scanContains(index, day), index.contains(day), "day " + day);
+				}
+			}
+			assertEquals(count, index.size());
+		}
+	}
+	
+	private static AntiTask cancellation(int epochDay) {
+		return new AntiTask("skip", "Cancellation", TimeHelper.fromEpochDay(epochDay), 9, 1);
+	}
+	
+	private static boolean scanContains(CancellationIndex index, int epochDay) {
+		for (AntiTask antiTask : index.getAntiTasks()) {
+			if (antiTask.getEpochDay() == epochDay)
+				return true;
+		}
+		return false;
+	}
+}
@@ -0,0 +1,102 @@
+package main.tasks;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import main.helpers.TimeHelper;
+import main.tasks.RecurringTask.RecurringTaskType;
+
+/**
+ * Checks the occurance stream of a recurring task, split and unsplit, against counting the days by hand
+ * @author CTS
+ *
+ */
+class OccurrenceSpliteratorTest {
+	private static final int FIRST_DAY = TimeHelper.toEpochDay(20200101);
+	
+	@Test
+	void streamsEveryWeekOfASeries() {
+		RecurringTask weekly = new RecurringTask("weekly", RecurringTaskType.WORK, 20200101, 20200131, 9, 1, 7);
+		assertEquals(List.of(20200101, 20200108, 20200115, 20200122, 20200129), 
+				weekly.occurrences().map(Occurrence::getDate).collect(Collectors.toList()));
+		assertEquals(List.of(20200108, 20200115), 
+				weekly.occurrences(20200102, 20200121).map(Occurrence::getDate).collect(Collectors.toList()));
+	}
+	
+	@Test
+	void doesNotSplitASingleOccurance() {
+		RecurringTask weekly = new RecurringTask("weekly", RecurringTaskType.WORK, 20200101, 20200131, 9, 1, 7);
+		Spliterator<Occurrence> spliterator = weekly.occurrenceSpliterator(FIRST_DAY + 7, FIRST_DAY + 13);
+		assertEquals(1, spliterator.estimateSize());
+		assertNull(spliterator.trySplit());
+	}
+	
+	@Test
+	void matchesADayByDayScan() {
+		Random random = new Random(4);
+		for (int i = 0; i < 2000; i++) {
+			RecurringTask series = randomSeries(random);
+			int fromDay = FIRST_DAY - 10 + random.nextInt(400), toDay = fromDay - 5 + random.nextInt(400);
+			List<Integer> expected = scanDays(series, fromDay, toDay);
+			String context = series + " from " + fromDay + " to " + toDay;
+			
+			assertEquals(expected, days(series.occurrencesBetweenDays(fromDay, toDay).collect(Collectors.toList())), context);
+			assertEquals(expected, days(series.occurrencesBetweenDays(fromDay, toDay).parallel().collect(Collectors.toList())), context);
+			
+			Spliterator<Occurrence> spliterator = series.occurrenceSpliterator(fromDay, toDay);
+			assertEquals(expected.size(), spliterator.estimateSize(), context);
+			List<Occurrence> split = new ArrayList<>();
+			splitAndCollect(spliterator, random, split);
+			assertEquals(expected, days(split), context);
+		}
+	}
+	
+	/**
+	 * A series on a random frequency of up to a month, lasting anywhere from a day to a year
+	 */
+	private static RecurringTask randomSeries(Random random) {
+		int startDay = FIRST_DAY + random.nextInt(30);
+		return new RecurringTask("series", RecurringTaskType.WORK, TimeHelper.fromEpochDay(startDay), 
+				TimeHelper.fromEpochDay(startDay + random.nextInt(365)), 9, 1, 1 + random.nextInt(31));
+	}
+	
+	/**
+	 * Split a random number of times, checking the halves add up, then hand out the 
+	 * occurances of the first half before the second
+	 */
+	private static void splitAndCollect(Spliterator<Occurrence> spliterator, Random random, List<Occurrence> out) {
+		long size = spliterator.estimateSize();
+		Spliterator<Occurrence> firstHalf = random.nextInt(4) == 0 ? null : spliterator.trySplit();
+		if (firstHalf == null) {
+			if (random.nextBoolean())
+				spliterator.forEachRemaining(out::add);
+			else
+				while (spliterator.tryAdvance(out::add));
+			return;
+		}
+		assertEquals(size, firstHalf.estimateSize() + spliterator.estimateSize());
+		splitAndCollect(firstHalf, random, out);
+		splitAndCollect(spliterator, random, out);
+	}
+	
+	private static List<Integer> scanDays(RecurringTask series, int fromDay, int toDay) {
+		List<Integer> days = new ArrayList<>();
+		for (int day = fromDay; day <= toDay; day++) {
+			if (day >= series.getEpochDay() && day <= series.getLastOccurrenceDay() && (day - series.getEpochDay()) % series.getFrequency() == 0)
+				days.add(day);
+		}
+		return days;
+	}
+	
+	private static List<Integer> days(List<Occurrence> occurrences) {
+		return occurrences.stream().map(Occurrence::getEpochDay).collect(Collectors.toList());
+	}
+}
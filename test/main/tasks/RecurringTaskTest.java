@@ -0,0 +1,97 @@
+package main.tasks;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import main.helpers.TimeHelper;
+import main.tasks.RecurringTask.RecurringTaskType;
+
+/**
+ * Checks {@link RecurringTask#findSharedOccurrence(RecurringTask)} against walking every pair of days
+ * @author CTS
+ *
+ */
+class RecurringTaskTest {
+	private static final int FIRST_DAY = TimeHelper.toEpochDay(20200101);
+	
+	@Test
+	void findsTheFirstWeeklyDayOfADailySeries() {
+		RecurringTask daily = series("daily", 20200101, 20200131, 9, 1, 1);
+		RecurringTask weekly = series("weekly", 20200108, 20200131, 9.5f, 1, 7);
+		assertEquals(TimeHelper.toEpochDay(20200108), daily.findSharedOccurrence(weekly));
+		assertEquals(TimeHelper.toEpochDay(20200108), weekly.findSharedOccurrence(daily));
+	}
+	
+	@Test
+	void findsAnOccuranceRunningPastMidnight() {
+		RecurringTask late = series("late", 20200101, 20200110, 23, 2, 7);
+		RecurringTask early = series("early", 20200102, 20200110, 0.5f, 1, 1);
+		assertEquals(TimeHelper.toEpochDay(20200101), late.findSharedOccurrence(early));
+		assertEquals(TimeHelper.toEpochDay(20200102), early.findSharedOccurrence(late));
+	}
+	
+	@Test
+	void skipsCancelledOccurances() {
+		RecurringTask daily = series("daily", 20200101, 20200131, 9, 1, 1);
+		RecurringTask weekly = series("weekly", 20200101, 20200131, 9, 1, 7);
+		weekly.addAntiTask(new AntiTask("skip", "Cancellation", 20200101, 9, 1));
+		daily.addAntiTask(new AntiTask("skip", "Cancellation", 20200108, 9, 1));
+		assertEquals(TimeHelper.toEpochDay(20200115), daily.findSharedOccurrence(weekly));
+	}
+	
+	@Test
+	void matchesADayByDayScan() {
+		Random random = new Random(20200101);
+		for (int i = 0; i < 5000; i++) {
+			RecurringTask first = randomSeries(random, "first");
+			RecurringTask second = randomSeries(random, "second");
+			assertEquals(scanForSharedOccurrence(first, second), first.findSharedOccurrence(second), () -> first + " and " + second);
+		}
+	}
+	
+	private static RecurringTask series(String name, int startDate, int endDate, float startTime, float duration, int frequency) {
+		return new RecurringTask(name, RecurringTaskType.WORK, startDate, endDate, startTime, duration, frequency);
+	}
+	
+	/**
+	 * A series on any frequency up to twelve days, starting within three weeks of the others so most pairs meet,
+	 * half of them late in the evening so they run past midnight, with a third of the occurances cancelled
+	 */
+	private static RecurringTask randomSeries(Random random, String name) {
+		int startDay = FIRST_DAY + random.nextInt(21);
+		int frequency = 1 + random.nextInt(12);
+		float startTime = random.nextBoolean() ? 20 + random.nextInt(16) / 4f : random.nextInt(96) / 4f;
+		float duration = (1 + random.nextInt(24)) / 4f;
+		RecurringTask series = series(name, TimeHelper.fromEpochDay(startDay), TimeHelper.fromEpochDay(startDay + random.nextInt(90)), startTime, duration, frequency);
+		List<AntiTask> cancelled = new ArrayList<>();
+		for (int day = series.getEpochDay(); day <= series.getLastOccurrenceDay(); day += frequency) {
+			if (random.nextInt(3) == 0)
+				cancelled.add(new AntiTask(name + day, "Cancellation", TimeHelper.fromEpochDay(day), startTime, duration));
+		}
+		series.setCancelledOccurances(cancelled);
+		return series;
+	}
+	
+	/**
+	 * Walk every live occurance of both series
+	 * @return the first day of the first series that overlaps the second, or {@link RecurringTask#NO_OCCURRENCE}
+	 */
+	private static int scanForSharedOccurrence(RecurringTask first, RecurringTask second) {
+		for (int day = first.getEpochDay(); day <= first.getLastOccurrenceDay(); day += first.getFrequency()) {
+			if (first.isCancelledOn(day))
+				continue;
+			long start = day * (long) TimeHelper.MINUTES_PER_DAY + first.getStartMinute(), end = start + first.getDurationMinutes();
+			for (int otherDay = second.getEpochDay(); otherDay <= second.getLastOccurrenceDay(); otherDay += second.getFrequency()) {
+				long otherStart = otherDay * (long) TimeHelper.MINUTES_PER_DAY + second.getStartMinute();
+				if (!second.isCancelledOn(otherDay) && otherStart < end && start < otherStart + second.getDurationMinutes())
+					return day;
+			}
+		}
+		return RecurringTask.NO_OCCURRENCE;
+	}
+}
@@ -0,0 +1,76 @@
+package main.tasks;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.time.LocalDate;
+import java.util.Calendar;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import main.helpers.TimeHelper;
+
+/**
+ * Checks the days and minutes a task keeps against {@link LocalDate}, and that a date or time
+ * that doesn't fit them still reads back exactly as it was given
+ * @author CTS
+ *
+ */
+class TaskTest {
+	
+	@Test
+	void keepsAnInvalidDateAsItWasGiven() {
+		Task task = new TransientTask("Bad", "Visit", 20201301, 9, 1);
+		assertEquals(20201301, task.getDate());
+		assertEquals(13, task.getMonth());
+		assertFalse(task.isTaskValid());
+		assertEquals("Start Date is invalid!", task.getInvalidReason());
+	}
+	
+	@Test
+	void keepsATimeThatIsNotAWholeMinute() {
+		Task task = new TransientTask("Odd", "Visit", 20200101, 9.1234f, 1);
+		assertEquals(9.1234f, task.getStartTime());
+		assertFalse(task.isTaskValid());
+		task.setStartTime(9.25f);
+		assertEquals(9 * 60 + 15, task.getStartMinute());
+		assertEquals(20200101, task.getDate());
+	}
+	
+	@Test
+	void matchesLocalDateForValidTasks() {
+		Random random = new Random(20200101);
+		for (int i = 0; i < 20000; i++) {
+			LocalDate date = LocalDate.ofEpochDay(random.nextInt(200000) - 100000);
+			int yyyymmdd = date.getYear() * 10000 + date.getMonthValue() * 100 + date.getDayOfMonth();
+			float startTime = random.nextInt(96) / 4f, duration = (1 + random.nextInt(96)) / 4f;
+			Task task = new TransientTask("Task" + i, "Visit", yyyymmdd, startTime, duration);
+			assertEquals(date.toEpochDay(), task.getEpochDay());
+			assertEquals(yyyymmdd, task.getDate());
+			assertEquals(date.getDayOfMonth(), task.getDay());
+			assertEquals(startTime, task.getStartTime());
+			assertEquals(duration, task.getDuration());
+			assertEquals(date.toEpochDay() * TimeHelper.MINUTES_PER_DAY + Math.round(startTime * 60), task.getStartEpochMinute());
+			assertEquals(task.getStartEpochMinute() + Math.round(duration * 60), task.getEndEpochMinute());
+			assertEquals(date.getDayOfYear(), task.getStartGregorianDate().get(Calendar.DAY_OF_YEAR));
+		}
+	}
+	
+	@Test
+	void readsBackAnythingItWasGiven() {
+		Random random = new Random(20201301);
+		for (int i = 0; i < 3000; i++) {
+			int date = random.nextBoolean() ? 19000000 + random.nextInt(2000000) : random.nextInt(30000000);
+			float startTime = random.nextBoolean() ? random.nextInt(96) / 4f : random.nextFloat() * 24;
+			float duration = random.nextBoolean() ? random.nextInt(96) / 4f : random.nextFloat() * 24;
+			Task task = new TransientTask("Task" + i, "Visit", date, startTime, duration);
+			assertEquals(date, task.getDate());
+			assertEquals(startTime, task.getStartTime());
+			assertEquals(duration, task.getDuration());
+			boolean valid = TimeHelper.isDateValid(date, date / 100 % 100, date % 100)
+					&& TimeHelper.isRounded(startTime) && TimeHelper.isRounded(duration);
+			assertEquals(valid, task.isTaskValid(), () -> date + " " + startTime + " " + duration);
+		}
+	}
+}